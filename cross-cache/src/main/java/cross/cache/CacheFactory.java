@@ -30,6 +30,10 @@ package cross.cache;
 import cross.cache.ehcache.AutoRetrievalEhcacheDelegate;
 import cross.cache.ehcache.EhcacheDelegate;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
@@ -64,6 +68,15 @@ public class CacheFactory {
         CacheFactory.cacheDirectory = cacheDirectory;
     }
 
+    /**
+     * Returns the cache location used for newly created caches.
+     *
+     * @return the cache directory
+     */
+    public static File getCacheDirectory() {
+        return CacheFactory.cacheDirectory;
+    }
+
     /**
      * Remove the cache from the ehcache cache manager.
      *
@@ -78,6 +91,7 @@ public class CacheFactory {
     }
 
     private static CacheManager defaultCacheManager = null;
+    private static final ConcurrentMap<String, CachePartition> partitions = new ConcurrentHashMap<>();
 
     /**
      * Returns the default cache manager implementation for ehcache. Creates
@@ -85,7 +99,7 @@ public class CacheFactory {
      *
      * @return the cache manager instance
      */
-    public static CacheManager getDefault() {
+    public static synchronized CacheManager getDefault() {
         if (defaultCacheManager == null) {
             cacheDirectory.mkdirs();
             Configuration cacheManagerConfig = new Configuration()
@@ -305,6 +319,24 @@ public class CacheFactory {
      * @return a cache delegate representing the created cache
      */
     public static <K, V> ICacheDelegate<K, V> createVolatileAutoRetrievalCache(String cacheName, ICacheElementProvider<K, V> provider, long timeToIdle, long timeToLive) {
+        return createVolatileAutoRetrievalCache(cacheName, provider, timeToIdle, timeToLive, 0.0d);
+    }
+
+    /**
+     * Creates a volatile, non persistent auto retrieval cache (self populating), with a default capacity of 1000 elements in
+     * memory. Elements that have lived longer than <code>refreshAheadFactor</code> times <code>timeToLive</code> are reloaded
+     * asynchronously on access, while the stale element is returned.
+     *
+     * @param <K>                the key type to use, can be non-serializable
+     * @param <V>                the value type to use, can be non-serializable
+     * @param cacheName          the name of the cache
+     * @param provider           the provider mapping keys to elements
+     * @param timeToIdle         time until an entry is marked as idle
+     * @param timeToLive         time until an entry is removed from the cache
+     * @param refreshAheadFactor the fraction of timeToLive after which entries are refreshed, 0 disables refresh ahead
+     * @return a cache delegate representing the created cache
+     */
+    public static <K, V> ICacheDelegate<K, V> createVolatileAutoRetrievalCache(String cacheName, ICacheElementProvider<K, V> provider, long timeToIdle, long timeToLive, double refreshAheadFactor) {
         CacheManager cacheManager = getDefault();
         if (cacheManager.cacheExists(cacheName)) {
             return new EhcacheDelegate<>(cacheManager.getCache(cacheName));
@@ -320,7 +352,7 @@ public class CacheFactory {
             .transactionalMode(CacheConfiguration.TransactionalMode.OFF);
         Cache cache = new Cache(cacheConfig);
         cacheManager.addCache(cache);
-        AutoRetrievalEhcacheDelegate<K, V> ared = new AutoRetrievalEhcacheDelegate<>(cache, provider);
+        AutoRetrievalEhcacheDelegate<K, V> ared = new AutoRetrievalEhcacheDelegate<>(cache, provider, refreshAheadFactor);
         return ared;
     }
 
@@ -337,4 +369,62 @@ public class CacheFactory {
         }
         return CacheManager.getInstance().addCacheIfAbsent(cacheName);
     }
+
+    /**
+     * Creates a new cache partition with its own cache manager, quotas and
+     * directory. The directory is deleted when the partition is closed.
+     *
+     * @param name              the unique name of the partition
+     * @param directory         the directory for disk storage of the partition
+     * @param maxBytesLocalHeap the local heap quota for all ehcache backed caches of the partition
+     * @param maxBytesLocalDisk the local disk quota for all ehcache backed caches of the partition, 0 disables overflow to disk
+     * @return the new partition
+     * @throws IllegalStateException if a partition with the same name is already open
+     */
+    public static CachePartition createPartition(String name, File directory, long maxBytesLocalHeap, long maxBytesLocalDisk) {
+        if (maxBytesLocalHeap <= 0) {
+            throw new IllegalArgumentException("maxBytesLocalHeap must be greater than 0!");
+        }
+        CachePartition partition = new CachePartition(name, directory, maxBytesLocalHeap, maxBytesLocalDisk);
+        if (partitions.putIfAbsent(name, partition) != null) {
+            throw new IllegalStateException("Cache partition " + name + " already exists!");
+        }
+        log.debug("Created cache partition {} in {}", name, directory);
+        return partition;
+    }
+
+    /**
+     * Returns the open cache partition with the given name.
+     *
+     * @param name the partition name
+     * @return the partition, or null if no such partition is open
+     */
+    public static CachePartition getPartition(String name) {
+        return partitions.get(name);
+    }
+
+    /**
+     * Returns all open cache partitions.
+     *
+     * @return the open partitions
+     */
+    public static Collection<CachePartition> getPartitions() {
+        return new ArrayList<>(partitions.values());
+    }
+
+    /**
+     * Closes and removes the cache partition with the given name.
+     *
+     * @param name the partition name
+     */
+    public static void removePartition(String name) {
+        CachePartition partition = partitions.remove(name);
+        if (partition != null) {
+            partition.close();
+        }
+    }
+
+    static void removePartition(CachePartition partition) {
+        partitions.remove(partition.getName(), partition);
+    }
 }
@@ -0,0 +1,85 @@
+/* 
+ * Cross, common runtime object support system. 
+ * Copyright (C) 2008-2014, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code 
+ * under. Certain files or entire directories may not be covered by this 
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a 
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.cache;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event for a single cache operation.
+ *
+ * Events are committed by {@link CacheStatistics} whenever a lookup, store
+ * or eviction is recorded, so every cache reporting its statistics is
+ * covered. When the event is not enabled in the active recording, only the
+ * cost of {@link #shouldCommit()} is incurred.
+ *
+ * @author Nils Hoffmann
+ * @since 1.3.2
+ */
+@Name("cross.cache.Operation")
+@Label("Cache Operation")
+@Category({"Cross", "Cache"})
+@Description("A lookup, store or eviction in a cache")
+@StackTrace(false)
+final class CacheOperationEvent extends Event {
+
+    static final String GET = "get";
+    static final String PUT = "put";
+    static final String EVICT = "evict";
+
+    @Label("Cache")
+    String cache;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Hit")
+    boolean hit;
+
+    @Label("Eviction Cause")
+    String cause;
+
+    @Label("Count")
+    long count;
+
+    static void commit(String cache, String operation, boolean hit, EvictionCause cause, long count) {
+        CacheOperationEvent event = new CacheOperationEvent();
+        if (event.shouldCommit()) {
+            event.cache = cache;
+            event.operation = operation;
+            event.hit = hit;
+            event.cause = cause == null ? null : cause.name();
+            event.count = count;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,471 @@
+/* 
+ * Cross, common runtime object support system. 
+ * Copyright (C) 2008-2014, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code 
+ * under. Certain files or entire directories may not be covered by this 
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a 
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.cache;
+
+import cross.cache.ehcache.EhcacheDelegate;
+import cross.cache.none.NoCache;
+import cross.cache.softReference.SoftReferenceCache;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.Configuration;
+import net.sf.ehcache.config.DiskStoreConfiguration;
+import net.sf.ehcache.config.PersistenceConfiguration;
+import net.sf.ehcache.config.PersistenceConfiguration.Strategy;
+import net.sf.ehcache.config.SizeOfPolicyConfiguration;
+import net.sf.ehcache.store.MemoryStoreEvictionPolicy;
+
+/**
+ * An isolated group of caches with its own ehcache {@link CacheManager}, byte
+ * quota, disk store directory and lifecycle.
+ *
+ * Partitions allow several workflows or factories to run concurrently within
+ * one virtual machine without evicting each other's cached elements. All
+ * ehcache backed caches of a partition share its local heap and local disk
+ * quotas and overflow to disk, if a disk quota is set. Soft reference and no-op caches are only tracked for teardown.
+ *
+ * Closing a partition closes all of its caches, shuts down its cache manager
+ * and deletes its directory. Cache delegates handed out by a partition remain
+ * usable after it has been closed, but no longer cache any values.
+ *
+ * A partition can be entered by a thread using {@link #enter()}, which makes
+ * it available via {@link #current()} to that thread, until the returned scope
+ * is closed. The partition is not inherited by other threads, since pooled
+ * threads outlive the tasks they run. Tasks handed to other threads are bound
+ * to a partition explicitly using {@link #wrap(java.lang.Runnable)},
+ * {@link #wrap(java.util.concurrent.Callable)} or
+ * {@link #inherit(java.lang.Runnable)}.
+ *
+ * Partitions are created via
+ * {@link CacheFactory#createPartition(java.lang.String, java.io.File, long, long)}.
+ *
+ * @author Nils Hoffmann
+ */
+@Slf4j
+public final class CachePartition implements Closeable {
+
+    /**
+     * Restores the previously entered partition when closed.
+     */
+    public final class Scope implements AutoCloseable {
+
+        private final CachePartition previous;
+
+        private Scope(CachePartition previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    private static final ThreadLocal<CachePartition> CURRENT = new ThreadLocal<>();
+    private static final AtomicInteger instances = new AtomicInteger();
+
+    private final String name;
+    private final File directory;
+    private final long maxBytesLocalHeap;
+    private final long maxBytesLocalDisk;
+    private final List<ICacheDelegate<?, ?>> caches = Collections.synchronizedList(new ArrayList<ICacheDelegate<?, ?>>());
+    private final ConcurrentMap<String, ICacheDelegate<?, ?>> namedCaches = new ConcurrentHashMap<>();
+    private CacheManager cacheManager = null;
+    private volatile boolean closed = false;
+
+    CachePartition(String name, File directory, long maxBytesLocalHeap, long maxBytesLocalDisk) {
+        this.name = name;
+        this.directory = directory;
+        this.maxBytesLocalHeap = maxBytesLocalHeap;
+        this.maxBytesLocalDisk = maxBytesLocalDisk;
+    }
+
+    /**
+     * Returns the partition entered by the current thread.
+     *
+     * @return the current partition, or null if no open partition was entered
+     */
+    public static CachePartition current() {
+        CachePartition partition = CURRENT.get();
+        if (partition != null && partition.isClosed()) {
+            return null;
+        }
+        return partition;
+    }
+
+    /**
+     * Makes this partition the current partition of the calling thread.
+     *
+     * @return the scope, which restores the previous partition when closed
+     */
+    public Scope enter() {
+        Scope scope = new Scope(CURRENT.get());
+        CURRENT.set(this);
+        return scope;
+    }
+
+    /**
+     * Returns a runnable, which runs the given task within this partition on
+     * whatever thread it is executed.
+     *
+     * @param task the task
+     * @return the task bound to this partition
+     */
+    public Runnable wrap(final Runnable task) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try (Scope scope = enter()) {
+                    task.run();
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns a callable, which calls the given task within this partition on
+     * whatever thread it is executed.
+     *
+     * @param <T>  the result type
+     * @param task the task
+     * @return the task bound to this partition
+     */
+    public <T> Callable<T> wrap(final Callable<T> task) {
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                try (Scope scope = enter()) {
+                    return task.call();
+                }
+            }
+        };
+    }
+
+    /**
+     * Binds the given task to the partition of the calling thread, if any.
+     *
+     * @param task the task
+     * @return the bound task, or the task itself if no partition was entered
+     */
+    public static Runnable inherit(Runnable task) {
+        CachePartition partition = current();
+        return partition == null ? task : partition.wrap(task);
+    }
+
+    /**
+     * Binds the given task to the partition of the calling thread, if any.
+     *
+     * @param <T>  the result type
+     * @param task the task
+     * @return the bound task, or the task itself if no partition was entered
+     */
+    public static <T> Callable<T> inherit(Callable<T> task) {
+        CachePartition partition = current();
+        return partition == null ? task : partition.wrap(task);
+    }
+
+    /**
+     * Returns the name of this partition.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the directory used by this partition for disk storage.
+     *
+     * @return the directory
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the maximum number of bytes held on the local heap by all
+     * ehcache backed caches of this partition.
+     *
+     * @return the local heap quota in bytes
+     */
+    public long getMaxBytesLocalHeap() {
+        return maxBytesLocalHeap;
+    }
+
+    /**
+     * Returns the maximum number of bytes held on the local disk by all
+     * ehcache backed caches of this partition.
+     *
+     * @return the local disk quota in bytes
+     */
+    public long getMaxBytesLocalDisk() {
+        return maxBytesLocalDisk;
+    }
+
+    /**
+     * Returns whether this partition has been closed.
+     *
+     * @return true if closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Returns the name of a cache within this partition, as used for the
+     * backing ehcache and for {@link CacheStatisticsRegistry}.
+     *
+     * @param cacheName the cache name
+     * @return the partition qualified cache name
+     */
+    public String qualify(String cacheName) {
+        return cacheName + "@" + name;
+    }
+
+    /**
+     * Returns the cache manager of this partition, creating it if necessary.
+     *
+     * @return the cache manager
+     */
+    public synchronized CacheManager getCacheManager() {
+        checkOpen();
+        if (cacheManager == null) {
+            directory.mkdirs();
+            Configuration config = new Configuration()
+                .name("cross-partition-" + name + "-" + instances.incrementAndGet())
+                .diskStore(new DiskStoreConfiguration().path(directory.getAbsolutePath()));
+            config.sizeOfPolicy(new SizeOfPolicyConfiguration().maxDepth(10000).maxDepthExceededBehavior(SizeOfPolicyConfiguration.MaxDepthExceededBehavior.ABORT));
+            config.setMaxBytesLocalHeap(maxBytesLocalHeap);
+            if (maxBytesLocalDisk > 0) {
+                config.setMaxBytesLocalDisk(maxBytesLocalDisk);
+            }
+            config.setDefaultCacheConfiguration(new CacheConfiguration()
+                .memoryStoreEvictionPolicy(MemoryStoreEvictionPolicy.LRU)
+                .persistence(new PersistenceConfiguration().strategy(maxBytesLocalDisk > 0 ? Strategy.LOCALTEMPSWAP : Strategy.NONE))
+                .transactionalMode(CacheConfiguration.TransactionalMode.OFF));
+            cacheManager = CacheManager.newInstance(config);
+        }
+        return cacheManager;
+    }
+
+    /**
+     * Returns the ehcache with the given name in this partition, creating it
+     * with the defaults of the partition's cache manager, if necessary.
+     *
+     * @param cacheName the unqualified cache name
+     * @return the ehcache instance
+     */
+    public Ehcache getEhcache(String cacheName) {
+        return getCacheManager().addCacheIfAbsent(qualify(cacheName));
+    }
+
+    /**
+     * Returns the cache with the given name and type in this partition,
+     * creating it, if necessary.
+     *
+     * @param <K>       the key type
+     * @param <V>       the value type
+     * @param cacheName the unqualified cache name
+     * @param cacheType the cache type
+     * @return the cache delegate
+     */
+    public <K, V> ICacheDelegate<K, V> getCache(final String cacheName, final CacheType cacheType) {
+        checkOpen();
+        return (ICacheDelegate<K, V>) namedCaches.computeIfAbsent(cacheName + "#" + cacheType, (key) -> {
+            switch (cacheType) {
+                case EHCACHE:
+                    return register(new EhcacheDelegate<K, V>(getEhcache(cacheName)));
+                case SOFT:
+                    return register(new SoftReferenceCache<K, V>(qualify(cacheName)));
+                default:
+                    return register(new NoCache<K, V>(qualify(cacheName)));
+            }
+        });
+    }
+
+    /**
+     * Adds the cache delegate to this partition. The delegate will be closed
+     * together with this partition.
+     *
+     * @param <K>      the key type
+     * @param <V>      the value type
+     * @param delegate the cache delegate
+     * @return a delegate, which stops caching once this partition is closed
+     */
+    public <K, V> ICacheDelegate<K, V> register(ICacheDelegate<K, V> delegate) {
+        checkOpen();
+        caches.add(delegate);
+        return new PartitionCacheDelegate<>(delegate);
+    }
+
+    /**
+     * Closes all caches of this partition, shuts down its cache manager and
+     * deletes its directory.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        log.debug("Closing cache partition {}", name);
+        List<ICacheDelegate<?, ?>> toClose;
+        synchronized (caches) {
+            toClose = new ArrayList<>(caches);
+            caches.clear();
+        }
+        for (ICacheDelegate<?, ?> delegate : toClose) {
+            try {
+                delegate.close();
+            } catch (RuntimeException re) {
+                log.warn("Failed to close cache {}: {}", delegate.getName(), re.getLocalizedMessage());
+            }
+            CacheStatisticsRegistry.remove(delegate.getName());
+        }
+        namedCaches.clear();
+        synchronized (this) {
+            if (cacheManager != null) {
+                cacheManager.shutdown();
+                cacheManager = null;
+            }
+        }
+        CacheFactory.removePartition(this);
+        deleteDirectory();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Cache partition " + name + " is closed!");
+        }
+    }
+
+    private void deleteDirectory() {
+        if (!directory.exists()) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach((path) -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException ex) {
+                    log.warn("Could not delete {}: {}", path, ex.getLocalizedMessage());
+                }
+            });
+        } catch (IOException ex) {
+            log.warn("Could not delete partition directory {}: {}", directory, ex.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Delegates to a cache of this partition, until the partition is closed.
+     */
+    private final class PartitionCacheDelegate<K, V> implements ICacheDelegate<K, V> {
+
+        private final ICacheDelegate<K, V> delegate;
+
+        private PartitionCacheDelegate(ICacheDelegate<K, V> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void put(K key, V value) {
+            if (!closed) {
+                delegate.put(key, value);
+            }
+        }
+
+        @Override
+        public V get(K key) {
+            if (closed) {
+                return null;
+            }
+            try {
+                return delegate.get(key);
+            } catch (IllegalStateException ise) {
+                //cache was disposed concurrently by closing the partition
+                if (closed) {
+                    return null;
+                }
+                throw ise;
+            }
+        }
+
+        @Override
+        public String getName() {
+            return delegate.getName();
+        }
+
+        @Override
+        public Set<K> keys() {
+            if (closed) {
+                return Collections.emptySet();
+            }
+            return delegate.keys();
+        }
+
+        @Override
+        public void close() {
+            if (!closed && caches.remove(delegate)) {
+                namedCaches.values().remove(this);
+                delegate.close();
+            }
+        }
+
+        @Override
+        public CacheType getCacheType() {
+            return delegate.getCacheType();
+        }
+
+        @Override
+        public CacheStatistics getStatistics() {
+            return delegate.getStatistics();
+        }
+    }
+}
@@ -0,0 +1,480 @@
+/* 
+ * Cross, common runtime object support system. 
+ * Copyright (C) 2008-2014, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code 
+ * under. Certain files or entire directories may not be covered by this 
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a 
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.cache;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Thread-safe recorder of cache access statistics.
+ *
+ * Counts hits, misses, loads and their accumulated duration, evictions per
+ * {@link EvictionCause} and the estimated number of bytes held by a cache.
+ * Statistics may be chained to a parent instance, which then receives all
+ * recorded events as well. This allows to aggregate statistics of many short
+ * lived caches, while still keeping individual counts. Lookups, stores and
+ * evictions are additionally reported to the JDK Flight Recorder as
+ * <code>cross.cache.Operation</code> events, once per recorded event and
+ * under the name of the recording instance.
+ *
+ * @author Nils Hoffmann
+ * @see ICacheDelegate#getStatistics()
+ * @see CacheStatisticsRegistry
+ */
+public class CacheStatistics implements CacheStatisticsMXBean {
+
+    private final String name;
+    private final CacheStatistics parent;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadTimeNanos = new LongAdder();
+    private final Map<EvictionCause, LongAdder> evictions = new EnumMap<>(EvictionCause.class);
+    private final AtomicLong estimatedBytes = new AtomicLong();
+    private volatile LongSupplier byteEstimator = null;
+    private final List<Runnable> removalHooks = new CopyOnWriteArrayList<>();
+    private static final ClassValue<Method> SIZE_BYTES = new ClassValue<Method>() {
+        @Override
+        protected Method computeValue(Class<?> type) {
+            try {
+                Method m = type.getMethod("getSizeBytes");
+                if (m.getReturnType() == long.class && !Modifier.isStatic(m.getModifiers())) {
+                    return m;
+                }
+            } catch (NoSuchMethodException | SecurityException ex) {
+                //not a sized value
+            }
+            return null;
+        }
+    };
+
+    /**
+     * Creates a new, unchained instance.
+     *
+     * @param name the name of the cache
+     */
+    public CacheStatistics(String name) {
+        this(name, null);
+    }
+
+    /**
+     * Creates a new instance, propagating all recorded events to
+     * <code>parent</code>.
+     *
+     * @param name   the name of the cache
+     * @param parent the parent statistics, may be null
+     */
+    public CacheStatistics(String name, CacheStatistics parent) {
+        this.name = name;
+        this.parent = parent;
+        for (EvictionCause cause : EvictionCause.values()) {
+            evictions.put(cause, new LongAdder());
+        }
+    }
+
+    /**
+     * Record a successful lookup.
+     */
+    public void recordHit() {
+        CacheOperationEvent.commit(name, CacheOperationEvent.GET, true, null, 1);
+        for (CacheStatistics s = this; s != null; s = s.parent) {
+            s.hits.increment();
+        }
+    }
+
+    /**
+     * Record a lookup that did not find a value.
+     */
+    public void recordMiss() {
+        CacheOperationEvent.commit(name, CacheOperationEvent.GET, false, null, 1);
+        for (CacheStatistics s = this; s != null; s = s.parent) {
+            s.misses.increment();
+        }
+    }
+
+    /**
+     * Record that a value was stored. Stores are not counted, but are
+     * reported to the JDK Flight Recorder, if enabled.
+     */
+    public void recordPut() {
+        CacheOperationEvent.commit(name, CacheOperationEvent.PUT, false, null, 1);
+    }
+
+    /**
+     * Record a load of one or more values from the backing source.
+     *
+     * @param nanos the duration of the load in nanoseconds
+     */
+    public void recordLoad(long nanos) {
+        loads.increment();
+        loadTimeNanos.add(nanos);
+        if (parent != null) {
+            parent.recordLoad(nanos);
+        }
+    }
+
+    /**
+     * Record the eviction of a single element.
+     *
+     * @param cause the reason for the eviction
+     */
+    public void recordEviction(EvictionCause cause) {
+        recordEvictions(cause, 1);
+    }
+
+    /**
+     * Record the eviction of <code>count</code> elements.
+     *
+     * @param cause the reason for the eviction
+     * @param count the number of evicted elements
+     */
+    public void recordEvictions(EvictionCause cause, long count) {
+        CacheOperationEvent.commit(name, CacheOperationEvent.EVICT, false, cause, count);
+        for (CacheStatistics s = this; s != null; s = s.parent) {
+            s.evictions.get(cause).add(count);
+        }
+    }
+
+    /**
+     * Adjust the estimated number of bytes by <code>delta</code>. Has no
+     * effect on the reported value, if a byte estimator has been set.
+     *
+     * @param delta the number of bytes added (positive) or released (negative)
+     */
+    public void addEstimatedBytes(long delta) {
+        if (delta != 0) {
+            estimatedBytes.addAndGet(delta);
+            if (parent != null) {
+                parent.addEstimatedBytes(delta);
+            }
+        }
+    }
+
+    /**
+     * Set a supplier that is queried for the current size of the cache,
+     * instead of the accumulated deltas. Useful for cache implementations that
+     * track their size on their own.
+     *
+     * @param byteEstimator the byte estimator, may be null
+     */
+    public void setByteEstimator(LongSupplier byteEstimator) {
+        this.byteEstimator = byteEstimator;
+    }
+
+    /**
+     * Registers a hook to run, when these statistics are removed from the
+     * {@link CacheStatisticsRegistry}, e.g. to detach listeners feeding them.
+     *
+     * @param hook the hook
+     */
+    public void addRemovalHook(Runnable hook) {
+        removalHooks.add(hook);
+    }
+
+    /**
+     * Runs and discards all removal hooks.
+     */
+    void removed() {
+        List<Runnable> hooks = new ArrayList<>(removalHooks);
+        removalHooks.clear();
+        for (Runnable hook : hooks) {
+            hook.run();
+        }
+    }
+
+    /**
+     * Returns an unchained copy of the current values, which is not updated
+     * anymore and not registered with the {@link CacheStatisticsRegistry}.
+     *
+     * @return the snapshot
+     */
+    public CacheStatistics snapshot() {
+        return since(null);
+    }
+
+    /**
+     * Returns an unchained copy holding the differences of the counters since
+     * <code>earlier</code>, which should be a snapshot of this instance. The
+     * estimated bytes are those of this instance.
+     *
+     * @param earlier the earlier snapshot, may be null
+     * @return the differences
+     */
+    public CacheStatistics since(CacheStatistics earlier) {
+        CacheStatistics d = new CacheStatistics(name);
+        d.hits.add(getHits() - (earlier == null ? 0 : earlier.getHits()));
+        d.misses.add(getMisses() - (earlier == null ? 0 : earlier.getMisses()));
+        d.loads.add(getLoads() - (earlier == null ? 0 : earlier.getLoads()));
+        d.loadTimeNanos.add(getTotalLoadTimeNanos() - (earlier == null ? 0 : earlier.getTotalLoadTimeNanos()));
+        for (EvictionCause cause : EvictionCause.values()) {
+            d.evictions.get(cause).add(getEvictions(cause) - (earlier == null ? 0 : earlier.getEvictions(cause)));
+        }
+        d.estimatedBytes.set(getEstimatedBytes());
+        return d;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the parent statistics.
+     *
+     * @return the parent, or null
+     */
+    public CacheStatistics getParent() {
+        return parent;
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the total number of lookups.
+     *
+     * @return the number of hits plus the number of misses
+     */
+    public long getRequests() {
+        return getHits() + getMisses();
+    }
+
+    @Override
+    public double getHitRate() {
+        long requests = getRequests();
+        if (requests == 0) {
+            return 0.0d;
+        }
+        return (double) getHits() / (double) requests;
+    }
+
+    @Override
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    @Override
+    public long getTotalLoadTimeNanos() {
+        return loadTimeNanos.sum();
+    }
+
+    @Override
+    public double getAverageLoadTimeMillis() {
+        long l = getLoads();
+        if (l == 0) {
+            return 0.0d;
+        }
+        return (double) getTotalLoadTimeNanos() / (double) l / 1000000.0d;
+    }
+
+    /**
+     * Returns the number of evictions for the given cause.
+     *
+     * @param cause the eviction cause
+     * @return the number of evictions
+     */
+    public long getEvictions(EvictionCause cause) {
+        return evictions.get(cause).sum();
+    }
+
+    /**
+     * Returns the total number of evictions for all causes.
+     *
+     * @return the total number of evictions
+     */
+    public long getEvictions() {
+        long sum = 0;
+        for (LongAdder adder : evictions.values()) {
+            sum += adder.sum();
+        }
+        return sum;
+    }
+
+    @Override
+    public long getSizeEvictions() {
+        return getEvictions(EvictionCause.SIZE);
+    }
+
+    @Override
+    public long getExpiredEvictions() {
+        return getEvictions(EvictionCause.EXPIRED);
+    }
+
+    @Override
+    public long getCollectedEvictions() {
+        return getEvictions(EvictionCause.COLLECTED);
+    }
+
+    @Override
+    public long getRemovedEvictions() {
+        return getEvictions(EvictionCause.REMOVED);
+    }
+
+    @Override
+    public long getEstimatedBytes() {
+        LongSupplier estimator = this.byteEstimator;
+        if (estimator != null) {
+            try {
+                return estimator.getAsLong();
+            } catch (RuntimeException re) {
+                //cache may have been disposed, fall back to recorded deltas
+                return estimatedBytes.get();
+            }
+        }
+        return estimatedBytes.get();
+    }
+
+    @Override
+    public void reset() {
+        hits.reset();
+        misses.reset();
+        loads.reset();
+        loadTimeNanos.reset();
+        for (LongAdder adder : evictions.values()) {
+            adder.reset();
+        }
+    }
+
+    /**
+     * Returns the current values as an ordered map, using the given prefix
+     * for all keys. Suitable for inclusion in workflow statistics.
+     *
+     * @param prefix the key prefix, e.g. the cache name followed by a dot
+     * @return the statistics map
+     */
+    public Map<String, Object> toMap(String prefix) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put(prefix + "HITS", getHits());
+        map.put(prefix + "MISSES", getMisses());
+        map.put(prefix + "HIT_RATE", getHitRate());
+        map.put(prefix + "LOADS", getLoads());
+        map.put(prefix + "LOAD_TIME_MILLISECONDS", getTotalLoadTimeNanos() / 1000000.0d);
+        for (EvictionCause cause : EvictionCause.values()) {
+            map.put(prefix + "EVICTIONS_" + cause.name(), getEvictions(cause));
+        }
+        map.put(prefix + "ESTIMATED_BYTES", getEstimatedBytes());
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStatistics{" + "name=" + name + ", hits=" + getHits()
+            + ", misses=" + getMisses() + ", loads=" + getLoads()
+            + ", loadTimeMillis=" + (getTotalLoadTimeNanos() / 1000000.0d)
+            + ", evictions=" + getEvictions()
+            + ", estimatedBytes=" + getEstimatedBytes() + '}';
+    }
+
+    /**
+     * Returns a shallow estimate of the payload size of <code>o</code> in
+     * bytes. Objects reporting their size via a public
+     * <code>long getSizeBytes()</code> method, like <code>ucar.ma2.Array</code>,
+     * primitive arrays, character sequences and collections (up to one level
+     * deep) are accounted for by their content, other objects are counted with
+     * a fixed object header size.
+     *
+     * @param o the object
+     * @return the estimated size in bytes, 0 for null
+     */
+    public static long estimateBytes(Object o) {
+        return estimateBytes(o, true);
+    }
+
+    private static long estimateBytes(Object o, boolean descend) {
+        if (o == null) {
+            return 0L;
+        }
+        final long header = 16L;
+        Class<?> c = o.getClass();
+        Method sizeBytes = SIZE_BYTES.get(c);
+        if (sizeBytes != null) {
+            try {
+                return header + (Long) sizeBytes.invoke(o);
+            } catch (IllegalAccessException | InvocationTargetException | RuntimeException ex) {
+                return header;
+            }
+        }
+        if (c.isArray()) {
+            Class<?> component = c.getComponentType();
+            int length = Array.getLength(o);
+            if (component.isPrimitive()) {
+                return header + (long) length * primitiveSize(component);
+            }
+            long size = header + 8L * length;
+            if (descend) {
+                for (int i = 0; i < length; i++) {
+                    size += estimateBytes(Array.get(o, i), false);
+                }
+            }
+            return size;
+        }
+        if (o instanceof CharSequence) {
+            return header + 2L * ((CharSequence) o).length();
+        }
+        if (o instanceof Collection && descend) {
+            long size = header;
+            for (Object element : (Collection<?>) o) {
+                size += 8L + estimateBytes(element, false);
+            }
+            return size;
+        }
+        return header;
+    }
+
+    private static long primitiveSize(Class<?> c) {
+        if (c == long.class || c == double.class) {
+            return 8L;
+        }
+        if (c == int.class || c == float.class) {
+            return 4L;
+        }
+        if (c == short.class || c == char.class) {
+            return 2L;
+        }
+        return 1L;
+    }
+}
@@ -0,0 +1,126 @@
+/* 
+ * Cross, common runtime object support system. 
+ * Copyright (C) 2008-2014, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code 
+ * under. Certain files or entire directories may not be covered by this 
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a 
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.cache;
+
+/**
+ * Management interface exposing {@link CacheStatistics} via JMX.
+ *
+ * @author Nils Hoffmann
+ * @see CacheStatisticsRegistry
+ */
+public interface CacheStatisticsMXBean {
+
+    /**
+     * Returns the name of the cache.
+     *
+     * @return the cache name
+     */
+    String getName();
+
+    /**
+     * Returns the number of successful lookups.
+     *
+     * @return the number of cache hits
+     */
+    long getHits();
+
+    /**
+     * Returns the number of lookups that did not find a value.
+     *
+     * @return the number of cache misses
+     */
+    long getMisses();
+
+    /**
+     * Returns the fraction of lookups that were served from the cache.
+     *
+     * @return the hit rate in [0,1], or 0 if no lookups were recorded
+     */
+    double getHitRate();
+
+    /**
+     * Returns the number of values loaded from the backing source.
+     *
+     * @return the number of loads
+     */
+    long getLoads();
+
+    /**
+     * Returns the accumulated time spent loading values.
+     *
+     * @return the total load time in nanoseconds
+     */
+    long getTotalLoadTimeNanos();
+
+    /**
+     * Returns the average time spent per load.
+     *
+     * @return the average load time in milliseconds
+     */
+    double getAverageLoadTimeMillis();
+
+    /**
+     * Returns the number of elements evicted due to capacity limits.
+     *
+     * @return the number of size evictions
+     */
+    long getSizeEvictions();
+
+    /**
+     * Returns the number of elements evicted due to expiry.
+     *
+     * @return the number of expiry evictions
+     */
+    long getExpiredEvictions();
+
+    /**
+     * Returns the number of elements reclaimed by the garbage collector.
+     *
+     * @return the number of collected elements
+     */
+    long getCollectedEvictions();
+
+    /**
+     * Returns the number of elements that were explicitly removed.
+     *
+     * @return the number of removals
+     */
+    long getRemovedEvictions();
+
+    /**
+     * Returns the estimated number of bytes currently held by the cache.
+     *
+     * @return the estimated size in bytes
+     */
+    long getEstimatedBytes();
+
+    /**
+     * Resets all counters, except for the estimated size.
+     */
+    void reset();
+}
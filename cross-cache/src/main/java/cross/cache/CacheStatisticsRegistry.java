@@ -0,0 +1,192 @@
+/* 
+ * Cross, common runtime object support system. 
+ * Copyright (C) 2008-2014, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code 
+ * under. Certain files or entire directories may not be covered by this 
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a 
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.cache;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Static registry of {@link CacheStatistics}, keyed by cache name.
+ *
+ * Cache delegates that are created for the same cache name share the same
+ * statistics instance. Each registered instance is exposed as an MXBean
+ * below the <code>cross.cache</code> JMX domain, unless the system property
+ * <code>cross.cache.jmx.enabled</code> is set to <code>false</code>.
+ *
+ * @author Nils Hoffmann
+ */
+@Slf4j
+public final class CacheStatisticsRegistry {
+
+    /**
+     * The JMX domain used for cache statistics MXBeans.
+     */
+    public static final String JMX_DOMAIN = "cross.cache";
+    private static final ConcurrentMap<String, CacheStatistics> statistics = new ConcurrentHashMap<>();
+
+    private CacheStatisticsRegistry() {
+    }
+
+    /**
+     * Returns the statistics for the given cache name, creating and
+     * registering them, if necessary.
+     *
+     * @param cacheName the cache name
+     * @return the statistics for the cache
+     */
+    public static CacheStatistics getStatistics(String cacheName) {
+        return statistics.computeIfAbsent(cacheName, (name) -> {
+            CacheStatistics cs = new CacheStatistics(name);
+            registerMBean(cs);
+            return cs;
+        });
+    }
+
+    /**
+     * Removes the statistics for the given cache name and unregisters the
+     * associated MXBean.
+     *
+     * @param cacheName the cache name
+     */
+    public static void remove(String cacheName) {
+        CacheStatistics cs = statistics.remove(cacheName);
+        if (cs != null) {
+            cs.removed();
+            unregisterMBean(cs);
+        }
+    }
+
+    /**
+     * Returns a snapshot of all currently registered statistics.
+     *
+     * @return the registered statistics
+     */
+    public static Collection<CacheStatistics> getAll() {
+        List<CacheStatistics> l = new ArrayList<>(statistics.values());
+        l.sort((o1, o2) -> o1.getName().compareTo(o2.getName()));
+        return l;
+    }
+
+    /**
+     * Returns the values of all registered statistics that have recorded at
+     * least one lookup or load, prefixed with the cache name.
+     *
+     * @return the statistics map
+     */
+    public static Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (CacheStatistics cs : getAll()) {
+            if (cs.getRequests() > 0 || cs.getLoads() > 0) {
+                map.putAll(cs.toMap("CACHE." + cs.getName() + "."));
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Returns snapshots of all currently registered statistics, keyed by
+     * cache name.
+     *
+     * @return the snapshots
+     * @see #toMap(java.util.Map)
+     */
+    public static Map<String, CacheStatistics> snapshot() {
+        Map<String, CacheStatistics> map = new LinkedHashMap<>();
+        for (CacheStatistics cs : getAll()) {
+            map.put(cs.getName(), cs.snapshot());
+        }
+        return map;
+    }
+
+    /**
+     * Returns the differences of all registered statistics since the given
+     * snapshots, for those caches that have recorded at least one lookup or
+     * load in the meantime, prefixed with the cache name.
+     *
+     * @param snapshots the snapshots, as returned by {@link #snapshot()}
+     * @return the statistics map
+     */
+    public static Map<String, Object> toMap(Map<String, CacheStatistics> snapshots) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (CacheStatistics cs : getAll()) {
+            CacheStatistics d = cs.since(snapshots.get(cs.getName()));
+            if (d.getRequests() > 0 || d.getLoads() > 0) {
+                map.putAll(d.toMap("CACHE." + cs.getName() + "."));
+            }
+        }
+        return map;
+    }
+
+    private static boolean isJmxEnabled() {
+        return Boolean.parseBoolean(System.getProperty("cross.cache.jmx.enabled", "true"));
+    }
+
+    private static ObjectName getObjectName(CacheStatistics cs) throws JMException {
+        return new ObjectName(JMX_DOMAIN + ":type=CacheStatistics,name=" + ObjectName.quote(cs.getName()));
+    }
+
+    private static void registerMBean(CacheStatistics cs) {
+        if (!isJmxEnabled()) {
+            return;
+        }
+        try {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            ObjectName on = getObjectName(cs);
+            if (!mbs.isRegistered(on)) {
+                mbs.registerMBean(cs, on);
+            }
+        } catch (JMException | SecurityException ex) {
+            log.warn("Could not register cache statistics MXBean for cache " + cs.getName(), ex);
+        }
+    }
+
+    private static void unregisterMBean(CacheStatistics cs) {
+        if (!isJmxEnabled()) {
+            return;
+        }
+        try {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            ObjectName on = getObjectName(cs);
+            if (mbs.isRegistered(on)) {
+                mbs.unregisterMBean(on);
+            }
+        } catch (JMException | SecurityException ex) {
+            log.warn("Could not unregister cache statistics MXBean for cache " + cs.getName(), ex);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/* 
+ * Cross, common runtime object support system. 
+ * Copyright (C) 2008-2014, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code 
+ * under. Certain files or entire directories may not be covered by this 
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a 
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.cache;
+
+/**
+ * Enumeration of the reasons for which an element may leave a cache.
+ *
+ * @author Nils Hoffmann
+ * @see CacheStatistics
+ */
+public enum EvictionCause {
+
+    /**
+     * Element was evicted to honor the capacity limits of the cache.
+     */
+    SIZE,
+    /**
+     * Element was evicted because its time to live or time to idle expired.
+     */
+    EXPIRED,
+    /**
+     * Element was reclaimed by the garbage collector.
+     */
+    COLLECTED,
+    /**
+     * Element was explicitly removed, e.g. by putting a <code>null</code>
+     * value.
+     */
+    REMOVED;
+}
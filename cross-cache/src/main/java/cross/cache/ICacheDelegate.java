@@ -85,4 +85,13 @@ public interface ICacheDelegate<K, V> {
      * @see CacheType
      */
     CacheType getCacheType();
+
+    /**
+     * Returns the access statistics of this cache. Delegates for the same
+     * cache name may share the same statistics instance.
+     *
+     * @return the statistics of this cache
+     * @see CacheStatisticsRegistry
+     */
+    CacheStatistics getStatistics();
 }
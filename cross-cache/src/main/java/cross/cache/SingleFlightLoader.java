@@ -0,0 +1,178 @@
+/* 
+ * Cross, common runtime object support system. 
+ * Copyright (C) 2008-2014, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code 
+ * under. Certain files or entire directories may not be covered by this 
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a 
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Loads values for auto retrieval caches, ensuring that concurrent misses for
+ * the same key share a single call to the {@link ICacheElementProvider}.
+ *
+ * The first thread missing a key performs the load and stores the result
+ * using the supplied sink, all other threads missing the same key in the
+ * meantime wait for and return that result. If the provider fails, all
+ * waiting threads receive the same exception.
+ *
+ * Additionally, {@link #refresh(java.lang.Object)} reloads a value
+ * asynchronously, while the caller continues to use the stale value.
+ *
+ * @author Nils Hoffmann
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+@Slf4j
+public class SingleFlightLoader<K, V> {
+
+    private static final ExecutorService refreshExecutor = Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name("cross-cache-refresh-", 0).factory());
+
+    private final ICacheElementProvider<K, V> provider;
+    private final BiConsumer<K, V> sink;
+    private final CacheStatistics statistics;
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Executor executor;
+
+    /**
+     * Creates a new instance, using a shared virtual thread executor for
+     * asynchronous refreshes.
+     *
+     * @param provider   the provider for values
+     * @param sink       receives loaded values, usually the put method of the cache
+     * @param statistics the statistics to record load times with
+     */
+    public SingleFlightLoader(ICacheElementProvider<K, V> provider, BiConsumer<K, V> sink, CacheStatistics statistics) {
+        this(provider, sink, statistics, refreshExecutor);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param provider   the provider for values
+     * @param sink       receives loaded values, usually the put method of the cache
+     * @param statistics the statistics to record load times with
+     * @param executor   the executor to run asynchronous refreshes on
+     */
+    public SingleFlightLoader(ICacheElementProvider<K, V> provider, BiConsumer<K, V> sink, CacheStatistics statistics, Executor executor) {
+        this.provider = provider;
+        this.sink = sink;
+        this.statistics = statistics;
+        this.executor = executor;
+    }
+
+    /**
+     * Loads the value for the given key, or waits for a load of the same key
+     * that is already in progress.
+     *
+     * @param key the key
+     * @return the loaded value
+     */
+    public V load(K key) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return await(existing);
+        }
+        return doLoad(key, future);
+    }
+
+    /**
+     * Reloads the value for the given key asynchronously. Does nothing, if a
+     * load of the key is already in progress. Failures are logged and leave
+     * the currently cached value in place.
+     *
+     * @param key the key
+     */
+    public void refresh(final K key) {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(key, future) != null) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    doLoad(key, future);
+                } catch (RuntimeException re) {
+                    log.warn("Asynchronous refresh of key {} failed: {}", key, re.getLocalizedMessage());
+                }
+            });
+        } catch (RuntimeException re) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(re);
+            log.warn("Could not schedule refresh of key {}: {}", key, re.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Returns whether a load of the given key is currently in progress.
+     *
+     * @param key the key
+     * @return true if the key is being loaded
+     */
+    public boolean isLoading(K key) {
+        return inFlight.containsKey(key);
+    }
+
+    private V doLoad(K key, CompletableFuture<V> future) {
+        try {
+            long start = System.nanoTime();
+            V v = provider.provide(key);
+            statistics.recordLoad(System.nanoTime() - start);
+            sink.accept(key, v);
+            future.complete(v);
+            return v;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ce) {
+            Throwable cause = ce.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw ce;
+        }
+    }
+}
@@ -27,9 +27,12 @@
  */
 package cross.cache.ehcache;
 
+import cross.cache.CacheStatistics;
+import cross.cache.CacheStatisticsRegistry;
 import cross.cache.CacheType;
 import cross.cache.ICacheDelegate;
 import cross.cache.ICacheElementProvider;
+import cross.cache.SingleFlightLoader;
 import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -48,6 +51,11 @@ import net.sf.ehcache.exceptionhandler.CacheExceptionHandler;
  * Please note that Ehcache only allows Serializable objects to be externalized
  * to disk, should the in-memory cache overflow.
  *
+ * Concurrent misses for the same key share a single retrieval from the
+ * provider. If a refresh ahead factor is set, values that have lived longer
+ * than that fraction of the cache's time to live are still returned, but are
+ * reloaded asynchronously.
+ *
  * @author Nils Hoffmann
  * @param <K> the key type
  * @param <V> the value type
@@ -55,9 +63,11 @@ import net.sf.ehcache.exceptionhandler.CacheExceptionHandler;
 @Slf4j
 public class AutoRetrievalEhcacheDelegate<K, V> implements ICacheDelegate<K, V> {
 
-    private final ICacheElementProvider<K, V> provider;
     private final Ehcache cache;
     private final Set<K> keys;
+    private final CacheStatistics statistics;
+    private final SingleFlightLoader<K, V> loader;
+    private volatile double refreshAheadFactor = 0.0d;
 
     /**
      * Creates a new instance.
@@ -67,7 +77,6 @@ public class AutoRetrievalEhcacheDelegate<K, V> implements ICacheDelegate<K, V>
      */
     public AutoRetrievalEhcacheDelegate(Ehcache cache,
             ICacheElementProvider<K, V> provider) {
-        this.provider = provider;
         this.cache = cache;
         cache.setCacheExceptionHandler(new CacheExceptionHandler() {
 
@@ -81,6 +90,46 @@ public class AutoRetrievalEhcacheDelegate<K, V> implements ICacheDelegate<K, V>
             }
         });
         this.keys = Collections.newSetFromMap(new ConcurrentHashMap<K, Boolean>());
+        this.statistics = CacheStatisticsRegistry.getStatistics(cache.getName());
+        StatisticsCacheEventListener.register(cache, statistics);
+        this.loader = new SingleFlightLoader<>(provider, this::put, statistics);
+    }
+
+    /**
+     * Creates a new instance with refresh ahead.
+     *
+     * @param cache              the backing cache to use
+     * @param provider           the provider for values, given a specific key
+     * @param refreshAheadFactor the fraction of the time to live after which values are reloaded asynchronously, 0 disables refresh ahead
+     */
+    public AutoRetrievalEhcacheDelegate(Ehcache cache,
+            ICacheElementProvider<K, V> provider, double refreshAheadFactor) {
+        this(cache, provider);
+        setRefreshAheadFactor(refreshAheadFactor);
+    }
+
+    /**
+     * Set the fraction of the time to live after which values are reloaded
+     * asynchronously on access, while the stale value is returned. Has no
+     * effect for eternal caches and elements.
+     *
+     * @param refreshAheadFactor the fraction in [0,1), 0 disables refresh ahead
+     */
+    public void setRefreshAheadFactor(double refreshAheadFactor) {
+        if (refreshAheadFactor < 0.0d || refreshAheadFactor >= 1.0d) {
+            throw new IllegalArgumentException("refreshAheadFactor must be in [0,1)!");
+        }
+        this.refreshAheadFactor = refreshAheadFactor;
+    }
+
+    /**
+     * Returns the fraction of the time to live after which values are
+     * reloaded asynchronously.
+     *
+     * @return the refresh ahead factor, 0 if refresh ahead is disabled
+     */
+    public double getRefreshAheadFactor() {
+        return refreshAheadFactor;
     }
 
     @Override
@@ -95,6 +144,7 @@ public class AutoRetrievalEhcacheDelegate<K, V> implements ICacheDelegate<K, V>
             this.keys.remove(key);
         } else {
             this.keys.add(key);
+            statistics.recordPut();
         }
     }
 
@@ -105,12 +155,35 @@ public class AutoRetrievalEhcacheDelegate<K, V> implements ICacheDelegate<K, V>
         if (element != null) {
             v = (V) element.getObjectValue();
             if (v != null) {
+                statistics.recordHit();
+                if (isRefreshDue(element)) {
+                    loader.refresh(key);
+                }
                 return v;
             }
         }
-        v = provider.provide(key);
-        put(key, v);
-        return v;
+        statistics.recordMiss();
+        return loader.load(key);
+    }
+
+    private boolean isRefreshDue(Element element) {
+        double factor = refreshAheadFactor;
+        if (factor <= 0.0d) {
+            return false;
+        }
+        long ttlSeconds;
+        if (element.isLifespanSet()) {
+            ttlSeconds = element.getTimeToLive();
+        } else if (cache.getCacheConfiguration().isEternal()) {
+            return false;
+        } else {
+            ttlSeconds = cache.getCacheConfiguration().getTimeToLiveSeconds();
+        }
+        if (ttlSeconds <= 0) {
+            return false;
+        }
+        long age = System.currentTimeMillis() - element.getLatestOfCreationAndUpdateTime();
+        return age >= (long) (ttlSeconds * 1000L * factor);
     }
 
     /**
@@ -130,10 +203,16 @@ public class AutoRetrievalEhcacheDelegate<K, V> implements ICacheDelegate<K, V>
     @Override
     public void close() {
         getCache().dispose();
+        CacheStatisticsRegistry.remove(cache.getName());
     }
 
     @Override
     public CacheType getCacheType() {
         return CacheType.EHCACHE;
     }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
 }
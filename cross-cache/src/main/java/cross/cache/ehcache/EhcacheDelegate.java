@@ -27,6 +27,8 @@
  */
 package cross.cache.ehcache;
 
+import cross.cache.CacheStatistics;
+import cross.cache.CacheStatisticsRegistry;
 import cross.cache.CacheType;
 import cross.cache.ICacheDelegate;
 import java.util.Collections;
@@ -53,6 +55,7 @@ public class EhcacheDelegate<K, V> implements ICacheDelegate<K, V> {
 
     private final Ehcache cache;
     private final Set<K> keys;
+    private final CacheStatistics statistics;
 
     /**
      * Creates a new instance.
@@ -62,6 +65,8 @@ public class EhcacheDelegate<K, V> implements ICacheDelegate<K, V> {
     public EhcacheDelegate(final Ehcache cache) {
         this.cache = cache;
         this.keys = Collections.newSetFromMap(new ConcurrentHashMap<K, Boolean>());
+        this.statistics = CacheStatisticsRegistry.getStatistics(cache.getName());
+        StatisticsCacheEventListener.register(cache, statistics);
     }
 
     @Override
@@ -78,6 +83,7 @@ public class EhcacheDelegate<K, V> implements ICacheDelegate<K, V> {
             } else {
                 getCache().put(new Element(key, value));
                 keys.add(key);
+                statistics.recordPut();
             }
         } catch (IllegalStateException se) {
             log.warn("Failed to add element to cache: " + key, se);
@@ -89,9 +95,10 @@ public class EhcacheDelegate<K, V> implements ICacheDelegate<K, V> {
         try {
             Element element = getCache().get(key);
             if (element != null) {
-                element.getObjectValue();
+                statistics.recordHit();
                 return (V) element.getObjectValue();
             }
+            statistics.recordMiss();
             return null;
         } catch (IllegalStateException se) {
             log.warn("Failed to get element from cache: " + key, se);
@@ -102,6 +109,7 @@ public class EhcacheDelegate<K, V> implements ICacheDelegate<K, V> {
     @Override
     public void close() {
         cache.dispose();
+        CacheStatisticsRegistry.remove(cache.getName());
     }
 
     /**
@@ -122,4 +130,9 @@ public class EhcacheDelegate<K, V> implements ICacheDelegate<K, V> {
     public CacheType getCacheType() {
         return CacheType.EHCACHE;
     }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
 }
@@ -0,0 +1,123 @@
+/* 
+ * Cross, common runtime object support system. 
+ * Copyright (C) 2008-2014, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code 
+ * under. Certain files or entire directories may not be covered by this 
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a 
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.cache.ehcache;
+
+import cross.cache.CacheStatistics;
+import cross.cache.EvictionCause;
+import net.sf.ehcache.CacheException;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.event.CacheEventListener;
+
+/**
+ * Cache event listener translating Ehcache element events into
+ * {@link CacheStatistics} evictions.
+ *
+ * @author Nils Hoffmann
+ */
+public class StatisticsCacheEventListener implements CacheEventListener {
+
+    private final CacheStatistics statistics;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param statistics the statistics to record evictions to
+     */
+    public StatisticsCacheEventListener(CacheStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Registers a new listener for <code>statistics</code> with the given
+     * cache, unless a listener for the same statistics is already registered.
+     * Listeners feeding other statistics are unregistered. The listener is
+     * unregistered again, once the statistics are removed from the
+     * {@link cross.cache.CacheStatisticsRegistry}.
+     *
+     * @param cache      the cache
+     * @param statistics the statistics
+     */
+    public static void register(final Ehcache cache, final CacheStatistics statistics) {
+        for (Object listener : cache.getCacheEventNotificationService().getCacheEventListeners()) {
+            if (listener instanceof StatisticsCacheEventListener) {
+                if (((StatisticsCacheEventListener) listener).statistics == statistics) {
+                    return;
+                }
+                cache.getCacheEventNotificationService().unregisterListener((StatisticsCacheEventListener) listener);
+            }
+        }
+        final StatisticsCacheEventListener listener = new StatisticsCacheEventListener(statistics);
+        cache.getCacheEventNotificationService().registerListener(listener);
+        statistics.setByteEstimator(() -> cache.getStatistics().getLocalHeapSizeInBytes());
+        statistics.addRemovalHook(() -> {
+            statistics.setByteEstimator(null);
+            try {
+                cache.getCacheEventNotificationService().unregisterListener(listener);
+            } catch (IllegalStateException ise) {
+                //cache has already been disposed
+            }
+        });
+    }
+
+    @Override
+    public void notifyElementRemoved(Ehcache ehcache, Element elmnt) throws CacheException {
+        statistics.recordEviction(EvictionCause.REMOVED);
+    }
+
+    @Override
+    public void notifyElementPut(Ehcache ehcache, Element elmnt) throws CacheException {
+    }
+
+    @Override
+    public void notifyElementUpdated(Ehcache ehcache, Element elmnt) throws CacheException {
+    }
+
+    @Override
+    public void notifyElementExpired(Ehcache ehcache, Element elmnt) {
+        statistics.recordEviction(EvictionCause.EXPIRED);
+    }
+
+    @Override
+    public void notifyElementEvicted(Ehcache ehcache, Element elmnt) {
+        statistics.recordEviction(EvictionCause.SIZE);
+    }
+
+    @Override
+    public void notifyRemoveAll(Ehcache ehcache) {
+    }
+
+    @Override
+    public void dispose() {
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        throw new CloneNotSupportedException("StatisticsCacheEventListener can not be cloned!");
+    }
+}
@@ -27,7 +27,10 @@
  */
 package cross.cache.none;
 
+import cross.cache.CacheStatistics;
+import cross.cache.CacheStatisticsRegistry;
 import cross.cache.CacheType;
+import cross.cache.EvictionCause;
 import cross.cache.ICacheDelegate;
 import java.util.Map;
 import java.util.Set;
@@ -48,6 +51,7 @@ public class NoCache<K, V> implements ICacheDelegate<K, V> {
 
     private final Map<K, V> map;
     private final String name;
+    private final CacheStatistics statistics;
 
     /**
      * Creates a new instance of a cache mapped by a {@link ConcurrentHashMap}.
@@ -57,6 +61,7 @@ public class NoCache<K, V> implements ICacheDelegate<K, V> {
     public NoCache(String name) {
         this.name = name;
         this.map = new ConcurrentHashMap<>();
+        this.statistics = CacheStatisticsRegistry.getStatistics(name);
     }
 
     @Override
@@ -67,15 +72,27 @@ public class NoCache<K, V> implements ICacheDelegate<K, V> {
     @Override
     public void put(K key, V value) {
         if (value == null) {
-            map.remove(key);
+            V old = map.remove(key);
+            if (old != null) {
+                statistics.recordEviction(EvictionCause.REMOVED);
+                statistics.addEstimatedBytes(-CacheStatistics.estimateBytes(old));
+            }
         } else {
-            map.put(key, value);
+            V old = map.put(key, value);
+            statistics.recordPut();
+            statistics.addEstimatedBytes(CacheStatistics.estimateBytes(value) - CacheStatistics.estimateBytes(old));
         }
     }
 
     @Override
     public V get(K key) {
-        return map.get(key);
+        V v = map.get(key);
+        if (v == null) {
+            statistics.recordMiss();
+        } else {
+            statistics.recordHit();
+        }
+        return v;
     }
 
     @Override
@@ -83,13 +100,26 @@ public class NoCache<K, V> implements ICacheDelegate<K, V> {
         return this.name;
     }
 
+    /**
+     * Clears the map of all keys and values. Closing is not counted as
+     * eviction.
+     */
     @Override
     public void close() {
-        this.map.clear();
+        for (Map.Entry<K, V> e : this.map.entrySet()) {
+            if (this.map.remove(e.getKey(), e.getValue())) {
+                statistics.addEstimatedBytes(-CacheStatistics.estimateBytes(e.getValue()));
+            }
+        }
     }
 
     @Override
     public CacheType getCacheType() {
         return CacheType.NONE;
     }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
 }
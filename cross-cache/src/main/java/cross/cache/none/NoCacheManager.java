@@ -27,6 +27,7 @@
  */
 package cross.cache.none;
 
+import cross.cache.CacheStatisticsRegistry;
 import cross.cache.ICacheDelegate;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -39,22 +40,18 @@ import java.util.concurrent.ConcurrentHashMap;
 public class NoCacheManager {
 
     private static Map<String, NoCache> caches = new ConcurrentHashMap<>();
-    private static NoCacheManager instance;
+    private static final NoCacheManager instance = new NoCacheManager();
 
     private NoCacheManager() {
         super();
     }
 
     /**
-     * Returns the <code>NoCacheManager</code> instance. Creates a new one if none
-     * has yet been created.
+     * Returns the <code>NoCacheManager</code> instance.
      *
      * @return the singleton instance of this cache manager
      */
     public static NoCacheManager getInstance() {
-        if (NoCacheManager.instance == null) {
-            NoCacheManager.instance = new NoCacheManager();
-        }
         return NoCacheManager.instance;
     }
 
@@ -67,12 +64,7 @@ public class NoCacheManager {
      * @return the cache delegate
      */
     public <K, V> ICacheDelegate<K, V> getCache(String name) {
-        NoCache<K, V> delegate = caches.get(name);
-        if (delegate == null) {
-            delegate = new NoCache<>(name);
-            caches.put(name, delegate);
-        }
-        return delegate;
+        return caches.computeIfAbsent(name, (key) -> new NoCache<>(key));
     }
 
     /**
@@ -87,6 +79,7 @@ public class NoCacheManager {
         if (cache != null) {
             cache.close();
             caches.remove(delegate.getName());
+            CacheStatisticsRegistry.remove(delegate.getName());
         }
     }
 }
@@ -28,19 +28,26 @@
 package cross.cache.softReference;
 
 import cross.cache.ICacheElementProvider;
+import cross.cache.SingleFlightLoader;
 
 /**
  * Values are referenced using {@link java.lang.ref.SoftReference}. These may be
  * reclaimed by the garbage collector as soon as the virtual machine requires
  * additional free memory. The keys are strongly referenced.
  *
+ * Missing values are retrieved from the {@link ICacheElementProvider}.
+ * Concurrent misses for the same key share a single retrieval. If a refresh
+ * interval is set, values older than that interval are still returned, but
+ * are reloaded asynchronously.
+ *
  * @author Nils Hoffmann
  * @param <K> the key type
  * @param <V> the value type
  */
 public class AutoRetrievalSoftReferenceCache<K, V> extends SoftReferenceCache<K, V> {
 
-    private final ICacheElementProvider<K, V> provider;
+    private final SingleFlightLoader<K, V> loader;
+    private volatile long refreshAfterMillis = 0;
 
     /**
      * Creates a new instance.
@@ -50,7 +57,42 @@ public class AutoRetrievalSoftReferenceCache<K, V> extends SoftReferenceCache<K,
      */
     public AutoRetrievalSoftReferenceCache(String name, ICacheElementProvider<K, V> elementProvider) {
         super(name);
-        this.provider = elementProvider;
+        this.loader = new SingleFlightLoader<>(elementProvider, this::put, getStatistics());
+    }
+
+    /**
+     * Creates a new instance with refresh ahead.
+     *
+     * @param name               the name of the cache
+     * @param elementProvider    the element provider
+     * @param refreshAfterMillis the age in milliseconds after which values are reloaded asynchronously, 0 disables refresh ahead
+     */
+    public AutoRetrievalSoftReferenceCache(String name, ICacheElementProvider<K, V> elementProvider, long refreshAfterMillis) {
+        this(name, elementProvider);
+        setRefreshAfterMillis(refreshAfterMillis);
+    }
+
+    /**
+     * Set the age in milliseconds after which values are reloaded
+     * asynchronously on access, while the stale value is returned.
+     *
+     * @param refreshAfterMillis the age in milliseconds, 0 disables refresh ahead
+     */
+    public void setRefreshAfterMillis(long refreshAfterMillis) {
+        if (refreshAfterMillis < 0) {
+            throw new IllegalArgumentException("refreshAfterMillis must not be negative!");
+        }
+        this.refreshAfterMillis = refreshAfterMillis;
+    }
+
+    /**
+     * Returns the age in milliseconds after which values are reloaded
+     * asynchronously.
+     *
+     * @return the age in milliseconds, 0 if refresh ahead is disabled
+     */
+    public long getRefreshAfterMillis() {
+        return refreshAfterMillis;
     }
 
     /**
@@ -63,10 +105,12 @@ public class AutoRetrievalSoftReferenceCache<K, V> extends SoftReferenceCache<K,
     public V get(K key) {
         V v = super.get(key);
         if (v != null) {
+            long refreshAfter = refreshAfterMillis;
+            if (refreshAfter > 0 && getAge(key) >= refreshAfter) {
+                loader.refresh(key);
+            }
             return v;
         }
-        v = provider.provide(key);
-        put(key, v);
-        return v;
+        return loader.load(key);
     }
 }
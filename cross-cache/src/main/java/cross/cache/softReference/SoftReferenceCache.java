@@ -27,7 +27,10 @@
  */
 package cross.cache.softReference;
 
+import cross.cache.CacheStatistics;
+import cross.cache.CacheStatisticsRegistry;
 import cross.cache.CacheType;
+import cross.cache.EvictionCause;
 import cross.cache.ICacheDelegate;
 import java.lang.ref.SoftReference;
 import java.util.Map;
@@ -45,8 +48,21 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class SoftReferenceCache<K, V> implements ICacheDelegate<K, V> {
 
-    private final Map<K, SoftReference<? extends V>> map;
+    private static class SizedReference<V> extends SoftReference<V> {
+
+        private final long bytes;
+        private final long created;
+
+        private SizedReference(V value) {
+            super(value);
+            this.bytes = CacheStatistics.estimateBytes(value);
+            this.created = System.currentTimeMillis();
+        }
+    }
+
+    private final Map<K, SizedReference<? extends V>> map;
     private final String name;
+    private final CacheStatistics statistics;
 
     /**
      * Creates a new instance.
@@ -56,6 +72,7 @@ public class SoftReferenceCache<K, V> implements ICacheDelegate<K, V> {
     public SoftReferenceCache(String name) {
         this.name = name;
         this.map = new ConcurrentHashMap<>();
+        this.statistics = CacheStatisticsRegistry.getStatistics(name);
     }
 
     @Override
@@ -65,29 +82,58 @@ public class SoftReferenceCache<K, V> implements ICacheDelegate<K, V> {
 
     @Override
     public void put(K key, V value) {
+        SizedReference<? extends V> old;
         if (value == null) {
-            map.remove(key);
+            old = map.remove(key);
+            if (old != null) {
+                statistics.recordEviction(EvictionCause.REMOVED);
+            }
         } else {
-            map.put(key, new SoftReference<>(value));//,this.referenceQueue));
+            SizedReference<V> ref = new SizedReference<>(value);
+            statistics.recordPut();
+            statistics.addEstimatedBytes(ref.bytes);
+            old = map.put(key, ref);
+        }
+        if (old != null) {
+            statistics.addEstimatedBytes(-old.bytes);
         }
     }
 
     @Override
     public V get(K key) {
-        if (map.containsKey(key)) {
-            SoftReference<? extends V> softReference = map.get(key);
-            //soft reference is null, no entry for key
-            if (softReference == null) {
-                return null;
-            }
-            V value = softReference.get();
-            if (value == null) {
-                //value was garbage collected
-                map.remove(key);
+        SizedReference<? extends V> softReference = map.get(key);
+        //soft reference is null, no entry for key
+        if (softReference == null) {
+            statistics.recordMiss();
+            return null;
+        }
+        V value = softReference.get();
+        if (value == null) {
+            //value was garbage collected
+            if (map.remove(key, softReference)) {
+                statistics.recordEviction(EvictionCause.COLLECTED);
+                statistics.addEstimatedBytes(-softReference.bytes);
             }
-            return value;
+            statistics.recordMiss();
+        } else {
+            statistics.recordHit();
         }
-        return null;
+        return value;
+    }
+
+    /**
+     * Returns the time in milliseconds since the value for the given key was
+     * put into this cache.
+     *
+     * @param key the key
+     * @return the age of the value, or -1 if no value is mapped to key
+     */
+    protected long getAge(K key) {
+        SizedReference<? extends V> softReference = map.get(key);
+        if (softReference == null) {
+            return -1;
+        }
+        return System.currentTimeMillis() - softReference.created;
     }
 
     @Override
@@ -96,15 +142,25 @@ public class SoftReferenceCache<K, V> implements ICacheDelegate<K, V> {
     }
 
     /**
-     * Clears the map of all keys and values.
+     * Clears the map of all keys and values. Closing is not counted as
+     * eviction.
      */
     @Override
     public void close() {
-        this.map.clear();
+        for (Map.Entry<K, SizedReference<? extends V>> e : this.map.entrySet()) {
+            if (this.map.remove(e.getKey(), e.getValue())) {
+                statistics.addEstimatedBytes(-e.getValue().bytes);
+            }
+        }
     }
 
     @Override
     public CacheType getCacheType() {
         return CacheType.SOFT;
     }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
 }
@@ -27,6 +27,7 @@
  */
 package cross.cache.softReference;
 
+import cross.cache.CacheStatisticsRegistry;
 import cross.cache.ICacheDelegate;
 import cross.cache.ICacheElementProvider;
 import java.util.Map;
@@ -40,22 +41,18 @@ import java.util.concurrent.ConcurrentHashMap;
 public class SoftReferenceCacheManager {
 
     private static Map<String, SoftReferenceCache> caches = new ConcurrentHashMap<>();
-    private static SoftReferenceCacheManager instance;
+    private static final SoftReferenceCacheManager instance = new SoftReferenceCacheManager();
 
     private SoftReferenceCacheManager() {
         super();
     }
 
     /**
-     * Returns the <code>SoftReferenceCacheManager</code> instance. Creates a new one if none
-     * has yet been created.
+     * Returns the <code>SoftReferenceCacheManager</code> instance.
      *
      * @return the singleton instance
      */
     public static SoftReferenceCacheManager getInstance() {
-        if (SoftReferenceCacheManager.instance == null) {
-            SoftReferenceCacheManager.instance = new SoftReferenceCacheManager();
-        }
         return SoftReferenceCacheManager.instance;
     }
 
@@ -68,12 +65,7 @@ public class SoftReferenceCacheManager {
      * @return the cache delegate
      */
     public <K, V> ICacheDelegate<K, V> getCache(String name) {
-        SoftReferenceCache<K, V> delegate = caches.get(name);
-        if (delegate == null) {
-            delegate = new SoftReferenceCache<>(name);
-            caches.put(name, delegate);
-        }
-        return delegate;
+        return caches.computeIfAbsent(name, (key) -> new SoftReferenceCache<>(key));
     }
 
     /**
@@ -87,12 +79,24 @@ public class SoftReferenceCacheManager {
      * @return the cache delegate
      */
     public <K, V> ICacheDelegate<K, V> getAutoRetrievalCache(String name, ICacheElementProvider<K, V> provider) {
-        SoftReferenceCache<K, V> delegate = caches.get(name);
-        if (delegate == null) {
-            delegate = new AutoRetrievalSoftReferenceCache<>(name, provider);
-            caches.put(name, delegate);
-        }
-        return delegate;
+        return caches.computeIfAbsent(name, (key) -> new AutoRetrievalSoftReferenceCache<>(key, provider));
+    }
+
+    /**
+     * Returns the cache delegate with the given name or creates a new one,
+     * backed by the provided <code>ICacheElementProvider</code>. Values older
+     * than <code>refreshAfterMillis</code> are reloaded asynchronously on
+     * access.
+     *
+     * @param <K>                the key type
+     * @param <V>                the value type
+     * @param name               the name of the cache
+     * @param provider           the element provider
+     * @param refreshAfterMillis the age in milliseconds after which values are refreshed, 0 disables refresh ahead
+     * @return the cache delegate
+     */
+    public <K, V> ICacheDelegate<K, V> getAutoRetrievalCache(String name, ICacheElementProvider<K, V> provider, long refreshAfterMillis) {
+        return caches.computeIfAbsent(name, (key) -> new AutoRetrievalSoftReferenceCache<>(key, provider, refreshAfterMillis));
     }
 
     /**
@@ -107,6 +111,7 @@ public class SoftReferenceCacheManager {
         if (cache != null) {
             cache.close();
             caches.remove(delegate.getName());
+            CacheStatisticsRegistry.remove(delegate.getName());
         }
     }
 }
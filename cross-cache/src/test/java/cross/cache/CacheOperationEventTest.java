@@ -0,0 +1,101 @@
+/* 
+ * Cross, common runtime object support system. 
+ * Copyright (C) 2008-2014, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code 
+ * under. Certain files or entire directories may not be covered by this 
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a 
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.cache;
+
+import cross.test.SetupLogging;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the flight recorder events committed by CacheStatistics.
+ *
+ * @author Nils Hoffmann
+ */
+public class CacheOperationEventTest {
+
+    /**
+     * Set up a temporary folder
+     */
+    @Rule
+    public TemporaryFolder tf = new TemporaryFolder();
+
+    /**
+     * Set up the logging
+     */
+    @Rule
+    public SetupLogging logging = new SetupLogging();
+
+    /**
+     * Test that each recorded operation is committed once, under the name of
+     * the recording statistics and not of its parent.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void eventsPerOperation() throws IOException {
+        CacheStatistics parent = new CacheStatistics("jfrParent");
+        CacheStatistics child = new CacheStatistics("jfrChild", parent);
+        File dump = new File(tf.getRoot(), "cache.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("cross.cache.Operation");
+            recording.start();
+            child.recordHit();
+            child.recordMiss();
+            child.recordPut();
+            child.recordEvictions(EvictionCause.SIZE, 3);
+            recording.stop();
+            recording.dump(dump.toPath());
+        }
+        List<RecordedEvent> events = new ArrayList<>();
+        for (RecordedEvent e : RecordingFile.readAllEvents(dump.toPath())) {
+            if ("cross.cache.Operation".equals(e.getEventType().getName())) {
+                Assert.assertNotEquals("jfrParent", e.getString("cache"));
+                if ("jfrChild".equals(e.getString("cache"))) {
+                    events.add(e);
+                }
+            }
+        }
+        Assert.assertEquals(4, events.size());
+        Assert.assertTrue(events.get(0).getBoolean("hit"));
+        Assert.assertFalse(events.get(1).getBoolean("hit"));
+        Assert.assertEquals("put", events.get(2).getString("operation"));
+        Assert.assertEquals("SIZE", events.get(3).getString("cause"));
+        Assert.assertEquals(3, events.get(3).getLong("count"));
+        Assert.assertEquals(1, parent.getHits());
+        Assert.assertEquals(3, parent.getSizeEvictions());
+    }
+}
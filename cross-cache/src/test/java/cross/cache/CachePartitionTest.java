@@ -0,0 +1,145 @@
+/* 
+ * Cross, common runtime object support system. 
+ * Copyright (C) 2008-2014, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code 
+ * under. Certain files or entire directories may not be covered by this 
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a 
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.cache;
+
+import cross.test.SetupLogging;
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for CachePartition.
+ *
+ * @author Nils Hoffmann
+ */
+public class CachePartitionTest {
+
+    /**
+     * Set up a temporary folder
+     */
+    @Rule
+    public TemporaryFolder tf = new TemporaryFolder();
+
+    /**
+     * Set up the logging
+     */
+    @Rule
+    public SetupLogging logging = new SetupLogging();
+
+    /**
+     * Test that partitions isolate caches of the same name and are torn down
+     * on close.
+     */
+    @Test
+    public void isolationAndTeardown() {
+        File dirA = new File(tf.getRoot(), "a");
+        File dirB = new File(tf.getRoot(), "b");
+        CachePartition a = CacheFactory.createPartition("partitionA", dirA, 8 * 1024 * 1024, 0);
+        CachePartition b = CacheFactory.createPartition("partitionB", dirB, 8 * 1024 * 1024, 0);
+        try {
+            ICacheDelegate<Integer, double[]> ca = a.getCache("shared", CacheType.EHCACHE);
+            ICacheDelegate<Integer, double[]> cb = b.getCache("shared", CacheType.EHCACHE);
+            Assert.assertSame(ca, a.getCache("shared", CacheType.EHCACHE));
+            ca.put(1, new double[]{1});
+            Assert.assertNotNull(ca.get(1));
+            Assert.assertNull(cb.get(1));
+            Assert.assertSame(a, CacheFactory.getPartition("partitionA"));
+            try (CachePartition.Scope scope = a.enter()) {
+                Assert.assertSame(a, CachePartition.current());
+                try (CachePartition.Scope inner = b.enter()) {
+                    Assert.assertSame(b, CachePartition.current());
+                }
+                Assert.assertSame(a, CachePartition.current());
+            }
+            Assert.assertNull(CachePartition.current());
+            a.close();
+            Assert.assertTrue(a.isClosed());
+            Assert.assertNull(CacheFactory.getPartition("partitionA"));
+            Assert.assertNull(ca.get(1));
+            ca.put(2, new double[]{2});
+            Assert.assertFalse(dirA.exists());
+            Assert.assertNull(cb.get(2));
+        } finally {
+            a.close();
+            CacheFactory.removePartition("partitionB");
+        }
+        Assert.assertTrue(b.isClosed());
+    }
+
+    /**
+     * Test that the heap quota of a partition is enforced.
+     */
+    @Test
+    public void heapQuota() {
+        CachePartition p = CacheFactory.createPartition("partitionQuota", new File(tf.getRoot(), "q"), 1024 * 1024, 0);
+        try {
+            ICacheDelegate<Integer, double[]> c = p.getCache("quota", CacheType.EHCACHE);
+            for (int i = 0; i < 100; i++) {
+                c.put(i, new double[10000]);
+            }
+            Assert.assertTrue(p.getEhcache("quota").getSize() < 100);
+            Assert.assertTrue(c.getStatistics().getEvictions(EvictionCause.SIZE) > 0);
+        } finally {
+            p.close();
+        }
+    }
+
+    /**
+     * Test that pooled threads only run within a partition, if their tasks
+     * are bound to it explicitly.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void pooledThreads() throws Exception {
+        CachePartition p = CacheFactory.createPartition("partitionPool", new File(tf.getRoot(), "p"), 1024 * 1024, 0);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Callable<CachePartition> current = new Callable<CachePartition>() {
+            @Override
+            public CachePartition call() {
+                return CachePartition.current();
+            }
+        };
+        try (CachePartition.Scope scope = p.enter()) {
+            //the pool thread is started within the partition
+            Assert.assertNull(executor.submit(current).get());
+            Assert.assertSame(p, executor.submit(CachePartition.inherit(current)).get());
+            Assert.assertSame(p, executor.submit(p.wrap(current)).get());
+            Assert.assertNull(executor.submit(current).get());
+        } finally {
+            executor.shutdown();
+            p.close();
+        }
+        Assert.assertSame(current, CachePartition.inherit(current));
+    }
+}
@@ -0,0 +1,162 @@
+/* 
+ * Cross, common runtime object support system. 
+ * Copyright (C) 2008-2014, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code 
+ * under. Certain files or entire directories may not be covered by this 
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a 
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.cache;
+
+import cross.cache.none.NoCache;
+import cross.cache.softReference.SoftReferenceCache;
+import cross.test.SetupLogging;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests for CacheStatistics.
+ *
+ * @author Nils Hoffmann
+ */
+public class CacheStatisticsTest {
+
+    /**
+     * Set up the logging
+     */
+    @Rule
+    public SetupLogging logging = new SetupLogging();
+
+    /**
+     * A value reporting its own size, like <code>ucar.ma2.Array</code>.
+     */
+    public static class SizedValue {
+
+        /**
+         * Returns the size of the value in bytes.
+         *
+         * @return the size in bytes
+         */
+        public long getSizeBytes() {
+            return 8000L;
+        }
+    }
+
+    private void checkCounts(ICacheDelegate<String, double[]> cache) {
+        CacheStatistics cs = cache.getStatistics();
+        cache.put("a", new double[100]);
+        cache.put("b", new double[100]);
+        Assert.assertEquals(2 * (16L + 800L), cs.getEstimatedBytes());
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertNotNull(cache.get("b"));
+        Assert.assertNull(cache.get("c"));
+        Assert.assertEquals(2, cs.getHits());
+        Assert.assertEquals(1, cs.getMisses());
+        Assert.assertEquals(2.0d / 3.0d, cs.getHitRate(), 1.0e-9);
+        cache.put("a", null);
+        Assert.assertEquals(1, cs.getEvictions(EvictionCause.REMOVED));
+        Assert.assertEquals(16L + 800L, cs.getEstimatedBytes());
+        //closing is not an eviction
+        cache.close();
+        Assert.assertEquals(1, cs.getEvictions());
+        Assert.assertEquals(0L, cs.getEstimatedBytes());
+        Assert.assertTrue(cache.keys().isEmpty());
+    }
+
+    /**
+     * Test hit, miss and eviction counts of the map backed cache.
+     */
+    @Test
+    public void noCacheCounts() {
+        checkCounts(new NoCache<String, double[]>("statisticsNoCache"));
+        CacheStatisticsRegistry.remove("statisticsNoCache");
+    }
+
+    /**
+     * Test hit, miss and eviction counts of the soft reference cache.
+     */
+    @Test
+    public void softReferenceCacheCounts() {
+        checkCounts(new SoftReferenceCache<String, double[]>("statisticsSoftReferenceCache"));
+        CacheStatisticsRegistry.remove("statisticsSoftReferenceCache");
+    }
+
+    /**
+     * Test size evictions of an ehcache backed cache and that its listener
+     * is detached, once the statistics are removed from the registry.
+     */
+    @Test
+    public void ehcacheEvictions() {
+        ICacheDelegate<Integer, double[]> cache = CacheFactory.createVolatileCache("statisticsEhcache", 60, 60, 10);
+        CacheStatistics cs = cache.getStatistics();
+        for (int i = 0; i < 20; i++) {
+            cache.put(i, new double[10]);
+        }
+        Assert.assertEquals(10, cs.getEvictions(EvictionCause.SIZE));
+        //ehcache samples eviction candidates, so the evicted keys may vary
+        Integer present = null;
+        for (int i = 0; i < 20; i++) {
+            if (cache.get(i) != null) {
+                present = i;
+            }
+        }
+        Assert.assertEquals(10, cs.getHits());
+        Assert.assertEquals(10, cs.getMisses());
+        CacheStatisticsRegistry.remove("statisticsEhcache");
+        CacheFactory.getCacheFor("statisticsEhcache").remove(present);
+        Assert.assertEquals(0, cs.getEvictions(EvictionCause.REMOVED));
+        cache.close();
+    }
+
+    /**
+     * Test the size estimate of values reporting their own size.
+     */
+    @Test
+    public void estimateSizedValues() {
+        Assert.assertEquals(16L + 8000L, CacheStatistics.estimateBytes(new SizedValue()));
+        Assert.assertEquals(16L, CacheStatistics.estimateBytes(new Object()));
+        Assert.assertEquals(16L + 400L, CacheStatistics.estimateBytes(new int[100]));
+    }
+
+    /**
+     * Test that differences since a snapshot only contain the counts recorded
+     * in the meantime.
+     */
+    @Test
+    public void differencesSinceSnapshot() {
+        ICacheDelegate<String, double[]> cache = new NoCache<>("statisticsSnapshot");
+        cache.put("a", new double[1]);
+        cache.get("a");
+        cache.get("b");
+        Map<String, CacheStatistics> before = CacheStatisticsRegistry.snapshot();
+        cache.get("a");
+        Map<String, Object> map = CacheStatisticsRegistry.toMap(before);
+        Assert.assertEquals(1L, map.get("CACHE.statisticsSnapshot.HITS"));
+        Assert.assertEquals(0L, map.get("CACHE.statisticsSnapshot.MISSES"));
+        Assert.assertEquals(1.0d, map.get("CACHE.statisticsSnapshot.HIT_RATE"));
+        Assert.assertTrue(CacheStatisticsRegistry.toMap(CacheStatisticsRegistry.snapshot()).isEmpty());
+        Assert.assertEquals(2, cache.getStatistics().getHits());
+        CacheStatisticsRegistry.remove("statisticsSnapshot");
+    }
+}
@@ -0,0 +1,143 @@
+/* 
+ * Cross, common runtime object support system. 
+ * Copyright (C) 2008-2014, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code 
+ * under. Certain files or entire directories may not be covered by this 
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a 
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.cache.softReference;
+
+import cross.cache.ICacheElementProvider;
+import cross.test.SetupLogging;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests for AutoRetrievalSoftReferenceCache.
+ *
+ * @author Nils Hoffmann
+ */
+public class AutoRetrievalSoftReferenceCacheTest {
+
+    /**
+     * Set up the logging
+     */
+    @Rule
+    public SetupLogging logging = new SetupLogging();
+
+    /**
+     * Test that concurrent misses for the same key share a single load.
+     *
+     * @throws Exception on test failure
+     */
+    @Test
+    public void concurrentMissesShareLoad() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final AutoRetrievalSoftReferenceCache<Integer, double[]> cache = new AutoRetrievalSoftReferenceCache<>("singleFlight", new ICacheElementProvider<Integer, double[]>() {
+            @Override
+            public double[] provide(Integer key) {
+                loads.incrementAndGet();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return new double[]{key};
+            }
+        });
+        int nthreads = 8;
+        ExecutorService es = Executors.newFixedThreadPool(nthreads);
+        try {
+            final CountDownLatch started = new CountDownLatch(nthreads);
+            List<Future<double[]>> results = new ArrayList<>();
+            for (int i = 0; i < nthreads; i++) {
+                results.add(es.submit(new Callable<double[]>() {
+                    @Override
+                    public double[] call() throws Exception {
+                        started.countDown();
+                        return cache.get(42);
+                    }
+                }));
+            }
+            started.await(10, TimeUnit.SECONDS);
+            Thread.sleep(100);
+            release.countDown();
+            double[] first = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<double[]> f : results) {
+                Assert.assertSame(first, f.get(10, TimeUnit.SECONDS));
+            }
+            Assert.assertEquals(1, loads.get());
+            Assert.assertEquals(1, cache.getStatistics().getLoads());
+        } finally {
+            es.shutdownNow();
+            SoftReferenceCacheManager.getInstance().remove(cache);
+            cache.close();
+        }
+    }
+
+    /**
+     * Test that stale values are served while being refreshed.
+     *
+     * @throws Exception on test failure
+     */
+    @Test
+    public void refreshAhead() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        AutoRetrievalSoftReferenceCache<Integer, Integer> cache = new AutoRetrievalSoftReferenceCache<>("refreshAhead", new ICacheElementProvider<Integer, Integer>() {
+            @Override
+            public Integer provide(Integer key) {
+                return loads.incrementAndGet();
+            }
+        }, 50);
+        try {
+            Assert.assertEquals(Integer.valueOf(1), cache.get(1));
+            Assert.assertEquals(Integer.valueOf(1), cache.get(1));
+            Thread.sleep(100);
+            Assert.assertEquals(Integer.valueOf(1), cache.get(1));
+            long deadline = System.currentTimeMillis() + 10000;
+            while (loads.get() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            deadline = System.currentTimeMillis() + 10000;
+            Integer v = cache.get(1);
+            while (v != 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+                v = cache.get(1);
+            }
+            Assert.assertEquals(Integer.valueOf(2), v);
+        } finally {
+            cache.close();
+        }
+    }
+}
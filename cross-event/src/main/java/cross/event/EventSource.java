@@ -27,7 +27,8 @@
  */
 package cross.event;
 
-import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -40,7 +41,7 @@ import java.util.concurrent.Executors;
  */
 public class EventSource<V> implements IEventSource<V> {
 
-    private final LinkedHashSet<IListener<IEvent<V>>> listenerMap;
+    private final Set<IListener<IEvent<V>>> listenerMap;
     private ExecutorService es = Executors.newCachedThreadPool();
 
     /**
@@ -58,7 +59,8 @@ public class EventSource<V> implements IEventSource<V> {
      * for event notification.
      */
     public EventSource() {
-        this.listenerMap = new LinkedHashSet<>();
+        //listeners may be added and removed while events are fired
+        this.listenerMap = new CopyOnWriteArraySet<>();
     }
 
     @Override
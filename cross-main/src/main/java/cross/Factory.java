@@ -28,6 +28,7 @@
 package cross;
 
 import cross.annotations.Configurable;
+import cross.cache.CachePartition;
 import cross.cache.CacheType;
 import cross.datastructures.fragments.FileFragmentFactory;
 import cross.datastructures.fragments.Fragments;
@@ -520,14 +521,15 @@ public final class Factory implements IFactory {
     }
 
     /**
-     * Jobs submitted via this method will be run by the auxiliary thread pool.
+     * Jobs submitted via this method will be run by the auxiliary thread pool,
+     * within the cache partition of the submitting thread.
      *
      * @param c the Callable objectFactory any type to submit
      * @return a Future objectFactory the same type as the Callable
      */
     @Override
     public Future<?> submitJob(final Callable<?> c) {
-        return this.auxiliaryThreadPool.submit(c);
+        return this.auxiliaryThreadPool.submit(CachePartition.inherit(c));
     }
 
     /**
@@ -541,13 +543,14 @@ public final class Factory implements IFactory {
     }
 
     /**
-     * Submit a Runnable to the main thread pool.
+     * Submit a Runnable to the main thread pool. The runnable is run within
+     * the cache partition of the submitting thread.
      *
      * @param r the runnable
      */
     protected void submitJobMe(final Runnable r) {
         EvalTools.notNull(r, this);
-        this.mainThreadPool.execute(r);
+        this.mainThreadPool.execute(CachePartition.inherit(r));
     }
 
     /**
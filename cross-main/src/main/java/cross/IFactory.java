@@ -27,6 +27,7 @@ package cross;
  * for details.
  */
 
+import cross.cache.CachePartition;
 import cross.datastructures.fragments.IFileFragment;
 import cross.datastructures.fragments.IFileFragmentFactory;
 import cross.datastructures.pipeline.ICommandSequence;
@@ -163,6 +164,19 @@ public interface IFactory extends ConfigurationListener, IConfigurable {
      */
     ICvResolver getCvResolver();
 
+    /**
+     * Return the cache partition of this factory. Jobs submitted to the
+     * factory run within the partition entered by the submitting thread, so
+     * the default factory does not provide a partition of its own.
+     *
+     * @return the cache partition, or null if the factory does not provide
+     *         one
+     * @see cross.datastructures.fragments.Fragments#createCachePartition(java.lang.String, org.apache.commons.configuration.Configuration)
+     */
+    default CachePartition getCachePartition() {
+        return null;
+    }
+
     /**
      * Shutdown the factory's thread pool.
      *
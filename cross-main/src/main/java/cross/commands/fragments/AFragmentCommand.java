@@ -27,6 +27,7 @@
  */
 package cross.commands.fragments;
 
+import cross.cache.CachePartition;
 import cross.datastructures.fragments.FileFragment;
 import cross.datastructures.fragments.IFileFragment;
 import cross.datastructures.tools.EvalTools;
@@ -50,16 +51,24 @@ import java.io.File;
 import java.io.Serializable;
 import java.net.URI;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 import lombok.AccessLevel;
 import lombok.Data;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.mpaxs.api.ICompletionService;
+import net.sf.mpaxs.spi.concurrent.AdmissionController;
 import net.sf.mpaxs.spi.concurrent.CompletionServiceFactory;
+import net.sf.mpaxs.spi.concurrent.ExecutionMode;
+import net.sf.mpaxs.spi.concurrent.ITaskDecorator;
 import org.apache.commons.configuration.Configuration;
 import org.jdom2.Element;
 
@@ -148,6 +157,97 @@ public abstract class AFragmentCommand implements IFragmentCommand {
         return ret;
     }
 
+    /**
+     * Post process the results in the completion service as they become
+     * available. Each result is mapped by name to its input fragment, appended
+     * to the workflow and passed to <code>consumer</code> as soon as its task
+     * has completed, without waiting for the remaining tasks.
+     *
+     * @param ics      the completion service returning Files to wait on
+     * @param t        the input to map to
+     * @param consumer receives each input fragment and its result fragment,
+     *                 may be null
+     * @return the result file fragments in the order of the input
+     * @see ICompletionService#results()
+     */
+    public TupleND<IFileFragment> postProcessStreaming(ICompletionService<File> ics,
+        final TupleND<IFileFragment> t, BiConsumer<IFileFragment, IFileFragment> consumer) {
+        return postProcessStreaming(ics, File::toURI, t, consumer);
+    }
+
+    /**
+     * Post process the results in the completion service as they become
+     * available, see
+     * {@link #postProcessStreaming(net.sf.mpaxs.api.ICompletionService, cross.datastructures.tuple.TupleND, java.util.function.BiConsumer)}.
+     *
+     * @param ics      the completion service returning URIs to wait on
+     * @param t        the input to map to
+     * @param consumer receives each input fragment and its result fragment,
+     *                 may be null
+     * @return the result file fragments in the order of the input
+     */
+    public TupleND<IFileFragment> postProcessUriStreaming(ICompletionService<URI> ics,
+        final TupleND<IFileFragment> t, BiConsumer<IFileFragment, IFileFragment> consumer) {
+        return postProcessStreaming(ics, Function.<URI>identity(), t, consumer);
+    }
+
+    private <T> TupleND<IFileFragment> postProcessStreaming(ICompletionService<T> ics,
+        Function<T, URI> toUri, final TupleND<IFileFragment> t,
+        BiConsumer<IFileFragment, IFileFragment> consumer) {
+        IFileFragment[] mapped = new IFileFragment[t.size()];
+        try {
+            int results = 0;
+            Iterator<T> iter = ics.results();
+            while (iter.hasNext()) {
+                URI uri = toUri.apply(iter.next());
+                results++;
+                int index = indexOfInput(uri, t);
+                if (index < 0) {
+                    log.warn("Could not map result {} to any input fragment!", uri);
+                    continue;
+                }
+                IFileFragment result = new FileFragment(uri);
+                mapped[index] = result;
+                addWorkflowResult(result);
+                if (consumer != null) {
+                    consumer.accept(t.get(index), result);
+                }
+            }
+            // expect at least one result
+            EvalTools.gt(0, results, this);
+        } catch (Exception ex) {
+            log.error("Caught exception while executing workers: ", ex);
+            throw new RuntimeException(ex);
+        }
+        TupleND<IFileFragment> ret = new TupleND<>();
+        for (IFileFragment f : mapped) {
+            if (f != null) {
+                ret.add(f);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the index of the input fragment with the same base name as the
+     * given result, ignoring file extensions.
+     *
+     * @param result         the result URI
+     * @param inputFragments the input fragments
+     * @return the index of the input fragment, or -1
+     */
+    public int indexOfInput(URI result, TupleND<IFileFragment> inputFragments) {
+        String basename = StringTools.removeFileExt(FileTools.getFilename(result));
+        int index = 0;
+        for (IFileFragment fragment : inputFragments) {
+            if (basename.equals(StringTools.removeFileExt(FileTools.getFilename(fragment.getUri())))) {
+                return index;
+            }
+            index++;
+        }
+        return -1;
+    }
+
     /**
      *
      * @param l
@@ -278,6 +378,23 @@ public abstract class AFragmentCommand implements IFragmentCommand {
         return mapToInputUri(uris, inputFragments);
     }
 
+    /**
+     * Configures the group and priority of jobs submitted by a distributed
+     * completion service. The group, configured by
+     * <code>cross.Factory.jobGroup</code>, defaults to the workflow's output
+     * directory, so that a fair share job queue of the master server divides
+     * the compute hosts between concurrently running workflows. The priority
+     * is configured by <code>cross.Factory.jobPriority</code>.
+     *
+     * @param <T> the serializable result type
+     * @param csf the completion service factory
+     */
+    protected <T extends Serializable> void configureDistributedCompletionService(CompletionServiceFactory<T> csf) {
+        Configuration cfg = workflow.getConfiguration();
+        csf.setJobGroup(cfg.getString("cross.Factory.jobGroup", workflow.getOutputDirectory().getAbsolutePath()));
+        csf.setJobPriority(cfg.getInt("cross.Factory.jobPriority", 0));
+    }
+
     /**
      * Create a non-blocking completion service for the given service object
      * type.
@@ -307,15 +424,56 @@ public abstract class AFragmentCommand implements IFragmentCommand {
         csf.setBlockingWait(true);
         if (getWorkflow().isExecuteLocal()) {
             log.info("Creating local completion service!");
-            csf.setMaxThreads(workflow.getConfiguration().getInt("cross.Factory.maxthreads", 1));
+            configureLocalCompletionService(csf);
             ics = csf.newLocalCompletionService();
         } else {
             log.info("Creating mpaxs completion service!");
+            configureDistributedCompletionService(csf);
             ics = csf.newDistributedCompletionService();
         }
         return ics;
     }
 
+    /**
+     * Configures the execution mode, thread pool size and memory admission
+     * control of a local completion service. The execution mode is one of
+     * {@link ExecutionMode}, configured by <code>cross.Factory.executionMode</code>,
+     * where <code>cross.Factory.maxthreads</code> caps CPU-bound parallelism and
+     * <code>cross.Factory.maxConcurrency</code> caps the number of concurrently
+     * running tasks of the virtual thread modes. The heap budget is the fraction
+     * <code>cross.Factory.heapBudget</code> of the maximum heap size, tasks are
+     * estimated by a {@link FragmentMemoryEstimator} for this command.
+     * Admission control is disabled by default, with a fraction of 0. Tasks
+     * are bound to the {@link CachePartition} and the active command of the
+     * submitting thread, so that fragment caches created by them belong to
+     * the partition of the workflow and workflow elements used by them are
+     * placed below the output directory of the command.
+     *
+     * @param <T> the serializable result type
+     * @param csf the completion service factory
+     */
+    protected <T extends Serializable> void configureLocalCompletionService(CompletionServiceFactory<T> csf) {
+        Configuration cfg = workflow.getConfiguration();
+        csf.setMaxThreads(cfg.getInt("cross.Factory.maxthreads", 1));
+        csf.setMaxConcurrency(cfg.getInt("cross.Factory.maxConcurrency", 0));
+        csf.setTaskDecorator(new ITaskDecorator() {
+            @Override
+            public <V> Callable<V> decorate(Callable<V> task) {
+                return CachePartition.inherit(getWorkflow().inherit(task));
+            }
+        });
+        try {
+            csf.setExecutionMode(ExecutionMode.valueOf(cfg.getString("cross.Factory.executionMode", ExecutionMode.FIXED.name()).toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException iae) {
+            log.warn("Unknown execution mode {}, using {}", cfg.getString("cross.Factory.executionMode"), ExecutionMode.FIXED);
+        }
+        double heapBudget = cfg.getDouble("cross.Factory.heapBudget", 0.0d);
+        if (heapBudget > 0) {
+            csf.setMemoryBudget(AdmissionController.heapBudget(heapBudget));
+            csf.setMemoryEstimator(new FragmentMemoryEstimator<T>(getClass()));
+        }
+    }
+
     /**
      * Create a non-blocking completion service for the given service object
      * type and time out parameters.
@@ -336,10 +494,11 @@ public abstract class AFragmentCommand implements IFragmentCommand {
         csf.setTimeUnit(timeUnit);
         if (getWorkflow().isExecuteLocal()) {
             log.info("Creating local completion service!");
-            csf.setMaxThreads(workflow.getConfiguration().getInt("cross.Factory.maxthreads", 1));
+            configureLocalCompletionService(csf);
             ics = csf.newLocalCompletionService();
         } else {
             log.info("Creating mpaxs completion service!");
+            configureDistributedCompletionService(csf);
             ics = csf.newDistributedCompletionService();
         }
         return ics;
@@ -0,0 +1,211 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.commands.fragments;
+
+import cross.Factory;
+import cross.datastructures.fragments.FileFragment;
+import cross.datastructures.fragments.IFileFragment;
+import cross.datastructures.fragments.IVariableFragment;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.mpaxs.spi.concurrent.IMemoryEstimator;
+import ucar.ma2.DataType;
+import ucar.nc2.Dimension;
+
+/**
+ * Estimates the working set of per-file worker tasks of a fragment command.
+ *
+ * The base estimate of a file is the number of bytes of all of its variables,
+ * computed from their dimensions and {@link DataType}, or the size of the
+ * file on disk, if its structure can not be read. The input file of a task is
+ * the first non-static field of the task of type {@link IFileFragment},
+ * {@link URI} or {@link File}. The base estimate is multiplied by an overhead
+ * factor, which is learned per command from the heap retained by its tasks, as
+ * observed by the {@link net.sf.mpaxs.spi.concurrent.AdmissionController},
+ * and shared by all instances for the same command. The factor is clamped to
+ * [0.1, 4], so that a few outlying observations can not serialize all tasks.
+ *
+ * @author Nils Hoffmann
+ * @param <T> the result type of the tasks
+ * @since 1.3.2
+ */
+@Slf4j
+public class FragmentMemoryEstimator<T> implements IMemoryEstimator<T> {
+
+    private static final ConcurrentMap<String, Double> FACTORS = new ConcurrentHashMap<>();
+    private static final double ALPHA = 0.25d;
+    private static final double MIN_FACTOR = 0.1d;
+    private static final double MAX_FACTOR = 4.0d;
+    private final String command;
+    private final ConcurrentMap<URI, Long> baseEstimates = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new estimator for the tasks of the given command type.
+     *
+     * @param commandType the command type
+     */
+    public FragmentMemoryEstimator(Class<?> commandType) {
+        this.command = commandType.getName();
+    }
+
+    /**
+     * Returns the learned overhead factor for the given command type.
+     *
+     * @param commandType the command type
+     * @return the overhead factor, 1 if nothing has been learned yet
+     */
+    public static double getFactor(Class<?> commandType) {
+        return FACTORS.getOrDefault(commandType.getName(), 1.0d);
+    }
+
+    /**
+     * Returns the number of bytes needed to hold all values of the given
+     * variable in memory.
+     *
+     * @param v the variable
+     * @return the number of bytes, 0 if the variable has no dimensions or data
+     *         type
+     */
+    public static long estimate(IVariableFragment v) {
+        Dimension[] dims = v.getDimensions();
+        DataType dt = v.getDataType();
+        if (dims == null || dt == null) {
+            return 0;
+        }
+        long elements = 1;
+        for (Dimension d : dims) {
+            elements *= Math.max(0, d.getLength());
+        }
+        //variable length types are at least as large as a reference
+        return elements * (dt.getSize() > 0 ? dt.getSize() : 8);
+    }
+
+    /**
+     * Returns the number of bytes needed to hold all variables of the given
+     * file fragment in memory. If the structure of the fragment can not be
+     * read, the size of the file on disk is returned.
+     *
+     * @param f the file fragment
+     * @return the number of bytes
+     */
+    public static long estimate(IFileFragment f) {
+        List<IVariableFragment> variables = f.getImmediateChildren();
+        try {
+            if (variables.isEmpty()) {
+                variables = Factory.getInstance().getDataSourceFactory().getDataSourceFor(f).readStructure(f);
+            }
+            long bytes = 0;
+            for (IVariableFragment v : variables) {
+                bytes += estimate(v);
+            }
+            return bytes;
+        } catch (IOException | RuntimeException ex) {
+            log.debug("Could not read structure of {}, using file size", f.getUri());
+            URI u = f.getUri();
+            return u != null && "file".equals(u.getScheme()) ? new File(u).length() : 0;
+        }
+    }
+
+    /**
+     * Returns the learned overhead factor of the command.
+     *
+     * @return the overhead factor
+     */
+    public double getFactor() {
+        return FACTORS.getOrDefault(command, 1.0d);
+    }
+
+    @Override
+    public long estimate(Callable<T> task) {
+        long base = getBaseEstimate(task);
+        return (long) (base * getFactor());
+    }
+
+    @Override
+    public void observe(Callable<T> task, long estimate, long retained) {
+        long base = getBaseEstimate(task);
+        if (base > 0 && retained > 0) {
+            double observed = Math.max(MIN_FACTOR, Math.min(MAX_FACTOR, (double) retained / (double) base));
+            FACTORS.compute(command, (c, old) -> {
+                double f = old == null ? 1.0d : old;
+                return f + ALPHA * (observed - f);
+            });
+            log.debug("Overhead factor of {} is {}", command, getFactor());
+        }
+    }
+
+    private long getBaseEstimate(Callable<T> task) {
+        Object input = findInput(task);
+        if (input == null) {
+            return 0;
+        }
+        final IFileFragment f;
+        if (input instanceof IFileFragment) {
+            f = (IFileFragment) input;
+        } else if (input instanceof URI) {
+            f = new FileFragment((URI) input);
+        } else {
+            f = new FileFragment((File) input);
+        }
+        if (f.getUri() == null) {
+            return 0;
+        }
+        return baseEstimates.computeIfAbsent(f.getUri(), (u) -> estimate(f));
+    }
+
+    private static Object findInput(Object task) {
+        for (Class<?> c = task.getClass(); c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                Class<?> type = field.getType();
+                if (IFileFragment.class.isAssignableFrom(type) || URI.class == type || File.class == type) {
+                    try {
+                        field.setAccessible(true);
+                        Object value = field.get(task);
+                        if (value != null) {
+                            return value;
+                        }
+                    } catch (IllegalAccessException | RuntimeException ex) {
+                        log.debug("Could not access field {} of {}", field.getName(), c.getName());
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
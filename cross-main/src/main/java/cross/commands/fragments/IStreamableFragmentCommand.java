@@ -0,0 +1,48 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.commands.fragments;
+
+/**
+ * Marker interface for fragment commands with per-file semantics.
+ *
+ * Implementations must produce the output for each input fragment
+ * independently of all other input fragments, so that
+ * {@link #apply(java.lang.Object)} may be invoked once per fragment with a
+ * singleton tuple. These invocations may run concurrently, so
+ * implementations must not keep per-invocation state in fields. The
+ * concatenation of the outputs of these invocations, in the order of the
+ * original input, must be equivalent to the output of a single invocation on
+ * all fragments.
+ *
+ * @author Nils Hoffmann
+ * @see cross.datastructures.pipeline.StreamingCommandPipeline
+ * @since 1.3.2
+ */
+public interface IStreamableFragmentCommand extends IFragmentCommand {
+
+}
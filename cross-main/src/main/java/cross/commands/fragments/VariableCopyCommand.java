@@ -0,0 +1,94 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.commands.fragments;
+
+import cross.annotations.Configurable;
+import cross.datastructures.fragments.IFileFragment;
+import cross.datastructures.fragments.IVariableFragment;
+import cross.datastructures.tuple.TupleND;
+import cross.datastructures.workflow.WorkflowSlot;
+import java.util.Collections;
+import java.util.List;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.openide.util.lookup.ServiceProvider;
+import ucar.nc2.Dimension;
+
+/**
+ * Copies the configured variables of each input fragment into a new work
+ * fragment within the output directory of this command and saves it.
+ *
+ * The input fragment is added as source file of the work fragment, so all
+ * other variables remain accessible. Each fragment is processed
+ * independently of all other fragments, so this command can be streamed.
+ *
+ * @author Nils Hoffmann
+ * @since 1.3.2
+ */
+@Slf4j
+@Data
+@EqualsAndHashCode(callSuper = false)
+@ServiceProvider(service = AFragmentCommand.class)
+public class VariableCopyCommand extends AFragmentCommand implements IStreamableFragmentCommand {
+
+    @Configurable
+    private List<String> variables = Collections.emptyList();
+
+    @Override
+    public String getDescription() {
+        return "Copies variables of each input fragment into a new fragment.";
+    }
+
+    @Override
+    public TupleND<IFileFragment> apply(TupleND<IFileFragment> in) {
+        TupleND<IFileFragment> out = new TupleND<>();
+        for (IFileFragment f : in) {
+            IFileFragment work = createWorkFragment(f);
+            for (String name : variables) {
+                IVariableFragment source = f.getChild(name);
+                IVariableFragment copy = work.addChild(name);
+                Dimension[] dims = source.getDimensions();
+                if (dims != null) {
+                    copy.setDimensions(dims);
+                }
+                copy.setArray(source.getArray());
+            }
+            log.debug("Saving {} with variables {}", work.getUri(), variables);
+            work.save();
+            addWorkflowResult(work);
+            out.add(work);
+        }
+        return out;
+    }
+
+    @Override
+    public WorkflowSlot getWorkflowSlot() {
+        return WorkflowSlot.GENERAL_PREPROCESSING;
+    }
+}
@@ -27,8 +27,11 @@
  */
 package cross.datastructures.cache;
 
+import cross.cache.CacheStatistics;
+import cross.cache.CacheStatisticsRegistry;
 import cross.cache.CacheType;
 import cross.cache.ICacheDelegate;
+import cross.cache.ehcache.StatisticsCacheEventListener;
 import cross.datastructures.collections.CachedReadWriteList;
 import cross.datastructures.fragments.IVariableFragment;
 import java.io.Serializable;
@@ -62,6 +65,7 @@ public class VariableFragmentArrayCache implements ICacheDelegate<IVariableFragm
     private final String cacheName;
     private final Ehcache cache;
     private final Map<IVariableFragment, List<Array>> keys;
+    private final CacheStatistics statistics;
 
     /**
      *
@@ -71,6 +75,8 @@ public class VariableFragmentArrayCache implements ICacheDelegate<IVariableFragm
         this.cache = cache;
         this.cacheName = cache.getName();
         this.keys = new HashMap<>();
+        this.statistics = CacheStatisticsRegistry.getStatistics(cacheName);
+        StatisticsCacheEventListener.register(cache, statistics);
     }
 
     /**
@@ -110,6 +116,7 @@ public class VariableFragmentArrayCache implements ICacheDelegate<IVariableFragm
                         l.add(new SerializableArray((Array) object));
                     }
                     getCache().put(new Element(getVariableFragmentId(key), (Serializable) l));
+                    statistics.recordPut();
                 }
                 keys.put(key, null);
             } catch (IllegalStateException se) {
@@ -136,6 +143,7 @@ public class VariableFragmentArrayCache implements ICacheDelegate<IVariableFragm
     public List<Array> get(final IVariableFragment key) {
         List<Array> values = keys.get(key);
         if (values != null) {
+            statistics.recordHit();
             return values;
         } else {
             try {
@@ -148,9 +156,11 @@ public class VariableFragmentArrayCache implements ICacheDelegate<IVariableFragm
                         for (Object object : c) {
                             l.add(((SerializableArray) object).getArray());
                         }
+                        statistics.recordHit();
                         return l;
                     }
                 }
+                statistics.recordMiss();
                 return null;
             } catch (IllegalStateException se) {
                 log.warn("Failed to get element from cache: " + getVariableFragmentId(key), se);
@@ -201,4 +211,13 @@ public class VariableFragmentArrayCache implements ICacheDelegate<IVariableFragm
     public CacheType getCacheType() {
         return CacheType.EHCACHE;
     }
+
+    /**
+     *
+     * @return
+     */
+    @Override
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
 }
@@ -28,33 +28,37 @@
 package cross.datastructures.collections;
 
 import cross.cache.CacheFactory;
-import cross.cache.ICacheDelegate;
 import cross.datastructures.cache.ISerializationProxy;
+import java.io.Closeable;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
-import java.util.SortedSet;
-import java.util.TreeSet;
 
 /**
  * Implementation of a read/write cached list for indexed data access.
  *
- * Backed by a soft-reference cache hash map using LRU cache eviction strategy.
+ * Backed by a {@link SpillableChunkedList}, which keeps elements in
+ * contiguous chunks, holds the least recently used chunks in memory and spills
+ * the remaining chunks to a temporary file.
  *
  * A {@link ISerializationProxy} can be supplied at construction to allow for otherwise
  * non-serializable objects to be efficiently serialized and deserialized.
  *
- * This implementation currently only supports single element operations of the implemented
- * List interface. All unsupported methods throw {@link UnsupportedOperationException}.
+ * Elements may be set at any index. Setting an element beyond the current size
+ * fills the gap with <code>null</code> elements. Removing an element replaces it with
+ * <code>null</code>, the size of the list does not change. All unsupported methods throw
+ * {@link UnsupportedOperationException}.
  *
  * @author Nils Hoffmann
  * @param <T>
  */
-public class CachedReadWriteList<T> implements List<T> {
+public class CachedReadWriteList<T> implements List<T>, Closeable {
 
-    private ICacheDelegate<Integer, Object> cacheDelegate;
+    private final SpillableChunkedList<Object> list;
     private ISerializationProxy<T> serializationProxy;
 
     /**
@@ -63,7 +67,8 @@ public class CachedReadWriteList<T> implements List<T> {
      * @param maxElementsInMemory
      */
     public CachedReadWriteList(String name, int maxElementsInMemory) {
-        cacheDelegate = CacheFactory.createDefaultCache(name, maxElementsInMemory);
+        int chunkSize = Math.max(1, Math.min(SpillableChunkedList.DEFAULT_CHUNK_SIZE, maxElementsInMemory / 2));
+        list = new SpillableChunkedList<>(name, chunkSize, Math.max(1, maxElementsInMemory / chunkSize), CacheFactory.getCacheDirectory());
     }
 
     /**
@@ -118,7 +123,30 @@ public class CachedReadWriteList<T> implements List<T> {
      * @return
      */
     public Serializable getSerializable(int index) {
-        return (Serializable) cacheDelegate.get(index);
+        return (Serializable) getStored(index);
+    }
+
+    private Object getStored(int index) {
+        synchronized (list) {
+            if (index < 0 || index >= list.size()) {
+                return null;
+            }
+            return list.get(index);
+        }
+    }
+
+    private void setStored(int index, Object o) {
+        synchronized (list) {
+            if (index < list.size()) {
+                list.set(index, o);
+            } else {
+                int gap = index - list.size();
+                if (gap > 0) {
+                    list.addAll(Collections.nCopies(gap, null));
+                }
+                list.add(o);
+            }
+        }
     }
 
     /**
@@ -127,7 +155,7 @@ public class CachedReadWriteList<T> implements List<T> {
      */
     @Override
     public int size() {
-        return cacheDelegate.keys().size();
+        return list.size();
     }
 
     /**
@@ -136,7 +164,7 @@ public class CachedReadWriteList<T> implements List<T> {
      */
     @Override
     public boolean isEmpty() {
-        return cacheDelegate.keys().isEmpty();
+        return list.isEmpty();
     }
 
     /**
@@ -145,7 +173,7 @@ public class CachedReadWriteList<T> implements List<T> {
      * @return
      */
     public boolean contains(Integer index) {
-        return cacheDelegate.get(index) != null;
+        return getStored(index) != null;
     }
 
     /**
@@ -153,7 +181,11 @@ public class CachedReadWriteList<T> implements List<T> {
      * @param index
      */
     public void remove(Integer index) {
-        cacheDelegate.put(index, null);
+        synchronized (list) {
+            if (index >= 0 && index < list.size()) {
+                list.set(index, null);
+            }
+        }
     }
 
     /**
@@ -163,7 +195,7 @@ public class CachedReadWriteList<T> implements List<T> {
      */
     @Override
     public T get(int index) {
-        return reverseConvert(cacheDelegate.get(index));
+        return reverseConvert(getStored(index));
     }
 
     /**
@@ -174,7 +206,7 @@ public class CachedReadWriteList<T> implements List<T> {
      */
     @Override
     public T set(int index, T element) {
-        cacheDelegate.put(index, convert(element));
+        setStored(index, convert(element));
         return element;
     }
 
@@ -185,7 +217,7 @@ public class CachedReadWriteList<T> implements List<T> {
      */
     @Override
     public void add(int index, T element) {
-        cacheDelegate.put(index, convert(element));
+        setStored(index, convert(element));
     }
 
     /**
@@ -201,45 +233,25 @@ public class CachedReadWriteList<T> implements List<T> {
         return false;
     }
 
-    private final class CachedReadWriteListIterator implements Iterator<T> {
-
-        private final CachedReadWriteList<T> crwl;
-        private final SortedSet<Integer> keys;
-        private int counter = 0;
-
-        public CachedReadWriteListIterator(CachedReadWriteList crwl) {
-            this.crwl = crwl;
-            int size = this.crwl.size();
-            keys = new TreeSet<>();
-            for (int i = 0; i < size; i++) {
-                keys.add(i);
-            }
-        }
-
-        @Override
-        public boolean hasNext() {
-            return counter < keys.size();
-        }
-
-        @Override
-        public T next() {
-            return crwl.get(counter++);
-        }
-
-        @Override
-        public void remove() {
-            throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
-        }
-
-    }
-
     /**
+     * Returns an iterator, which streams the elements chunk by chunk.
      *
      * @return
      */
     @Override
     public Iterator<T> iterator() {
-        return new CachedReadWriteListIterator(this);
+        final Iterator<Object> iter = list.iterator();
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return reverseConvert(iter.next());
+            }
+        };
     }
 
     /**
@@ -248,7 +260,15 @@ public class CachedReadWriteList<T> implements List<T> {
      */
     @Override
     public Object[] toArray() {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        Object[] a = new Object[size()];
+        int i = 0;
+        for (T t : this) {
+            if (i == a.length) {
+                break;
+            }
+            a[i++] = t;
+        }
+        return a;
     }
 
     /**
@@ -269,7 +289,7 @@ public class CachedReadWriteList<T> implements List<T> {
      */
     @Override
     public boolean add(T e) {
-        add(size(), e);
+        list.add(convert(e));
         return true;
     }
 
@@ -297,13 +317,18 @@ public class CachedReadWriteList<T> implements List<T> {
     }
 
     /**
+     * Appends all elements of the given collection in one batch.
      *
      * @param c
      * @return
      */
     @Override
     public boolean addAll(Collection<? extends T> c) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        List<Object> converted = new ArrayList<>(c.size());
+        for (T t : c) {
+            converted.add(convert(t));
+        }
+        return list.addAll(converted);
     }
 
     /**
@@ -314,7 +339,12 @@ public class CachedReadWriteList<T> implements List<T> {
      */
     @Override
     public boolean addAll(int index, Collection<? extends T> c) {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        synchronized (list) {
+            if (index != list.size()) {
+                throw new UnsupportedOperationException("Only appending is supported!");
+            }
+            return addAll(c);
+        }
     }
 
     /**
@@ -342,10 +372,15 @@ public class CachedReadWriteList<T> implements List<T> {
      */
     @Override
     public void clear() {
-        int size = cacheDelegate.keys().size();
-        for (int i = 0; i < size; i++) {
-            cacheDelegate.put(i, null);
-        }
+        list.clear();
+    }
+
+    /**
+     * Removes all elements and deletes the spill file.
+     */
+    @Override
+    public void close() {
+        list.close();
     }
 
     /**
@@ -356,7 +391,7 @@ public class CachedReadWriteList<T> implements List<T> {
     @Override
     public T remove(int index) {
         T t = get(index);
-        remove(index);
+        remove(Integer.valueOf(index));
         return t;
     }
 
@@ -0,0 +1,439 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.datastructures.collections;
+
+import cross.cache.CacheFactory;
+import cross.cache.CacheStatistics;
+import cross.cache.CacheStatisticsRegistry;
+import cross.cache.EvictionCause;
+import cross.exception.ResourceNotAvailableException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-optimised list, which stores its elements in contiguous chunks of a
+ * fixed size and spills chunks to a temporary file, once more than a given
+ * number of chunks would be held in memory.
+ *
+ * Elements are appended to an in-memory tail chunk. Full chunks are kept in
+ * memory in least recently used order and are written to the spill file with
+ * a single sequential write when they are evicted. Random access loads the
+ * complete chunk of an element back into memory. Iteration streams the list
+ * chunk by chunk, without replacing the chunks held in memory.
+ *
+ * Elements must be {@link java.io.Serializable} in order to be spilled.
+ * Elements can only be appended, existing elements may be replaced by
+ * {@link #set(int, java.lang.Object)}. A replaced element in an already
+ * spilled chunk causes the chunk to be appended to the spill file again when
+ * it is evicted, the old copy is not reclaimed until {@link #clear()}.
+ *
+ * Instances are thread-safe. Call {@link #close()} to delete the spill file.
+ *
+ * @author Nils Hoffmann
+ * @param <T> the element type
+ */
+@Slf4j
+public class SpillableChunkedList<T> extends AbstractList<T> implements Closeable {
+
+    /**
+     * The default number of elements per chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    private static final class Chunk {
+
+        private final Object[] elements;
+        private boolean dirty;
+
+        private Chunk(Object[] elements, boolean dirty) {
+            this.elements = elements;
+            this.dirty = dirty;
+        }
+    }
+
+    private final String name;
+    private final int chunkSize;
+    private final int maxChunksInMemory;
+    private final File directory;
+    private final CacheStatistics statistics;
+    private final LinkedHashMap<Integer, Chunk> resident = new LinkedHashMap<>(16, 0.75f, true);
+    private Object[] tail;
+    private int size = 0;
+    private long[] offsets = new long[16];
+    private int[] lengths = new int[16];
+    private File spillFile = null;
+    private FileChannel channel = null;
+    private long spillEnd = 0L;
+
+    /**
+     * Creates a new instance with {@link #DEFAULT_CHUNK_SIZE} elements per
+     * chunk, spilling to the directory of {@link CacheFactory}.
+     *
+     * @param name              the name of the list, used for the spill file and statistics
+     * @param maxChunksInMemory the maximum number of full chunks held in memory
+     */
+    public SpillableChunkedList(String name, int maxChunksInMemory) {
+        this(name, DEFAULT_CHUNK_SIZE, maxChunksInMemory, CacheFactory.getCacheDirectory());
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param name              the name of the list, used for the spill file and statistics
+     * @param chunkSize         the number of elements per chunk
+     * @param maxChunksInMemory the maximum number of full chunks held in memory
+     * @param directory         the directory to create the spill file in
+     */
+    public SpillableChunkedList(String name, int chunkSize, int maxChunksInMemory, File directory) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be greater than 0!");
+        }
+        if (maxChunksInMemory < 0) {
+            throw new IllegalArgumentException("maxChunksInMemory must not be negative!");
+        }
+        this.name = name;
+        this.chunkSize = chunkSize;
+        this.maxChunksInMemory = maxChunksInMemory;
+        this.directory = directory;
+        this.tail = new Object[chunkSize];
+        this.statistics = CacheStatisticsRegistry.getStatistics(name);
+    }
+
+    /**
+     * Returns the name of this list.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of elements per chunk.
+     *
+     * @return the chunk size
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Returns the access statistics of this list. Hits and misses are counted
+     * per chunk access.
+     *
+     * @return the statistics
+     */
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized T get(int index) {
+        checkIndex(index);
+        return (T) elementsOf(index / chunkSize, true)[index % chunkSize];
+    }
+
+    @Override
+    public synchronized T set(int index, T element) {
+        checkIndex(index);
+        int chunkIndex = index / chunkSize;
+        Object[] elements = elementsOf(chunkIndex, true);
+        Object old = elements[index % chunkSize];
+        elements[index % chunkSize] = element;
+        if (chunkIndex < sealedChunks()) {
+            Chunk chunk = resident.get(chunkIndex);
+            if (chunk == null) {
+                write(chunkIndex, elements);
+            } else {
+                chunk.dirty = true;
+            }
+        }
+        return (T) old;
+    }
+
+    @Override
+    public synchronized boolean add(T element) {
+        append(element);
+        return true;
+    }
+
+    /**
+     * Appends the element, only <code>index == size()</code> is supported.
+     *
+     * @param index   the index, must be equal to the size of this list
+     * @param element the element
+     */
+    @Override
+    public synchronized void add(int index, T element) {
+        if (index != size) {
+            throw new UnsupportedOperationException("Only appending is supported!");
+        }
+        append(element);
+    }
+
+    /**
+     * Appends all elements of the given collection, copying them chunk-wise.
+     *
+     * @param c the collection
+     * @return true if this list changed
+     */
+    @Override
+    public synchronized boolean addAll(Collection<? extends T> c) {
+        Object[] elements = c.toArray();
+        int pos = 0;
+        while (pos < elements.length) {
+            int tailCount = size % chunkSize;
+            int n = Math.min(chunkSize - tailCount, elements.length - pos);
+            System.arraycopy(elements, pos, tail, tailCount, n);
+            pos += n;
+            size += n;
+            if (size % chunkSize == 0) {
+                seal();
+            }
+        }
+        modCount++;
+        return elements.length > 0;
+    }
+
+    @Override
+    public synchronized boolean addAll(int index, Collection<? extends T> c) {
+        if (index != size) {
+            throw new UnsupportedOperationException("Only appending is supported!");
+        }
+        return addAll(c);
+    }
+
+    @Override
+    public T remove(int index) {
+        throw new UnsupportedOperationException("Removal is not supported!");
+    }
+
+    /**
+     * Removes all elements and truncates the spill file.
+     */
+    @Override
+    public synchronized void clear() {
+        resident.clear();
+        tail = new Object[chunkSize];
+        size = 0;
+        spillEnd = 0L;
+        if (channel != null) {
+            try {
+                channel.truncate(0L);
+            } catch (IOException ex) {
+                throw new ResourceNotAvailableException("Could not truncate spill file " + spillFile, ex);
+            }
+        }
+        modCount++;
+    }
+
+    /**
+     * Returns an iterator, which streams the elements chunk by chunk. Chunks
+     * that are not held in memory are read sequentially from the spill file,
+     * without evicting other chunks.
+     *
+     * @return the iterator
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int index = 0;
+            private int currentChunk = -1;
+            private Object[] current = null;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int chunkIndex = index / chunkSize;
+                if (chunkIndex != currentChunk) {
+                    synchronized (SpillableChunkedList.this) {
+                        current = elementsOf(chunkIndex, false);
+                    }
+                    currentChunk = chunkIndex;
+                }
+                return (T) current[index++ % chunkSize];
+            }
+        };
+    }
+
+    /**
+     * Removes all elements, closes and deletes the spill file.
+     */
+    @Override
+    public synchronized void close() {
+        clear();
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                log.warn("Could not close spill file {}: {}", spillFile, ex.getLocalizedMessage());
+            }
+            channel = null;
+            if (!spillFile.delete()) {
+                log.warn("Could not delete spill file {}", spillFile);
+            }
+            spillFile = null;
+        }
+        CacheStatisticsRegistry.remove(name);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private int sealedChunks() {
+        return size / chunkSize;
+    }
+
+    private void append(Object element) {
+        tail[size % chunkSize] = element;
+        size++;
+        if (size % chunkSize == 0) {
+            seal();
+        }
+        modCount++;
+    }
+
+    private void seal() {
+        int chunkIndex = sealedChunks() - 1;
+        if (chunkIndex >= offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            lengths = Arrays.copyOf(lengths, lengths.length * 2);
+        }
+        lengths[chunkIndex] = -1;
+        resident.put(chunkIndex, new Chunk(tail, true));
+        statistics.recordPut();
+        tail = new Object[chunkSize];
+        evict();
+    }
+
+    private Object[] elementsOf(int chunkIndex, boolean makeResident) {
+        if (chunkIndex == sealedChunks()) {
+            return tail;
+        }
+        Chunk chunk = resident.get(chunkIndex);
+        if (chunk != null) {
+            statistics.recordHit();
+            return chunk.elements;
+        }
+        statistics.recordMiss();
+        long start = System.nanoTime();
+        Object[] elements = read(chunkIndex);
+        statistics.recordLoad(System.nanoTime() - start);
+        if (makeResident) {
+            resident.put(chunkIndex, new Chunk(elements, false));
+            evict();
+        }
+        return elements;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Integer, Chunk>> iter = resident.entrySet().iterator();
+        while (resident.size() > maxChunksInMemory && iter.hasNext()) {
+            Map.Entry<Integer, Chunk> entry = iter.next();
+            if (entry.getValue().dirty) {
+                write(entry.getKey(), entry.getValue().elements);
+            }
+            iter.remove();
+            statistics.recordEviction(EvictionCause.SIZE);
+        }
+    }
+
+    private void write(int chunkIndex, Object[] elements) {
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+                oos.writeObject(elements);
+            }
+            if (channel == null) {
+                spillFile = File.createTempFile(name.replaceAll("[^A-Za-z0-9._-]", "_") + "-", ".spill", directory);
+                spillFile.deleteOnExit();
+                channel = FileChannel.open(spillFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(baos.toByteArray());
+            long position = spillEnd;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            offsets[chunkIndex] = spillEnd;
+            lengths[chunkIndex] = baos.size();
+            spillEnd = position;
+        } catch (IOException ex) {
+            throw new ResourceNotAvailableException("Could not spill chunk " + chunkIndex + " of " + name, ex);
+        }
+    }
+
+    private Object[] read(int chunkIndex) {
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(lengths[chunkIndex]);
+            long position = offsets[chunkIndex];
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of spill file " + spillFile);
+                }
+                position += read;
+            }
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(buffer.array()))) {
+                return (Object[]) ois.readObject();
+            }
+        } catch (IOException | ClassNotFoundException ex) {
+            throw new ResourceNotAvailableException("Could not read chunk " + chunkIndex + " of " + name, ex);
+        }
+    }
+}
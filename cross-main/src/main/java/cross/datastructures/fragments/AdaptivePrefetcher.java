@@ -0,0 +1,323 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.datastructures.fragments;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Detects sequential, reverse and strided access patterns from the most
+ * recently accessed indices of a list and asynchronously loads elements ahead
+ * of the access cursor.
+ *
+ * The look-ahead distance adapts to the measured load latency and the rate at
+ * which the list is consumed, so that the next range has arrived before the
+ * consumer reaches it. At most one range load is in flight at any time.
+ *
+ * @author Nils Hoffmann
+ * @param <T> the element type
+ */
+@Slf4j
+class AdaptivePrefetcher<T> {
+
+    /**
+     * Loads a contiguous range of elements.
+     *
+     * @param <T> the element type
+     */
+    interface RangeLoader<T> {
+
+        /**
+         * Load the elements from <code>from</code> to <code>to</code>,
+         * inclusive.
+         *
+         * @param from the first index
+         * @param to   the last index
+         * @return the loaded elements
+         */
+        List<T> load(int from, int to);
+    }
+
+    /**
+     * Receives prefetched elements.
+     *
+     * @param <T> the element type
+     */
+    interface Sink<T> {
+
+        /**
+         * Accept the element for the given index.
+         *
+         * @param index   the index
+         * @param element the element
+         */
+        void accept(int index, T element);
+    }
+
+    private static final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name("cross-prefetch-", 0).factory());
+    private static final int HISTORY = 3;
+    private static final double SMOOTHING = 0.3d;
+    private static final double SAFETY = 2.0d;
+
+    private final RangeLoader<T> loader;
+    private final Sink<T> sink;
+    private final int lowerBound;
+    private final int upperBound;
+    private final int minLookAhead;
+    private final int maxLookAhead;
+    private final int[] history = new int[HISTORY];
+    private int historySize = 0;
+    private int stride = 0;
+    private int frontier;
+    private long lastAccess = -1;
+    private double consumeNanos = 0.0d;
+    private double loadNanos = 0.0d;
+    private int lookAhead;
+    private int epoch = 0;
+    private Pending pending = null;
+
+    private final class Pending {
+
+        private final int first;
+        private final int count;
+        private final int stride;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Pending(int first, int count, int stride) {
+            this.first = first;
+            this.count = count;
+            this.stride = stride;
+        }
+
+        private boolean covers(int index) {
+            int steps = (index - first) / stride;
+            return (index - first) % stride == 0 && steps >= 0 && steps < count;
+        }
+    }
+
+    /**
+     * Creates a new prefetcher.
+     *
+     * @param loader       the loader for ranges of elements
+     * @param sink         the sink for loaded elements
+     * @param lowerBound   the smallest valid index
+     * @param upperBound   the largest valid index, exclusive
+     * @param minLookAhead the minimum number of elements to load ahead
+     * @param maxLookAhead the maximum number of elements to load ahead
+     */
+    AdaptivePrefetcher(RangeLoader<T> loader, Sink<T> sink, int lowerBound, int upperBound, int minLookAhead, int maxLookAhead) {
+        this.loader = loader;
+        this.sink = sink;
+        this.lowerBound = lowerBound;
+        this.upperBound = upperBound;
+        this.maxLookAhead = Math.max(1, maxLookAhead);
+        this.minLookAhead = Math.max(1, Math.min(minLookAhead, this.maxLookAhead));
+        this.lookAhead = this.minLookAhead;
+    }
+
+    /**
+     * Records an access of the given index and schedules the next range load,
+     * if an access pattern was detected.
+     *
+     * @param index the accessed index
+     */
+    synchronized void access(int index) {
+        long now = System.nanoTime();
+        if (historySize > 0 && history[(historySize - 1) % HISTORY] == index) {
+            return;
+        }
+        if (lastAccess >= 0) {
+            consumeNanos = smooth(consumeNanos, now - lastAccess);
+        }
+        lastAccess = now;
+        history[historySize % HISTORY] = index;
+        historySize++;
+        int detected = detectStride();
+        if (detected != stride) {
+            stride = detected;
+            frontier = index;
+        }
+        if (stride == 0 || (pending != null && !pending.future.isDone())) {
+            return;
+        }
+        if (stride > 0 ? frontier < index : frontier > index) {
+            frontier = index;
+        }
+        lookAhead = computeLookAhead();
+        int ahead = (frontier - index) / stride;
+        if (ahead > lookAhead / 2) {
+            return;
+        }
+        int first = frontier + stride;
+        int count = 0;
+        int chunk = Math.max(1, lookAhead - ahead);
+        for (int i = first; count < chunk && i >= lowerBound && i < upperBound; i += stride) {
+            count++;
+        }
+        if (count == 0) {
+            return;
+        }
+        frontier = first + (count - 1) * stride;
+        schedule(new Pending(first, count, stride));
+    }
+
+    /**
+     * Waits for the in-flight load, if it covers the given index.
+     *
+     * @param index the index
+     * @return true if a load covering the index was awaited
+     */
+    boolean await(int index) {
+        Pending p;
+        synchronized (this) {
+            p = pending;
+        }
+        if (p == null || p.future.isDone() || !p.covers(index)) {
+            return false;
+        }
+        try {
+            p.future.join();
+        } catch (CompletionException ce) {
+            log.debug("Prefetch failed: {}", ce.getLocalizedMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Forgets all access history and waits for an in-flight load to finish.
+     * Elements of a load that has not been delivered yet are discarded, so
+     * that no element reaches the sink after this method returns.
+     */
+    void reset() {
+        Pending p;
+        synchronized (this) {
+            epoch++;
+            historySize = 0;
+            stride = 0;
+            lastAccess = -1;
+            p = pending;
+            pending = null;
+        }
+        if (p != null) {
+            try {
+                p.future.join();
+            } catch (CompletionException ce) {
+                log.debug("Prefetch failed: {}", ce.getLocalizedMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the currently detected stride, 0 if no pattern was detected.
+     *
+     * @return the stride
+     */
+    synchronized int getStride() {
+        return stride;
+    }
+
+    /**
+     * Returns the current look-ahead distance in elements.
+     *
+     * @return the look-ahead distance
+     */
+    synchronized int getLookAhead() {
+        return lookAhead;
+    }
+
+    private int detectStride() {
+        if (historySize < HISTORY) {
+            return 0;
+        }
+        int last = history[(historySize - 1) % HISTORY];
+        int previous = history[(historySize - 2) % HISTORY];
+        int first = history[(historySize - 3) % HISTORY];
+        int delta = last - previous;
+        if (delta != 0 && previous - first == delta) {
+            return delta;
+        }
+        return 0;
+    }
+
+    private int computeLookAhead() {
+        if (consumeNanos <= 0.0d || loadNanos <= 0.0d) {
+            return minLookAhead;
+        }
+        //a new range is requested once half of the look-ahead is consumed,
+        //so half of it needs to cover the latency of one range load
+        double covered = SAFETY * loadNanos / consumeNanos;
+        long elements = (long) Math.ceil(covered) + minLookAhead;
+        return (int) Math.max(minLookAhead, Math.min(maxLookAhead, elements));
+    }
+
+    private double smooth(double average, double sample) {
+        if (average <= 0.0d) {
+            return sample;
+        }
+        return average + SMOOTHING * (sample - average);
+    }
+
+    private void schedule(final Pending p) {
+        pending = p;
+        final int scheduledEpoch = epoch;
+        executor.execute(() -> {
+            try {
+                long start = System.nanoTime();
+                if (Math.abs(p.stride) == 1) {
+                    int from = Math.min(p.first, p.first + (p.count - 1) * p.stride);
+                    List<T> elements = loader.load(from, from + p.count - 1);
+                    if (isCurrent(scheduledEpoch)) {
+                        for (int i = 0; i < elements.size(); i++) {
+                            sink.accept(from + i, elements.get(i));
+                        }
+                    }
+                } else {
+                    for (int i = 0, index = p.first; i < p.count && isCurrent(scheduledEpoch); i++, index += p.stride) {
+                        sink.accept(index, loader.load(index, index).get(0));
+                    }
+                }
+                synchronized (this) {
+                    loadNanos = smooth(loadNanos, System.nanoTime() - start);
+                }
+                p.future.complete(null);
+            } catch (RuntimeException re) {
+                log.warn("Prefetch of {} elements from index {} failed: {}", p.count, p.first, re.getLocalizedMessage());
+                p.future.completeExceptionally(re);
+            }
+        });
+    }
+
+    private synchronized boolean isCurrent(int scheduledEpoch) {
+        return scheduledEpoch == epoch;
+    }
+}
@@ -96,6 +96,23 @@ public class BfsVariableSearcher {
      * @return matches containing varName
      */
     public final Collection<IFileFragment> getClosestParent(IFileFragment root, String variableName, double maxLevel) {
+        Level l = search(root, variableName, maxLevel);
+        if (l == null) {
+            return Collections.emptyList();
+        }
+        return l.getMatches();
+    }
+
+    /**
+     * Searches breadth-first for variableName, as described for
+     * {@link #getClosestParent(cross.datastructures.fragments.IFileFragment, java.lang.String, double)}.
+     *
+     * @param root         the root from where to start searching for variableName
+     * @param variableName the name of the variable to find
+     * @param maxLevel     maximum search depth
+     * @return the level containing the matches, or null if no match was found
+     */
+    Level search(IFileFragment root, String variableName, double maxLevel) {
         //initial search level has distance 0 from root
         Level initial = new Level(0, Arrays.asList(root));
         //breadth first queue of levels, each levels contains file fragments which
@@ -108,14 +125,14 @@ public class BfsVariableSearcher {
             if (l.getLevel() <= maxLevel) {
                 Collection<IFileFragment> matches = explore(toExplore, l, variableName);
                 if (!matches.isEmpty()) {
-                    return matches;
+                    return l;
                 }
             } else {
                 throw new ResourceNotAvailableException("Could not find variable " + variableName + " in any ancestor of " + root.getUri() + " at maximum level " + maxLevel);
             }
         }
 
-        return Collections.emptyList();
+        return null;
     }
 
     private Collection<IFileFragment> explore(Queue<Level> toExplore, Level l, String varname) {
@@ -31,6 +31,9 @@ import cross.Factory;
 import cross.IConfigurable;
 import cross.IFactory;
 import cross.annotations.Configurable;
+import cross.cache.CacheStatistics;
+import cross.cache.CacheStatisticsRegistry;
+import cross.cache.EvictionCause;
 import cross.datastructures.tools.EvalTools;
 import cross.exception.ResourceNotAvailableException;
 import java.io.IOException;
@@ -52,6 +55,10 @@ import ucar.ma2.Range;
  * Implementation of a cached list for indexed data access on
  * {@link IVariableFragment} instances.
  *
+ * If <code>adaptivePrefetch</code> is enabled, sequential, reverse and
+ * strided access patterns are detected and elements ahead of the access
+ * cursor are loaded asynchronously.
+ *
  * @author Nils Hoffmann
  *
  */
@@ -61,11 +68,13 @@ public class CachedList implements List<ucar.ma2.Array>, IConfigurable {
     private class SRefA extends SoftReference<Array> {
 
         private final Integer key;
+        private final long bytes;
 
         private SRefA(final Integer key, final Array value,
                 final ReferenceQueue<Array> rq) {
             super(value, rq);
             this.key = key;
+            this.bytes = value == null ? 0L : value.getSizeBytes();
         }
     }
 
@@ -104,16 +113,17 @@ public class CachedList implements List<ucar.ma2.Array>, IConfigurable {
     private int cacheSize = 512;
     @Configurable
     private boolean prefetchOnMiss = false;
+    @Configurable
+    private boolean adaptivePrefetch = false;
+    @Configurable
+    private int minPrefetch = 16;
+    private AdaptivePrefetcher<Array> prefetcher = null;
     private final LinkedList<Integer> lru = new LinkedList<>();
     private final ReferenceQueue<Array> rq = new ReferenceQueue<>();
     private int size = -1;
     private int offset = 0;
-    private int cacheHit = 0;
-    private int cacheMiss = 0;
-    private int cacheGCed = 0;
-    private int cacheLRU = 0;
-    private int cacheLRUPURGELAST = 0;
-    private int cacheSoftRefRemoved = 0;
+    private CacheStatistics statistics = new CacheStatistics(CachedList.class.getName(),
+            CacheStatisticsRegistry.getStatistics(CachedList.class.getName()));
 
     /**
      *
@@ -164,20 +174,20 @@ public class CachedList implements List<ucar.ma2.Array>, IConfigurable {
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
-    private void addToCache(final Integer key, final Array a) {
+    private synchronized void addToCache(final Integer key, final Array a) {
         // create SoftReference with index arg as key
         final SRefA sr = new SRefA(key, a, this.rq);
-        this.cache.put(key, sr);
-        this.cacheLRU++;
+        release(this.cache.put(key, sr), null);
+        this.statistics.recordPut();
+        this.statistics.addEstimatedBytes(sr.bytes);
         // Array has not been gc'ed, so add to lru cache (hard reference)
         this.lru.addFirst(key);
         // If we hold too many elements in the lru cache, release the
         // oldest element
         while (this.lru.size() > this.cacheSize) {
-            this.cacheLRUPURGELAST++;
             // remove hard reference from lru and from HashMap
             final Integer keyr = this.lru.removeLast();
-            this.cache.remove(keyr);
+            release(this.cache.remove(keyr), EvictionCause.SIZE);
         }
         log.debug("Number of referenced Elements: {}",
                 this.cache.size());
@@ -188,17 +198,46 @@ public class CachedList implements List<ucar.ma2.Array>, IConfigurable {
      */
     @Override
     public void clear() {
+        final AdaptivePrefetcher<Array> p;
+        synchronized (this) {
+            p = this.prefetcher;
+            this.prefetcher = null;
+        }
+        if (p != null) {
+            // waits for an in-flight load, which adds to the cache
+            p.reset();
+        }
+        clearCache();
+    }
+
+    private synchronized void clearCache() {
         this.lru.clear();
         updateQueue();
+        for (SRefA sr : this.cache.values()) {
+            release(sr, EvictionCause.REMOVED);
+        }
         this.cache.clear();
     }
 
+    private void release(final SRefA sr, final EvictionCause cause) {
+        if (sr != null) {
+            this.statistics.addEstimatedBytes(-sr.bytes);
+            if (cause != null) {
+                this.statistics.recordEviction(cause);
+            }
+        }
+    }
+
     @Override
     public void configure(final Configuration cfg) {
         this.prefetchOnMiss = cfg.getBoolean(this.getClass().getName()
                 + ".prefetchOnMiss", false);
         this.cacheSize = cfg.getInt(this.getClass().getName() + ".cacheSize",
                 1024);
+        this.adaptivePrefetch = cfg.getBoolean(this.getClass().getName()
+                + ".adaptivePrefetch", false);
+        this.minPrefetch = cfg.getInt(this.getClass().getName()
+                + ".minPrefetch", 16);
     }
 
     /**
@@ -233,25 +272,16 @@ public class CachedList implements List<ucar.ma2.Array>, IConfigurable {
             throw new IndexOutOfBoundsException("Index out of bounds: " + arg0);
         }
         final Integer key = arg;
-        Array a = null;
-        // Lookup SoftReference to array in hashmap
-        final SRefA aref = this.cache.get(key);
-        // Reference for key exists
-        if (aref != null) {
-            this.cacheHit++;
-            // retrieve referenced array
-            a = aref.get();
-            if (a == null) {
-                this.cacheGCed++;
-                // SoftReference was last reference to array. Array was
-                // garbage collected
-                this.cache.remove(key);
-                a = load(arg);
-                addToCache(key, a);
-            }
+        final AdaptivePrefetcher<Array> p = getPrefetcher();
+        Array a = getCached(key);
+        if (a == null && p != null && p.await(arg)) {
+            a = getCached(key);
+        }
+        if (a != null) {
+            this.statistics.recordHit();
         } else {
-            this.cacheMiss++;
-            if (this.prefetchOnMiss) {
+            this.statistics.recordMiss();
+            if (this.prefetchOnMiss && p == null) {
                 final int upperBound = Math.min(this.size, this.cacheSize);
                 log.info("Prefetching: from {} to {}",
                         arg0, arg0 + upperBound);
@@ -266,15 +296,38 @@ public class CachedList implements List<ucar.ma2.Array>, IConfigurable {
                 addToCache(key, a);
             }
         }
+        if (p != null) {
+            p.access(arg);
+        }
         updateQueue();
-        log.debug(
-                "CACHE ACCESS: HITS=" + this.cacheHit + " MISSES="
-                + this.cacheMiss + " GCED=" + this.cacheGCed
-                + " LRUED=" + this.cacheLRU + " LRUPURGED="
-                + this.cacheLRUPURGELAST);
+        log.debug("CACHE ACCESS: {}", this.statistics);
         return a;
     }
 
+    private synchronized Array getCached(final Integer key) {
+        // Lookup SoftReference to array in hashmap
+        final SRefA aref = this.cache.get(key);
+        if (aref == null) {
+            return null;
+        }
+        final Array a = aref.get();
+        if (a == null) {
+            // SoftReference was last reference to array. Array was
+            // garbage collected
+            release(this.cache.remove(key), EvictionCause.COLLECTED);
+        }
+        return a;
+    }
+
+    private synchronized AdaptivePrefetcher<Array> getPrefetcher() {
+        if (this.adaptivePrefetch && this.prefetcher == null && this.size > 0) {
+            this.prefetcher = new AdaptivePrefetcher<>(this::load,
+                    this::addToCache, this.offset, this.size,
+                    this.minPrefetch, this.cacheSize / 2);
+        }
+        return this.prefetcher;
+    }
+
     /**
      *
      * @return
@@ -283,6 +336,17 @@ public class CachedList implements List<ucar.ma2.Array>, IConfigurable {
         return this.cacheSize;
     }
 
+    /**
+     * Returns the access statistics of this list. All statistics are
+     * additionally aggregated in the {@link CacheStatisticsRegistry} below the
+     * name of this class.
+     *
+     * @return the statistics of this list
+     */
+    public CacheStatistics getStatistics() {
+        return this.statistics;
+    }
+
     /**
      *
      * @param arg0
@@ -318,6 +382,26 @@ public class CachedList implements List<ucar.ma2.Array>, IConfigurable {
         return false;
     }
 
+    /**
+     * Returns whether elements are loaded asynchronously ahead of detected
+     * access patterns.
+     *
+     * @return true if adaptive prefetching is enabled
+     */
+    public boolean isAdaptivePrefetch() {
+        return this.adaptivePrefetch;
+    }
+
+    /**
+     * Returns the minimum number of elements loaded ahead by the adaptive
+     * prefetcher.
+     *
+     * @return the minimum look-ahead
+     */
+    public int getMinPrefetch() {
+        return this.minPrefetch;
+    }
+
     /**
      *
      * @return
@@ -388,24 +472,34 @@ public class CachedList implements List<ucar.ma2.Array>, IConfigurable {
 
     private List<Array> load(final int from, final int to)
             throws ResourceNotAvailableException {
-        Range[] originalRange = this.ivf.getIndex().getRange();
+        // loads modify the range of the index variable, which is shared by
+        // all variables indexed by it, so they are serialized on the index
+        synchronized (this.ivf.getIndex()) {
+            return loadRange(from, to);
+        }
+    }
+
+    private List<Array> loadRange(final int from, final int to)
+            throws ResourceNotAvailableException {
+        final IVariableFragment index = this.ivf.getIndex();
+        Range[] originalRange = index.getRange();
         EvalTools.geq(from, to, this);
+        final long start = System.nanoTime();
         try {
             // keep range as is since we still reference original data
             final Range[] r = new Range[]{new Range(from + this.offset, to
                 + this.offset)};
-            final IVariableFragment index = this.ivf.getIndex();
             index.setRange(r);
             // read array
             final List<Array> a = Factory.getInstance().getDataSourceFactory().getDataSourceFor(this.ivf.getParent()).readIndexed(
                     this.ivf);
-
+            this.statistics.recordLoad(System.nanoTime() - start);
             return a;
         } catch (final IOException | ResourceNotAvailableException | InvalidRangeException ex) {
             throw new ResourceNotAvailableException(ex);
         } finally {
             //restore original range
-            this.ivf.getIndex().setRange(originalRange);
+            index.setRange(originalRange);
         }
     }
 
@@ -469,6 +563,27 @@ public class CachedList implements List<ucar.ma2.Array>, IConfigurable {
         this.cacheSize = cachesize;
     }
 
+    /**
+     * Set whether elements should be loaded asynchronously ahead of detected
+     * sequential, reverse or strided access patterns. Takes precedence over
+     * prefetchOnMiss.
+     *
+     * @param adaptivePrefetch true to enable adaptive prefetching
+     */
+    public void setAdaptivePrefetch(final boolean adaptivePrefetch) {
+        this.adaptivePrefetch = adaptivePrefetch;
+    }
+
+    /**
+     * Set the minimum number of elements loaded ahead by the adaptive
+     * prefetcher.
+     *
+     * @param minPrefetch the minimum look-ahead
+     */
+    public void setMinPrefetch(final int minPrefetch) {
+        this.minPrefetch = minPrefetch;
+    }
+
     /**
      * Set whether a prefetch should be attempted on a cache miss.
      *
@@ -485,8 +600,10 @@ public class CachedList implements List<ucar.ma2.Array>, IConfigurable {
      * @param ivf the variable fragment
      */
     public void setVariableFragment(final IVariableFragment ivf) {
-        this.ivf = ivf;
         clear();
+        this.ivf = ivf;
+        this.statistics = new CacheStatistics(ivf.getParent().getName() + ">" + ivf.getName(),
+                CacheStatisticsRegistry.getStatistics(CachedList.class.getName()));
     }
 
     /**
@@ -538,13 +655,14 @@ public class CachedList implements List<ucar.ma2.Array>, IConfigurable {
         return (T[]) arrays;
     }
 
-    private void updateQueue() {
+    private synchronized void updateQueue() {
         SRefA sv;
         while ((sv = (SRefA) this.rq.poll()) != null) {
             try {
                 this.rq.remove(sv.key); // remove the SoftReference
-                this.cache.remove(sv.key);
-                this.cacheSoftRefRemoved++;
+                if (this.cache.remove(sv.key, sv)) {
+                    release(sv, EvictionCause.COLLECTED);
+                }
             } catch (final IllegalArgumentException | InterruptedException ex) {
                 log.warn(ex.getLocalizedMessage());
             }
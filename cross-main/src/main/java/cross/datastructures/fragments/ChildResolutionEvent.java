@@ -0,0 +1,82 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.datastructures.fragments;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder event for the resolution of a child variable by
+ * {@link FileFragment#getChild(java.lang.String, boolean)}, including the
+ * depth at which the {@link BfsVariableSearcher} found the variable among
+ * the source files of the fragment.
+ *
+ * @author Nils Hoffmann
+ * @since 1.3.2
+ */
+@Name("cross.fragments.ChildResolution")
+@Label("Child Resolution")
+@Category({"Cross", "Fragments"})
+@Description("Resolution of a variable in a file fragment or its source files")
+final class ChildResolutionEvent extends Event {
+
+    @Label("Fragment")
+    String fragment;
+
+    @Label("Variable")
+    String variable;
+
+    @Label("Depth")
+    @Description("Distance of the resolving fragment from the queried fragment, -1 if unresolved")
+    int depth;
+
+    @Label("Resolved")
+    boolean resolved;
+
+    /**
+     * Ends the event and commits it, if it is enabled and exceeds the
+     * configured threshold.
+     *
+     * @param fragment the queried fragment
+     * @param variable the name of the variable
+     * @param depth    the depth of the resolving fragment, or -1
+     */
+    void commit(IFileFragment fragment, String variable, int depth) {
+        end();
+        if (shouldCommit()) {
+            this.fragment = fragment.getUri() == null ? fragment.getName() : fragment.getUri().toString();
+            this.variable = variable;
+            this.depth = depth;
+            this.resolved = depth >= 0;
+            commit();
+        }
+    }
+}
@@ -462,30 +462,39 @@ public final class FileFragment implements IFileFragment {
     public synchronized IVariableFragment getChild(final String varname,
         final boolean loadStructureOnly)
         throws ResourceNotAvailableException {
+        ChildResolutionEvent event = new ChildResolutionEvent();
+        event.begin();
         // return child if already in memory
         if (this.children.containsKey(varname)) {
             log.debug("Found {} as direct child of {} in memory.", varname,
                 this.getUri());
+            event.commit(this, varname, 0);
             return getImmediateChild(varname);
         } else {
             String sourceFileVarName = Factory.getInstance().getConfiguration().getString("var.source_files", "source_files");
             if (!varname.equals(sourceFileVarName)) {
                 log.info("Trying to load source files from file: {}", this.getUri());
                 // loop over all active source_files
-                Collection<IFileFragment> parents = bvs.getClosestParent(this, varname);
+                BfsVariableSearcher.Level level = bvs.search(this, varname, Double.POSITIVE_INFINITY);
+                Collection<IFileFragment> parents = level == null ? Collections.<IFileFragment>emptyList() : level.getMatches();
                 if (!parents.isEmpty()) {
                     log.info("Found matches for {} in {}", varname, parents);
                 }
                 if (parents.size() == 1) {
-                    return parents.iterator().next().getChild(varname, loadStructureOnly);
+                    IVariableFragment child = parents.iterator().next().getChild(varname, loadStructureOnly);
+                    event.commit(this, varname, level.getLevel());
+                    return child;
                 } else if (parents.size() > 1) {
+                    event.commit(this, varname, -1);
                     throw new ConstraintViolationException("Found more than one possible source file for variable " + varname + ": " + parents);
                 }
             } else {
                 //try to update from file
                 addSourceFile(FragmentTools.getSourceFiles(this).values());
+                event.commit(this, varname, 0);
                 return getImmediateChild(sourceFileVarName);
             }
+            event.commit(this, varname, -1);
             // if all fails, throw ResourceNotAvailableException
             throw new ResourceNotAvailableException("Failed to find var "
                 + varname + " in fragment " + getUri().toString()
@@ -796,7 +805,12 @@ public final class FileFragment implements IFileFragment {
                 frag.setIsModified(false);
             }
             clearArrays();
-            getCache().close();
+            //the cache may be shared with other fragments, e.g. by concurrent
+            //pipeline stages, so only drop this fragment's remaining entries
+            ICacheDelegate<IVariableFragment, List<Array>> cache = getCache();
+            for (IVariableFragment frag : getImmediateChildren()) {
+                cache.put(frag, null);
+            }
             removeSourceFiles();
             this.persistentCache = null;
 //            FileFragment.fileMap.remove(u);
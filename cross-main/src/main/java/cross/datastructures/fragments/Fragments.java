@@ -27,18 +27,20 @@
  */
 package cross.datastructures.fragments;
 
+import cross.cache.CachePartition;
 import cross.cache.CacheType;
 import cross.cache.ICacheDelegate;
 import cross.cache.none.NoCacheManager;
 import cross.cache.softReference.SoftReferenceCacheManager;
 import cross.datastructures.cache.VariableFragmentArrayCache;
+import cross.cache.CacheFactory;
 import java.io.File;
 import java.util.List;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.configuration.Configuration;
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.config.CacheConfiguration;
-import net.sf.ehcache.config.Configuration;
 import net.sf.ehcache.config.MemoryUnit;
 import net.sf.ehcache.store.MemoryStoreEvictionPolicy;
 import ucar.ma2.Array;
@@ -46,6 +48,10 @@ import ucar.ma2.Array;
 /**
  * Utility class for access to fragment data caches.
  *
+ * If the calling thread has entered a {@link CachePartition}, fragment caches
+ * are created within that partition instead of the shared default cache
+ * manager.
+ *
  * @author Nils Hoffmann
  */
 @Slf4j
@@ -70,14 +76,14 @@ public final class Fragments {
      *
      * @return the singleton cache manager for variable fragment caching
      */
-    public static CacheManager getDefault() {
+    public static synchronized CacheManager getDefault() {
         if (defaultCacheManager == null) {
             cacheDirectory.mkdirs();
             CacheConfiguration cc = new CacheConfiguration();
             cc.name("maltcms-fragments").
                 overflowToDisk(true).
                 memoryStoreEvictionPolicy(MemoryStoreEvictionPolicy.LFU);
-            Configuration config = new Configuration();
+            net.sf.ehcache.config.Configuration config = new net.sf.ehcache.config.Configuration();
             config.setDynamicConfig(true);
             config.setMaxBytesLocalHeap(Math.max(MemoryUnit.MEGABYTES.toBytes(32), Runtime.getRuntime().maxMemory() / 4));
             config.setMaxBytesLocalDisk(MemoryUnit.parseSizeInBytes("100G"));
@@ -88,6 +94,36 @@ public final class Fragments {
         return defaultCacheManager;
     }
 
+    /**
+     * Creates a new cache partition, using the quotas and directory from the
+     * given configuration:
+     * <ul>
+     * <li><code>cross.cache.CachePartition.maxBytesLocalHeap</code>, defaults
+     * to one eighth of the maximum heap, at least 32 MBytes</li>
+     * <li><code>cross.cache.CachePartition.maxBytesLocalDisk</code>, defaults
+     * to 10 GBytes, 0 disables overflow to disk</li>
+     * <li><code>cross.cache.CachePartition.directory</code>, the parent
+     * directory of partition directories, defaults to a directory below the
+     * {@link CacheFactory} cache directory</li>
+     * </ul>
+     *
+     * Memory sizes may be given with a unit, e.g. <code>512M</code> or
+     * <code>2G</code>.
+     *
+     * @param name the unique partition name
+     * @param cfg  the configuration
+     * @return the new cache partition
+     */
+    public static CachePartition createCachePartition(String name, Configuration cfg) {
+        String prefix = CachePartition.class.getName();
+        long maxBytesLocalHeap = MemoryUnit.parseSizeInBytes(cfg.getString(prefix + ".maxBytesLocalHeap",
+            Long.toString(Math.max(MemoryUnit.MEGABYTES.toBytes(32), Runtime.getRuntime().maxMemory() / 8))));
+        long maxBytesLocalDisk = MemoryUnit.parseSizeInBytes(cfg.getString(prefix + ".maxBytesLocalDisk", "10G"));
+        File baseDir = new File(cfg.getString(prefix + ".directory",
+            new File(CacheFactory.getCacheDirectory(), "partitions").getAbsolutePath()));
+        return CacheFactory.createPartition(name, new File(baseDir, name), maxBytesLocalHeap, maxBytesLocalDisk);
+    }
+
     /**
      * Set the cache location for all NEWLY created caches.
      *
@@ -144,6 +180,10 @@ public final class Fragments {
      * @return the cache delegate
      */
     public static ICacheDelegate<IVariableFragment, List<Array>> createFragmentCache(File cacheDir, String cacheName, CacheType cacheType) {
+        CachePartition partition = CachePartition.current();
+        if (partition != null) {
+            return createFragmentCache(partition, cacheName, cacheType);
+        }
         switch (cacheType) {
             case EHCACHE:
                 log.debug("Using ehcache {}", cacheName);
@@ -160,6 +200,24 @@ public final class Fragments {
         }
     }
 
+    /**
+     * Create a new cache delegate within the given cache partition. The
+     * delegate is closed together with the partition.
+     *
+     * @param partition the cache partition
+     * @param cacheName the cache name
+     * @param cacheType the cache type
+     * @return the cache delegate
+     */
+    public static ICacheDelegate<IVariableFragment, List<Array>> createFragmentCache(CachePartition partition, String cacheName, CacheType cacheType) {
+        if (cacheType == CacheType.EHCACHE) {
+            log.debug("Using ehcache {} in partition {}", cacheName, partition.getName());
+            return partition.register(new VariableFragmentArrayCache(partition.getEhcache(cacheName)));
+        }
+        log.debug("Using {} cache {} in partition {}", cacheType, cacheName, partition.getName());
+        return partition.getCache(cacheName, cacheType);
+    }
+
     /**
      * Create a new cache delegate, possibly returning an existing one for the
      * same
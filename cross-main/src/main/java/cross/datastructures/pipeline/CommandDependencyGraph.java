@@ -0,0 +1,214 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.datastructures.pipeline;
+
+import cross.annotations.AnnotationInspector;
+import cross.commands.fragments.IFragmentCommand;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dependency graph of a list of fragment commands, derived from their
+ * {@link cross.annotations.RequiresVariables},
+ * {@link cross.annotations.RequiresOptionalVariables} and
+ * {@link cross.annotations.ProvidesVariables} annotations.
+ *
+ * Each command is assigned a parent, the latest earlier command providing one
+ * of its required variables, or {@link #WORKFLOW_INPUT}, if none of its
+ * variables is provided by an earlier command. The parent's output is the
+ * input of the command. A command that does not declare any required
+ * variables is treated as a barrier: it depends on all earlier commands and
+ * receives the output of its direct predecessor, just as in a linear
+ * pipeline.
+ *
+ * The graph is only parallelizable, if all providers of a command's
+ * variables are its parent or ancestors of its parent, since otherwise the
+ * variables would not be reachable from the command's input fragments.
+ *
+ * @author Nils Hoffmann
+ * @since 1.3.2
+ */
+public final class CommandDependencyGraph {
+
+    /**
+     * Parent index of commands working directly on the workflow input.
+     */
+    public static final int WORKFLOW_INPUT = -1;
+    private final int[] parents;
+    private final List<Set<Integer>> dependencies;
+    private final int[] children;
+    private final boolean parallelizable;
+
+    /**
+     * Create a new dependency graph for the given variable declarations.
+     *
+     * @param required the required variables, including optional ones, per
+     *                 command
+     * @param provided the provided variables per command
+     */
+    public CommandDependencyGraph(List<? extends Collection<String>> required, List<? extends Collection<String>> provided) {
+        if (required.size() != provided.size()) {
+            throw new IllegalArgumentException("Number of required and provided variable declarations must be equal!");
+        }
+        int n = required.size();
+        this.parents = new int[n];
+        this.children = new int[n];
+        this.dependencies = new ArrayList<>(n);
+        Map<String, Integer> providers = new HashMap<>();
+        boolean valid = true;
+        for (int i = 0; i < n; i++) {
+            Set<Integer> deps = new LinkedHashSet<>();
+            Collection<String> req = required.get(i);
+            if (req.isEmpty()) {
+                //barrier, depends on everything before it
+                parents[i] = i - 1;
+                for (int j = 0; j < i; j++) {
+                    deps.add(j);
+                }
+            } else {
+                int parent = WORKFLOW_INPUT;
+                for (String var : req) {
+                    Integer provider = providers.get(var);
+                    if (provider != null) {
+                        deps.add(provider);
+                        parent = Math.max(parent, provider);
+                    }
+                }
+                parents[i] = parent;
+                for (Integer provider : deps) {
+                    if (!isAncestorOrSelf(provider, parent)) {
+                        valid = false;
+                    }
+                }
+            }
+            if (parents[i] != WORKFLOW_INPUT) {
+                children[parents[i]]++;
+            }
+            dependencies.add(Collections.unmodifiableSet(deps));
+            for (String var : provided.get(i)) {
+                providers.put(var, i);
+            }
+        }
+        this.parallelizable = valid;
+    }
+
+    /**
+     * Create the dependency graph for the given commands.
+     *
+     * @param commands the commands
+     * @return the dependency graph
+     */
+    public static CommandDependencyGraph of(List<IFragmentCommand> commands) {
+        List<Collection<String>> required = new ArrayList<>(commands.size());
+        List<Collection<String>> provided = new ArrayList<>(commands.size());
+        for (IFragmentCommand cmd : commands) {
+            Set<String> req = new LinkedHashSet<>(AnnotationInspector.getRequiredVariables(cmd));
+            req.addAll(AnnotationInspector.getOptionalRequiredVariables(cmd));
+            required.add(req);
+            provided.add(AnnotationInspector.getProvidedVariables(cmd));
+        }
+        return new CommandDependencyGraph(required, provided);
+    }
+
+    private boolean isAncestorOrSelf(int candidate, int node) {
+        int current = node;
+        while (current != WORKFLOW_INPUT) {
+            if (current == candidate) {
+                return true;
+            }
+            current = parents[current];
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of commands in this graph.
+     *
+     * @return the number of commands
+     */
+    public int size() {
+        return parents.length;
+    }
+
+    /**
+     * Returns the index of the command whose output is the input of the
+     * given command.
+     *
+     * @param index the command index
+     * @return the parent index or {@link #WORKFLOW_INPUT}
+     */
+    public int getParent(int index) {
+        return parents[index];
+    }
+
+    /**
+     * Returns the indices of all commands that need to finish before the
+     * given command may start.
+     *
+     * @param index the command index
+     * @return the dependencies, in ascending order of declaration
+     */
+    public Set<Integer> getDependencies(int index) {
+        return dependencies.get(index);
+    }
+
+    /**
+     * Returns the number of commands consuming the output of the given
+     * command.
+     *
+     * @param index the command index
+     * @return the number of children
+     */
+    public int getChildCount(int index) {
+        return children[index];
+    }
+
+    /**
+     * Returns true, if all variables of every command are reachable through
+     * its parent, so that independent branches may be executed concurrently.
+     *
+     * @return true if the graph may be executed in parallel
+     */
+    public boolean isParallelizable() {
+        return parallelizable;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("CommandDependencyGraph{parallelizable=").append(parallelizable).append(", parents=").append(Arrays.toString(parents)).append(", dependencies=").append(dependencies).append("}");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.datastructures.pipeline;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder event spanning the execution of a fragment command,
+ * from {@link CommandProfiler#start} to {@link CommandProfiler#stop()}.
+ *
+ * @author Nils Hoffmann
+ * @since 1.3.2
+ */
+@Name("cross.pipeline.Command")
+@Label("Fragment Command")
+@Category({"Cross", "Pipeline"})
+@Description("Execution of a fragment command within a pipeline")
+final class CommandEvent extends Event {
+
+    @Label("Command")
+    String command;
+
+    @Label("Workflow")
+    String workflow;
+
+    @Label("Files")
+    int files;
+}
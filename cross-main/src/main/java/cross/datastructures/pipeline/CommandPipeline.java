@@ -41,6 +41,9 @@ import cross.exception.ConstraintViolationException;
 import cross.exception.ExitVmException;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Formatter;
@@ -112,6 +115,10 @@ public class CommandPipeline implements ICommandSequence, IConfigurable {
     @Getter(AccessLevel.PROTECTED)
     @Setter(AccessLevel.PROTECTED)
     private int cnt;
+    //profiles of all completed commands
+    @Getter(AccessLevel.PROTECTED)
+    @Setter(AccessLevel.NONE)
+    private List<CommandProfile> profiles = Collections.synchronizedList(new ArrayList<CommandProfile>());
 
     /**
      * Create a new command pipeline instance.
@@ -218,9 +225,9 @@ public class CommandPipeline implements ICommandSequence, IConfigurable {
     protected void runFragmentCommand(final IWorkflow workflow, final IFragmentCommand cmd) throws ConstraintViolationException, IllegalStateException {
         try {
             beforeCommand(cmd);
-            long start = System.nanoTime();
+            CommandProfiler profiler = CommandProfiler.start(cmd, getWorkflow(), getTmp().size());
             setTmp(cmd.apply(getTmp()));
-            storeCommandRuntime(start, System.nanoTime(), cmd, getWorkflow());
+            storeCommandProfile(profiler.stop(), cmd, getWorkflow());
         } finally {
             afterCommand(cmd);
         }
@@ -264,6 +271,7 @@ public class CommandPipeline implements ICommandSequence, IConfigurable {
         this.commands = new ArrayList<>(c);
         this.iter = this.commands.iterator();
         this.cnt = 0;
+        this.profiles.clear();
     }
 
     @Override
@@ -318,6 +326,18 @@ public class CommandPipeline implements ICommandSequence, IConfigurable {
      * @param workflow the current workflow
      */
     protected void storeCommandRuntime(long start, long stop, final IFragmentCommand cmd, final IWorkflow workflow) {
+        workflow.append(createCommandRuntimeResult(start, stop, cmd));
+    }
+
+    /**
+     * Create the statistics result for the runtime of a command.
+     *
+     * @param start wall clock start time of the command
+     * @param stop  wall clock stop time of the command
+     * @param cmd   the command
+     * @return the statistics result
+     */
+    protected DefaultWorkflowStatisticsResult createCommandRuntimeResult(long start, long stop, final IFragmentCommand cmd) {
         final float seconds = ((float) stop - start) / ((float) 1000000000);
         final StringBuilder sb = new StringBuilder();
         final Formatter formatter = new Formatter(sb);
@@ -326,13 +346,82 @@ public class CommandPipeline implements ICommandSequence, IConfigurable {
             cmd.getClass().getSimpleName(),
             sb.toString());
         Map<String, Object> statsMap = new HashMap<>();
-        statsMap.put("RUNTIME_MILLISECONDS", (double) stop - start / 1000000.f);
+        statsMap.put("RUNTIME_MILLISECONDS", (double) (stop - start) / 1000000.d);
         statsMap.put("RUNTIME_SECONDS", (double) seconds);
         DefaultWorkflowStatisticsResult dwsr = new DefaultWorkflowStatisticsResult();
         dwsr.setWorkflowElement(cmd);
         dwsr.setWorkflowSlot(WorkflowSlot.STATISTICS);
         dwsr.setStats(statsMap);
-        workflow.append(dwsr);
+        return dwsr;
+    }
+
+    /**
+     * Store the profile of the last command as a statistics result and append
+     * it to the machine readable profile of the workflow.
+     *
+     * @param profile  the profile of the command
+     * @param cmd      the command
+     * @param workflow the current workflow
+     */
+    protected void storeCommandProfile(final CommandProfile profile, final IFragmentCommand cmd, final IWorkflow workflow) {
+        workflow.append(createCommandProfileResult(profile, cmd));
+        recordCommandProfile(profile, workflow);
+    }
+
+    /**
+     * Create the statistics result for the given command profile, together
+     * with the statistics of all caches that have been accessed while the
+     * command was running.
+     *
+     * @param profile the profile of the command
+     * @param cmd     the command
+     * @return the statistics result
+     */
+    protected DefaultWorkflowStatisticsResult createCommandProfileResult(final CommandProfile profile, final IFragmentCommand cmd) {
+        DefaultWorkflowStatisticsResult dwsr = createCommandRuntimeResult(0, profile.getWallNanos(), cmd);
+        dwsr.getStats().putAll(profile.toMap());
+        dwsr.getStats().putAll(profile.getCacheStatistics());
+        return dwsr;
+    }
+
+    /**
+     * Append the given profile to the profiles of this pipeline and to the
+     * profile file of the workflow, which contains one JSON object per line
+     * and command. The file is truncated when the first profile of this
+     * pipeline is recorded.
+     *
+     * @param profile  the profile
+     * @param workflow the current workflow
+     */
+    protected void recordCommandProfile(final CommandProfile profile, final IWorkflow workflow) {
+        final String json = profile.toJson();
+        final String line = "{\"workflow\":\"" + workflow.getName().replace("\\", "\\\\").replace("\"", "\\\"") + "\"," + json.substring(1) + "\n";
+        final File f = getProfileFile(workflow);
+        synchronized (profiles) {
+            boolean first = profiles.isEmpty();
+            profiles.add(profile);
+            try {
+                f.getParentFile().mkdirs();
+                if (first) {
+                    Files.write(f.toPath(), line.getBytes(StandardCharsets.UTF_8));
+                } else {
+                    Files.write(f.toPath(), line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                }
+            } catch (IOException ex) {
+                log.warn("Could not write command profile to " + f, ex);
+            }
+        }
+    }
+
+    /**
+     * Returns the file containing the machine readable command profiles,
+     * located next to the workflow xml file.
+     *
+     * @param workflow the workflow
+     * @return the profile file
+     */
+    protected File getProfileFile(final IWorkflow workflow) {
+        return new File(workflow.getOutputDirectory(), workflow.getName() + "-profile.jsonl");
     }
 
     @Override
@@ -0,0 +1,153 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.datastructures.pipeline;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.Data;
+
+/**
+ * Performance profile of a single fragment command invocation, as recorded by
+ * {@link CommandProfiler}.
+ *
+ * If the command ran concurrently with other commands, the process wide
+ * values, like CPU time, allocated bytes, I/O and cache lookups, include the
+ * work of those commands and the peak heap usage is -1, as it was not
+ * measured.
+ *
+ * @author Nils Hoffmann
+ * @since 1.3.2
+ */
+@Data
+public class CommandProfile {
+
+    private String command;
+    private long wallNanos;
+    private long cpuNanos;
+    private long allocatedBytes;
+    private long reads;
+    private long bytesRead;
+    private long writes;
+    private long bytesWritten;
+    private long cacheHits;
+    private long cacheMisses;
+    private long peakHeapBytes;
+    private boolean concurrent;
+    private int files;
+    private int latencySamples;
+    private double latencyP50Millis;
+    private double latencyP90Millis;
+    private double latencyP99Millis;
+    private double latencyMaxMillis;
+    private Map<String, Object> cacheStatistics = new LinkedHashMap<>();
+
+    /**
+     * Returns the fraction of cache lookups that were hits.
+     *
+     * @return the hit rate, or 0 if there were no lookups
+     */
+    public double getCacheHitRate() {
+        long requests = cacheHits + cacheMisses;
+        return requests == 0 ? 0.0d : (double) cacheHits / (double) requests;
+    }
+
+    /**
+     * Returns the values of this profile, with keys prefixed by
+     * <code>PROFILE.</code>.
+     *
+     * @return the profile values
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("PROFILE.WALL_MILLISECONDS", wallNanos / 1000000.d);
+        map.put("PROFILE.CPU_MILLISECONDS", cpuNanos / 1000000.d);
+        map.put("PROFILE.ALLOCATED_BYTES", allocatedBytes);
+        map.put("PROFILE.READS", reads);
+        map.put("PROFILE.BYTES_READ", bytesRead);
+        map.put("PROFILE.WRITES", writes);
+        map.put("PROFILE.BYTES_WRITTEN", bytesWritten);
+        map.put("PROFILE.CACHE_HITS", cacheHits);
+        map.put("PROFILE.CACHE_MISSES", cacheMisses);
+        map.put("PROFILE.CACHE_HIT_RATE", getCacheHitRate());
+        map.put("PROFILE.PEAK_HEAP_BYTES", peakHeapBytes);
+        map.put("PROFILE.CONCURRENT", concurrent);
+        map.put("PROFILE.FILES", files);
+        map.put("PROFILE.LATENCY_SAMPLES", latencySamples);
+        map.put("PROFILE.LATENCY_P50_MILLISECONDS", latencyP50Millis);
+        map.put("PROFILE.LATENCY_P90_MILLISECONDS", latencyP90Millis);
+        map.put("PROFILE.LATENCY_P99_MILLISECONDS", latencyP99Millis);
+        map.put("PROFILE.LATENCY_MAX_MILLISECONDS", latencyMaxMillis);
+        return map;
+    }
+
+    /**
+     * Returns this profile as a JSON object.
+     *
+     * @return the JSON representation
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"command\":\"").append(escape(command)).append("\"");
+        for (Map.Entry<String, Object> e : toMap().entrySet()) {
+            String key = e.getKey().substring("PROFILE.".length()).toLowerCase();
+            Object value = e.getValue();
+            sb.append(",\"").append(key).append("\":");
+            if (value instanceof Double && (((Double) value).isNaN() || ((Double) value).isInfinite())) {
+                sb.append("null");
+            } else {
+                sb.append(value);
+            }
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+
+    private static String escape(String s) {
+        if (s == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(s.length());
+        for (char c : s.toCharArray()) {
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.toString();
+    }
+}
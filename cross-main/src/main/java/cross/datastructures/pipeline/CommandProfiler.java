@@ -0,0 +1,304 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.datastructures.pipeline;
+
+import cross.cache.CacheStatistics;
+import cross.cache.CacheStatisticsRegistry;
+import cross.commands.fragments.IFragmentCommand;
+import cross.datastructures.workflow.IWorkflow;
+import cross.datastructures.workflow.IWorkflowProgressResult;
+import cross.datastructures.workflow.IWorkflowResult;
+import cross.event.IEvent;
+import cross.event.IEventSource;
+import cross.event.IListener;
+import cross.io.DataSourceStatistics;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the performance profile of a fragment command between
+ * {@link #start(cross.commands.fragments.IFragmentCommand, cross.datastructures.workflow.IWorkflow, int)}
+ * and {@link #stop()}.
+ *
+ * CPU time, allocated bytes, data source I/O and cache lookups are measured
+ * for the whole virtual machine, so they include the work of all threads
+ * started by the command. Peak heap usage is the sum of the peak usages of all
+ * heap memory pools. Profiles of commands that run concurrently with other
+ * commands, started via
+ * {@link #startConcurrent(cross.commands.fragments.IFragmentCommand, cross.datastructures.workflow.IWorkflow, int)},
+ * also include the work of those commands and are marked as
+ * {@link CommandProfile#isConcurrent() concurrent}. Their peak heap usage is
+ * not measured, since the peak usage of the memory pools is shared by all
+ * commands. Per-file latencies are derived from the intervals between the
+ * creation times of the progress steps the command reports, e.g. via
+ * {@link cross.commands.fragments.AFragmentCommand#initProgress(int)}.
+ * Events are delivered asynchronously, so steps that are delivered after
+ * {@link #stop()} are not included.
+ * The execution is also reported to the JDK Flight Recorder as a
+ * <code>cross.pipeline.Command</code> event.
+ *
+ * @author Nils Hoffmann
+ * @since 1.3.2
+ */
+public final class CommandProfiler implements IListener<IEvent<IWorkflowResult>> {
+
+    private final IFragmentCommand command;
+    private final IWorkflow workflow;
+    private final int files;
+    private final boolean concurrent;
+    private final List<IEventSource<IWorkflowResult>> sources;
+    private final long startNanos;
+    private final long startCpu;
+    private final long startAllocated;
+    private final long startReads;
+    private final long startBytesRead;
+    private final long startWrites;
+    private final long startBytesWritten;
+    private final long startHits;
+    private final long startMisses;
+    private final Map<String, CacheStatistics> startCaches;
+    private final CommandEvent event = new CommandEvent();
+    private final List<Long> latencies = Collections.synchronizedList(new ArrayList<Long>());
+    private final List<Long> steps = new ArrayList<>();
+    private final long startMillis;
+
+    private CommandProfiler(IFragmentCommand command, IWorkflow workflow, int files, boolean concurrent, List<IEventSource<IWorkflowResult>> sources) {
+        this.command = command;
+        this.workflow = workflow;
+        this.files = files;
+        this.concurrent = concurrent;
+        this.sources = sources;
+        if (!concurrent) {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                    pool.resetPeakUsage();
+                }
+            }
+        }
+        this.startCpu = getProcessCpuTime();
+        this.startAllocated = getAllocatedBytes();
+        this.startReads = DataSourceStatistics.getReads();
+        this.startBytesRead = DataSourceStatistics.getBytesRead();
+        this.startWrites = DataSourceStatistics.getWrites();
+        this.startBytesWritten = DataSourceStatistics.getBytesWritten();
+        long[] lookups = getCacheLookups();
+        this.startHits = lookups[0];
+        this.startMisses = lookups[1];
+        this.startCaches = CacheStatisticsRegistry.snapshot();
+        this.startNanos = System.nanoTime();
+        this.startMillis = System.currentTimeMillis();
+        this.event.begin();
+    }
+
+    /**
+     * Start profiling the given command.
+     *
+     * @param command  the command
+     * @param workflow the workflow the command reports its progress to, may
+     *                 be null
+     * @param files    the number of input files of the command
+     * @return the profiler
+     */
+    public static CommandProfiler start(IFragmentCommand command, IWorkflow workflow, int files) {
+        List<IEventSource<IWorkflowResult>> sources = new ArrayList<>(1);
+        if (workflow != null) {
+            sources.add(workflow);
+        }
+        return start(new CommandProfiler(command, workflow, files, false, sources));
+    }
+
+    /**
+     * Start profiling the given command, which runs concurrently with other
+     * commands. Pipelines running commands concurrently buffer the results
+     * each command reports, so progress steps are received from the command
+     * itself, as well as from the workflow.
+     *
+     * @param command  the command
+     * @param workflow the workflow the command appends its results to, may
+     *                 be null
+     * @param files    the number of input files of the command
+     * @return the profiler
+     */
+    public static CommandProfiler startConcurrent(IFragmentCommand command, IWorkflow workflow, int files) {
+        List<IEventSource<IWorkflowResult>> sources = new ArrayList<>(2);
+        sources.add(command);
+        if (workflow != null) {
+            sources.add(workflow);
+        }
+        return start(new CommandProfiler(command, workflow, files, true, sources));
+    }
+
+    private static CommandProfiler start(CommandProfiler profiler) {
+        for (IEventSource<IWorkflowResult> source : profiler.sources) {
+            source.addListener(profiler);
+        }
+        return profiler;
+    }
+
+    @Override
+    public void listen(IEvent<IWorkflowResult> v) {
+        IWorkflowResult result = v.get();
+        if (result instanceof IWorkflowProgressResult && result.getWorkflowElement() == command) {
+            synchronized (steps) {
+                steps.add(v.getWhen());
+            }
+        }
+    }
+
+    /**
+     * Record the processing latency of a single file explicitly, for callers
+     * that invoke the command once per file. Commands invoked this way should
+     * not report progress steps, as these would be recorded as well.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void recordFileLatency(long nanos) {
+        latencies.add(nanos);
+    }
+
+    /**
+     * Stop profiling and return the recorded profile.
+     *
+     * @return the profile
+     */
+    public CommandProfile stop() {
+        long stopNanos = System.nanoTime();
+        event.end();
+        for (IEventSource<IWorkflowResult> source : sources) {
+            source.removeListener(this);
+        }
+        if (event.shouldCommit()) {
+            event.command = command.getClass().getName();
+            event.workflow = workflow == null ? null : workflow.getName();
+            event.files = files;
+            event.commit();
+        }
+        CommandProfile p = new CommandProfile();
+        p.setCommand(command.getClass().getName());
+        p.setWallNanos(stopNanos - startNanos);
+        p.setCpuNanos(Math.max(0, getProcessCpuTime() - startCpu));
+        p.setAllocatedBytes(Math.max(0, getAllocatedBytes() - startAllocated));
+        p.setReads(DataSourceStatistics.getReads() - startReads);
+        p.setBytesRead(DataSourceStatistics.getBytesRead() - startBytesRead);
+        p.setWrites(DataSourceStatistics.getWrites() - startWrites);
+        p.setBytesWritten(DataSourceStatistics.getBytesWritten() - startBytesWritten);
+        long[] lookups = getCacheLookups();
+        p.setCacheHits(lookups[0] - startHits);
+        p.setCacheMisses(lookups[1] - startMisses);
+        p.setCacheStatistics(CacheStatisticsRegistry.toMap(startCaches));
+        p.setConcurrent(concurrent);
+        long peak = -1;
+        if (!concurrent) {
+            peak = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                    MemoryUsage usage = pool.getPeakUsage();
+                    peak += usage == null ? 0 : usage.getUsed();
+                }
+            }
+        }
+        p.setPeakHeapBytes(peak);
+        p.setFiles(files);
+        List<Long> l;
+        synchronized (latencies) {
+            l = new ArrayList<>(latencies);
+        }
+        synchronized (steps) {
+            Collections.sort(steps);
+            long last = startMillis;
+            for (Long when : steps) {
+                l.add(Math.max(0, when - last) * 1000000L);
+                last = when;
+            }
+        }
+        Collections.sort(l);
+        p.setLatencySamples(l.size());
+        p.setLatencyP50Millis(percentile(l, 0.5d));
+        p.setLatencyP90Millis(percentile(l, 0.9d));
+        p.setLatencyP99Millis(percentile(l, 0.99d));
+        p.setLatencyMaxMillis(l.isEmpty() ? 0.0d : l.get(l.size() - 1) / 1000000.d);
+        return p;
+    }
+
+    /**
+     * Returns the nearest-rank percentile of the given sorted values in
+     * milliseconds.
+     *
+     * @param sorted the sorted values in nanoseconds
+     * @param p      the percentile in [0,1]
+     * @return the percentile, or 0 if there are no values
+     */
+    static double percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) {
+            return 0.0d;
+        }
+        int rank = (int) Math.ceil(p * sorted.size());
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, rank - 1))) / 1000000.d;
+    }
+
+    private static long getProcessCpuTime() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+    }
+
+    private static long getAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean t = (com.sun.management.ThreadMXBean) threads;
+            if (t.isThreadAllocatedMemorySupported() && t.isThreadAllocatedMemoryEnabled()) {
+                return t.getTotalThreadAllocatedBytes();
+            }
+        }
+        return 0;
+    }
+
+    private static long[] getCacheLookups() {
+        long hits = 0;
+        long misses = 0;
+        for (CacheStatistics cs : CacheStatisticsRegistry.getAll()) {
+            //child statistics are aggregated into their parents
+            if (cs.getParent() == null) {
+                hits += cs.getHits();
+                misses += cs.getMisses();
+            }
+        }
+        return new long[]{hits, misses};
+    }
+}
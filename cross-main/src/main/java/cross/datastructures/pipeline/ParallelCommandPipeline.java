@@ -0,0 +1,306 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.datastructures.pipeline;
+
+import cross.cache.CachePartition;
+import cross.commands.fragments.IFragmentCommand;
+import cross.datastructures.fragments.IFileFragment;
+import cross.datastructures.fragments.IFileFragmentFactory;
+import cross.datastructures.tuple.TupleND;
+import cross.datastructures.workflow.IWorkflow;
+import cross.datastructures.workflow.IWorkflowResult;
+import cross.event.IEvent;
+import cross.event.IListener;
+import cross.exception.ConstraintViolationException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.openide.util.lookup.ServiceProvider;
+
+/**
+ * Extension of CommandPipeline that executes independent fragment commands
+ * concurrently.
+ *
+ * The dependencies between commands are derived from their variable
+ * annotations by {@link CommandDependencyGraph}. Each command receives the
+ * output of its parent in the graph as input, at most
+ * <code>maxParallelCommands</code> commands are executed at the same time.
+ * Results fired as events or appended to the workflow by each command, also
+ * from tasks of its local completion services, and its runtime statistics are
+ * buffered and appended to the workflow in the declared order of the
+ * commands, when the command is retrieved via {@link #next()}, so they are
+ * independent of the actual execution order. If the graph can not be
+ * parallelized, commands are executed in order, just as by
+ * {@link CommandPipeline}.
+ *
+ * Commands whose annotations do not declare all variables they read may
+ * observe incomplete input in this mode, as do commands consuming unsaved
+ * modifications of their predecessor's output. Output directories of workflow
+ * elements created by a command are resolved against the command running on
+ * the same thread or having submitted the task running on it, see
+ * {@link IWorkflow#inherit(java.util.concurrent.Callable)}.
+ *
+ * @author Nils Hoffmann
+ * @see CommandDependencyGraph
+ * @since 1.3.2
+ */
+@Slf4j
+@Data
+@EqualsAndHashCode(callSuper = true)
+@ServiceProvider(service = ICommandSequence.class, position = Integer.MIN_VALUE + 2)
+public class ParallelCommandPipeline extends CommandPipeline {
+
+    private int maxParallelCommands = 2;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient CommandDependencyGraph graph;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient ExecutorService executor;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient List<CompletableFuture<TupleND<IFileFragment>>> futures;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient List<List<IWorkflowResult>> results;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient CommandProfile[] commandProfiles;
+
+    /**
+     * Create a new parallel command pipeline instance.
+     */
+    public ParallelCommandPipeline() {
+    }
+
+    @Override
+    public void setCommands(List<IFragmentCommand> c) {
+        super.setCommands(c);
+        this.graph = null;
+        this.futures = null;
+    }
+
+    /**
+     * Returns the dependency graph of the current commands.
+     *
+     * @return the dependency graph
+     */
+    public CommandDependencyGraph getDependencyGraph() {
+        if (graph == null) {
+            graph = CommandDependencyGraph.of(getCommands());
+            log.debug("Command dependencies: {}", graph);
+            if (!graph.isParallelizable()) {
+                log.warn("Command dependencies do not allow parallel execution, running commands in order!");
+            }
+        }
+        return graph;
+    }
+
+    @Override
+    public TupleND<IFileFragment> next() {
+        if (futures == null) {
+            if (!getDependencyGraph().isParallelizable()) {
+                return super.next();
+            }
+            schedule();
+        }
+        try {
+            if (!getIter().hasNext()) {
+                throw new IllegalStateException("Fragment command iterator has no further elements!");
+            }
+            final IFragmentCommand cmd = getIter().next();
+            final int index = getCnt();
+            try {
+                setTmp(futures.get(index).get());
+            } catch (ExecutionException | CancellationException e) {
+                Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                if (cause instanceof CompletionException && cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                throw new ConstraintViolationException("Fragment command " + cmd.getClass().getCanonicalName() + " failed!", cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for fragment command " + cmd.getClass().getCanonicalName() + "!", e);
+            }
+            try {
+                //checkpoint the workflow for this command
+                getWorkflow().getOutputDirectory(cmd);
+                //append buffered results in declaration order
+                for (IWorkflowResult result : results.get(index)) {
+                    getWorkflow().append(result);
+                }
+                results.set(index, Collections.<IWorkflowResult>emptyList());
+                if (commandProfiles[index] != null) {
+                    recordCommandProfile(commandProfiles[index], getWorkflow());
+                }
+                getWorkflow().save();
+            } finally {
+                afterCommand(cmd);
+            }
+        } catch (ConstraintViolationException | IllegalStateException e) {
+            log.error("Caught exception while executing pipeline: ", e);
+            shutdownExecutor();
+            shutdownMasterServer();
+            throw new RuntimeException(e);
+        }
+        return getTmp();
+    }
+
+    /**
+     * Submit all commands for execution, each one as soon as its
+     * dependencies have completed.
+     */
+    protected void schedule() {
+        final CommandDependencyGraph g = getDependencyGraph();
+        final List<IFragmentCommand> c = getCommands();
+        final int threads = Math.max(1, Math.min(maxParallelCommands, c.size()));
+        log.info("Running {} commands with up to {} concurrent commands", c.size(), threads);
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ParallelCommandPipeline-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        futures = new ArrayList<>(c.size());
+        results = new ArrayList<>(c.size());
+        commandProfiles = new CommandProfile[c.size()];
+        //pooled threads do not inherit the cache partition of the workflow
+        final CachePartition partition = CachePartition.current();
+        for (int i = 0; i < c.size(); i++) {
+            final int index = i;
+            final List<IWorkflowResult> buffer = Collections.synchronizedList(new ArrayList<IWorkflowResult>());
+            results.add(buffer);
+            List<CompletableFuture<TupleND<IFileFragment>>> deps = new ArrayList<>();
+            for (Integer dep : g.getDependencies(index)) {
+                deps.add(futures.get(dep));
+            }
+            CompletableFuture<Void> ready = CompletableFuture.allOf(deps.toArray(new CompletableFuture<?>[deps.size()]));
+            final int parent = g.getParent(index);
+            final CompletableFuture<TupleND<IFileFragment>> parentFuture = parent == CommandDependencyGraph.WORKFLOW_INPUT ? null : futures.get(parent);
+            futures.add(ready.thenApplyAsync((Void v) -> {
+                CachePartition.Scope scope = partition == null ? null : partition.enter();
+                try {
+                    TupleND<IFileFragment> in = parentFuture == null ? getInput() : parentFuture.join();
+                    return runCommand(index, c.get(index), copy(in), buffer);
+                } finally {
+                    if (scope != null) {
+                        scope.close();
+                    }
+                }
+            }, executor));
+        }
+    }
+
+    /**
+     * Run the given command on the given input, buffering all results it
+     * fires or appends to the workflow.
+     *
+     * @param index  the index of the command
+     * @param cmd    the command
+     * @param in     the input fragments, exclusive to this command
+     * @param buffer the buffer receiving the command's results
+     * @return the output fragments of the command
+     */
+    protected TupleND<IFileFragment> runCommand(int index, IFragmentCommand cmd, TupleND<IFileFragment> in, final List<IWorkflowResult> buffer) {
+        IListener<IEvent<IWorkflowResult>> listener = new IListener<IEvent<IWorkflowResult>>() {
+            @Override
+            public void listen(IEvent<IWorkflowResult> v) {
+                buffer.add(v.get());
+            }
+        };
+        final IWorkflow workflow = getWorkflow();
+        cmd.addListener(listener);
+        try {
+            cmd.setWorkflow(workflow);
+            //makes cmd the active command of this thread
+            workflow.getOutputDirectory(cmd);
+            log.info("# Running {}/{}: {}",
+                new Object[]{(index + 1),
+                    getCommands().size(), cmd.getClass().getSimpleName()});
+            CommandProfiler profiler = CommandProfiler.startConcurrent(cmd, workflow, in.size());
+            //buffer results appended by the command
+            TupleND<IFileFragment> out = workflow.redirectAppends(buffer::add, () -> cmd.apply(in));
+            CommandProfile profile = profiler.stop();
+            buffer.add(createCommandProfileResult(profile, cmd));
+            commandProfiles[index] = profile;
+            return out;
+        } finally {
+            cmd.removeListener(listener);
+        }
+    }
+
+    /**
+     * Create new fragment instances for the given fragments, so that commands
+     * running concurrently on the same input do not share mutable state.
+     *
+     * @param in the fragments
+     * @return fresh fragments for the same uris
+     */
+    protected TupleND<IFileFragment> copy(TupleND<IFileFragment> in) {
+        IFileFragmentFactory factory = getWorkflow().getFactory().getFileFragmentFactory();
+        List<IFileFragment> l = new ArrayList<>(in.size());
+        for (IFileFragment f : in) {
+            l.add(factory.create(f.getUri()));
+        }
+        return new TupleND<>(l);
+    }
+
+    /**
+     * Shut down the executor, cancelling all pending commands.
+     */
+    protected void shutdownExecutor() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    @Override
+    public void after() {
+        shutdownExecutor();
+        super.after();
+    }
+}
@@ -27,33 +27,41 @@
 package cross.datastructures.pipeline;
 
 import cross.annotations.AnnotationInspector;
+import cross.commands.fragments.AFragmentCommand;
 import cross.commands.fragments.IFragmentCommand;
+import cross.commands.fragments.IStreamableFragmentCommand;
 import cross.datastructures.fragments.IFileFragment;
 import cross.datastructures.tools.FileTools;
 import cross.datastructures.tuple.TupleND;
 import cross.datastructures.workflow.IWorkflow;
+import cross.datastructures.workflow.IWorkflowFileResult;
+import cross.datastructures.workflow.IWorkflowResult;
+import cross.datastructures.workflow.WorkflowJournal;
 import cross.exception.ConstraintViolationException;
 import cross.exception.ExitVmException;
+import cross.exception.ResourceNotAvailableException;
+import cross.io.FingerprintService;
+import cross.tools.StringTools;
 import cross.tools.PublicMemberGetters;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.math.BigInteger;
 import java.net.URI;
-import java.nio.file.Files;
-import java.nio.file.StandardOpenOption;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.mpaxs.api.ConfigurationKeys;
 import net.sf.mpaxs.api.ExecutionType;
@@ -63,13 +71,22 @@ import org.apache.commons.configuration.ConfigurationUtils;
 import org.apache.commons.configuration.PropertiesConfiguration;
 import org.apache.commons.configuration.reloading.FileChangedReloadingStrategy;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.openide.util.lookup.ServiceProvider;
 
 /**
  * Extension of CommandPipeline that knows how to skip existing results.
  *
+ * If <code>incremental</code> is true, results of
+ * {@link IStreamableFragmentCommand}s are tracked per input fragment:
+ * only fragments whose input file, output files or command parameters have
+ * changed since the last invocation are recomputed, all other outputs are
+ * reused. If the workflow input has changed, only those previous results
+ * whose input and output fingerprints still match are restored, all other
+ * tracked outputs are deleted. All other commands are recomputed completely,
+ * if any of their input files, output files or parameters have changed.
+ * Incremental recomputation is disabled by default.
+ *
  * @author Nils Hoffmann
  * @see ICommandSequence
  */
@@ -88,6 +105,12 @@ public class ResultAwareCommandPipeline extends CommandPipeline {
     }
 
     private PropertiesConfiguration hashes;
+    private boolean incremental = false;
+    private String fingerprintAlgorithm = FingerprintService.Algorithm.XXH64.name();
+    private int fingerprintThreads = Runtime.getRuntime().availableProcessors();
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient FingerprintService fingerprintService;
 
     /**
      *
@@ -223,6 +246,20 @@ public class ResultAwareCommandPipeline extends CommandPipeline {
         return outputDirHashesEqual && oldParameterHash.equals(parameterHash);
     }
 
+    /**
+     * Returns the fingerprint service of the given workflow, which memoizes
+     * file hashes below the workflow's output directory.
+     *
+     * @param workflow the workflow
+     * @return the fingerprint service
+     */
+    protected FingerprintService getFingerprintService(IWorkflow workflow) {
+        if (fingerprintService == null) {
+            fingerprintService = new FingerprintService(new File(workflow.getOutputDirectory(), ".fingerprints"), FingerprintService.Algorithm.valueOf(fingerprintAlgorithm), fingerprintThreads);
+        }
+        return fingerprintService;
+    }
+
     /**
      * Used to check, whether any files have changed compared to the last
      * invocation.
@@ -231,20 +268,12 @@ public class ResultAwareCommandPipeline extends CommandPipeline {
      * @return
      */
     protected String getRecursiveFileHash(Collection<File> inputFiles) {
-        //list files below input and output
-        SortedSet<File> files = new TreeSet<>();
-        for (File file : inputFiles) {
-            if (file.isDirectory()) {
-                files.addAll(FileUtils.listFiles(file, new String[]{"*"}, true));
-            } else {
-                files.add(file);
-            }
-        }
-        return digest(files);
+        return digest(inputFiles);
     }
 
     /**
-     * Calculates a byte-level digest of the given files.
+     * Calculates a content digest of the given files and of all files below
+     * the given directories.
      *
      * @param files the files to calculate the digest for.
      * @return the hexadecimal, zero-padded digest, or null if any exceptions
@@ -252,24 +281,9 @@ public class ResultAwareCommandPipeline extends CommandPipeline {
      */
     public String digest(Collection<File> files) {
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-1");
-            for (File file : files) {
-                try (InputStream is = Files.newInputStream(file.toPath(), StandardOpenOption.READ)) {
-                    byte[] buffer = new byte[8192];
-                    int read = 0;
-                    while ((read = is.read(buffer)) > 0) {
-                        digest.update(buffer, 0, read);
-                    }
-                } catch (IOException ioex) {
-                    Logger.getLogger(ResultAwareCommandPipeline.class.getName()).log(Level.SEVERE, null, ioex);
-                    return null;
-                }
-            }
-            byte[] sha1 = digest.digest();
-            BigInteger bigInt = new BigInteger(1, sha1);
-            return StringUtils.leftPad(bigInt.toString(16), 40, "0");
-        } catch (NoSuchAlgorithmException ex) {
-            Logger.getLogger(ResultAwareCommandPipeline.class.getName()).log(Level.SEVERE, null, ex);
+            return getFingerprintService(getWorkflow()).fingerprint(files);
+        } catch (UncheckedIOException ex) {
+            log.error("Could not calculate digest of files " + files, ex);
         }
         return null;
     }
@@ -300,6 +314,288 @@ public class ResultAwareCommandPipeline extends CommandPipeline {
         return hcb.toHashCode() + "";
     }
 
+    /**
+     * Returns the prefix of all per fragment hash keys of the given command
+     * and input fragment.
+     *
+     * @param cmd      the command
+     * @param fragment the input fragment
+     * @return the key prefix
+     */
+    protected String getFragmentKey(IFragmentCommand cmd, IFileFragment fragment) {
+        URI fragmentCommandOutputDirectory = cmd.getWorkflow().getOutputDirectory(cmd).getAbsoluteFile().toURI();
+        URI relativeFile = FileTools.getRelativeUri(cmd.getWorkflow().getOutputDirectory().getAbsoluteFile().toURI(), fragmentCommandOutputDirectory);
+        return cmd.getClass().getName() + "-" + relativeFile.getPath() + "." + fragment.getName();
+    }
+
+    /**
+     * Returns the output files of the last invocation of the command for the
+     * given input fragment, if the input and output files have not changed
+     * since.
+     *
+     * @param fragment the input fragment
+     * @param cmd      the command
+     * @return the output files, or null, if the fragment needs to be
+     *         recomputed
+     */
+    protected List<File> getUpToDateOutputs(IFileFragment fragment, IFragmentCommand cmd) {
+        PropertiesConfiguration pc = getHashes(cmd.getWorkflow());
+        String key = getFragmentKey(cmd, fragment);
+        String[] outputs = pc.getStringArray(key + ".outputs");
+        if (outputs.length == 0) {
+            return null;
+        }
+        Collection<File> inputFiles = getInputFiles(new TupleND<>(Collections.singletonList(fragment)));
+        if (!pc.getString(key + ".inputHash", "").equals(digest(inputFiles))) {
+            return null;
+        }
+        List<File> outputFiles = getOutputFiles(outputs, cmd.getWorkflow());
+        for (File f : outputFiles) {
+            if (!f.isFile()) {
+                return null;
+            }
+        }
+        if (!pc.getString(key + ".outputHash", "").equals(digest(outputFiles))) {
+            return null;
+        }
+        return outputFiles;
+    }
+
+    /**
+     * Store the hashes of the given input fragment and of the outputs the
+     * command produced for it.
+     *
+     * @param fragment the input fragment
+     * @param outputs  the output fragments
+     * @param cmd      the command
+     */
+    protected void updateFragmentHashes(IFileFragment fragment, Collection<IFileFragment> outputs, IFragmentCommand cmd) {
+        PropertiesConfiguration pc = getHashes(cmd.getWorkflow());
+        String key = getFragmentKey(cmd, fragment);
+        URI base = cmd.getWorkflow().getOutputDirectory().getAbsoluteFile().toURI();
+        List<String> relativeOutputs = new ArrayList<>(outputs.size());
+        for (File f : getInputFiles(new TupleND<>(outputs))) {
+            relativeOutputs.add(FileTools.getRelativeUri(base, f.getAbsoluteFile().toURI()).getPath());
+        }
+        Collection<File> inputFiles = getInputFiles(new TupleND<>(Collections.singletonList(fragment)));
+        pc.setProperty(key + ".input", FileTools.getRelativeUri(base, inputFiles.iterator().next().getAbsoluteFile().toURI()).toString());
+        pc.setProperty(key + ".inputHash", digest(inputFiles));
+        pc.setProperty(key + ".outputHash", digest(getOutputFiles(relativeOutputs.toArray(new String[relativeOutputs.size()]), cmd.getWorkflow())));
+        pc.setProperty(key + ".outputs", relativeOutputs);
+    }
+
+    /**
+     * Remove the output files of the last invocation of the command for the
+     * given input fragment, together with their hashes.
+     *
+     * @param fragment the input fragment
+     * @param cmd      the command
+     */
+    protected void clearFragmentOutputs(IFileFragment fragment, IFragmentCommand cmd) {
+        clearFragmentOutputs(getFragmentKey(cmd, fragment), cmd.getWorkflow().getOutputDirectory(cmd), cmd.getWorkflow());
+    }
+
+    /**
+     * Remove the output files recorded under the given fragment key, together
+     * with their hashes. Files outside of <code>outputDir</code> are never
+     * deleted.
+     *
+     * @param key       the fragment key
+     * @param outputDir the directory containing the outputs
+     * @param workflow  the workflow
+     */
+    protected void clearFragmentOutputs(String key, File outputDir, IWorkflow workflow) {
+        PropertiesConfiguration pc = getHashes(workflow);
+        String outputDirPath = outputDir.getAbsolutePath();
+        for (File f : getOutputFiles(pc.getStringArray(key + ".outputs"), workflow)) {
+            if (f.isFile() && f.getAbsolutePath().startsWith(outputDirPath)) {
+                log.debug("Deleting invalid result {}", f);
+                f.delete();
+            }
+        }
+        pc.clearProperty(key + ".input");
+        pc.clearProperty(key + ".inputHash");
+        pc.clearProperty(key + ".outputHash");
+        pc.clearProperty(key + ".outputs");
+    }
+
+    /**
+     * Check all per fragment records of the previous invocation and delete
+     * the outputs of those, whose input or outputs have changed since. Since
+     * the outputs of one command are the inputs of the next one, records are
+     * checked until no more records are invalidated.
+     *
+     * @param workflow the workflow
+     * @return the output files of all records that are still valid
+     */
+    protected Set<File> invalidateFragmentOutputs(IWorkflow workflow) {
+        PropertiesConfiguration pc = getHashes(workflow);
+        URI base = workflow.getOutputDirectory().getAbsoluteFile().toURI();
+        Set<File> valid = new HashSet<>();
+        boolean invalidated = true;
+        while (invalidated) {
+            invalidated = false;
+            valid.clear();
+            List<String> keys = new ArrayList<>();
+            Iterator<String> iter = pc.getKeys();
+            while (iter.hasNext()) {
+                String key = iter.next();
+                if (key.endsWith(".outputs")) {
+                    keys.add(key.substring(0, key.length() - ".outputs".length()));
+                }
+            }
+            for (String key : keys) {
+                List<File> outputs = getOutputFiles(pc.getStringArray(key + ".outputs"), workflow);
+                String input = pc.getString(key + ".input", "");
+                boolean upToDate = !input.isEmpty();
+                if (upToDate) {
+                    File inputFile = new File(FileTools.resolveRelativeUri(base, URI.create(input)));
+                    upToDate = inputFile.isFile() && pc.getString(key + ".inputHash", "").equals(digest(Collections.singletonList(inputFile)));
+                }
+                for (File f : outputs) {
+                    upToDate &= f.isFile();
+                }
+                if (upToDate && pc.getString(key + ".outputHash", "").equals(digest(outputs))) {
+                    for (File f : outputs) {
+                        valid.add(f.getAbsoluteFile());
+                    }
+                } else {
+                    log.info("Deleting outdated results {}", outputs);
+                    clearFragmentOutputs(key, workflow.getOutputDirectory(), workflow);
+                    invalidated = true;
+                }
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Returns true, if the given result is a file result whose file is
+     * contained in the given set of valid files.
+     *
+     * @param result     the workflow result
+     * @param validFiles the valid files
+     * @return true if the result should be restored
+     */
+    protected boolean isValidResult(IWorkflowResult result, Set<File> validFiles) {
+        if (result instanceof IWorkflowFileResult) {
+            try {
+                return validFiles.contains(((IWorkflowFileResult) result).getFile().getAbsoluteFile());
+            } catch (ResourceNotAvailableException ex) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private List<File> getOutputFiles(String[] relativeOutputs, IWorkflow workflow) {
+        URI base = workflow.getOutputDirectory().getAbsoluteFile().toURI();
+        List<File> files = new ArrayList<>(relativeOutputs.length);
+        for (String output : relativeOutputs) {
+            files.add(new File(FileTools.resolveRelativeUri(base, URI.create(output))));
+        }
+        return files;
+    }
+
+    /**
+     * Run the given streamable command only on those input fragments, whose
+     * input, outputs or parameters have changed, and reuse the previous
+     * outputs for all other fragments.
+     *
+     * @param cmd the command
+     * @return the outputs for all input fragments, in input order
+     */
+    protected TupleND<IFileFragment> runIncremental(IFragmentCommand cmd) {
+        PropertiesConfiguration pc = getHashes(cmd.getWorkflow());
+        String parameterHash = getParameterHash(cmd);
+        boolean parametersUpToDate = pc.getString(getParametersHashKey(cmd), "").equals(parameterHash);
+        TupleND<IFileFragment> input = getTmp();
+        List<IFileFragment> stale = new ArrayList<>();
+        List<List<IFileFragment>> outputs = new ArrayList<>(input.size());
+        for (IFileFragment f : input) {
+            List<File> previous = parametersUpToDate ? getUpToDateOutputs(f, cmd) : null;
+            if (previous == null) {
+                clearFragmentOutputs(f, cmd);
+                stale.add(f);
+                outputs.add(null);
+            } else {
+                List<IFileFragment> l = new ArrayList<>(previous.size());
+                for (File file : previous) {
+                    l.add(getWorkflow().getFactory().getFileFragmentFactory().create(file));
+                }
+                outputs.add(l);
+            }
+        }
+        log.info("Recomputing {} of {} fragments, reusing results for the remaining ones.", stale.size(), input.size());
+        if (!stale.isEmpty()) {
+            CommandProfiler profiler = CommandProfiler.start(cmd, getWorkflow(), stale.size());
+            //apply the command once to all stale fragments, so that it can
+            //process them in parallel, and map the outputs back to their input
+            TupleND<IFileFragment> staleInput = new TupleND<>(stale);
+            List<List<IFileFragment>> staleOutputs = mapToStaleInput(cmd, staleInput, cmd.apply(staleInput));
+            storeCommandProfile(profiler.stop(), cmd, getWorkflow());
+            int next = 0;
+            for (int i = 0; i < input.size(); i++) {
+                if (outputs.get(i) == null) {
+                    List<IFileFragment> l = staleOutputs.get(next++);
+                    updateFragmentHashes(input.get(i), l, cmd);
+                    outputs.set(i, l);
+                }
+            }
+        }
+        pc.setProperty(getParametersHashKey(cmd), parameterHash);
+        TupleND<IFileFragment> results = new TupleND<>();
+        for (List<IFileFragment> l : outputs) {
+            results.addAll(l);
+        }
+        return results;
+    }
+
+    /**
+     * Map the outputs of a streamable command to the stale input fragments
+     * they were derived from. Outputs are mapped by name, using
+     * {@link AFragmentCommand#indexOfInput(java.net.URI, cross.datastructures.tuple.TupleND)}.
+     * Outputs that can not be mapped by name are mapped by position, if the
+     * command returned exactly one output per input fragment.
+     *
+     * @param cmd        the command
+     * @param staleInput the stale input fragments
+     * @param output     the outputs of the command
+     * @return the outputs for each stale input fragment, in input order
+     */
+    protected List<List<IFileFragment>> mapToStaleInput(IFragmentCommand cmd, TupleND<IFileFragment> staleInput, TupleND<IFileFragment> output) {
+        List<List<IFileFragment>> mapped = new ArrayList<>(staleInput.size());
+        for (int i = 0; i < staleInput.size(); i++) {
+            mapped.add(new ArrayList<>());
+        }
+        int position = 0;
+        for (IFileFragment f : output) {
+            int index = indexOfInput(cmd, f.getUri(), staleInput);
+            if (index < 0) {
+                if (output.size() != staleInput.size()) {
+                    throw new ConstraintViolationException("Could not map output " + f.getUri() + " of " + cmd.getClass().getName() + " to any input fragment!");
+                }
+                index = position;
+            }
+            mapped.get(index).add(f);
+            position++;
+        }
+        return mapped;
+    }
+
+    private int indexOfInput(IFragmentCommand cmd, URI result, TupleND<IFileFragment> staleInput) {
+        if (cmd instanceof AFragmentCommand) {
+            return ((AFragmentCommand) cmd).indexOfInput(result, staleInput);
+        }
+        String basename = StringTools.removeFileExt(FileTools.getFilename(result));
+        for (int i = 0; i < staleInput.size(); i++) {
+            if (basename.equals(StringTools.removeFileExt(FileTools.getFilename(staleInput.get(i).getUri())))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     /**
      *
      * @param workflow
@@ -310,7 +606,9 @@ public class ResultAwareCommandPipeline extends CommandPipeline {
         try {
             beforeCommand(cmd);
             TupleND<IFileFragment> results;
-            if (!isUpToDate(getTmp(), cmd)) {
+            if (incremental && cmd instanceof IStreamableFragmentCommand) {
+                results = runIncremental(cmd);
+            } else if (!isUpToDate(getTmp(), cmd)) {
                 if (getWorkflow().getOutputDirectory(cmd).exists() && getWorkflow().getOutputDirectory(cmd).listFiles().length > 0) {
                     log.info("Deleting invalid results for {} below {}", cmd, getWorkflow().getOutputDirectory(cmd));
                     try {
@@ -320,9 +618,9 @@ public class ResultAwareCommandPipeline extends CommandPipeline {
                         throw new RuntimeException(ex);
                     }
                 }
-                long start = System.nanoTime();
+                CommandProfiler profiler = CommandProfiler.start(cmd, getWorkflow(), getTmp().size());
                 results = cmd.apply(getTmp());
-                storeCommandRuntime(start, System.nanoTime(), cmd, getWorkflow());
+                storeCommandProfile(profiler.stop(), cmd, getWorkflow());
             } else {
                 log.info("Skipping, everything up to date!");
                 File outputDir = getWorkflow().getOutputDirectory(cmd);
@@ -334,7 +632,9 @@ public class ResultAwareCommandPipeline extends CommandPipeline {
                 log.debug("Setting file fragments {} as next input!", inputFragments);
                 results = inputFragments;
             }
-            updateHashes(getTmp(), cmd);
+            if (!(incremental && cmd instanceof IStreamableFragmentCommand)) {
+                updateHashes(getTmp(), cmd);
+            }
             setTmp(results);
             log.debug("Hashes: {}", ConfigurationUtils.toString(getHashes()));
         } finally {
@@ -345,11 +645,28 @@ public class ResultAwareCommandPipeline extends CommandPipeline {
     @Override
     public void before() {
         log.info("Looking for results from previous workflow invocation...");
-        if (getWorkflow().getWorkflowXmlFile().isFile()) {
-            log.info("Found previous workflow.xml file!");
+        if (getWorkflow().getWorkflowXmlFile().isFile() || WorkflowJournal.getJournalFile(getWorkflow()).isFile()) {
+            log.info("Found previous workflow.xml or journal file!");
             if (isInputUpToDate(getInput(), getWorkflow())) {
                 log.info("Input data has not changed, restoring workflow!");
                 getWorkflow().load(getWorkflow().getWorkflowXmlFile());
+            } else if (incremental) {
+                log.info("Input data has changed, restoring valid results for incremental recomputation!");
+                final Set<File> validFiles = invalidateFragmentOutputs(getWorkflow());
+                //commands without per fragment records need to be recomputed
+                PropertiesConfiguration pc = getHashes(getWorkflow());
+                List<String> fileHashKeys = new ArrayList<>();
+                Iterator<String> iter = pc.getKeys();
+                while (iter.hasNext()) {
+                    String key = iter.next();
+                    if (key.endsWith(".fileHash")) {
+                        fileHashKeys.add(key);
+                    }
+                }
+                for (String key : fileHashKeys) {
+                    pc.clearProperty(key);
+                }
+                getWorkflow().load(getWorkflow().getWorkflowXmlFile(), (result) -> isValidResult(result, validFiles));
             } else {
                 try {
                     log.info("Input data has changed, deleting previous workflow output!");
@@ -389,4 +706,13 @@ public class ResultAwareCommandPipeline extends CommandPipeline {
         }
     }
 
+    @Override
+    public void after() {
+        if (fingerprintService != null) {
+            fingerprintService.close();
+            fingerprintService = null;
+        }
+        super.after();
+    }
+
 }
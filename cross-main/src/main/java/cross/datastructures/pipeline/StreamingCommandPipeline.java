@@ -0,0 +1,410 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.datastructures.pipeline;
+
+import cross.cache.CachePartition;
+import cross.commands.fragments.IFragmentCommand;
+import cross.commands.fragments.IStreamableFragmentCommand;
+import cross.datastructures.fragments.IFileFragment;
+import cross.datastructures.tuple.TupleND;
+import cross.datastructures.workflow.IWorkflow;
+import cross.datastructures.workflow.IWorkflowResult;
+import cross.event.IEvent;
+import cross.event.IListener;
+import cross.exception.ConstraintViolationException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.openide.util.lookup.ServiceProvider;
+
+/**
+ * Extension of CommandPipeline that streams fragments through consecutive
+ * {@link IStreamableFragmentCommand}s.
+ *
+ * A run of at least two consecutive streamable commands is executed as a
+ * chain of stages, one per command, connected by bounded queues of
+ * <code>queueCapacity</code> fragments. Each fragment is passed on to the
+ * next command as soon as the previous command has emitted it, so a file
+ * does not have to wait for the slowest file at each stage. Each stage
+ * processes up to <code>maxFragmentsPerStage</code> fragments concurrently,
+ * which defaults to <code>cross.Factory.maxthreads</code>, and emits them in
+ * input order. Results fired as events by each command and results appended
+ * to the workflow by it are buffered and appended to the workflow in
+ * declaration order, when the command is retrieved via {@link #next()}.
+ * Appended results of a command are kept in input order. All commands of a
+ * segment are prepared by {@link #beforeCommand(cross.commands.fragments.IFragmentCommand)}
+ * before the segment starts and cleaned up by
+ * {@link #afterCommand(cross.commands.fragments.IFragmentCommand)} when they
+ * are retrieved, or when the segment fails. All other commands are executed
+ * as by {@link CommandPipeline}.
+ *
+ * @author Nils Hoffmann
+ * @see IStreamableFragmentCommand
+ * @since 1.3.2
+ */
+@Slf4j
+@Data
+@EqualsAndHashCode(callSuper = true)
+@ServiceProvider(service = ICommandSequence.class, position = Integer.MIN_VALUE + 3)
+public class StreamingCommandPipeline extends CommandPipeline {
+
+    private static final Item END = new Item(null);
+    private int queueCapacity = 2;
+    private int maxFragmentsPerStage = 0;
+    //index of the first and last command of the current streaming segment
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient int segmentStart = -1;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient int segmentEnd = -1;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient List<List<IFileFragment>> outputs;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient List<List<IWorkflowResult>> results;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient CommandProfile[] profiles;
+
+    /**
+     * Create a new streaming command pipeline instance.
+     */
+    public StreamingCommandPipeline() {
+    }
+
+    @Override
+    public void setCommands(List<IFragmentCommand> c) {
+        super.setCommands(c);
+        this.segmentStart = -1;
+        this.segmentEnd = -1;
+    }
+
+    @Override
+    public TupleND<IFileFragment> next() {
+        final int index = getCnt();
+        if (index > segmentEnd || index < segmentStart) {
+            int end = index;
+            while (end + 1 < getCommands().size() && isStreamable(index) && isStreamable(end + 1)) {
+                end++;
+            }
+            if (end == index) {
+                return super.next();
+            }
+            try {
+                runSegment(index, end);
+            } catch (ConstraintViolationException | IllegalStateException e) {
+                log.error("Caught exception while executing pipeline: ", e);
+                shutdownMasterServer();
+                throw new RuntimeException(e);
+            }
+        }
+        final IFragmentCommand cmd = getIter().next();
+        try {
+            setTmp(new TupleND<>(outputs.get(index - segmentStart)));
+            for (IWorkflowResult result : results.get(index - segmentStart)) {
+                getWorkflow().append(result);
+            }
+            if (profiles[index - segmentStart] != null) {
+                recordCommandProfile(profiles[index - segmentStart], getWorkflow());
+            }
+            getWorkflow().save();
+        } finally {
+            afterCommand(cmd);
+        }
+        return getTmp();
+    }
+
+    private boolean isStreamable(int index) {
+        return getCommands().get(index) instanceof IStreamableFragmentCommand;
+    }
+
+    /**
+     * Run the commands from <code>start</code> to <code>end</code>
+     * (inclusive) as a chain of streaming stages on the current input.
+     *
+     * @param start the index of the first command
+     * @param end   the index of the last command
+     */
+    protected void runSegment(final int start, final int end) {
+        final int stages = end - start + 1;
+        log.info("Streaming fragments through commands {} to {}", start + 1, end + 1);
+        final List<BlockingQueue<Item>> queues = new ArrayList<>(stages);
+        for (int i = 0; i < stages; i++) {
+            queues.add(new ArrayBlockingQueue<Item>(Math.max(1, queueCapacity)));
+        }
+        final List<List<IFileFragment>> stageOutputs = new ArrayList<>(stages);
+        final List<List<IWorkflowResult>> stageResults = new ArrayList<>(stages);
+        final CommandProfile[] stageProfiles = new CommandProfile[stages];
+        for (int i = 0; i < stages; i++) {
+            stageOutputs.add(new ArrayList<IFileFragment>());
+            stageResults.add(Collections.synchronizedList(new ArrayList<IWorkflowResult>()));
+        }
+        int prepared = 0;
+        try {
+            //prepare all commands of the segment before any of them runs
+            for (int i = 0; i < stages; i++) {
+                IFragmentCommand cmd = getCommands().get(start + i);
+                setCnt(start + i);
+                beforeCommand(cmd);
+                prepared++;
+                //results of streamed commands are buffered by their stage
+                cmd.removeListener(this);
+            }
+            setCnt(start);
+            final ExecutorService executor = Executors.newFixedThreadPool(stages + 1, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "StreamingCommandPipeline-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+            final TupleND<IFileFragment> input = getTmp();
+            List<Future<?>> futures = new ArrayList<>(stages + 1);
+            //pooled threads do not inherit the cache partition of the workflow
+            futures.add(executor.submit(CachePartition.inherit(new Callable<Void>() {
+                @Override
+                public Void call() throws InterruptedException {
+                    for (IFileFragment f : input) {
+                        queues.get(0).put(new Item(f));
+                    }
+                    queues.get(0).put(END);
+                    return null;
+                }
+            })));
+            for (int i = 0; i < stages; i++) {
+                final int stage = i;
+                futures.add(executor.submit(CachePartition.inherit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        try {
+                            stageProfiles[stage] = runStage(getCommands().get(start + stage), queues.get(stage),
+                                stage + 1 < stages ? queues.get(stage + 1) : null,
+                                stageOutputs.get(stage), stageResults.get(stage));
+                            return null;
+                        } catch (Exception | Error e) {
+                            //unblock all other stages
+                            failure.compareAndSet(null, e);
+                            executor.shutdownNow();
+                            throw e;
+                        }
+                    }
+                })));
+            }
+            try {
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException | CancellationException e) {
+                        failure.compareAndSet(null, e instanceof ExecutionException ? e.getCause() : e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure.compareAndSet(null, e);
+            } finally {
+                executor.shutdownNow();
+            }
+            if (failure.get() != null) {
+                throw new ConstraintViolationException("Streaming execution of commands " + (start + 1) + " to " + (end + 1) + " failed!", failure.get());
+            }
+            this.outputs = stageOutputs;
+            this.results = stageResults;
+            this.profiles = stageProfiles;
+            this.segmentStart = start;
+            this.segmentEnd = end;
+        } catch (RuntimeException | Error e) {
+            //commands are not retrieved via next(), so clean up here
+            setCnt(start);
+            for (int i = 0; i < prepared; i++) {
+                try {
+                    afterCommand(getCommands().get(start + i));
+                } catch (RuntimeException re) {
+                    log.warn("Cleanup after command {} failed: {}", start + i + 1, re.getLocalizedMessage());
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of fragments processed concurrently by each stage.
+     *
+     * @return <code>maxFragmentsPerStage</code>, if positive, otherwise
+     *         <code>cross.Factory.maxthreads</code> of the workflow
+     *         configuration
+     */
+    protected int getStageParallelism() {
+        if (maxFragmentsPerStage > 0) {
+            return maxFragmentsPerStage;
+        }
+        return Math.max(1, getWorkflow().getConfiguration().getInt("cross.Factory.maxthreads", 1));
+    }
+
+    private CommandProfile runStage(final IFragmentCommand cmd, final BlockingQueue<Item> in, final BlockingQueue<Item> out, final List<IFileFragment> output, final List<IWorkflowResult> buffer) throws Exception {
+        IListener<IEvent<IWorkflowResult>> listener = new IListener<IEvent<IWorkflowResult>>() {
+            @Override
+            public void listen(IEvent<IWorkflowResult> v) {
+                buffer.add(v.get());
+            }
+        };
+        final IWorkflow workflow = getWorkflow();
+        final int parallelism = getStageParallelism();
+        final String name = cmd.getClass().getSimpleName();
+        final ExecutorService workers = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "StreamingCommandPipeline-" + name + "-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        //fragments in flight or waiting to be emitted in order
+        final Semaphore permits = new Semaphore(parallelism);
+        final Map<Integer, Completed> completed = new HashMap<>();
+        final AtomicInteger nextToEmit = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        cmd.addListener(listener);
+        try {
+            //makes cmd the active command of this thread
+            workflow.getOutputDirectory(cmd);
+            final CommandProfiler profiler = CommandProfiler.startConcurrent(cmd, null, 0);
+            int files = 0;
+            Item item;
+            while ((item = in.take()) != END) {
+                permits.acquire();
+                if (failure.get() != null) {
+                    break;
+                }
+                final int sequence = files++;
+                final IFileFragment fragment = item.fragment;
+                workers.submit(CachePartition.inherit(workflow.inherit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        try {
+                            final List<IWorkflowResult> appended = new ArrayList<>();
+                            long start = System.nanoTime();
+                            TupleND<IFileFragment> res = workflow.redirectAppends(appended::add, () -> cmd.apply(new TupleND<>(Collections.singletonList(fragment))));
+                            profiler.recordFileLatency(System.nanoTime() - start);
+                            synchronized (completed) {
+                                completed.put(sequence, new Completed(res, appended));
+                                //emit all fragments, whose predecessors have been emitted
+                                Completed next;
+                                while ((next = completed.remove(nextToEmit.get())) != null) {
+                                    nextToEmit.incrementAndGet();
+                                    buffer.addAll(next.appended);
+                                    for (IFileFragment f : next.output) {
+                                        output.add(f);
+                                        if (out != null) {
+                                            out.put(new Item(f));
+                                        }
+                                    }
+                                    permits.release();
+                                }
+                            }
+                            return null;
+                        } catch (Exception | Error e) {
+                            failure.compareAndSet(null, e);
+                            //unblock the stage thread
+                            permits.release(parallelism);
+                            throw e;
+                        }
+                    }
+                })));
+            }
+            if (failure.get() == null) {
+                //wait until all fragments have been emitted
+                permits.acquire(parallelism);
+            }
+            if (failure.get() != null) {
+                Throwable t = failure.get();
+                if (t instanceof Exception) {
+                    throw (Exception) t;
+                }
+                throw (Error) t;
+            }
+            if (out != null) {
+                out.put(END);
+            }
+            CommandProfile profile = profiler.stop();
+            profile.setFiles(files);
+            buffer.add(createCommandProfileResult(profile, cmd));
+            return profile;
+        } finally {
+            workers.shutdownNow();
+            cmd.removeListener(listener);
+        }
+    }
+
+    private static final class Completed {
+
+        private final TupleND<IFileFragment> output;
+        private final List<IWorkflowResult> appended;
+
+        Completed(TupleND<IFileFragment> output, List<IWorkflowResult> appended) {
+            this.output = output;
+            this.appended = appended;
+        }
+    }
+
+    private static final class Item {
+
+        private final IFileFragment fragment;
+
+        Item(IFileFragment fragment) {
+            this.fragment = fragment;
+        }
+    }
+}
@@ -29,9 +29,11 @@ package cross.datastructures.workflow;
 
 import cross.IFactory;
 import cross.annotations.Configurable;
+import cross.cache.CachePartition;
 import cross.commands.fragments.AFragmentCommand;
 import cross.commands.fragments.IFragmentCommand;
 import cross.datastructures.fragments.FileFragment;
+import cross.datastructures.fragments.Fragments;
 import cross.datastructures.fragments.IFileFragment;
 import cross.datastructures.pipeline.ICommandSequence;
 import cross.datastructures.tuple.TupleND;
@@ -51,6 +53,7 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -58,6 +61,10 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.xml.transform.Transformer;
@@ -98,7 +105,9 @@ public class DefaultWorkflow implements IWorkflow, IXMLSerializable {
     private transient IEventSource<IWorkflowResult> iwres = new EventSource<>();
     private ICommandSequence commandSequence = null;
     private String name = "workflow";
-    private IFragmentCommand activeCommand = null;
+    private transient ThreadLocal<IFragmentCommand> activeCommand;
+    private transient volatile IFragmentCommand lastActiveCommand;
+    private transient ThreadLocal<Consumer<IWorkflowResult>> appendSink;
     @Configurable
     private String xslPathPrefix;
     @Configurable(name = "resultFileFilter")
@@ -113,6 +122,14 @@ public class DefaultWorkflow implements IWorkflow, IXMLSerializable {
     private File outputDirectory = new File(System.getProperty("user.dir"));
     private List<IWorkflowPostProcessor> workflowPostProcessors = new ArrayList<>();
     private transient IFactory factory;
+    @Configurable
+    private boolean useCachePartition = true;
+    private transient CachePartition cachePartition;
+    @Configurable
+    private boolean useJournal = true;
+    private transient WorkflowJournal journal;
+    private transient boolean restoring = false;
+    private transient Predicate<IWorkflowResult> restoreFilter;
 
     /**
      *
@@ -123,8 +140,26 @@ public class DefaultWorkflow implements IWorkflow, IXMLSerializable {
         this.iwres.addListener(l);
     }
 
+    /**
+     * Appends the result to this workflow, or passes it to the sink of the
+     * calling thread, see
+     * {@link #redirectAppends(java.util.function.Consumer, java.util.function.Supplier)}.
+     * Commands running concurrently may append results at the same time, so
+     * appending is synchronized.
+     *
+     * @param iwr the workflow result
+     */
     @Override
     public void append(final IWorkflowResult iwr) {
+        Consumer<IWorkflowResult> sink = appendSink().get();
+        if (sink != null) {
+            sink.accept(iwr);
+            return;
+        }
+        appendResult(iwr);
+    }
+
+    private synchronized void appendResult(final IWorkflowResult iwr) {
         if (this.al == null) {
             this.al = new LinkedHashSet<>();
         }
@@ -135,6 +170,7 @@ public class DefaultWorkflow implements IWorkflow, IXMLSerializable {
                 iwpr.getOverallProgress()});
         } else {
             this.al.add(iwr);
+            journal(iwr);
         }
         fireEvent(new AEvent<>(iwr, DefaultWorkflow.this.iwres));
     }
@@ -166,6 +202,10 @@ public class DefaultWorkflow implements IWorkflow, IXMLSerializable {
         this.fileFilter = cfg.getString(this.getClass().getName()
             + ".resultFileFilter", DefaultConfigurableFileFilter.class.
             getName());
+        this.useCachePartition = cfg.getBoolean(this.getClass().getName()
+            + ".useCachePartition", true);
+        this.useJournal = cfg.getBoolean(this.getClass().getName()
+            + ".useJournal", true);
     }
 
     /**
@@ -265,7 +305,14 @@ public class DefaultWorkflow implements IWorkflow, IXMLSerializable {
             String uri = workflowOutput.getAttributeValue("uri");
         }
 
-        Element workflowCommands = e.getChild("workflowCommands");
+        checkCommands(e.getChild("workflowCommands"));
+        final List<?> l = e.getChildren("workflowElementResult");
+        for (final Object obj : l) {
+            readResult((Element) obj);
+        }
+    }
+
+    private void checkCommands(Element workflowCommands) {
         List<?> commandChildren = workflowCommands.getChildren("workflowCommand");
         if (commandChildren.size() != getCommandSequence().getCommands().size()) {
             throw new ConstraintViolationException("Number of workflow commands between stored and active workflow differ! Not loading old workflow!");
@@ -279,49 +326,166 @@ public class DefaultWorkflow implements IWorkflow, IXMLSerializable {
             }
             i++;
         }
+    }
 
-        final List<?> l = e.getChildren("workflowElementResult");
-        for (final Object obj : l) {
-            final Element elem = (Element) obj;
-            final String cls = elem.getAttributeValue("class");
-            final String slot = elem.getAttributeValue("slot");
-            final String generator = elem.getAttributeValue("generator");
-            IWorkflowResult iwr = null;
-            String file = "";
-            try {
+    private void readResult(final Element elem) {
+        final String cls = elem.getAttributeValue("class");
+        final String slot = elem.getAttributeValue("slot");
+        final String generator = elem.getAttributeValue("generator");
+        IWorkflowResult iwr = null;
+        String file = "";
+        try {
 
-                iwr = getFactory().getObjectFactory().instantiate(cls,
-                    IWorkflowResult.class);
-                final IWorkflowElement iwe = getFactory().getObjectFactory().
-                    instantiate(generator,
-                        IWorkflowElement.class);
-                iwr.setWorkflowElement(iwe);
-                iwr.setWorkflowSlot(WorkflowSlot.valueOf(slot));
-                if (iwr instanceof IWorkflowFileResult) {
-                    file = elem.getAttributeValue("file");
-                    IWorkflowFileResult fileResult = (IWorkflowFileResult) iwr;
-                    fileResult.setFile(new File(file));
-                    Element resources = e.getChild("resources");
-                    if (resources != null) {
-                        List<IFileFragment> fragments = new ArrayList<>();
-                        for (Object o : resources.getChildren("resource")) {
-                            Element resource = (Element) o;
-                            URI uri = URI.create(resource.getAttributeValue("resource"));
-                            fragments.add(new FileFragment(uri));
-                        }
-                        fileResult.setResources(fragments.toArray(new IFileFragment[fragments.size()]));
+            iwr = getFactory().getObjectFactory().instantiate(cls,
+                IWorkflowResult.class);
+            final IWorkflowElement iwe = getFactory().getObjectFactory().
+                instantiate(generator,
+                    IWorkflowElement.class);
+            iwr.setWorkflowElement(iwe);
+            iwr.setWorkflowSlot(WorkflowSlot.valueOf(slot));
+            if (iwr instanceof IWorkflowFileResult) {
+                file = elem.getAttributeValue("file");
+                IWorkflowFileResult fileResult = (IWorkflowFileResult) iwr;
+                fileResult.setFile(new File(file));
+                Element resources = elem.getChild("resources");
+                if (resources != null) {
+                    List<IFileFragment> fragments = new ArrayList<>();
+                    for (Object o : resources.getChildren("resource")) {
+                        Element resource = (Element) o;
+                        URI uri = URI.create(resource.getAttributeValue("uri"));
+                        fragments.add(new FileFragment(uri));
                     }
-                } else {
-                    log.warn("Unsupported workflow result type! Can not convert!");
+                    fileResult.setResources(fragments.toArray(new IFileFragment[fragments.size()]));
                 }
-                append(iwr);
-            } catch (ConstraintViolationException rnae) {
-                if (iwr != null) {
-                    log.warn("Could not load result! Not found at location: " + file);
-                } else {
-                    log.warn("Could not load workflow result!");
+            } else {
+                log.warn("Unsupported workflow result type! Can not convert!");
+            }
+            if (this.restoreFilter != null && !this.restoreFilter.test(iwr)) {
+                log.debug("Skipping restore of result {}", file);
+                return;
+            }
+            append(iwr);
+        } catch (ConstraintViolationException rnae) {
+            if (iwr != null) {
+                log.warn("Could not load result! Not found at location: " + file);
+            } else {
+                log.warn("Could not load workflow result!");
+            }
+        }
+    }
+
+    /**
+     * Returns the journal of this workflow, creating a new, empty journal if
+     * necessary.
+     *
+     * @return the journal
+     * @throws IOException if the journal can not be created
+     */
+    protected synchronized WorkflowJournal getJournal() throws IOException {
+        if (this.journal == null) {
+            this.journal = WorkflowJournal.create(WorkflowJournal.getJournalFile(this));
+            this.journal.append(WorkflowJournal.HEADER, toXmlString(createCommandsElement()));
+        }
+        return this.journal;
+    }
+
+    private Element createCommandsElement() {
+        final Element cmds = new Element("workflowCommands");
+        if (getCommandSequence() != null) {
+            for (final IFragmentCommand wr : getCommandSequence().getCommands()) {
+                final Element iwr = new Element("workflowCommand");
+                iwr.setAttribute("class", wr.getClass().getCanonicalName());
+                cmds.addContent(iwr);
+            }
+        }
+        return cmds;
+    }
+
+    private static String toXmlString(Element e) {
+        return new XMLOutputter(Format.getCompactFormat()).outputString(e);
+    }
+
+    private static Element fromXmlString(String s) throws JDOMException, IOException {
+        return new SAXBuilder().build(new StringReader(s)).detachRootElement();
+    }
+
+    private void journal(final IWorkflowResult iwr) {
+        if (!this.useJournal || this.restoring) {
+            return;
+        }
+        final Element results = new Element("workflowResults");
+        iwr.appendXML(results);
+        try {
+            for (Element child : results.getChildren()) {
+                getJournal().append(WorkflowJournal.RESULT, toXmlString(child));
+            }
+        } catch (IOException ex) {
+            log.error("Could not append result to workflow journal!", ex);
+        }
+    }
+
+    /**
+     * Compact the journal, so that it contains only the header and the
+     * current results of this workflow.
+     */
+    protected synchronized void compactJournal() {
+        try {
+            List<WorkflowJournal.Record> records = new ArrayList<>();
+            records.add(new WorkflowJournal.Record(WorkflowJournal.HEADER, toXmlString(createCommandsElement())));
+            final Element results = new Element("workflowResults");
+            for (IWorkflowResult iwr : this.al) {
+                iwr.appendXML(results);
+            }
+            for (Element child : results.getChildren()) {
+                records.add(new WorkflowJournal.Record(WorkflowJournal.RESULT, toXmlString(child)));
+            }
+            closeJournal();
+            this.journal = WorkflowJournal.rewrite(WorkflowJournal.getJournalFile(this), records);
+        } catch (IOException ex) {
+            log.error("Could not compact workflow journal!", ex);
+        }
+    }
+
+    private synchronized void closeJournal() {
+        if (this.journal != null) {
+            try {
+                this.journal.close();
+            } catch (IOException ex) {
+                log.warn("Could not close workflow journal!", ex);
+            }
+            this.journal = null;
+        }
+    }
+
+    /**
+     * Restore the results of this workflow from the given journal.
+     *
+     * @param f the journal file
+     * @throws IOException if the journal can not be read
+     */
+    protected void loadJournal(File f) throws IOException {
+        log.info("Reading workflow state from journal {}.", f);
+        try {
+            this.restoring = true;
+            for (WorkflowJournal.Record r : WorkflowJournal.read(f)) {
+                switch (r.getType()) {
+                    case WorkflowJournal.HEADER:
+                        checkCommands(fromXmlString(r.getText()));
+                        break;
+                    case WorkflowJournal.RESULT:
+                        readResult(fromXmlString(r.getText()));
+                        break;
+                    case WorkflowJournal.COMMAND:
+                        log.debug("Journal checkpoint: {}", r.getText());
+                        break;
+                    default:
+                        log.warn("Skipping unknown journal record type {}", r.getType());
                 }
             }
+        } catch (JDOMException ex) {
+            throw new IOException(ex);
+        } finally {
+            this.restoring = false;
         }
     }
 
@@ -334,28 +498,96 @@ public class DefaultWorkflow implements IWorkflow, IXMLSerializable {
         this.iwres.removeListener(l);
     }
 
+    /**
+     * Load the state of this workflow. If journaling is enabled and the
+     * journal is at least as recent as the given xml file, the state is
+     * restored from the journal instead.
+     *
+     * @param f the workflow xml file
+     */
     @Override
     public void load(File f) {
+        File journalFile = WorkflowJournal.getJournalFile(this);
+        if (this.useJournal && journalFile.isFile() && (!f.isFile() || journalFile.lastModified() >= f.lastModified())) {
+            try {
+                loadJournal(journalFile);
+                compactJournal();
+                return;
+            } catch (IOException | ConstraintViolationException ex) {
+                log.warn("Could not restore workflow from journal " + journalFile + "!", ex);
+                clearResults();
+            }
+        }
         if (f.exists()) {
             try {
                 SAXBuilder saxBuilder = new SAXBuilder();
                 Document dom = saxBuilder.build(f);
                 try {
                     log.info("Reading workflow state from {}.", f);
+                    //the journal is rewritten once all results are read
+                    this.restoring = true;
                     readXML(dom.getRootElement());
                 } catch (ClassNotFoundException ex) {
                     Logger.getLogger(DefaultWorkflow.class.getName()).log(Level.SEVERE, null, ex);
+                } finally {
+                    this.restoring = false;
                 }
             } catch (JDOMException | IOException ex) {
                 Logger.getLogger(DefaultWorkflow.class.getName()).log(Level.SEVERE, null, ex);
             }
+            if (this.useJournal) {
+                compactJournal();
+            }
         } else {
             log.info("No workflow.xml from previous invocation found!");
         }
     }
 
+    /**
+     * Load the state of this workflow like {@link #load(java.io.File)}, but
+     * only restore results accepted by the given filter.
+     *
+     * @param f      the workflow xml file
+     * @param filter the filter for results to restore
+     */
+    @Override
+    public void load(File f, Predicate<IWorkflowResult> filter) {
+        this.restoreFilter = filter;
+        try {
+            load(f);
+        } finally {
+            this.restoreFilter = null;
+        }
+    }
+
+    /**
+     * Save the state of this workflow. If journaling is enabled, only a
+     * checkpoint for the active command is appended to the journal and the
+     * journal is forced to disk, the workflow xml file is written by
+     * {@link #saveXML()} when the workflow has finished. Otherwise, the xml
+     * file is written immediately.
+     */
     @Override
     public void save() {
+        if (this.useJournal) {
+            try {
+                WorkflowJournal j = getJournal();
+                IFragmentCommand active = getActiveCommand();
+                j.append(WorkflowJournal.COMMAND, active == null ? "" : active.getClass().getCanonicalName());
+                j.sync();
+                return;
+            } catch (IOException ex) {
+                log.warn("Could not write workflow journal, saving xml instead!", ex);
+            }
+        }
+        saveXML();
+    }
+
+    /**
+     * Write the complete state of this workflow to its xml file and apply
+     * the configured stylesheet transformations.
+     */
+    public void saveXML() {
         try {
             final String wflname = getName();
             log.info("Saving workflow {}", wflname);
@@ -516,11 +748,114 @@ public class DefaultWorkflow implements IWorkflow, IXMLSerializable {
         return root;
     }
 
-    /*
-     * (non-Javadoc)
+    /**
+     * Returns the commands that were last resolved by
+     * {@link #getOutputDirectory(java.lang.Object)} per thread, since commands
+     * may run concurrently.
      *
-     * @seecross.datastructures.workflow.IWorkflow#getOutputDirectory(java.lang.
-     * Object)
+     * @return the active command of each thread
+     */
+    private synchronized ThreadLocal<IFragmentCommand> activeCommand() {
+        if (this.activeCommand == null) {
+            this.activeCommand = new ThreadLocal<>();
+        }
+        return this.activeCommand;
+    }
+
+    /**
+     * Returns the sinks receiving appended results per thread.
+     *
+     * @return the sink of each thread
+     */
+    private synchronized ThreadLocal<Consumer<IWorkflowResult>> appendSink() {
+        if (this.appendSink == null) {
+            this.appendSink = new ThreadLocal<>();
+        }
+        return this.appendSink;
+    }
+
+    @Override
+    public <T> T redirectAppends(Consumer<IWorkflowResult> sink, Supplier<T> task) {
+        ThreadLocal<Consumer<IWorkflowResult>> local = appendSink();
+        Consumer<IWorkflowResult> previous = local.get();
+        local.set(sink);
+        try {
+            return task.get();
+        } finally {
+            restore(local, previous);
+        }
+    }
+
+    private static <V> void restore(ThreadLocal<V> local, V previous) {
+        if (previous == null) {
+            local.remove();
+        } else {
+            local.set(previous);
+        }
+    }
+
+    /**
+     * Returns the active command of the calling thread. Threads without an
+     * active command of their own, e.g. pooled threads running tasks of a
+     * command, fall back to the command that was activated last.
+     *
+     * @return the active command, or null
+     */
+    private IFragmentCommand getActiveCommand() {
+        IFragmentCommand active = activeCommand().get();
+        return active == null ? this.lastActiveCommand : active;
+    }
+
+    private void setActiveCommand(IFragmentCommand active) {
+        activeCommand().set(active);
+        this.lastActiveCommand = active;
+    }
+
+    /**
+     * Binds the given task to the active command and the sink of appended
+     * results of the calling thread.
+     *
+     * @param <T>  the result type
+     * @param task the task
+     * @return the bound task, or the task itself, if the calling thread has
+     *         neither an active command nor a sink
+     */
+    @Override
+    public <T> Callable<T> inherit(final Callable<T> task) {
+        final IFragmentCommand active = activeCommand().get();
+        final Consumer<IWorkflowResult> sink = appendSink().get();
+        if (active == null && sink == null) {
+            return task;
+        }
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                ThreadLocal<IFragmentCommand> localCommand = activeCommand();
+                ThreadLocal<Consumer<IWorkflowResult>> localSink = appendSink();
+                IFragmentCommand previousCommand = localCommand.get();
+                Consumer<IWorkflowResult> previousSink = localSink.get();
+                restore(localCommand, active);
+                restore(localSink, sink);
+                try {
+                    return task.call();
+                } finally {
+                    restore(localCommand, previousCommand);
+                    restore(localSink, previousSink);
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the output directory of the given object. Commands of the
+     * command sequence are resolved by their position within the sequence and
+     * become the active command of the calling thread. Other workflow
+     * elements are resolved to a sub directory of the active command of the
+     * calling thread, or of the command that was activated last, if the
+     * calling thread has no active command.
+     *
+     * @param iwe the object
+     * @return the output directory
      */
     @Override
     public File getOutputDirectory(Object iwe) {
@@ -534,12 +869,7 @@ public class DefaultWorkflow implements IWorkflow, IXMLSerializable {
                 // check for reference equality
                 if (iwa == afc) {
                     log.debug("Reference equality holds!");
-                    if (activeCommand == null) {
-                        activeCommand = iwa;
-                    }
-                    if (activeCommand != iwa) {
-                        activeCommand = iwa;
-                    }
+                    setActiveCommand(iwa);
                     File outputFile = new File(
                         outputDirectory, String.format(
                             "%0" + digits + "d", i)
@@ -550,8 +880,9 @@ public class DefaultWorkflow implements IWorkflow, IXMLSerializable {
                 }
                 i++;
             }
-            if (activeCommand != null) {
-                File dir = new File(getOutputDirectory(activeCommand), iwe.
+            IFragmentCommand active = getActiveCommand();
+            if (active != null) {
+                File dir = new File(getOutputDirectory(active), iwe.
                     getClass().getSimpleName());
                 if (!dir.exists()) {
                     dir.mkdirs();
@@ -560,8 +891,9 @@ public class DefaultWorkflow implements IWorkflow, IXMLSerializable {
                 return dir;
             }
         } else if (iwe instanceof IWorkflowElement) {
-            if (activeCommand != null) {
-                File dir = new File(getOutputDirectory(activeCommand), iwe.
+            IFragmentCommand active = getActiveCommand();
+            if (active != null) {
+                File dir = new File(getOutputDirectory(active), iwe.
                     getClass().getSimpleName());
                 if (!dir.exists()) {
                     dir.mkdirs();
@@ -750,23 +1082,62 @@ public class DefaultWorkflow implements IWorkflow, IXMLSerializable {
         if (commandSequence.isCheckCommandDependencies() && !commandSequence.validate()) {
             throw new ConstraintViolationException("Pipeline validation failed! Check output for details!");
         }
+        CachePartition partition = getCachePartition();
+        CachePartition.Scope scope = partition == null ? null : partition.enter();
         try {
-            commandSequence.before();
-            while (commandSequence.hasNext()) {
-                results = commandSequence.next();
+            try {
+                commandSequence.before();
+                while (commandSequence.hasNext()) {
+                    results = commandSequence.next();
+                }
+            } finally {
+                //ensure that any resources are cleaned up
+                commandSequence.after();
+                if (this.useJournal) {
+                    saveXML();
+                    closeJournal();
+                }
+                // Save configuration
+                getFactory().dumpConfig("runtime.properties", getStartupDate());
+            }
+            //only run workflow post processors if we have not experienced any exceptions
+            for (IWorkflowPostProcessor pp : workflowPostProcessors) {
+                log.info("Running workflowPostProcessor {}", pp.getClass().getName());
+                pp.process(this);
             }
+            return results;
         } finally {
-            //ensure that any resources are cleaned up
-            commandSequence.after();
-            // Save configuration
-            getFactory().dumpConfig("runtime.properties", getStartupDate());
+            if (scope != null) {
+                scope.close();
+            }
+            closeCachePartition();
+        }
+    }
+
+    /**
+     * Returns the cache partition of this workflow, creating it if necessary.
+     * Set <code>cross.datastructures.workflow.DefaultWorkflow.useCachePartition</code>
+     * to false to use the shared caches instead.
+     *
+     * @return the cache partition, or null if disabled
+     */
+    @Override
+    public synchronized CachePartition getCachePartition() {
+        if (!this.useCachePartition) {
+            return null;
+        }
+        if (this.cachePartition == null || this.cachePartition.isClosed()) {
+            this.cachePartition = Fragments.createCachePartition("workflow-" + getName() + "-"
+                + Integer.toHexString(System.identityHashCode(this)), getConfiguration());
         }
-        //only run workflow post processors if we have not experienced any exceptions
-        for (IWorkflowPostProcessor pp : workflowPostProcessors) {
-            log.info("Running workflowPostProcessor {}", pp.getClass().getName());
-            pp.process(this);
+        return this.cachePartition;
+    }
+
+    private synchronized void closeCachePartition() {
+        if (this.cachePartition != null) {
+            this.cachePartition.close();
+            this.cachePartition = null;
         }
-        return results;
     }
 
     @Override
@@ -806,5 +1177,7 @@ public class DefaultWorkflow implements IWorkflow, IXMLSerializable {
     @Override
     public void clearResults() {
         this.al.clear();
+        //the next journal access starts a new journal
+        closeJournal();
     }
 }
@@ -29,6 +29,7 @@ package cross.datastructures.workflow;
 
 import cross.IConfigurable;
 import cross.IFactory;
+import cross.cache.CachePartition;
 import cross.commands.fragments.AFragmentCommand;
 import cross.datastructures.fragments.IFileFragment;
 import cross.datastructures.pipeline.ICommandSequence;
@@ -37,10 +38,14 @@ import cross.event.IEventSource;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import org.apache.commons.configuration.Configuration;
 import org.jdom2.Element;
 
@@ -175,6 +180,32 @@ public interface IWorkflow extends IEventSource<IWorkflowResult>, IConfigurable,
      */
     public abstract void load(File f);
 
+    /**
+     * Load the previously saved xml information of this workflow, restoring
+     * only those results accepted by <code>filter</code>. The default
+     * implementation loads all results and removes the rejected ones
+     * afterwards.
+     *
+     * @param f      the workflow xml file.
+     * @param filter the filter for results to restore
+     * @since 1.3.2
+     */
+    public default void load(File f, Predicate<IWorkflowResult> filter) {
+        load(f);
+        List<IWorkflowResult> accepted = new ArrayList<>();
+        Iterator<IWorkflowResult> iter = getResults();
+        while (iter.hasNext()) {
+            IWorkflowResult result = iter.next();
+            if (filter.test(result)) {
+                accepted.add(result);
+            }
+        }
+        clearResults();
+        for (IWorkflowResult result : accepted) {
+            append(result);
+        }
+    }
+
     /**
      * Set ics to be the active ICommandSequence instance.
      *
@@ -285,6 +316,49 @@ public interface IWorkflow extends IEventSource<IWorkflowResult>, IConfigurable,
      */
     public abstract void setFactory(IFactory factory);
 
+    /**
+     * Returns the cache partition of this workflow. Fragment caches created
+     * while the workflow is running are placed into this partition, which is
+     * closed when the workflow has finished.
+     *
+     * @return the cache partition, or null if the workflow does not use a
+     *         cache partition
+     */
+    public default CachePartition getCachePartition() {
+        return null;
+    }
+
+    /**
+     * Binds the given task to the command, which is active on the calling
+     * thread, so that workflow elements used by the task are resolved by
+     * {@link #getOutputDirectory(java.lang.Object)} relative to that command
+     * on whatever thread the task is executed.
+     *
+     * @param <T>  the result type
+     * @param task the task
+     * @return the bound task, or the task itself
+     */
+    public default <T> Callable<T> inherit(Callable<T> task) {
+        return task;
+    }
+
+    /**
+     * Runs the given task, passing results it appends via
+     * {@link #append(cross.datastructures.workflow.IWorkflowResult)} to the
+     * given sink instead of this workflow. This includes results appended by
+     * tasks bound to the calling thread via
+     * {@link #inherit(java.util.concurrent.Callable)}. Allows commands running
+     * concurrently to have their results appended in a deterministic order.
+     *
+     * @param <T>  the result type
+     * @param sink the sink receiving appended results
+     * @param task the task
+     * @return the result of the task
+     */
+    public default <T> T redirectAppends(Consumer<IWorkflowResult> sink, Supplier<T> task) {
+        return task.get();
+    }
+
     /**
      * Clear all workflow related results.
      *
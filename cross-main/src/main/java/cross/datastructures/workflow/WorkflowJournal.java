@@ -0,0 +1,286 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.datastructures.workflow;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only binary journal of workflow results and command transitions.
+ *
+ * Each record consists of a type byte, the payload length, a CRC32 checksum
+ * of the payload and the payload itself. Records are only ever appended, so
+ * that the cost of persisting a result does not depend on the number of
+ * previous results. A record that was not written completely, e.g. because
+ * the virtual machine was terminated, and all records following it are
+ * ignored by {@link #read(java.io.File)}. {@link #rewrite(java.io.File, java.util.List)}
+ * compacts a journal by atomically replacing it with the given records.
+ *
+ * @author Nils Hoffmann
+ * @since 1.3.2
+ */
+@Slf4j
+public final class WorkflowJournal implements Closeable {
+
+    /**
+     * Record containing the workflow's command classes.
+     */
+    public static final byte HEADER = 1;
+    /**
+     * Record containing a workflow result.
+     */
+    public static final byte RESULT = 2;
+    /**
+     * Record marking the transition to a command.
+     */
+    public static final byte COMMAND = 3;
+    private static final int MAGIC = 0x43524a31;
+    private final File file;
+    private final FileOutputStream fos;
+    private final DataOutputStream out;
+
+    private WorkflowJournal(File file, boolean append) throws IOException {
+        this.file = file;
+        file.getAbsoluteFile().getParentFile().mkdirs();
+        boolean exists = append && file.isFile() && file.length() > 0;
+        this.fos = new FileOutputStream(file, append);
+        this.out = new DataOutputStream(new BufferedOutputStream(fos));
+        if (!exists) {
+            out.writeInt(MAGIC);
+        }
+    }
+
+    /**
+     * Returns the journal file of the given workflow.
+     *
+     * @param workflow the workflow
+     * @return the journal file
+     */
+    public static File getJournalFile(IWorkflow workflow) {
+        return new File(workflow.getOutputDirectory(), workflow.getName() + ".journal");
+    }
+
+    /**
+     * Create a new, empty journal, replacing any existing journal.
+     *
+     * @param file the journal file
+     * @return the journal
+     * @throws IOException if the journal can not be created
+     */
+    public static WorkflowJournal create(File file) throws IOException {
+        return new WorkflowJournal(file, false);
+    }
+
+    /**
+     * Atomically replace the journal with the given records and open it for
+     * appending.
+     *
+     * @param file    the journal file
+     * @param records the records to keep
+     * @return the journal
+     * @throws IOException if the journal can not be written
+     */
+    public static WorkflowJournal rewrite(File file, List<Record> records) throws IOException {
+        File tmp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        try (WorkflowJournal j = new WorkflowJournal(tmp, false)) {
+            for (Record r : records) {
+                j.append(r.getType(), r.getPayload());
+            }
+            j.sync();
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new WorkflowJournal(file, true);
+    }
+
+    /**
+     * Read all complete records of the given journal.
+     *
+     * @param file the journal file
+     * @return the records, in order of appending
+     * @throws IOException if the journal can not be read or is no journal
+     */
+    public static List<Record> read(File file) throws IOException {
+        List<Record> records = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("File " + file + " is not a workflow journal!");
+            }
+            while (true) {
+                int type = in.read();
+                if (type < 0) {
+                    break;
+                }
+                try {
+                    int length = in.readInt();
+                    long crc = in.readInt() & 0xFFFFFFFFL;
+                    if (length < 0) {
+                        log.warn("Ignoring corrupt record in journal {}", file);
+                        break;
+                    }
+                    byte[] payload = new byte[length];
+                    in.readFully(payload);
+                    if (checksum(payload) != crc) {
+                        log.warn("Ignoring record with invalid checksum in journal {}", file);
+                        break;
+                    }
+                    records.add(new Record((byte) type, payload));
+                } catch (EOFException eof) {
+                    log.warn("Ignoring incomplete record at the end of journal {}", file);
+                    break;
+                }
+            }
+        }
+        return records;
+    }
+
+    private static long checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return crc.getValue();
+    }
+
+    /**
+     * Returns the journal file.
+     *
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Append a record.
+     *
+     * @param type    the record type
+     * @param payload the payload
+     * @throws IOException if the record can not be written
+     */
+    public synchronized void append(byte type, byte[] payload) throws IOException {
+        out.writeByte(type);
+        out.writeInt(payload.length);
+        out.writeInt((int) checksum(payload));
+        out.write(payload);
+    }
+
+    /**
+     * Append a record with a text payload.
+     *
+     * @param type the record type
+     * @param text the text
+     * @throws IOException if the record can not be written
+     */
+    public void append(byte type, String text) throws IOException {
+        append(type, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Write all buffered records and force them to the storage device.
+     *
+     * @throws IOException if the records can not be written
+     */
+    public synchronized void sync() throws IOException {
+        out.flush();
+        fos.getFD().sync();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * A single journal record.
+     */
+    public static final class Record {
+
+        private final byte type;
+        private final byte[] payload;
+
+        /**
+         * Create a new record.
+         *
+         * @param type    the record type
+         * @param payload the payload
+         */
+        public Record(byte type, byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+
+        /**
+         * Create a new record with a text payload.
+         *
+         * @param type the record type
+         * @param text the text
+         */
+        public Record(byte type, String text) {
+            this(type, text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Returns the record type.
+         *
+         * @return the type
+         */
+        public byte getType() {
+            return type;
+        }
+
+        /**
+         * Returns the payload.
+         *
+         * @return the payload
+         */
+        public byte[] getPayload() {
+            return payload;
+        }
+
+        /**
+         * Returns the payload as text.
+         *
+         * @return the text
+         */
+        public String getText() {
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.io;
+
+import cross.datastructures.fragments.IFileFragment;
+import cross.datastructures.fragments.IVariableFragment;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder event for a read or write of an {@link IDataSource},
+ * committed by {@link InstrumentedDataSource}.
+ *
+ * @author Nils Hoffmann
+ * @since 1.3.2
+ */
+@Name("cross.io.DataSource")
+@Label("Data Source I/O")
+@Category({"Cross", "I/O"})
+@Description("A read or write of variables by a data source")
+final class DataSourceEvent extends Event {
+
+    static final String READ = "read";
+    static final String WRITE = "write";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Data Source")
+    String dataSource;
+
+    @Label("Fragment")
+    String fragment;
+
+    @Label("Variable")
+    String variable;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    /**
+     * Ends the event and commits it, if it is enabled and exceeds the
+     * configured threshold.
+     *
+     * @param operation  the operation
+     * @param dataSource the data source
+     * @param fragment   the file fragment
+     * @param variable   the variable, or null if all variables were accessed
+     * @param bytes      the number of bytes read or written
+     */
+    void commit(String operation, IDataSource dataSource, IFileFragment fragment, IVariableFragment variable, long bytes) {
+        end();
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.dataSource = dataSource.getClass().getName();
+            this.fragment = fragment == null || fragment.getUri() == null ? null : fragment.getUri().toString();
+            this.variable = variable == null ? null : variable.getName();
+            this.bytes = bytes;
+            commit();
+        }
+    }
+}
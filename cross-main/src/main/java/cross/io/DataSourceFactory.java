@@ -76,12 +76,14 @@ public class DataSourceFactory implements IDataSourceFactory {
      */
     private void addToHashMap(final IDataSource ids) {
         EvalTools.notNull(ids, this);
+        //record reads and writes for profiling
+        final IDataSource instrumented = new InstrumentedDataSource(ids);
         for (final String s : ids.supportedFormats()) {
             ArrayList<IDataSource> al = new ArrayList<>(1);
             if (this.formatToIDataSource.containsKey(s.toLowerCase())) {
                 al = this.formatToIDataSource.get(s.toLowerCase());
             }
-            al.add(ids);
+            al.add(instrumented);
             this.formatToIDataSource.put(s.toLowerCase(), al);
         }
     }
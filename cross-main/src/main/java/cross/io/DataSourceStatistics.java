@@ -0,0 +1,119 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.io;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Global counters of the reads and writes performed through
+ * {@link IDataSource}s obtained from a {@link DataSourceFactory}.
+ *
+ * Byte counts of reads are based on the in-memory size of the returned
+ * arrays, byte counts of writes on the size of the written file.
+ *
+ * @author Nils Hoffmann
+ * @since 1.3.2
+ */
+public final class DataSourceStatistics {
+
+    private static final LongAdder reads = new LongAdder();
+    private static final LongAdder bytesRead = new LongAdder();
+    private static final LongAdder readNanos = new LongAdder();
+    private static final LongAdder writes = new LongAdder();
+    private static final LongAdder bytesWritten = new LongAdder();
+    private static final LongAdder writeNanos = new LongAdder();
+
+    private DataSourceStatistics() {
+    }
+
+    static void recordRead(long bytes, long nanos) {
+        reads.increment();
+        bytesRead.add(bytes);
+        readNanos.add(nanos);
+    }
+
+    static void recordWrite(long bytes, long nanos) {
+        writes.increment();
+        bytesWritten.add(bytes);
+        writeNanos.add(nanos);
+    }
+
+    /**
+     * Returns the number of read operations.
+     *
+     * @return the number of reads
+     */
+    public static long getReads() {
+        return reads.sum();
+    }
+
+    /**
+     * Returns the number of bytes read.
+     *
+     * @return the bytes read
+     */
+    public static long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    /**
+     * Returns the total time spent reading.
+     *
+     * @return the read time in nanoseconds
+     */
+    public static long getReadNanos() {
+        return readNanos.sum();
+    }
+
+    /**
+     * Returns the number of write operations.
+     *
+     * @return the number of writes
+     */
+    public static long getWrites() {
+        return writes.sum();
+    }
+
+    /**
+     * Returns the number of bytes written.
+     *
+     * @return the bytes written
+     */
+    public static long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    /**
+     * Returns the total time spent writing.
+     *
+     * @return the write time in nanoseconds
+     */
+    public static long getWriteNanos() {
+        return writeNanos.sum();
+    }
+}
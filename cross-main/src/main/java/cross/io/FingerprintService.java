@@ -0,0 +1,382 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Computes content fingerprints of files and memoizes them by path, size,
+ * modification time and file key (inode), so that only new or changed files
+ * need to be read.
+ *
+ * The memo is persisted to a store file on {@link #save()} and
+ * {@link #close()} and reloaded on construction. Files are hashed in
+ * parallel with the fast, non-cryptographic {@link Algorithm#XXH64} hash by
+ * default, or with {@link Algorithm#SHA1}, if a cryptographic hash is
+ * required.
+ *
+ * @author Nils Hoffmann
+ * @since 1.3.2
+ */
+@Slf4j
+public class FingerprintService implements Closeable {
+
+    /**
+     * The available hash algorithms.
+     */
+    public enum Algorithm {
+
+        /**
+         * 64 bit xxHash, fast but not cryptographically secure.
+         */
+        XXH64,
+        /**
+         * SHA-1 cryptographic hash.
+         */
+        SHA1
+    }
+
+    private static final int STORE_VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+    //files modified more recently may change again within the timestamp resolution
+    private static final long MIN_AGE_MILLIS = 2000L;
+    private final File store;
+    private final Algorithm algorithm;
+    private final ExecutorService executor;
+    private final Map<String, Entry> memo = new ConcurrentHashMap<>();
+    private volatile boolean modified = false;
+
+    /**
+     * Create a new fingerprint service.
+     *
+     * @param store     the file to persist the memo to, may be null for a
+     *                  transient memo
+     * @param algorithm the hash algorithm
+     * @param threads   the number of threads used for hashing
+     */
+    public FingerprintService(File store, Algorithm algorithm, int threads) {
+        this.store = store;
+        this.algorithm = algorithm;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), (Runnable r) -> {
+            Thread t = new Thread(r, "FingerprintService");
+            t.setDaemon(true);
+            return t;
+        });
+        load();
+    }
+
+    /**
+     * Returns the algorithm used by this service.
+     *
+     * @return the algorithm
+     */
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Returns the fingerprint of the given file, reusing the memoized
+     * fingerprint, if the file has not changed.
+     *
+     * @param file the file
+     * @return the hexadecimal fingerprint
+     * @throws UncheckedIOException if the file can not be read
+     */
+    public String fingerprint(File file) {
+        try {
+            Path path = file.toPath().toAbsolutePath();
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            String fileKey = attrs.fileKey() == null ? "" : attrs.fileKey().toString();
+            long size = attrs.size();
+            long mtime = attrs.lastModifiedTime().toMillis();
+            String key = path.toString();
+            Entry e = memo.get(key);
+            if (e != null && e.size == size && e.mtime == mtime && e.fileKey.equals(fileKey) && e.algorithm == algorithm) {
+                return e.hash;
+            }
+            String hash = hash(path);
+            if (System.currentTimeMillis() - mtime >= MIN_AGE_MILLIS) {
+                memo.put(key, new Entry(size, mtime, fileKey, algorithm, hash));
+                modified = true;
+            }
+            return hash;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Returns the fingerprints of the given files and of all files below the
+     * given directories, computed in parallel.
+     *
+     * @param files the files and directories
+     * @return the fingerprints, ordered by file
+     */
+    public Map<File, String> fingerprints(Collection<File> files) {
+        SortedSet<File> expanded = expand(files);
+        List<Future<String>> futures = new ArrayList<>(expanded.size());
+        for (final File f : expanded) {
+            futures.add(executor.submit(() -> fingerprint(f)));
+        }
+        Map<File, String> result = new LinkedHashMap<>();
+        int i = 0;
+        for (File f : expanded) {
+            try {
+                result.put(f, futures.get(i++).get());
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                throw new IllegalStateException(ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(ex);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a single fingerprint of the contents of the given files and of
+     * all files below the given directories.
+     *
+     * @param files the files and directories
+     * @return the hexadecimal fingerprint
+     */
+    public String fingerprint(Collection<File> files) {
+        Map<File, String> fingerprints = fingerprints(files);
+        StringBuilder sb = new StringBuilder();
+        for (String hash : fingerprints.values()) {
+            sb.append(hash).append('\n');
+        }
+        return hash(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private SortedSet<File> expand(Collection<File> files) {
+        SortedSet<File> expanded = new TreeSet<>();
+        for (File file : files) {
+            if (file.isDirectory()) {
+                try (Stream<Path> s = Files.walk(file.toPath())) {
+                    s.filter(Files::isRegularFile).forEach((Path p) -> expanded.add(p.toFile()));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            } else {
+                expanded.add(file);
+            }
+        }
+        return expanded;
+    }
+
+    private String hash(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            switch (algorithm) {
+                case SHA1:
+                    MessageDigest md = sha1();
+                    while (channel.read(buffer) >= 0) {
+                        buffer.flip();
+                        md.update(buffer);
+                        buffer.clear();
+                    }
+                    return toHex(md.digest(), 40);
+                case XXH64:
+                default:
+                    XXHash64 xx = new XXHash64(0);
+                    boolean eof = false;
+                    while (!eof) {
+                        //fill the buffer completely, only the last block may be partial
+                        while (buffer.hasRemaining()) {
+                            if (channel.read(buffer) < 0) {
+                                eof = true;
+                                break;
+                            }
+                        }
+                        buffer.flip();
+                        xx.update(buffer);
+                        buffer.clear();
+                    }
+                    return toHex(xx.digest());
+            }
+        }
+    }
+
+    private String hash(byte[] bytes) {
+        switch (algorithm) {
+            case SHA1:
+                return toHex(sha1().digest(bytes), 40);
+            case XXH64:
+            default:
+                XXHash64 xx = new XXHash64(0);
+                xx.update(ByteBuffer.wrap(bytes));
+                return toHex(xx.digest());
+        }
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String toHex(long value) {
+        return StringUtils.leftPad(Long.toHexString(value), 16, "0");
+    }
+
+    private static String toHex(byte[] value, int digits) {
+        return StringUtils.leftPad(new BigInteger(1, value).toString(16), digits, "0");
+    }
+
+    private void load() {
+        if (store == null || !store.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(store.toPath())))) {
+            if (in.readInt() != STORE_VERSION) {
+                log.info("Ignoring fingerprint store {} with unsupported version", store);
+                return;
+            }
+            int entries = in.readInt();
+            for (int i = 0; i < entries; i++) {
+                String key = in.readUTF();
+                long size = in.readLong();
+                long mtime = in.readLong();
+                String fileKey = in.readUTF();
+                Algorithm alg = Algorithm.values()[in.readByte()];
+                String hash = in.readUTF();
+                memo.put(key, new Entry(size, mtime, fileKey, alg, hash));
+            }
+            log.debug("Loaded {} fingerprints from {}", entries, store);
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Could not read fingerprint store " + store + ", fingerprints will be recomputed!", ex);
+            memo.clear();
+        }
+    }
+
+    /**
+     * Persist all memoized fingerprints of files that still exist to the
+     * store.
+     */
+    public synchronized void save() {
+        if (store == null || !modified) {
+            return;
+        }
+        File tmp = new File(store.getParentFile(), store.getName() + ".tmp");
+        store.getAbsoluteFile().getParentFile().mkdirs();
+        try (OutputStream os = Files.newOutputStream(tmp.toPath()); DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+            List<Map.Entry<String, Entry>> entries = new ArrayList<>();
+            for (Map.Entry<String, Entry> e : memo.entrySet()) {
+                if (new File(e.getKey()).isFile()) {
+                    entries.add(e);
+                }
+            }
+            out.writeInt(STORE_VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> e : entries) {
+                Entry v = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(v.size);
+                out.writeLong(v.mtime);
+                out.writeUTF(v.fileKey);
+                out.writeByte(v.algorithm.ordinal());
+                out.writeUTF(v.hash);
+            }
+        } catch (IOException ex) {
+            log.warn("Could not write fingerprint store " + store, ex);
+            return;
+        }
+        try {
+            Files.move(tmp.toPath(), store.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            modified = false;
+        } catch (IOException ex) {
+            log.warn("Could not replace fingerprint store " + store, ex);
+        }
+    }
+
+    /**
+     * Persist the memo and release the hashing threads.
+     */
+    @Override
+    public void close() {
+        save();
+        executor.shutdownNow();
+    }
+
+    private static final class Entry {
+
+        private final long size;
+        private final long mtime;
+        private final String fileKey;
+        private final Algorithm algorithm;
+        private final String hash;
+
+        Entry(long size, long mtime, String fileKey, Algorithm algorithm, String hash) {
+            this.size = size;
+            this.mtime = mtime;
+            this.fileKey = fileKey;
+            this.algorithm = algorithm;
+            this.hash = hash;
+        }
+    }
+}
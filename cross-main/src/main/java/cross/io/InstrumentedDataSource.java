@@ -0,0 +1,164 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.io;
+
+import cross.datastructures.fragments.IFileFragment;
+import cross.datastructures.fragments.IVariableFragment;
+import cross.exception.ResourceNotAvailableException;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.event.ConfigurationEvent;
+import ucar.ma2.Array;
+
+/**
+ * Decorator of an {@link IDataSource}, recording all reads and writes in
+ * {@link DataSourceStatistics} and as {@link DataSourceEvent}s.
+ *
+ * @author Nils Hoffmann
+ * @since 1.3.2
+ */
+final class InstrumentedDataSource implements IDataSource {
+
+    private final IDataSource delegate;
+
+    InstrumentedDataSource(IDataSource delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Returns the decorated data source.
+     *
+     * @return the data source
+     */
+    IDataSource getDelegate() {
+        return delegate;
+    }
+
+    private static long sizeOf(List<Array> l) {
+        long bytes = 0;
+        if (l != null) {
+            for (Array a : l) {
+                bytes += a == null ? 0 : a.getSizeBytes();
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public int canRead(IFileFragment ff) {
+        return delegate.canRead(ff);
+    }
+
+    @Override
+    public ArrayList<Array> readAll(IFileFragment f) throws IOException, ResourceNotAvailableException {
+        DataSourceEvent event = new DataSourceEvent();
+        event.begin();
+        long start = System.nanoTime();
+        ArrayList<Array> l = delegate.readAll(f);
+        long bytes = sizeOf(l);
+        DataSourceStatistics.recordRead(bytes, System.nanoTime() - start);
+        event.commit(DataSourceEvent.READ, delegate, f, null, bytes);
+        return l;
+    }
+
+    @Override
+    public ArrayList<Array> readIndexed(IVariableFragment f) throws IOException, ResourceNotAvailableException {
+        DataSourceEvent event = new DataSourceEvent();
+        event.begin();
+        long start = System.nanoTime();
+        ArrayList<Array> l = delegate.readIndexed(f);
+        long bytes = sizeOf(l);
+        DataSourceStatistics.recordRead(bytes, System.nanoTime() - start);
+        event.commit(DataSourceEvent.READ, delegate, f.getParent(), f, bytes);
+        return l;
+    }
+
+    @Override
+    public Array readSingle(IVariableFragment f) throws IOException, ResourceNotAvailableException {
+        DataSourceEvent event = new DataSourceEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Array a = delegate.readSingle(f);
+        long bytes = a == null ? 0 : a.getSizeBytes();
+        DataSourceStatistics.recordRead(bytes, System.nanoTime() - start);
+        event.commit(DataSourceEvent.READ, delegate, f.getParent(), f, bytes);
+        return a;
+    }
+
+    @Override
+    public ArrayList<IVariableFragment> readStructure(IFileFragment f) throws IOException {
+        return delegate.readStructure(f);
+    }
+
+    @Override
+    public IVariableFragment readStructure(IVariableFragment f) throws IOException, ResourceNotAvailableException {
+        return delegate.readStructure(f);
+    }
+
+    @Override
+    public List<String> supportedFormats() {
+        return delegate.supportedFormats();
+    }
+
+    @Override
+    public boolean write(IFileFragment f) {
+        DataSourceEvent event = new DataSourceEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean written = delegate.write(f);
+        if (written) {
+            URI uri = f.getUri();
+            long bytes = 0;
+            if (uri != null && "file".equals(uri.getScheme())) {
+                bytes = new File(uri).length();
+            }
+            DataSourceStatistics.recordWrite(bytes, System.nanoTime() - start);
+            event.commit(DataSourceEvent.WRITE, delegate, f, null, bytes);
+        }
+        return written;
+    }
+
+    @Override
+    public void configure(Configuration cfg) {
+        delegate.configure(cfg);
+    }
+
+    @Override
+    public void configurationChanged(ConfigurationEvent ce) {
+        delegate.configurationChanged(ce);
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming implementation of the 64 bit xxHash algorithm.
+ *
+ * Input is consumed in blocks, all but the last block passed to
+ * {@link #update(java.nio.ByteBuffer)} must have a length that is a multiple
+ * of {@link #STRIPE}.
+ *
+ * @author Nils Hoffmann
+ * @since 1.3.2
+ */
+final class XXHash64 {
+
+    static final int STRIPE = 32;
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+    private final long seed;
+    private long v1, v2, v3, v4;
+    private long length = 0;
+    private ByteBuffer tail = null;
+
+    XXHash64(long seed) {
+        this.seed = seed;
+        this.v1 = seed + P1 + P2;
+        this.v2 = seed + P2;
+        this.v3 = seed;
+        this.v4 = seed - P1;
+    }
+
+    /**
+     * Consume the remaining bytes of the given buffer.
+     *
+     * @param buffer the buffer
+     * @throws IllegalStateException if a previous block was not a multiple
+     *                               of {@link #STRIPE}
+     */
+    void update(ByteBuffer buffer) {
+        if (tail != null) {
+            throw new IllegalStateException("Only the last block may have a length that is not a multiple of " + STRIPE);
+        }
+        ByteBuffer b = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        length += b.remaining();
+        while (b.remaining() >= STRIPE) {
+            v1 = round(v1, b.getLong());
+            v2 = round(v2, b.getLong());
+            v3 = round(v3, b.getLong());
+            v4 = round(v4, b.getLong());
+        }
+        if (b.hasRemaining()) {
+            tail = b;
+        }
+        buffer.position(buffer.limit());
+    }
+
+    /**
+     * Returns the hash of all consumed bytes.
+     *
+     * @return the hash value
+     */
+    long digest() {
+        long h;
+        if (length >= STRIPE) {
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = merge(h, v1);
+            h = merge(h, v2);
+            h = merge(h, v3);
+            h = merge(h, v4);
+        } else {
+            h = seed + P5;
+        }
+        h += length;
+        if (tail != null) {
+            ByteBuffer t = tail.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            while (t.remaining() >= 8) {
+                h ^= round(0, t.getLong());
+                h = Long.rotateLeft(h, 27) * P1 + P4;
+            }
+            if (t.remaining() >= 4) {
+                h ^= (t.getInt() & 0xFFFFFFFFL) * P1;
+                h = Long.rotateLeft(h, 23) * P2 + P3;
+            }
+            while (t.hasRemaining()) {
+                h ^= (t.get() & 0xFF) * P5;
+                h = Long.rotateLeft(h, 11) * P1;
+            }
+        }
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * P2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * P1;
+    }
+
+    private static long merge(long acc, long val) {
+        acc ^= round(0, val);
+        return acc * P1 + P4;
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.commands.fragments;
+
+import cross.Factory;
+import cross.cache.CachePartition;
+import cross.cache.CacheType;
+import cross.datastructures.fragments.FileFragment;
+import cross.datastructures.fragments.Fragments;
+import cross.datastructures.fragments.IFileFragment;
+import cross.datastructures.pipeline.CommandPipeline;
+import cross.datastructures.tuple.TupleND;
+import cross.datastructures.workflow.DefaultWorkflow;
+import cross.datastructures.workflow.IWorkflow;
+import cross.datastructures.workflow.IWorkflowElement;
+import cross.datastructures.workflow.WorkflowSlot;
+import cross.io.MockDatasource;
+import cross.test.SetupLogging;
+import java.io.File;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import net.sf.mpaxs.api.ICompletionService;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.jdom2.Element;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link AFragmentCommand} running within a {@link DefaultWorkflow}.
+ *
+ * @author Nils Hoffmann
+ */
+public class AFragmentCommandTest {
+
+    /**
+     *
+     */
+    @Rule
+    public SetupLogging logging = new SetupLogging();
+    /**
+     *
+     */
+    @Rule
+    public TemporaryFolder tf = new TemporaryFolder();
+
+    /**
+     * Explicitly set the available data sources. Disable caching.
+     */
+    @Before
+    public void setUp() {
+        Factory.getInstance().getDataSourceFactory().setDataSources(Arrays.asList(MockDatasource.class.getCanonicalName()));
+        Fragments.setDefaultFragmentCacheType(CacheType.NONE);
+    }
+
+    /**
+     * Returns the name of the cache of a fragment read by the task.
+     */
+    public static class CacheNameTask implements Callable<String> {
+
+        private final URI uri;
+
+        CacheNameTask(URI uri) {
+            this.uri = uri;
+        }
+
+        @Override
+        public String call() throws Exception {
+            return new FileFragment(uri).getCache().getName();
+        }
+    }
+
+    /**
+     * Reads the fragments in tasks of a local completion service and records
+     * the names of their caches and of the partition of the command.
+     */
+    public static class CacheNameCommand extends AFragmentCommand {
+
+        private String partitionName;
+        private List<String> cacheNames;
+
+        @Override
+        public String getDescription() {
+            return "Cache name command for testing";
+        }
+
+        @Override
+        public TupleND<IFileFragment> apply(TupleND<IFileFragment> in) {
+            partitionName = CachePartition.current() == null ? null : CachePartition.current().getName();
+            ICompletionService<String> ics = createBlockingCompletionService(String.class);
+            for (IFileFragment f : in) {
+                ics.submit(new CacheNameTask(f.getUri()));
+            }
+            try {
+                cacheNames = ics.call();
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+            return in;
+        }
+
+        @Override
+        public WorkflowSlot getWorkflowSlot() {
+            return WorkflowSlot.GENERAL_PREPROCESSING;
+        }
+    }
+
+    /**
+     * Helper of a command, whose output directory is resolved against the
+     * active command.
+     */
+    public static class Helper implements IWorkflowElement {
+
+        private IWorkflow workflow;
+
+        @Override
+        public IWorkflow getWorkflow() {
+            return workflow;
+        }
+
+        @Override
+        public WorkflowSlot getWorkflowSlot() {
+            return WorkflowSlot.GENERAL_PREPROCESSING;
+        }
+
+        @Override
+        public void setWorkflow(IWorkflow iw) {
+            this.workflow = iw;
+        }
+
+        @Override
+        public void appendXML(Element e) {
+        }
+    }
+
+    /**
+     * Returns the output directory of a helper.
+     */
+    public static class HelperDirectoryTask implements Callable<File> {
+
+        private final IWorkflow workflow;
+
+        HelperDirectoryTask(IWorkflow workflow) {
+            this.workflow = workflow;
+        }
+
+        @Override
+        public File call() throws Exception {
+            Helper helper = new Helper();
+            helper.setWorkflow(workflow);
+            return workflow.getOutputDirectory(helper);
+        }
+    }
+
+    /**
+     * Resolves the output directory of a helper within the tasks of a local
+     * completion service and on a thread of a plain pool.
+     */
+    public static class HelperDirectoryCommand extends AFragmentCommand {
+
+        private List<File> taskDirectories;
+        private File pooledDirectory;
+
+        @Override
+        public String getDescription() {
+            return "Helper directory command for testing";
+        }
+
+        @Override
+        public TupleND<IFileFragment> apply(TupleND<IFileFragment> in) {
+            ICompletionService<File> ics = createBlockingCompletionService(File.class);
+            for (IFileFragment f : in) {
+                ics.submit(new HelperDirectoryTask(getWorkflow()));
+            }
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                taskDirectories = ics.call();
+                pooledDirectory = executor.submit(new HelperDirectoryTask(getWorkflow())).get();
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            } finally {
+                executor.shutdown();
+            }
+            return in;
+        }
+
+        @Override
+        public WorkflowSlot getWorkflowSlot() {
+            return WorkflowSlot.GENERAL_PREPROCESSING;
+        }
+    }
+
+    private DefaultWorkflow createWorkflow(File output, AFragmentCommand cmd, TupleND<IFileFragment> in) {
+        CommandPipeline pipeline = new CommandPipeline();
+        pipeline.setCheckCommandDependencies(false);
+        pipeline.setCommands(Arrays.<IFragmentCommand>asList(cmd));
+        pipeline.setInput(in);
+        PropertiesConfiguration cfg = new PropertiesConfiguration();
+        cfg.setProperty("cross.Factory.maxthreads", 2);
+        DefaultWorkflow workflow = new DefaultWorkflow();
+        workflow.setFactory(Factory.getInstance());
+        workflow.setConfiguration(cfg);
+        workflow.setOutputDirectory(output);
+        workflow.setCommandSequence(pipeline);
+        return workflow;
+    }
+
+    /**
+     * Fragments read by the tasks of a local completion service create their
+     * caches within the cache partition of the workflow.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCompletionServiceTasksUseWorkflowPartition() throws Exception {
+        File input = tf.newFolder("input");
+        CacheNameCommand cmd = new CacheNameCommand();
+        DefaultWorkflow workflow = createWorkflow(tf.newFolder("output"), cmd, new TupleND<IFileFragment>(
+            new FileFragment(new File(input, "sample1.cdf")),
+            new FileFragment(new File(input, "sample2.cdf")),
+            new FileFragment(new File(input, "sample3.cdf"))));
+        workflow.call();
+        Assert.assertNotNull(cmd.partitionName);
+        Assert.assertEquals(3, cmd.cacheNames.size());
+        for (String name : cmd.cacheNames) {
+            Assert.assertEquals("FileFragmentCache@" + cmd.partitionName, name);
+        }
+    }
+
+    /**
+     * Workflow elements used on pooled threads, which never resolved the
+     * command themselves, are placed below the output directory of the
+     * command running them.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPooledThreadsResolveCommandDirectory() throws Exception {
+        File input = tf.newFolder("input");
+        File output = tf.newFolder("output");
+        HelperDirectoryCommand cmd = new HelperDirectoryCommand();
+        DefaultWorkflow workflow = createWorkflow(output, cmd, new TupleND<IFileFragment>(
+            new FileFragment(new File(input, "sample1.cdf")),
+            new FileFragment(new File(input, "sample2.cdf"))));
+        workflow.call();
+        File expected = new File(new File(output, "0_HelperDirectoryCommand"), "Helper");
+        Assert.assertEquals(2, cmd.taskDirectories.size());
+        for (File dir : cmd.taskDirectories) {
+            Assert.assertEquals(expected, dir);
+        }
+        Assert.assertEquals(expected, cmd.pooledDirectory);
+    }
+}
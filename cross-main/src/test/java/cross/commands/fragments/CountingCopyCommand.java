@@ -0,0 +1,60 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.commands.fragments;
+
+import cross.datastructures.fragments.IFileFragment;
+import cross.datastructures.tuple.TupleND;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Variable copy command recording the number of fragments passed to each
+ * invocation of {@link #apply(cross.datastructures.tuple.TupleND)}.
+ *
+ * @author Nils Hoffmann
+ */
+public class CountingCopyCommand extends VariableCopyCommand {
+
+    private final List<Integer> invocations = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public TupleND<IFileFragment> apply(TupleND<IFileFragment> t) {
+        invocations.add(t.size());
+        return super.apply(t);
+    }
+
+    /**
+     * Returns the number of fragments of each invocation so far.
+     *
+     * @return the invocation sizes
+     */
+    public List<Integer> getInvocations() {
+        return invocations;
+    }
+}
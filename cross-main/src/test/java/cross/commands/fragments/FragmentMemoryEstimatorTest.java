@@ -0,0 +1,141 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.commands.fragments;
+
+import cross.datastructures.fragments.FileFragment;
+import cross.datastructures.fragments.IFileFragment;
+import cross.datastructures.fragments.VariableFragment;
+import cross.test.SetupLogging;
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import net.sf.mpaxs.spi.concurrent.AdmissionController;
+import net.sf.mpaxs.spi.concurrent.IMemoryEstimator;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.DataType;
+import ucar.nc2.Dimension;
+
+/**
+ * Tests for {@link FragmentMemoryEstimator} and the admission control of
+ * local completion services.
+ *
+ * @author Nils Hoffmann
+ */
+public class FragmentMemoryEstimatorTest {
+
+    /**
+     * Set up a temporary folder
+     */
+    @Rule
+    public TemporaryFolder tf = new TemporaryFolder();
+
+    /**
+     *
+     */
+    @Rule
+    public SetupLogging logging = new SetupLogging();
+
+    private static class Task implements Callable<Integer> {
+
+        private final IFileFragment input;
+
+        Task(IFileFragment input) {
+            this.input = input;
+        }
+
+        @Override
+        public Integer call() throws Exception {
+            return 1;
+        }
+    }
+
+    /**
+     * Estimates from dimensions and data type, learning the overhead factor.
+     */
+    @Test
+    public void testEstimateAndLearn() {
+        IFileFragment f = new FileFragment(new File(tf.getRoot(), "a.cdf"));
+        VariableFragment v = new VariableFragment(f, "intensity_values");
+        v.setDimensions(new Dimension[]{new Dimension("point_number", 1000), new Dimension("scan_number", 10)});
+        v.setDataType(DataType.DOUBLE);
+        Assert.assertEquals(80000L, FragmentMemoryEstimator.estimate(v));
+        Assert.assertEquals(80000L, FragmentMemoryEstimator.estimate(f));
+        FragmentMemoryEstimator<Integer> fme = new FragmentMemoryEstimator<>(FragmentMemoryEstimatorTest.class);
+        Task t = new Task(f);
+        Assert.assertEquals(80000L, fme.estimate(t));
+        fme.observe(t, 80000L, 240000L);
+        Assert.assertEquals(1.5d, FragmentMemoryEstimator.getFactor(FragmentMemoryEstimatorTest.class), 1.0e-9);
+        Assert.assertEquals(120000L, fme.estimate(t));
+        //outliers are clamped, missing observations are ignored
+        fme.observe(t, 120000L, 80000L * 1000L);
+        Assert.assertEquals(2.125d, FragmentMemoryEstimator.getFactor(FragmentMemoryEstimatorTest.class), 1.0e-9);
+        fme.observe(t, 170000L, -1L);
+        Assert.assertEquals(2.125d, FragmentMemoryEstimator.getFactor(FragmentMemoryEstimatorTest.class), 1.0e-9);
+        Assert.assertEquals(0L, fme.estimate(() -> 1));
+    }
+
+    /**
+     * Tasks exceeding the budget are held back until running tasks finish.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testAdmission() throws Exception {
+        IMemoryEstimator<Integer> estimator = new IMemoryEstimator<Integer>() {
+            @Override
+            public long estimate(Callable<Integer> task) {
+                return 80;
+            }
+
+            @Override
+            public void observe(Callable<Integer> task, long estimate, long retained) {
+            }
+        };
+        final AdmissionController<Integer> ac = new AdmissionController<>(100, estimator);
+        Callable<Integer> first = ac.admit(() -> 1);
+        Assert.assertEquals(80L, ac.getInUse());
+        final CountDownLatch admitted = new CountDownLatch(1);
+        Thread t = new Thread(() -> {
+            try {
+                ac.admit(() -> 2);
+                admitted.countDown();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        t.start();
+        Assert.assertFalse(admitted.await(200, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(Integer.valueOf(1), first.call());
+        Assert.assertTrue(admitted.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(80L, ac.getInUse());
+    }
+}
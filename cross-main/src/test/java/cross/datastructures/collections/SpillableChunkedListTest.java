@@ -0,0 +1,134 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.datastructures.collections;
+
+import cross.test.SetupLogging;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link SpillableChunkedList}.
+ *
+ * @author Nils Hoffmann
+ */
+public class SpillableChunkedListTest {
+
+    /**
+     *
+     */
+    @Rule
+    public TemporaryFolder tf = new TemporaryFolder();
+
+    /**
+     *
+     */
+    @Rule
+    public SetupLogging logging = new SetupLogging();
+
+    /**
+     * Test appending, random access and streaming iteration with spilled
+     * chunks.
+     *
+     * @throws Exception on test failure
+     */
+    @Test
+    public void testAppendAndIterate() throws Exception {
+        try (SpillableChunkedList<double[]> list = new SpillableChunkedList<>("testAppendAndIterate", 100, 2, tf.getRoot())) {
+            int n = 10050;
+            for (int i = 0; i < n; i++) {
+                list.add(new double[]{i});
+            }
+            Assert.assertEquals(n, list.size());
+            Assert.assertEquals(1, tf.getRoot().listFiles().length);
+            Assert.assertEquals(1234.0d, list.get(1234)[0], 0.0d);
+            Assert.assertEquals(n - 1, list.get(n - 1)[0], 0.0d);
+            int i = 0;
+            for (double[] d : list) {
+                Assert.assertEquals(i++, d[0], 0.0d);
+            }
+            Assert.assertEquals(n, i);
+        }
+        Assert.assertEquals(0, tf.getRoot().listFiles().length);
+    }
+
+    /**
+     * Test batch appends and replacing elements of spilled chunks.
+     *
+     * @throws Exception on test failure
+     */
+    @Test
+    public void testAddAllAndSet() throws Exception {
+        try (SpillableChunkedList<Integer> list = new SpillableChunkedList<>("testAddAllAndSet", 64, 1, tf.getRoot())) {
+            List<Integer> batch = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                batch.add(i);
+            }
+            list.add(-1);
+            list.addAll(batch);
+            Assert.assertEquals(1001, list.size());
+            list.set(1, 42);
+            for (int i = 500; i < 1001; i++) {
+                Assert.assertEquals(Integer.valueOf(i - 1), list.get(i));
+            }
+            Assert.assertEquals(Integer.valueOf(42), list.get(1));
+            Iterator<Integer> iter = list.iterator();
+            Assert.assertEquals(Integer.valueOf(-1), iter.next());
+            Assert.assertEquals(Integer.valueOf(42), iter.next());
+            list.clear();
+            Assert.assertTrue(list.isEmpty());
+            list.add(7);
+            Assert.assertEquals(Integer.valueOf(7), list.get(0));
+        }
+    }
+
+    /**
+     * Test the sparse write semantics of {@link CachedReadWriteList}.
+     */
+    @Test
+    public void testCachedReadWriteList() {
+        CachedReadWriteList<String> list = new CachedReadWriteList<>("testCachedReadWriteList", 10);
+        try {
+            list.set(3, "d");
+            Assert.assertEquals(4, list.size());
+            Assert.assertNull(list.get(0));
+            list.add("e");
+            Assert.assertEquals("e", list.get(4));
+            Assert.assertEquals("d", list.remove(3));
+            Assert.assertNull(list.get(3));
+            Assert.assertEquals(5, list.size());
+            Assert.assertNull(list.get(10));
+        } finally {
+            list.close();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.datastructures.fragments;
+
+import cross.test.SetupLogging;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests for the adaptive prefetcher used by {@link CachedList}.
+ *
+ * @author Nils Hoffmann
+ */
+public class AdaptivePrefetcherTest {
+
+    /**
+     *
+     */
+    @Rule
+    public SetupLogging logging = new SetupLogging();
+
+    private final Map<Integer, Integer> loaded = new ConcurrentHashMap<>();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private AdaptivePrefetcher<Integer> create(int size) {
+        return create(size, false);
+    }
+
+    private AdaptivePrefetcher<Integer> create(int size, final boolean blocking) {
+        return new AdaptivePrefetcher<>(new AdaptivePrefetcher.RangeLoader<Integer>() {
+            @Override
+            public List<Integer> load(int from, int to) {
+                if (blocking) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                }
+                List<Integer> l = new ArrayList<>();
+                for (int i = from; i <= to; i++) {
+                    l.add(i);
+                }
+                return l;
+            }
+        }, new AdaptivePrefetcher.Sink<Integer>() {
+            @Override
+            public void accept(int index, Integer element) {
+                loaded.put(index, element);
+            }
+        }, 0, size, 4, 32);
+    }
+
+    private void access(AdaptivePrefetcher<Integer> p, int index) {
+        p.access(index);
+        p.await(index);
+    }
+
+    /**
+     * Test detection and prefetching of sequential access.
+     */
+    @Test
+    public void testSequential() {
+        AdaptivePrefetcher<Integer> p = create(100);
+        for (int i = 0; i < 3; i++) {
+            access(p, i);
+        }
+        Assert.assertEquals(1, p.getStride());
+        p.await(3);
+        Assert.assertEquals(Integer.valueOf(3), loaded.get(3));
+    }
+
+    /**
+     * Test detection and prefetching of reverse access.
+     */
+    @Test
+    public void testReverse() {
+        AdaptivePrefetcher<Integer> p = create(100);
+        for (int i = 99; i > 96; i--) {
+            access(p, i);
+        }
+        Assert.assertEquals(-1, p.getStride());
+        p.await(96);
+        Assert.assertEquals(Integer.valueOf(96), loaded.get(96));
+        Assert.assertFalse(loaded.containsKey(100));
+    }
+
+    /**
+     * Test detection and prefetching of strided access.
+     */
+    @Test
+    public void testStrided() {
+        AdaptivePrefetcher<Integer> p = create(100);
+        for (int i = 0; i < 15; i += 5) {
+            access(p, i);
+        }
+        Assert.assertEquals(5, p.getStride());
+        p.await(15);
+        Assert.assertEquals(Integer.valueOf(15), loaded.get(15));
+        Assert.assertFalse(loaded.containsKey(16));
+    }
+
+    /**
+     * Test that random access does not trigger prefetching.
+     */
+    @Test
+    public void testRandom() {
+        AdaptivePrefetcher<Integer> p = create(100);
+        access(p, 17);
+        access(p, 3);
+        access(p, 42);
+        Assert.assertEquals(0, p.getStride());
+        Assert.assertTrue(loaded.isEmpty());
+    }
+
+    /**
+     * Test that prefetching resumes ahead of the cursor, once the cursor has
+     * overtaken the last prefetched index.
+     */
+    @Test
+    public void testCursorOvertakesFrontier() {
+        AdaptivePrefetcher<Integer> p = create(100, true);
+        for (int i = 0; i < 10; i++) {
+            p.access(i);
+        }
+        release.countDown();
+        p.await(3);
+        Assert.assertEquals(Integer.valueOf(6), loaded.get(6));
+        Assert.assertFalse(loaded.containsKey(7));
+        access(p, 10);
+        p.await(11);
+        Assert.assertEquals(Integer.valueOf(11), loaded.get(11));
+    }
+
+    /**
+     * Test that a reset waits for the in-flight load and discards its
+     * elements.
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void testResetWaitsForLoad() throws InterruptedException {
+        final AdaptivePrefetcher<Integer> p = create(100, true);
+        for (int i = 0; i < 3; i++) {
+            p.access(i);
+        }
+        Thread resetter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                p.reset();
+            }
+        });
+        resetter.start();
+        resetter.join(200);
+        Assert.assertTrue(resetter.isAlive());
+        release.countDown();
+        resetter.join(TimeUnit.SECONDS.toMillis(10));
+        Assert.assertFalse(resetter.isAlive());
+        Assert.assertTrue(loaded.isEmpty());
+        Assert.assertEquals(0, p.getStride());
+    }
+}
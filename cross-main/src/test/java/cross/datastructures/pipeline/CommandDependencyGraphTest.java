@@ -0,0 +1,103 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.datastructures.pipeline;
+
+import cross.test.SetupLogging;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CommandDependencyGraph}.
+ *
+ * @author Nils Hoffmann
+ */
+public class CommandDependencyGraphTest {
+
+    /**
+     *
+     */
+    @Rule
+    public SetupLogging logging = new SetupLogging();
+
+    private static Collection<String> vars(String... names) {
+        return Arrays.asList(names);
+    }
+
+    /**
+     * Two branches consuming the output of a common command.
+     */
+    @Test
+    public void testIndependentBranches() {
+        List<Collection<String>> required = Arrays.asList(
+            vars("raw"), vars("peaks"), vars("peaks"), vars("alignment"));
+        List<Collection<String>> provided = Arrays.asList(
+            vars("peaks"), vars("alignment"), vars("report"), vars("export"));
+        CommandDependencyGraph g = new CommandDependencyGraph(required, provided);
+        Assert.assertTrue(g.isParallelizable());
+        Assert.assertEquals(CommandDependencyGraph.WORKFLOW_INPUT, g.getParent(0));
+        Assert.assertEquals(0, g.getParent(1));
+        Assert.assertEquals(0, g.getParent(2));
+        Assert.assertEquals(1, g.getParent(3));
+        Assert.assertEquals(2, g.getChildCount(0));
+        Assert.assertEquals(Collections.singleton(1), g.getDependencies(3));
+    }
+
+    /**
+     * Commands without declared requirements depend on all prior commands.
+     */
+    @Test
+    public void testBarrier() {
+        List<Collection<String>> required = Arrays.asList(
+            vars("raw"), vars("raw"), Collections.<String>emptyList());
+        List<Collection<String>> provided = Arrays.asList(
+            vars("a"), vars("b"), vars("c"));
+        CommandDependencyGraph g = new CommandDependencyGraph(required, provided);
+        Assert.assertTrue(g.isParallelizable());
+        Assert.assertEquals(CommandDependencyGraph.WORKFLOW_INPUT, g.getParent(1));
+        Assert.assertEquals(1, g.getParent(2));
+        Assert.assertEquals(2, g.getDependencies(2).size());
+    }
+
+    /**
+     * Variables provided on different branches can not be joined.
+     */
+    @Test
+    public void testUnreachableProvider() {
+        List<Collection<String>> required = Arrays.asList(
+            vars("raw"), vars("raw"), vars("a", "b"));
+        List<Collection<String>> provided = Arrays.asList(
+            vars("a"), vars("b"), vars("c"));
+        CommandDependencyGraph g = new CommandDependencyGraph(required, provided);
+        Assert.assertFalse(g.isParallelizable());
+    }
+}
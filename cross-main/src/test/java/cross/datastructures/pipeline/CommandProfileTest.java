@@ -0,0 +1,80 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.datastructures.pipeline;
+
+import cross.test.SetupLogging;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CommandProfile} and {@link CommandProfiler}.
+ *
+ * @author Nils Hoffmann
+ */
+public class CommandProfileTest {
+
+    /**
+     *
+     */
+    @Rule
+    public SetupLogging logging = new SetupLogging();
+
+    /**
+     * Nearest-rank percentiles of per-file latencies.
+     */
+    @Test
+    public void testPercentile() {
+        Assert.assertEquals(0.0d, CommandProfiler.percentile(Collections.<Long>emptyList(), 0.5d), 0.0d);
+        java.util.List<Long> l = Arrays.asList(1000000L, 2000000L, 3000000L, 4000000L, 100000000L);
+        Assert.assertEquals(3.0d, CommandProfiler.percentile(l, 0.5d), 0.0d);
+        Assert.assertEquals(100.0d, CommandProfiler.percentile(l, 0.9d), 0.0d);
+        Assert.assertEquals(1.0d, CommandProfiler.percentile(l, 0.0d), 0.0d);
+    }
+
+    /**
+     * JSON serialization of a profile.
+     */
+    @Test
+    public void testToJson() {
+        CommandProfile p = new CommandProfile();
+        p.setCommand("a.\"Quoted\"Command");
+        p.setWallNanos(2500000L);
+        p.setCacheHits(3);
+        p.setCacheMisses(1);
+        p.setFiles(5);
+        String json = p.toJson();
+        Assert.assertTrue(json, json.startsWith("{\"command\":\"a.\\\"Quoted\\\"Command\""));
+        Assert.assertTrue(json, json.contains("\"wall_milliseconds\":2.5"));
+        Assert.assertTrue(json, json.contains("\"cache_hit_rate\":0.75"));
+        Assert.assertTrue(json, json.contains("\"files\":5"));
+        Assert.assertTrue(json, json.endsWith("}"));
+    }
+}
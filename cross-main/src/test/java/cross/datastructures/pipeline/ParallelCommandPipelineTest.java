@@ -0,0 +1,371 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.datastructures.pipeline;
+
+import cross.Factory;
+import cross.annotations.ProvidesVariables;
+import cross.annotations.RequiresVariables;
+import cross.commands.fragments.AFragmentCommand;
+import cross.commands.fragments.IFragmentCommand;
+import cross.datastructures.fragments.FileFragment;
+import cross.datastructures.fragments.IFileFragment;
+import cross.datastructures.tuple.TupleND;
+import cross.datastructures.workflow.DefaultWorkflow;
+import cross.datastructures.workflow.IWorkflow;
+import cross.datastructures.workflow.IWorkflowElement;
+import cross.datastructures.workflow.IWorkflowFileResult;
+import cross.datastructures.workflow.IWorkflowResult;
+import cross.datastructures.workflow.WorkflowSlot;
+import cross.event.AEvent;
+import cross.event.IEvent;
+import cross.event.IListener;
+import cross.io.MockDatasource;
+import cross.test.SetupLogging;
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import net.sf.mpaxs.api.ICompletionService;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.jdom2.Element;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link ParallelCommandPipeline} running within a
+ * {@link DefaultWorkflow}.
+ *
+ * @author Nils Hoffmann
+ */
+public class ParallelCommandPipelineTest {
+
+    /**
+     *
+     */
+    @Rule
+    public SetupLogging logging = new SetupLogging();
+    /**
+     *
+     */
+    @Rule
+    public TemporaryFolder tf = new TemporaryFolder();
+
+    /**
+     * Helper of a command, whose output directory is resolved against the
+     * command running on the same thread.
+     */
+    public static class Helper implements IWorkflowElement {
+
+        private IWorkflow workflow;
+
+        @Override
+        public IWorkflow getWorkflow() {
+            return workflow;
+        }
+
+        @Override
+        public WorkflowSlot getWorkflowSlot() {
+            return WorkflowSlot.GENERAL_PREPROCESSING;
+        }
+
+        @Override
+        public void setWorkflow(IWorkflow iw) {
+            this.workflow = iw;
+        }
+
+        @Override
+        public void appendXML(Element e) {
+        }
+    }
+
+    /**
+     * Waits for all other branches to run concurrently, then records the
+     * output directories of itself and of a helper and reports one progress
+     * step per fragment.
+     */
+    public abstract static class BranchCommand extends AFragmentCommand {
+
+        private final CyclicBarrier barrier;
+        private final Map<String, File> helperDirectories;
+        private CountDownLatch awaitBeforeResults;
+        private CountDownLatch releaseAfterResults;
+
+        BranchCommand(CyclicBarrier barrier, Map<String, File> helperDirectories) {
+            this.barrier = barrier;
+            this.helperDirectories = helperDirectories;
+        }
+
+        void setResultOrder(CountDownLatch awaitBeforeResults, CountDownLatch releaseAfterResults) {
+            this.awaitBeforeResults = awaitBeforeResults;
+            this.releaseAfterResults = releaseAfterResults;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Branch command for testing";
+        }
+
+        @Override
+        public TupleND<IFileFragment> apply(TupleND<IFileFragment> in) {
+            try {
+                barrier.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException | BrokenBarrierException | TimeoutException ex) {
+                throw new IllegalStateException("Branches did not run concurrently!", ex);
+            }
+            TupleND<IFileFragment> out = createWorkFragments(in);
+            Helper helper = new Helper();
+            helper.setWorkflow(getWorkflow());
+            helperDirectories.put(getClass().getSimpleName(), getWorkflow().getOutputDirectory(helper));
+            //resolve a helper on a pooled thread of a completion service
+            ICompletionService<File> ics = createBlockingCompletionService(File.class);
+            ics.submit(new Callable<File>() {
+                @Override
+                public File call() throws Exception {
+                    Helper pooled = new Helper();
+                    pooled.setWorkflow(getWorkflow());
+                    return getWorkflow().getOutputDirectory(pooled);
+                }
+            });
+            try {
+                helperDirectories.put(getClass().getSimpleName() + "-pooled", ics.call().get(0));
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+            initProgress(out.size());
+            final CountDownLatch delivered = new CountDownLatch(out.size());
+            IListener<IEvent<IWorkflowResult>> listener = new IListener<IEvent<IWorkflowResult>>() {
+                @Override
+                public void listen(IEvent<IWorkflowResult> v) {
+                    delivered.countDown();
+                }
+            };
+            addListener(listener);
+            try {
+                if (awaitBeforeResults != null) {
+                    Assert.assertTrue(awaitBeforeResults.await(30, TimeUnit.SECONDS));
+                }
+                for (IFileFragment f : out) {
+                    addWorkflowResult(f);
+                    fireEvent(new AEvent<IWorkflowResult>(getProgress().nextStep(), this));
+                }
+                if (releaseAfterResults != null) {
+                    releaseAfterResults.countDown();
+                }
+                //wait for the asynchronous delivery of the progress events
+                delivered.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException(ex);
+            } finally {
+                removeListener(listener);
+            }
+            return out;
+        }
+
+        @Override
+        public WorkflowSlot getWorkflowSlot() {
+            return WorkflowSlot.GENERAL_PREPROCESSING;
+        }
+    }
+
+    /**
+     * First branch.
+     */
+    @RequiresVariables(names = {"raw"})
+    @ProvidesVariables(names = {"a"})
+    public static class BranchA extends BranchCommand {
+
+        BranchA(CyclicBarrier barrier, Map<String, File> helperDirectories) {
+            super(barrier, helperDirectories);
+        }
+    }
+
+    /**
+     * Second branch.
+     */
+    @RequiresVariables(names = {"raw"})
+    @ProvidesVariables(names = {"b"})
+    public static class BranchB extends BranchCommand {
+
+        BranchB(CyclicBarrier barrier, Map<String, File> helperDirectories) {
+            super(barrier, helperDirectories);
+        }
+    }
+
+    private DefaultWorkflow createWorkflow(File output, ParallelCommandPipeline pipeline) {
+        DefaultWorkflow workflow = new DefaultWorkflow();
+        workflow.setFactory(Factory.getInstance());
+        workflow.setConfiguration(new PropertiesConfiguration());
+        workflow.setOutputDirectory(output);
+        workflow.setCommandSequence(pipeline);
+        return workflow;
+    }
+
+    /**
+     * Independent commands run concurrently through a workflow, their results
+     * are appended in declaration order and workflow elements used by them,
+     * also on pooled threads, are placed below their own output directory.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrentBranches() throws Exception {
+        Factory.getInstance().getDataSourceFactory().setDataSources(Arrays.asList(MockDatasource.class.getCanonicalName()));
+        File input = tf.newFolder("input");
+        File output = tf.newFolder("output");
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        Map<String, File> helperDirectories = new ConcurrentHashMap<>();
+        ParallelCommandPipeline pipeline = new ParallelCommandPipeline();
+        pipeline.setCheckCommandDependencies(false);
+        pipeline.setCommands(Arrays.<IFragmentCommand>asList(
+            new BranchA(barrier, helperDirectories),
+            new BranchB(barrier, helperDirectories)));
+        pipeline.setInput(new TupleND<IFileFragment>(
+            new FileFragment(new File(input, "sample1.cdf")),
+            new FileFragment(new File(input, "sample2.cdf"))));
+        DefaultWorkflow workflow = createWorkflow(output, pipeline);
+        TupleND<IFileFragment> result = workflow.call();
+        Assert.assertEquals(2, result.size());
+        File dirA = new File(output, "00_BranchA");
+        File dirB = new File(output, "01_BranchB");
+        Assert.assertEquals(new File(dirB, "sample1.cdf").toURI(), result.get(0).getUri());
+        Assert.assertEquals(new File(dirA, "Helper"), helperDirectories.get("BranchA"));
+        Assert.assertEquals(new File(dirB, "Helper"), helperDirectories.get("BranchB"));
+        Assert.assertEquals(new File(dirA, "Helper"), helperDirectories.get("BranchA-pooled"));
+        Assert.assertEquals(new File(dirB, "Helper"), helperDirectories.get("BranchB-pooled"));
+        Assert.assertEquals(dirA, workflow.getOutputDirectory(pipeline.getCommands().get(0)));
+        for (IFragmentCommand cmd : pipeline.getCommands()) {
+            int files = 0;
+            for (IWorkflowResult r : workflow.getResultsFor(cmd)) {
+                if (r instanceof IWorkflowFileResult) {
+                    files++;
+                }
+            }
+            Assert.assertEquals(2, files);
+        }
+    }
+
+    /**
+     * Results appended to the workflow by concurrently running commands are
+     * appended in declaration order of the commands, although the second
+     * command produces its results first.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testResultsInDeclarationOrder() throws Exception {
+        Factory.getInstance().getDataSourceFactory().setDataSources(Arrays.asList(MockDatasource.class.getCanonicalName()));
+        File input = tf.newFolder("input");
+        File output = tf.newFolder("output");
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        Map<String, File> helperDirectories = new ConcurrentHashMap<>();
+        CountDownLatch produced = new CountDownLatch(1);
+        BranchA a = new BranchA(barrier, helperDirectories);
+        a.setResultOrder(produced, null);
+        BranchB b = new BranchB(barrier, helperDirectories);
+        b.setResultOrder(null, produced);
+        ParallelCommandPipeline pipeline = new ParallelCommandPipeline();
+        pipeline.setCheckCommandDependencies(false);
+        pipeline.setCommands(Arrays.<IFragmentCommand>asList(a, b));
+        pipeline.setInput(new TupleND<IFileFragment>(
+            new FileFragment(new File(input, "sample1.cdf")),
+            new FileFragment(new File(input, "sample2.cdf"))));
+        DefaultWorkflow workflow = createWorkflow(output, pipeline);
+        workflow.call();
+        List<URI> files = new ArrayList<>();
+        Iterator<IWorkflowResult> iter = workflow.getResults();
+        while (iter.hasNext()) {
+            IWorkflowResult r = iter.next();
+            if (r instanceof IWorkflowFileResult) {
+                files.add(((IWorkflowFileResult) r).getResources()[0].getUri());
+            }
+        }
+        File dirA = new File(output, "00_BranchA");
+        File dirB = new File(output, "01_BranchB");
+        Assert.assertEquals(Arrays.asList(
+            new File(dirA, "sample1.cdf").toURI(), new File(dirA, "sample2.cdf").toURI(),
+            new File(dirB, "sample1.cdf").toURI(), new File(dirB, "sample2.cdf").toURI()), files);
+    }
+
+    /**
+     * Commands running concurrently are profiled as concurrent commands,
+     * with per-file latencies derived from the progress steps they report,
+     * and each profile is written as one line of the profile file.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testProfiles() throws Exception {
+        Factory.getInstance().getDataSourceFactory().setDataSources(Arrays.asList(MockDatasource.class.getCanonicalName()));
+        File input = tf.newFolder("input");
+        File output = tf.newFolder("output");
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        Map<String, File> helperDirectories = new ConcurrentHashMap<>();
+        ParallelCommandPipeline pipeline = new ParallelCommandPipeline();
+        pipeline.setCheckCommandDependencies(false);
+        pipeline.setCommands(Arrays.<IFragmentCommand>asList(
+            new BranchA(barrier, helperDirectories),
+            new BranchB(barrier, helperDirectories)));
+        pipeline.setInput(new TupleND<IFileFragment>(
+            new FileFragment(new File(input, "sample1.cdf")),
+            new FileFragment(new File(input, "sample2.cdf")),
+            new FileFragment(new File(input, "sample3.cdf"))));
+        DefaultWorkflow workflow = createWorkflow(output, pipeline);
+        workflow.call();
+        List<CommandProfile> profiles = pipeline.getProfiles();
+        Assert.assertEquals(2, profiles.size());
+        for (CommandProfile p : profiles) {
+            Assert.assertTrue(p.isConcurrent());
+            Assert.assertEquals(3, p.getFiles());
+            //progress events are delivered asynchronously
+            Assert.assertTrue(p.getLatencySamples() > 0);
+            Assert.assertTrue(p.getLatencySamples() <= 3);
+            Assert.assertEquals(-1L, p.getPeakHeapBytes());
+        }
+        List<String> lines = Files.readAllLines(new File(output, workflow.getName() + "-profile.jsonl").toPath(), StandardCharsets.UTF_8);
+        Assert.assertEquals(2, lines.size());
+        Assert.assertTrue(lines.get(0), lines.get(0).startsWith("{\"workflow\":\"" + workflow.getName() + "\",\"command\":\"" + BranchA.class.getName() + "\""));
+        Assert.assertTrue(lines.get(1), lines.get(1).contains("\"command\":\"" + BranchB.class.getName() + "\""));
+        for (String line : lines) {
+            Assert.assertTrue(line, line.contains("\"concurrent\":true"));
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.datastructures.pipeline;
+
+import cross.Factory;
+import cross.cache.CacheType;
+import cross.commands.fragments.CountingCopyCommand;
+import cross.commands.fragments.IFragmentCommand;
+import cross.commands.fragments.VariableCopyCommand;
+import cross.datastructures.fragments.FileFragment;
+import cross.datastructures.fragments.Fragments;
+import cross.datastructures.fragments.IFileFragment;
+import cross.datastructures.tuple.TupleND;
+import cross.datastructures.workflow.DefaultWorkflow;
+import cross.datastructures.workflow.IWorkflowFileResult;
+import cross.datastructures.workflow.IWorkflowResult;
+import cross.io.MockDatasource;
+import cross.test.SetupLogging;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.ArrayDouble;
+
+/**
+ * Tests for incremental recomputation in {@link ResultAwareCommandPipeline}.
+ *
+ * @author Nils Hoffmann
+ */
+public class ResultAwareCommandPipelineTest {
+
+    /**
+     *
+     */
+    @Rule
+    public SetupLogging logging = new SetupLogging();
+    /**
+     *
+     */
+    @Rule
+    public TemporaryFolder tf = new TemporaryFolder();
+
+    /**
+     * Explicitly set the available data sources. Disable caching.
+     */
+    @Before
+    public void setUp() {
+        Factory.getInstance().getDataSourceFactory().setDataSources(Arrays.asList(MockDatasource.class.getCanonicalName()));
+        Fragments.setDefaultFragmentCacheType(CacheType.NONE);
+    }
+
+    private void writeInput(File file, double offset) {
+        FileFragment f = new FileFragment(file);
+        ArrayDouble.D1 a = new ArrayDouble.D1(4);
+        for (int j = 0; j < 4; j++) {
+            a.set(j, offset + j);
+        }
+        f.addChild("a").setArray(a);
+        Assert.assertTrue(f.save());
+    }
+
+    private List<IFragmentCommand> createCountingCommands() {
+        List<IFragmentCommand> commands = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            CountingCopyCommand cmd = new CountingCopyCommand();
+            cmd.setVariables(Arrays.asList("a"));
+            commands.add(cmd);
+        }
+        return commands;
+    }
+
+    private TupleND<IFileFragment> run(List<File> inputFiles, File output, DefaultWorkflow workflow) throws Exception {
+        List<IFragmentCommand> commands = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            VariableCopyCommand cmd = new VariableCopyCommand();
+            cmd.setVariables(Arrays.asList("a"));
+            commands.add(cmd);
+        }
+        return run(inputFiles, output, workflow, commands);
+    }
+
+    private TupleND<IFileFragment> run(List<File> inputFiles, File output, DefaultWorkflow workflow, List<IFragmentCommand> commands) throws Exception {
+        workflow.setFactory(Factory.getInstance());
+        workflow.setConfiguration(new PropertiesConfiguration());
+        workflow.setOutputDirectory(output);
+        TupleND<IFileFragment> in = new TupleND<>();
+        for (File f : inputFiles) {
+            in.add(new FileFragment(f));
+        }
+        ResultAwareCommandPipeline pipeline = new ResultAwareCommandPipeline();
+        pipeline.setIncremental(true);
+        pipeline.setCheckCommandDependencies(false);
+        pipeline.setCommands(commands);
+        pipeline.setInput(in);
+        workflow.setCommandSequence(pipeline);
+        return workflow.call();
+    }
+
+    private Set<File> getResultFiles(DefaultWorkflow workflow, File dir) {
+        Set<File> files = new HashSet<>();
+        int count = 0;
+        Iterator<IWorkflowResult> iter = workflow.getResults();
+        while (iter.hasNext()) {
+            IWorkflowResult r = iter.next();
+            if (r instanceof IWorkflowFileResult) {
+                File f = ((IWorkflowFileResult) r).getFile();
+                if (f.getParentFile().equals(dir)) {
+                    files.add(f);
+                    count++;
+                }
+            }
+        }
+        Assert.assertEquals("Duplicate results below " + dir, files.size(), count);
+        return files;
+    }
+
+    /**
+     * Changing one input file recomputes only the outputs derived from it,
+     * reuses all other outputs and does not restore any stale results.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testChangedInput() throws Exception {
+        File input = tf.newFolder("input");
+        File output = tf.newFolder("output");
+        List<File> inputFiles = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            File f = new File(input, "sample" + i + ".cdf");
+            writeInput(f, i * 10);
+            inputFiles.add(f);
+        }
+        File[] dirs = new File[]{new File(output, "00_VariableCopyCommand"), new File(output, "01_VariableCopyCommand")};
+        run(inputFiles, output, new DefaultWorkflow());
+        long timestamp = 1000000L;
+        for (File dir : dirs) {
+            for (int i = 0; i < 3; i++) {
+                Assert.assertTrue(new File(dir, "sample" + i + ".cdf").setLastModified(timestamp));
+            }
+        }
+        writeInput(inputFiles.get(1), 100);
+        DefaultWorkflow workflow = new DefaultWorkflow();
+        TupleND<IFileFragment> result = run(inputFiles, output, workflow);
+        Assert.assertEquals(3, result.size());
+        double[] expected = new double[]{3, 103, 23};
+        for (int i = 0; i < 3; i++) {
+            IFileFragment f = result.get(i);
+            Assert.assertEquals(new File(dirs[1], "sample" + i + ".cdf").toURI(), f.getUri());
+            Assert.assertEquals(expected[i], new FileFragment(f.getUri()).getChild("a").getArray().getDouble(3), 0.0d);
+        }
+        for (File dir : dirs) {
+            Set<File> files = getResultFiles(workflow, dir);
+            Assert.assertEquals(3, files.size());
+            for (int i = 0; i < 3; i++) {
+                File f = new File(dir, "sample" + i + ".cdf");
+                Assert.assertTrue(files.contains(f));
+                if (i == 1) {
+                    Assert.assertNotEquals(timestamp, f.lastModified());
+                } else {
+                    Assert.assertEquals(timestamp, f.lastModified());
+                }
+            }
+        }
+    }
+
+    /**
+     * Stale fragments are recomputed by a single invocation of the command
+     * and its outputs are mapped back to the changed inputs, in input order.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testStaleFragmentsRecomputedTogether() throws Exception {
+        File input = tf.newFolder("input");
+        File output = tf.newFolder("output");
+        List<File> inputFiles = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            File f = new File(input, "sample" + i + ".cdf");
+            writeInput(f, i * 10);
+            inputFiles.add(f);
+        }
+        run(inputFiles, output, new DefaultWorkflow(), createCountingCommands());
+        writeInput(inputFiles.get(1), 100);
+        writeInput(inputFiles.get(3), 300);
+        List<IFragmentCommand> commands = createCountingCommands();
+        TupleND<IFileFragment> result = run(inputFiles, output, new DefaultWorkflow(), commands);
+        for (IFragmentCommand cmd : commands) {
+            Assert.assertEquals(Arrays.asList(2), ((CountingCopyCommand) cmd).getInvocations());
+        }
+        Assert.assertEquals(4, result.size());
+        double[] expected = new double[]{3, 103, 23, 303};
+        for (int i = 0; i < 4; i++) {
+            IFileFragment f = result.get(i);
+            Assert.assertEquals(new File(new File(output, "01_CountingCopyCommand"), "sample" + i + ".cdf").toURI(), f.getUri());
+            Assert.assertEquals(expected[i], new FileFragment(f.getUri()).getChild("a").getArray().getDouble(3), 0.0d);
+        }
+    }
+}
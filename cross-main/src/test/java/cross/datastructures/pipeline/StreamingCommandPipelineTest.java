@@ -0,0 +1,259 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.datastructures.pipeline;
+
+import cross.Factory;
+import cross.cache.CacheType;
+import cross.commands.fragments.IFragmentCommand;
+import cross.commands.fragments.VariableCopyCommand;
+import cross.datastructures.fragments.FileFragment;
+import cross.datastructures.fragments.Fragments;
+import cross.datastructures.fragments.IFileFragment;
+import cross.datastructures.tuple.TupleND;
+import cross.datastructures.workflow.DefaultWorkflow;
+import cross.datastructures.workflow.IWorkflowFileResult;
+import cross.datastructures.workflow.IWorkflowResult;
+import cross.io.MockDatasource;
+import cross.test.SetupLogging;
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.ArrayDouble;
+
+/**
+ * Tests for {@link StreamingCommandPipeline} running within a
+ * {@link DefaultWorkflow}.
+ *
+ * @author Nils Hoffmann
+ */
+public class StreamingCommandPipelineTest {
+
+    /**
+     *
+     */
+    @Rule
+    public SetupLogging logging = new SetupLogging();
+    /**
+     *
+     */
+    @Rule
+    public TemporaryFolder tf = new TemporaryFolder();
+
+    /**
+     * Explicitly set the available data sources. Disable caching.
+     */
+    @Before
+    public void setUp() {
+        Factory.getInstance().getDataSourceFactory().setDataSources(Arrays.asList(MockDatasource.class.getCanonicalName()));
+        Fragments.setDefaultFragmentCacheType(CacheType.NONE);
+    }
+
+    private static int indexOf(List<IFragmentCommand> commands, IFragmentCommand cmd) {
+        for (int i = 0; i < commands.size(); i++) {
+            if (commands.get(i) == cmd) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Copies variables after waiting for another fragment to be processed
+     * concurrently by the same command. The first fragment is delayed, so
+     * that the second one completes first.
+     */
+    public static class BarrierCopyCommand extends VariableCopyCommand {
+
+        private final CyclicBarrier barrier;
+
+        BarrierCopyCommand(CyclicBarrier barrier) {
+            this.barrier = barrier;
+        }
+
+        @Override
+        public TupleND<IFileFragment> apply(TupleND<IFileFragment> in) {
+            try {
+                barrier.await(30, TimeUnit.SECONDS);
+                if (in.get(0).getName().startsWith("sample0")) {
+                    Thread.sleep(200);
+                }
+            } catch (InterruptedException | BrokenBarrierException | TimeoutException ex) {
+                throw new IllegalStateException("Fragments were not processed concurrently!", ex);
+            }
+            return super.apply(in);
+        }
+    }
+
+    private TupleND<IFileFragment> createInput(File input, int n) {
+        TupleND<IFileFragment> in = new TupleND<>();
+        for (int i = 0; i < n; i++) {
+            FileFragment f = new FileFragment(new File(input, "sample" + i + ".cdf"));
+            ArrayDouble.D1 a = new ArrayDouble.D1(4);
+            for (int j = 0; j < 4; j++) {
+                a.set(j, i * 10 + j);
+            }
+            f.addChild("a").setArray(a);
+            f.save();
+            in.add(new FileFragment(f.getUri()));
+        }
+        return in;
+    }
+
+    private VariableCopyCommand copy(String... variables) {
+        VariableCopyCommand cmd = new VariableCopyCommand();
+        cmd.setVariables(Arrays.asList(variables));
+        return cmd;
+    }
+
+    /**
+     * Two streamable commands are run as one segment. Each command is
+     * prepared before and cleaned up after the segment, its results are
+     * appended to the workflow and its output is placed into its own output
+     * directory.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testTwoCommandStream() throws Exception {
+        File input = tf.newFolder("input");
+        final File output = tf.newFolder("output");
+        TupleND<IFileFragment> in = createInput(input, 3);
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        final List<IFragmentCommand> commands = Arrays.<IFragmentCommand>asList(copy("a"), copy("a"));
+        DefaultWorkflow workflow = new DefaultWorkflow();
+        workflow.setFactory(Factory.getInstance());
+        workflow.setConfiguration(new PropertiesConfiguration());
+        workflow.setOutputDirectory(output);
+        StreamingCommandPipeline pipeline = new StreamingCommandPipeline() {
+            @Override
+            public void beforeCommand(IFragmentCommand cmd) {
+                super.beforeCommand(cmd);
+                File dir = cmd.getWorkflow().getOutputDirectory(cmd);
+                events.add("before" + indexOf(commands, cmd) + (dir.list().length == 0 ? "" : "-late"));
+            }
+
+            @Override
+            public void afterCommand(IFragmentCommand cmd) {
+                super.afterCommand(cmd);
+                events.add("after" + indexOf(commands, cmd));
+            }
+        };
+        pipeline.setCheckCommandDependencies(false);
+        pipeline.setCommands(commands);
+        pipeline.setInput(in);
+        workflow.setCommandSequence(pipeline);
+        TupleND<IFileFragment> result = workflow.call();
+        Assert.assertEquals(Arrays.asList("before0", "before1", "after0", "after1"), events);
+        Assert.assertEquals(3, result.size());
+        File dir0 = new File(output, "00_VariableCopyCommand");
+        File dir1 = new File(output, "01_VariableCopyCommand");
+        for (int i = 0; i < 3; i++) {
+            IFileFragment f = result.get(i);
+            Assert.assertEquals(new File(dir1, "sample" + i + ".cdf").toURI(), f.getUri());
+            Assert.assertEquals(i * 10 + 3, new FileFragment(f.getUri()).getChild("a").getArray().getDouble(3), 0.0d);
+        }
+        File[] dirs = new File[]{dir0, dir1};
+        for (int i = 0; i < commands.size(); i++) {
+            List<URI> files = new ArrayList<>();
+            Iterator<IWorkflowResult> iter = workflow.getResults();
+            while (iter.hasNext()) {
+                IWorkflowResult r = iter.next();
+                if (r instanceof IWorkflowFileResult && r.getWorkflowElement() == commands.get(i)) {
+                    files.add(((IWorkflowFileResult) r).getResources()[0].getUri());
+                }
+            }
+            Assert.assertEquals(3, files.size());
+            for (int j = 0; j < 3; j++) {
+                Assert.assertTrue(files.contains(new File(dirs[i], "sample" + j + ".cdf").toURI()));
+            }
+        }
+    }
+
+    /**
+     * A stage processes several fragments concurrently, but emits them and
+     * appends their results in input order.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrentFragmentsWithinStage() throws Exception {
+        File input = tf.newFolder("input");
+        File output = tf.newFolder("output");
+        TupleND<IFileFragment> in = createInput(input, 4);
+        BarrierCopyCommand first = new BarrierCopyCommand(new CyclicBarrier(2));
+        first.setVariables(Arrays.asList("a"));
+        List<IFragmentCommand> commands = Arrays.<IFragmentCommand>asList(first, copy("a"));
+        PropertiesConfiguration cfg = new PropertiesConfiguration();
+        cfg.setProperty("cross.Factory.maxthreads", 2);
+        DefaultWorkflow workflow = new DefaultWorkflow();
+        workflow.setFactory(Factory.getInstance());
+        workflow.setConfiguration(cfg);
+        workflow.setOutputDirectory(output);
+        StreamingCommandPipeline pipeline = new StreamingCommandPipeline();
+        pipeline.setCheckCommandDependencies(false);
+        pipeline.setCommands(commands);
+        pipeline.setInput(in);
+        workflow.setCommandSequence(pipeline);
+        TupleND<IFileFragment> result = workflow.call();
+        Assert.assertEquals(4, result.size());
+        File dir0 = new File(output, "00_BarrierCopyCommand");
+        File dir1 = new File(output, "01_VariableCopyCommand");
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals(new File(dir1, "sample" + i + ".cdf").toURI(), result.get(i).getUri());
+        }
+        List<URI> files = new ArrayList<>();
+        Iterator<IWorkflowResult> iter = workflow.getResults();
+        while (iter.hasNext()) {
+            IWorkflowResult r = iter.next();
+            if (r instanceof IWorkflowFileResult) {
+                files.add(((IWorkflowFileResult) r).getResources()[0].getUri());
+            }
+        }
+        List<URI> expected = new ArrayList<>();
+        for (File dir : Arrays.asList(dir0, dir1)) {
+            for (int i = 0; i < 4; i++) {
+                expected.add(new File(dir, "sample" + i + ".cdf").toURI());
+            }
+        }
+        Assert.assertEquals(expected, files);
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.datastructures.workflow;
+
+import cross.Factory;
+import cross.cache.CacheType;
+import cross.commands.fragments.IFragmentCommand;
+import cross.commands.fragments.VariableCopyCommand;
+import cross.datastructures.fragments.FileFragment;
+import cross.datastructures.fragments.Fragments;
+import cross.datastructures.fragments.IFileFragment;
+import cross.datastructures.pipeline.ResultAwareCommandPipeline;
+import cross.datastructures.tuple.TupleND;
+import cross.exception.ResourceNotAvailableException;
+import cross.io.MockDatasource;
+import cross.test.SetupLogging;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.ArrayDouble;
+
+/**
+ * Tests for {@link DefaultWorkflow}.
+ *
+ * @author Nils Hoffmann
+ */
+public class DefaultWorkflowTest {
+
+    /**
+     *
+     */
+    @Rule
+    public SetupLogging logging = new SetupLogging();
+    /**
+     *
+     */
+    @Rule
+    public TemporaryFolder tf = new TemporaryFolder();
+
+    /**
+     * Explicitly set the available data sources. Disable caching.
+     */
+    @Before
+    public void setUp() {
+        Factory.getInstance().getDataSourceFactory().setDataSources(Arrays.asList(MockDatasource.class.getCanonicalName()));
+        Fragments.setDefaultFragmentCacheType(CacheType.NONE);
+    }
+
+    private DefaultWorkflow createWorkflow(TupleND<IFileFragment> in, File output, String secondVariable) {
+        DefaultWorkflow workflow = new DefaultWorkflow();
+        workflow.setFactory(Factory.getInstance());
+        workflow.setConfiguration(new PropertiesConfiguration());
+        workflow.setOutputDirectory(output);
+        List<IFragmentCommand> commands = new ArrayList<>();
+        for (String variable : Arrays.asList("a", secondVariable)) {
+            VariableCopyCommand cmd = new VariableCopyCommand();
+            cmd.setVariables(Arrays.asList(variable));
+            commands.add(cmd);
+        }
+        ResultAwareCommandPipeline pipeline = new ResultAwareCommandPipeline();
+        pipeline.setCheckCommandDependencies(false);
+        pipeline.setCommands(commands);
+        pipeline.setInput(in);
+        workflow.setCommandSequence(pipeline);
+        return workflow;
+    }
+
+    private List<File> getResultFiles(IWorkflow workflow) {
+        List<File> files = new ArrayList<>();
+        Iterator<IWorkflowResult> iter = workflow.getResults();
+        while (iter.hasNext()) {
+            IWorkflowResult r = iter.next();
+            if (r instanceof IWorkflowFileResult) {
+                files.add(((IWorkflowFileResult) r).getFile());
+            }
+        }
+        return files;
+    }
+
+    /**
+     * A workflow that stops within its second command is restored from its
+     * journal. The results of the first command are recovered and not
+     * recomputed.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRecoverFromJournal() throws Exception {
+        File input = tf.newFolder("input");
+        File output = tf.newFolder("output");
+        TupleND<IFileFragment> in = new TupleND<>();
+        for (int i = 0; i < 3; i++) {
+            FileFragment f = new FileFragment(new File(input, "sample" + i + ".cdf"));
+            ArrayDouble.D1 a = new ArrayDouble.D1(4);
+            for (int j = 0; j < 4; j++) {
+                a.set(j, i * 10 + j);
+            }
+            f.addChild("a").setArray(a);
+            Assert.assertTrue(f.save());
+            in.add(new FileFragment(f.getUri()));
+        }
+        //the second command fails, since variable b does not exist
+        DefaultWorkflow failed = createWorkflow(in, output, "b");
+        try {
+            failed.call();
+            Assert.fail("Expected the second command to fail!");
+        } catch (ResourceNotAvailableException ex) {
+            //expected
+        }
+        //simulate a crash before the workflow xml file was written
+        Assert.assertTrue(failed.getWorkflowXmlFile().delete());
+        File journal = WorkflowJournal.getJournalFile(failed);
+        Assert.assertTrue(journal.isFile());
+        int results = 0;
+        for (WorkflowJournal.Record r : WorkflowJournal.read(journal)) {
+            if (r.getType() == WorkflowJournal.RESULT && r.getText().contains("00_VariableCopyCommand")) {
+                results++;
+            }
+        }
+        Assert.assertEquals(3, results);
+        File dir0 = new File(output, "00_VariableCopyCommand");
+        File dir1 = new File(output, "01_VariableCopyCommand");
+        long timestamp = 1000000L;
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(new File(dir0, "sample" + i + ".cdf").setLastModified(timestamp));
+        }
+        DefaultWorkflow recovered = createWorkflow(in, output, "a");
+        TupleND<IFileFragment> result = recovered.call();
+        Assert.assertEquals(3, result.size());
+        List<File> files = getResultFiles(recovered);
+        Assert.assertEquals(6, files.size());
+        for (int i = 0; i < 3; i++) {
+            File f0 = new File(dir0, "sample" + i + ".cdf");
+            Assert.assertTrue(files.contains(f0));
+            Assert.assertEquals(timestamp, f0.lastModified());
+            Assert.assertTrue(files.contains(new File(dir1, "sample" + i + ".cdf")));
+        }
+        //outputs of skipped commands are listed in directory order
+        for (IFileFragment f : result) {
+            int i = Integer.parseInt(f.getName().replaceAll("\\D", ""));
+            Assert.assertEquals(new File(dir1, "sample" + i + ".cdf").toURI(), f.getUri());
+            Assert.assertEquals(i * 10 + 3, new FileFragment(f.getUri()).getChild("a").getArray().getDouble(3), 0.0d);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.datastructures.workflow;
+
+import cross.test.SetupLogging;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link WorkflowJournal}.
+ *
+ * @author Nils Hoffmann
+ */
+public class WorkflowJournalTest {
+
+    /**
+     *
+     */
+    @Rule
+    public SetupLogging logging = new SetupLogging();
+    /**
+     *
+     */
+    @Rule
+    public TemporaryFolder tf = new TemporaryFolder();
+
+    /**
+     * Incomplete records at the end of a journal are ignored.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testTruncatedJournal() throws IOException {
+        File f = new File(tf.newFolder(), "workflow.journal");
+        try (WorkflowJournal j = WorkflowJournal.create(f)) {
+            j.append(WorkflowJournal.HEADER, "<workflowCommands/>");
+            j.append(WorkflowJournal.RESULT, "<a/>");
+            j.append(WorkflowJournal.COMMAND, "cmd");
+            j.sync();
+        }
+        long length = f.length();
+        try (WorkflowJournal j = WorkflowJournal.rewrite(f, WorkflowJournal.read(f))) {
+            j.append(WorkflowJournal.RESULT, "<b/>");
+        }
+        //cut off the last byte of the last record
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+        List<WorkflowJournal.Record> records = WorkflowJournal.read(f);
+        Assert.assertEquals(3, records.size());
+        Assert.assertEquals(WorkflowJournal.RESULT, records.get(1).getType());
+        Assert.assertEquals("<a/>", records.get(1).getText());
+        Assert.assertEquals("cmd", records.get(2).getText());
+        //compaction
+        try (WorkflowJournal j = WorkflowJournal.rewrite(f, Arrays.asList(records.get(0), records.get(1)))) {
+            j.append(WorkflowJournal.RESULT, "<c/>");
+        }
+        records = WorkflowJournal.read(f);
+        Assert.assertEquals(3, records.size());
+        Assert.assertEquals("<c/>", records.get(2).getText());
+        Assert.assertTrue(f.length() < length + 10);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Cross, common runtime object support system.
+ * Copyright (C) 2008-2012, The authors of Cross. All rights reserved.
+ *
+ * Project website: http://maltcms.sf.net
+ *
+ * Cross may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Cross, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Cross is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package cross.io;
+
+import cross.test.SetupLogging;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link FingerprintService}.
+ *
+ * @author Nils Hoffmann
+ */
+public class FingerprintServiceTest {
+
+    /**
+     *
+     */
+    @Rule
+    public SetupLogging logging = new SetupLogging();
+    /**
+     *
+     */
+    @Rule
+    public TemporaryFolder tf = new TemporaryFolder();
+
+    private static long xxh64(String s) {
+        XXHash64 h = new XXHash64(0);
+        h.update(ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8)));
+        return h.digest();
+    }
+
+    /**
+     * Reference values of the xxHash specification.
+     */
+    @Test
+    public void testXXHash64() {
+        Assert.assertEquals(0xEF46DB3751D8E999L, xxh64(""));
+        Assert.assertEquals(0x44BC2CF5AD770999L, xxh64("abc"));
+        Assert.assertEquals(0xFBCEA83C8A378BF1L, xxh64("Nobody inspects the spammish repetition"));
+    }
+
+    private File write(File f, String content, long mtime) throws IOException {
+        Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        f.setLastModified(mtime);
+        return f;
+    }
+
+    /**
+     * Fingerprints are memoized by file attributes across instances.
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testMemoization() throws IOException {
+        File store = new File(tf.newFolder(), ".fingerprints");
+        File dir = tf.newFolder();
+        long mtime = System.currentTimeMillis() - 60000L;
+        File a = write(new File(dir, "a.txt"), "alpha", mtime);
+        File b = write(new File(dir, "b.txt"), "beta", mtime);
+        String hashA;
+        String hashDir;
+        try (FingerprintService fs = new FingerprintService(store, FingerprintService.Algorithm.XXH64, 2)) {
+            hashA = fs.fingerprint(a);
+            hashDir = fs.fingerprint(Arrays.asList(dir));
+            Assert.assertEquals(2, fs.fingerprints(Arrays.asList(dir)).size());
+        }
+        Assert.assertTrue(store.isFile());
+        //same size and modification time, the memoized value is returned
+        write(a, "gamma", mtime);
+        try (FingerprintService fs = new FingerprintService(store, FingerprintService.Algorithm.XXH64, 2)) {
+            Assert.assertEquals(hashA, fs.fingerprint(a));
+            write(b, "delta!", mtime);
+            Assert.assertNotEquals(hashDir, fs.fingerprint(Arrays.asList(dir)));
+        }
+        try (FingerprintService fs = new FingerprintService(store, FingerprintService.Algorithm.SHA1, 1)) {
+            Assert.assertEquals(40, fs.fingerprint(a).length());
+        }
+    }
+}
@@ -31,13 +31,16 @@ import cross.datastructures.fragments.IFileFragment;
 import cross.datastructures.fragments.IVariableFragment;
 import cross.datastructures.fragments.VariableFragment;
 import cross.exception.ResourceNotAvailableException;
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.event.ConfigurationEvent;
@@ -52,7 +55,7 @@ import ucar.ma2.Array;
 @Slf4j
 public class MockDatasource implements IDataSource {
 
-    Map<URI, MockFile> persistentCache = new HashMap<>();
+    Map<URI, MockFile> persistentCache = new ConcurrentHashMap<>();
     private String[] fileEnding = new String[]{"nc", "nc.gz", "nc.z", "nc.zip", "nc.gzip", "nc.bz2", "cdf", "cdf.gz", "cdf.z", "cdf.zip", "cdf.gzip", "cdf.bz2"};
 
     @Override
@@ -73,12 +76,8 @@ public class MockDatasource implements IDataSource {
     }
 
     private MockFile getCache(IFileFragment f) {
-        if (persistentCache.containsKey(f.getUri())) {
-            return persistentCache.get(f.getUri());
-        }
-        MockFile mf = new MockFile(f.getUri());
-        persistentCache.put(f.getUri(), mf);
-        return mf;
+        //fragments may be read and written concurrently by pipeline stages
+        return persistentCache.computeIfAbsent(f.getUri(), (uri) -> new MockFile(uri));
     }
 
     @Override
@@ -140,9 +139,37 @@ public class MockDatasource implements IDataSource {
                 mf.addChild(v.getName(), new ArrayList<>(Arrays.asList(v.getArray())));
             }
         }
+        writeContentFile(f.getUri(), mf);
         return true;
     }
 
+    /**
+     * Writes a text representation of the mock file's content to disk, if the
+     * uri's parent directory exists, so that file based checks, like content
+     * fingerprints, see each write.
+     *
+     * @param uri the file uri
+     * @param mf  the mock file
+     */
+    private void writeContentFile(URI uri, MockFile mf) {
+        if (!"file".equals(uri.getScheme())) {
+            return;
+        }
+        File file = new File(uri);
+        if (!file.getParentFile().isDirectory()) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String key : mf.keys()) {
+            sb.append(key).append("=").append(mf.getIndexedChild(key)).append("\n");
+        }
+        try {
+            Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            log.warn("Could not write content file " + file, ex);
+        }
+    }
+
     @Override
     public void configure(Configuration cfg) {
     }
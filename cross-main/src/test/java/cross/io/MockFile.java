@@ -71,7 +71,12 @@ public class MockFile {
      */
     public Array getChild(String name) {
         if (variableToDataMap.containsKey(name)) {
-            return ArrayTools.glue(variableToDataMap.get(name));
+            ArrayList<Array> arrays = variableToDataMap.get(name);
+            //non-indexed variables, e.g. source_files, may have any rank
+            if (arrays.size() == 1) {
+                return arrays.get(0);
+            }
+            return ArrayTools.glue(arrays);
         }
         throw new ResourceNotAvailableException("Could not find variable " + name + " for file " + uri);
     }
@@ -94,6 +94,24 @@ public class ConfigurationKeys {
 	 */
 	public static final String KEY_OUTPUT_FILE = "OUTPUT_FILE";
 
+	/**
+	 * The number of input resources a compute host remembers as cached,
+	 * after jobs using them have run on the host.
+	 */
+	public static final String KEY_RESOURCE_CACHE_SIZE = "RESOURCE_CACHE_SIZE";
+
+	/**
+	 * The interval in milliseconds between heartbeats of a compute host to
+	 * the master server.
+	 */
+	public static final String KEY_HEARTBEAT_INTERVAL = "HEARTBEAT_INTERVAL";
+
+	/**
+	 * The list of resources a compute host holds locally, reported to the
+	 * master server on registration.
+	 */
+	public static final String KEY_LOCAL_RESOURCES = "LOCAL_RESOURCES";
+
     //drmaa specific
 	/**
 	 *
@@ -166,11 +184,89 @@ public class ConfigurationKeys {
 	 */
 	public static final String KEY_MAX_NUMBER_OF_CHOSTS = "MAX_NUMBER_OF_CHOSTS";
 
+	/**
+	 * The number of jobs dispatched to a compute host in addition to its
+	 * cores, which wait in the host's local run queue.
+	 */
+	public static final String KEY_RUN_QUEUE_LENGTH = "RUN_QUEUE_LENGTH";
+
 	/**
 	 *
 	 */
 	public static final String KEY_EXPORT_JMX = "EXPORT_JMX";
 
+	/**
+	 * The job queue policy of the master server, either <code>PRIORITY</code>
+	 * or <code>FAIR_SHARE</code>.
+	 */
+	public static final String KEY_JOB_QUEUE_POLICY = "JOB_QUEUE_POLICY";
+
+	/**
+	 * The waiting time in milliseconds, after which a pending job has gained
+	 * one priority level. 0 disables aging.
+	 */
+	public static final String KEY_JOB_QUEUE_AGING = "JOB_QUEUE_AGING";
+
+	/**
+	 * The fair share weights of job groups, as a list of
+	 * <code>group=weight</code> entries. Unlisted groups have weight 1.
+	 */
+	public static final String KEY_JOB_QUEUE_WEIGHTS = "JOB_QUEUE_WEIGHTS";
+
+	/**
+	 * The maximum time in milliseconds a job waits for a free compute host,
+	 * which holds more of its input resources than the currently free hosts.
+	 * 0 disables waiting.
+	 */
+	public static final String KEY_LOCALITY_WAIT = "LOCALITY_WAIT";
+
+	/**
+	 * The suspicion level phi, above which the master server declares a
+	 * compute host dead and reschedules its running jobs.
+	 */
+	public static final String KEY_FAILURE_THRESHOLD = "FAILURE_THRESHOLD";
+
+	/**
+	 * The serialized size in bytes, above which a job result is transferred
+	 * separately from its job in compressed chunks.
+	 */
+	public static final String KEY_RESULT_TRANSFER_THRESHOLD = "RESULT_TRANSFER_THRESHOLD";
+
+	/**
+	 * The size in bytes of the chunks, in which large job results are
+	 * transferred.
+	 */
+	public static final String KEY_RESULT_CHUNK_SIZE = "RESULT_CHUNK_SIZE";
+
+	/**
+	 * The number of compute hosts the master server keeps running, even if
+	 * they are idle.
+	 */
+	public static final String KEY_MIN_NUMBER_OF_CHOSTS = "MIN_NUMBER_OF_CHOSTS";
+
+	/**
+	 * The maximum number of compute hosts launched in one scaling round.
+	 */
+	public static final String KEY_HOST_LAUNCH_BATCH_SIZE = "HOST_LAUNCH_BATCH_SIZE";
+
+	/**
+	 * The time in milliseconds a launched compute host has to register,
+	 * before it is no longer counted as starting.
+	 */
+	public static final String KEY_HOST_LAUNCH_TIMEOUT = "HOST_LAUNCH_TIMEOUT";
+
+	/**
+	 * The time in milliseconds a compute host may stay idle, before it is
+	 * retired. 0 keeps idle hosts.
+	 */
+	public static final String KEY_HOST_IDLE_TIMEOUT = "HOST_IDLE_TIMEOUT";
+
+	/**
+	 * The interval in milliseconds, in which the master server adjusts the
+	 * number of compute hosts to the pending jobs.
+	 */
+	public static final String KEY_SCALING_INTERVAL = "SCALING_INTERVAL";
+
     //common keys
 	/**
 	 *
@@ -196,4 +292,34 @@ public class ConfigurationKeys {
 	 *
 	 */
 	public static final String KEY_MASTER_SERVER_EXIT_ON_SHUTDOWN = "MASTER_SERVER_EXIT_ON_SHUTDOWN";
+
+	/**
+	 * Whether a compute host terminates its process, when it is retired by
+	 * the master server. Hosts running inside the master server's process
+	 * only release their resources.
+	 */
+	public static final String KEY_COMPUTE_HOST_EXIT_ON_RETIRE = "COMPUTE_HOST_EXIT_ON_RETIRE";
+
+	/**
+	 * The transport used between master server and compute hosts, one of
+	 * RMI (default), NIO or LOOPBACK.
+	 */
+	public static final String KEY_TRANSPORT = "TRANSPORT";
+
+	/**
+	 * The class name of the codec used by transports other than RMI.
+	 */
+	public static final String KEY_TRANSPORT_CODEC = "TRANSPORT_CODEC";
+
+	/**
+	 * The maximum length in bytes of a frame sent or received by the NIO
+	 * transport. Larger frames are rejected.
+	 */
+	public static final String KEY_TRANSPORT_MAX_FRAME_LENGTH = "TRANSPORT_MAX_FRAME_LENGTH";
+
+	/**
+	 * The time in milliseconds a call over the NIO transport waits for its
+	 * reply, 0 to wait indefinitely.
+	 */
+	public static final String KEY_TRANSPORT_CALL_TIMEOUT = "TRANSPORT_CALL_TIMEOUT";
 }
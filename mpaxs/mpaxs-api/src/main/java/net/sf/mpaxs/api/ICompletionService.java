@@ -27,6 +27,7 @@
  */
 package net.sf.mpaxs.api;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
@@ -90,4 +91,18 @@ public interface ICompletionService<T> extends Callable<List<T>> {
 	 */
 	Future<T> submit(Runnable r, T t) throws RejectedExecutionException, NullPointerException;
 
+	/**
+	 * Returns the results of all submitted tasks as they become available.
+	 * Like {@link #call()}, this closes the completion service for further
+	 * submissions. Implementations should yield each result as soon as its
+	 * task has completed, so that callers can process results while slower
+	 * tasks are still running. The default implementation waits for all
+	 * results by calling {@link #call()}.
+	 *
+	 * @return an iterator over the results of successful tasks
+	 * @throws Exception if retrieval of the results fails
+	 */
+	default Iterator<T> results() throws Exception {
+		return call().iterator();
+	}
 }
@@ -74,6 +74,14 @@ public interface IComputeHost extends Remote {
 	 */
 	void masterServerShuttingDown(UUID authToken) throws RemoteException;
 
+	/**
+	 * Retire this host, after the master server has removed it as idle.
+	 *
+	 * @param authToken the authentication token
+	 * @throws RemoteException
+	 */
+	void retire(UUID authToken) throws RemoteException;
+
 	/**
 	 * Returns whether this host is still alive.
 	 *
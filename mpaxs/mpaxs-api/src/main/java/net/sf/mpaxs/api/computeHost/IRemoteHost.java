@@ -59,6 +59,15 @@ public interface IRemoteHost extends Thread.UncaughtExceptionHandler {
 	 */
 	void shutdown(Remote obj);
 
+	/**
+	 * Disconnect the compute host after it has been retired by the master
+	 * server and release its resources. Terminates the process, unless the
+	 * host runs inside the master server's process.
+	 *
+	 * @param obj the remote reference
+	 */
+	void retire(Remote obj);
+
 	/**
 	 * Catch uncaught exceptions.
 	 *
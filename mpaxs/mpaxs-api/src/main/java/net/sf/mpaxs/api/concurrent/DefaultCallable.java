@@ -45,7 +45,7 @@ import net.sf.mpaxs.api.job.Progress;
  *
  * @see java.util.concurrent.Callable
  */
-public class DefaultCallable<V> implements ConfigurableRunnable<V> {
+public class DefaultCallable<V> implements ConfigurableRunnable<V>, IDetachableResult<V> {
 
 	private final Progress p = new Progress();
 	private final Callable<V> c;
@@ -103,4 +103,16 @@ public class DefaultCallable<V> implements ConfigurableRunnable<V> {
 		}
 		return result;
 	}
+
+	@Override
+	public V detachResult() {
+		V v = result;
+		result = null;
+		return v;
+	}
+
+	@Override
+	public void attachResult(V result) {
+		this.result = result;
+	}
 }
@@ -0,0 +1,360 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.api.job;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * JVM wide cache of class loaders for jar configured jobs.
+ *
+ * Loaders are keyed by the resolved, ordered set of codebase and jar urls
+ * together with a checksum of every jar file, so that jobs referencing the
+ * same, unchanged jars share one loader and its already loaded and verified
+ * classes. Every {@link Lease} holds a reference on its loader. Loaders
+ * without references are kept for reuse up to {@link #MAX_IDLE_LOADERS},
+ * loaders whose jars have changed are no longer handed out.
+ *
+ * Evicted loaders are not closed, since instances of their classes, e.g. the
+ * results of finished jobs, may outlive all leases and still load classes or
+ * resources lazily. A loader and its jar files are released by the garbage
+ * collector, once it is no longer reachable.
+ *
+ * @author Nils Hoffmann
+ */
+final class ClassLoaderCache {
+
+	/**
+	 * Maximum number of unreferenced loaders kept for reuse.
+	 */
+	static final int MAX_IDLE_LOADERS = 8;
+	/**
+	 * Maximum number of memoized jar resolutions and checksums.
+	 */
+	static final int MAX_MEMOS = 256;
+	private static final ClassLoaderCache INSTANCE = new ClassLoaderCache();
+	private final Map<String, Entry> loaders = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private final Map<String, Resolution> resolvedJars = new Memo<String, Resolution>();
+	private final Map<String, Long> checksums = new Memo<String, Long>();
+
+	private ClassLoaderCache() {
+	}
+
+	/**
+	 * @return the shared cache instance
+	 */
+	static ClassLoaderCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns a lease on a class loader for the given codebase and jar file,
+	 * including all jars reachable through manifest <code>Class-Path</code>
+	 * entries.
+	 *
+	 * @param codebase an optional codebase url, may be null
+	 * @param startJarFile the jar file containing the job class
+	 * @return a lease, which must be released once the job's classes are no longer used
+	 * @throws IOException if a jar can not be read
+	 */
+	Lease acquire(final URL codebase, final File startJarFile) throws IOException {
+		List<File> jars = resolve(startJarFile);
+		List<URL> urls = new ArrayList<URL>(jars.size() + 1);
+		StringBuilder location = new StringBuilder();
+		StringBuilder key = new StringBuilder();
+		if (codebase != null) {
+			urls.add(codebase);
+			location.append(codebase).append('\n');
+		}
+		for (File jar : jars) {
+			urls.add(new URL("jar:" + jar.toURI() + "!/"));
+			location.append(jar.getAbsolutePath()).append('\n');
+			key.append(Long.toHexString(checksum(jar))).append('\n');
+		}
+		String loc = location.toString();
+		String k = loc + key;
+		synchronized (this) {
+			Entry e = loaders.get(k);
+			if (e == null) {
+				retire(loc);
+				e = new Entry(loc, new URLClassLoader(urls.toArray(new URL[urls.size()])));
+				loaders.put(k, e);
+				Logger.getLogger(ClassLoaderCache.class.getName()).log(Level.FINE, "Created class loader for {0}", urls);
+			}
+			e.references++;
+			evictIdle();
+			return new Lease(this, k, e);
+		}
+	}
+
+	/**
+	 * @return the number of cached loaders
+	 */
+	synchronized int size() {
+		return loaders.size();
+	}
+
+	private synchronized void release(final String key, final Entry e) {
+		e.references--;
+		if (e.references == 0 && loaders.get(key) == e) {
+			evictIdle();
+		}
+	}
+
+	/**
+	 * Removes loaders for the same location whose jars have since changed.
+	 */
+	private void retire(final String location) {
+		Iterator<Entry> iter = loaders.values().iterator();
+		while (iter.hasNext()) {
+			if (iter.next().location.equals(location)) {
+				iter.remove();
+			}
+		}
+	}
+
+	private void evictIdle() {
+		int idle = 0;
+		for (Entry e : loaders.values()) {
+			if (e.references == 0) {
+				idle++;
+			}
+		}
+		Iterator<Entry> iter = loaders.values().iterator();
+		while (idle > MAX_IDLE_LOADERS && iter.hasNext()) {
+			Entry e = iter.next();
+			if (e.references == 0) {
+				iter.remove();
+				idle--;
+			}
+		}
+	}
+
+	/**
+	 * Returns the start jar and all jars reachable from it. A memoized
+	 * resolution is reused as long as none of its jars has changed, since any
+	 * of their manifests may change the reachable jars.
+	 */
+	private List<File> resolve(final File startJarFile) throws IOException {
+		String path = startJarFile.getAbsolutePath();
+		synchronized (resolvedJars) {
+			Resolution r = resolvedJars.get(path);
+			if (r != null && r.isValid()) {
+				return r.jars;
+			}
+		}
+		Set<File> s = new LinkedHashSet<File>();
+		getDependentJars(startJarFile, s);
+		Resolution r = new Resolution(new ArrayList<File>(s));
+		synchronized (resolvedJars) {
+			resolvedJars.put(path, r);
+		}
+		return r.jars;
+	}
+
+	private void getDependentJars(final File startJarFile, final Set<File> ret) throws IOException {
+		if (!ret.add(startJarFile.getAbsoluteFile())) {
+			return;
+		}
+		URL jar = new URL("jar:" + startJarFile.toURI() + "!/");
+		JarURLConnection uc = (JarURLConnection) jar.openConnection();
+		//do not share the jar file with, or keep it open in, the url cache
+		uc.setUseCaches(false);
+		Attributes att = null;
+		JarFile jf = uc.getJarFile();
+		try {
+			Manifest m = jf.getManifest();
+			if (m != null) {
+				att = m.getMainAttributes();
+			}
+		} finally {
+			jf.close();
+		}
+		if (att != null) {
+			String classPath = att.getValue(Attributes.Name.CLASS_PATH);
+			if (classPath != null && !classPath.isEmpty()) {
+				String[] classPathArray = classPath.split(" ");
+				for (int i = 0; i < classPathArray.length; i++) {
+					File newJar = new File(startJarFile.getParent() + File.separator + classPathArray[i]);
+					if (newJar.canRead()) {
+						getDependentJars(newJar, ret);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the CRC32 of the file's contents. The checksum is only
+	 * recomputed when the file's length or modification time change.
+	 */
+	private long checksum(final File f) throws IOException {
+		String fp = fingerprint(f);
+		synchronized (checksums) {
+			Long crc = checksums.get(fp);
+			if (crc != null) {
+				return crc;
+			}
+		}
+		CRC32 crc = new CRC32();
+		InputStream is = new FileInputStream(f);
+		try {
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = is.read(buffer)) != -1) {
+				crc.update(buffer, 0, read);
+			}
+		} finally {
+			is.close();
+		}
+		synchronized (checksums) {
+			checksums.put(fp, crc.getValue());
+		}
+		return crc.getValue();
+	}
+
+	private static String fingerprint(final File f) {
+		return f.getAbsolutePath() + ":" + f.length() + ":" + f.lastModified();
+	}
+
+	/**
+	 * The jars reachable from a start jar, with the fingerprints they had
+	 * when they were resolved.
+	 */
+	private static final class Resolution {
+
+		private final List<File> jars;
+		private final List<String> fingerprints;
+
+		Resolution(final List<File> jars) {
+			this.jars = Collections.unmodifiableList(jars);
+			this.fingerprints = new ArrayList<String>(jars.size());
+			for (File jar : jars) {
+				fingerprints.add(fingerprint(jar));
+			}
+		}
+
+		boolean isValid() {
+			for (int i = 0; i < jars.size(); i++) {
+				if (!fingerprints.get(i).equals(fingerprint(jars.get(i)))) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Least recently used map holding at most {@link #MAX_MEMOS} entries.
+	 */
+	private static final class Memo<K, V> extends LinkedHashMap<K, V> {
+
+		Memo() {
+			super(16, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+			return size() > MAX_MEMOS;
+		}
+	}
+
+	private static final class Entry {
+
+		private final String location;
+		private final URLClassLoader loader;
+		private int references = 0;
+
+		Entry(final String location, final URLClassLoader loader) {
+			this.location = location;
+			this.loader = loader;
+		}
+	}
+
+	/**
+	 * A reference on a cached class loader. Releasing is idempotent, so a
+	 * lease may safely be released explicitly and again by a cleaner.
+	 */
+	static final class Lease implements Runnable {
+
+		private final ClassLoaderCache cache;
+		private final String key;
+		private final Entry entry;
+		private boolean released = false;
+
+		private Lease(final ClassLoaderCache cache, final String key, final Entry entry) {
+			this.cache = cache;
+			this.key = key;
+			this.entry = entry;
+		}
+
+		/**
+		 * @return the leased class loader
+		 */
+		ClassLoader getClassLoader() {
+			return entry.loader;
+		}
+
+		/**
+		 * Releases this lease's reference on the class loader.
+		 */
+		void release() {
+			synchronized (this) {
+				if (released) {
+					return;
+				}
+				released = true;
+			}
+			cache.release(key, entry);
+		}
+
+		@Override
+		public void run() {
+			release();
+		}
+	}
+}
@@ -30,6 +30,7 @@ package net.sf.mpaxs.api.job;
 import java.io.IOException;
 import java.io.Serializable;
 import java.net.MalformedURLException;
+import java.util.Set;
 import java.util.UUID;
 import net.sf.mpaxs.api.concurrent.ConfigurableRunnable;
 
@@ -159,4 +160,54 @@ public interface IJob<T> extends Serializable {
 	 */
 	void setPriority(int priority);
 
+	/**
+	 * The group of this job instance, e.g. the submitting client or workflow.
+	 * Fair share queue policies divide the compute hosts between the groups
+	 * with pending jobs.
+	 *
+	 * @return the job group, the empty string for the default group
+	 */
+	String getGroup();
+
+	/**
+	 * Sets the group of this job instance.
+	 * This does not change scheduling affinity, once the job has been
+	 * submitted for execution.
+	 *
+	 * @param group the job group
+	 */
+	void setGroup(String group);
+
+	/**
+	 * The input resources of this job instance, e.g. file URIs or content
+	 * keys. Jobs are preferably placed on compute hosts, which already hold
+	 * their input resources locally or in a cache.
+	 *
+	 * @return the input resources, an empty set if none were declared
+	 */
+	Set<String> getInputResources();
+
+	/**
+	 * Sets the input resources of this job instance.
+	 *
+	 * @param inputResources the input resources
+	 */
+	void setInputResources(Set<String> inputResources);
+
+	/**
+	 * Returns the reference to the result of this job instance, if the
+	 * result was transferred separately from the job.
+	 *
+	 * @return the result reference, null if the result is held by the job
+	 */
+	ResultReference getResultReference();
+
+	/**
+	 * Sets the reference to the separately transferred result of this job
+	 * instance.
+	 *
+	 * @param resultReference the result reference
+	 */
+	void setResultReference(ResultReference resultReference);
+
 }
@@ -0,0 +1,48 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.api.job;
+
+import java.util.Set;
+
+/**
+ * Implemented by tasks that know their input resources, e.g. file URIs or
+ * content keys. The jobs created for such tasks by the mpaxs executor service
+ * declare these resources for locality-aware placement.
+ *
+ * @author Nils Hoffmann
+ * @see IJob#getInputResources()
+ */
+public interface IResourceAware {
+
+	/**
+	 * Returns the input resources of this task.
+	 *
+	 * @return the input resources
+	 */
+	Set<String> getInputResources();
+}
@@ -31,10 +31,10 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.net.JarURLConnection;
+import java.lang.ref.Cleaner;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLClassLoader;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
@@ -42,7 +42,6 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
-import java.util.jar.Attributes;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.sf.mpaxs.api.ConfigurationKeys;
@@ -57,6 +56,8 @@ import net.sf.mpaxs.api.concurrent.DefaultRunnable;
  * the keys <code>STARTUP_CLASS</code> and <code>JAR_PATH</code> (file path to the jar containing
  * STARTUP_CLASS). The additional property <code>CODEBASE</code> allows to define a base
  * URL for the <code>URLClassLoader</code> to look for dependent jar files.
+ * Jobs referencing the same, unchanged jars share one cached class loader,
+ * which is released once no job referencing it remains reachable.
  *
  * @author Kai Bernd Stadermann
  * @param <T> the result type
@@ -67,6 +68,7 @@ public class Job<T> implements IJob<T> {
 	private static final String JAR_PATH = "JAR_PATH";
 	private static final String STARTUP_CLASS = "STARTUP_CLASS";
 	private static final String CONFIGURATION_FILE = "CONFIGURATION_FILE";
+	private static final Cleaner CLEANER = Cleaner.create();
 	private Map<String, String> config = new HashMap<String, String>();
 	private ConfigurableRunnable<T> classToExecute;
 	private UUID id;
@@ -74,6 +76,9 @@ public class Job<T> implements IJob<T> {
 	private Status status = Status.UNKNOWN;
 	private int errorCounter = 0;
 	private int priority = 0;
+	private String group = "";
+	private Set<String> inputResources = Collections.emptySet();
+	private ResultReference resultReference = null;
 
 	/**
 	 * The maximum priority = <code>Integer.MAX_VALUE</code>
@@ -164,10 +169,9 @@ public class Job<T> implements IJob<T> {
 
 	private ConfigurableRunnable loadClass(final File JarFile, final String ClassToLoad)
 		throws ClassNotFoundException, MalformedURLException, InstantiationException, IllegalAccessException, IOException {
-		Set<URL> jarFiles = new LinkedHashSet<URL>();
+		URL u = null;
 		if (config.containsKey(ConfigurationKeys.KEY_CODEBASE)) {
 			System.out.println("Using codebase " + config.get(ConfigurationKeys.KEY_CODEBASE));
-			URL u = null;
 			try {
 				u = new URL(config.get(ConfigurationKeys.KEY_CODEBASE));
 			} catch (MalformedURLException mex) {
@@ -178,46 +182,31 @@ public class Job<T> implements IJob<T> {
 					u = cb.toURI().toURL();
 				}
 			}
-			if (u != null) {
-				jarFiles.add(u);
-			}
 		}
-		jarFiles.addAll(getDependentJars(JarFile));
-		URL[] urls = new URL[jarFiles.size()];
-		jarFiles.toArray(urls);
 		Class<?> loadetClass = null;
 		ConfigurableRunnable runFut = null;
-		URLClassLoader loader = new URLClassLoader(urls);
-		loadetClass = loader.loadClass(ClassToLoad);
+		ClassLoaderCache.Lease lease = ClassLoaderCache.getInstance().acquire(u, JarFile);
 		try {
+			loadetClass = lease.getClassLoader().loadClass(ClassToLoad);
 			runFut = (ConfigurableRunnable) loadetClass.newInstance();
 		} catch (ClassCastException cce) {
+			lease.release();
 			throw new ClassNotFoundException();
+		} catch (ClassNotFoundException cnfe) {
+			lease.release();
+			throw cnfe;
+		} catch (InstantiationException ie) {
+			lease.release();
+			throw ie;
+		} catch (IllegalAccessException iae) {
+			lease.release();
+			throw iae;
 		}
+		//release the loader reference once this job is no longer reachable
+		CLEANER.register(this, lease);
 		return runFut;
 	}
 
-	private Set<URL> getDependentJars(final File startJarFile) throws IOException {
-		Set<URL> ret = new LinkedHashSet<URL>();
-		URL jar = new URL("jar:" + startJarFile.toURI() + "!/");
-		ret.add(jar);
-		JarURLConnection uc = (JarURLConnection) jar.openConnection();
-		Attributes att = uc.getMainAttributes();
-		if (att != null) {
-			String classPath = att.getValue(Attributes.Name.CLASS_PATH);
-			if (classPath != null && !classPath.isEmpty()) {
-				String[] classPathArray = classPath.split(" ");
-				for (int i = 0; i < classPathArray.length; i++) {
-					File newJar = new File(startJarFile.getParent() + File.separator + classPathArray[i]);
-					if (newJar.canRead()) {
-						ret.addAll(getDependentJars(newJar));
-					}
-				}
-			}
-		}
-		return ret;
-	}
-
 	@Override
 	public ConfigurableRunnable<T> getClassToExecute() {
 		return classToExecute;
@@ -347,12 +336,43 @@ public class Job<T> implements IJob<T> {
 		this.priority = priority;
 	}
 
+	@Override
+	public String getGroup() {
+		return this.group;
+	}
+
+	@Override
+	public synchronized void setGroup(String group) {
+		this.group = group == null ? "" : group;
+	}
+
+	@Override
+	public Set<String> getInputResources() {
+		return this.inputResources;
+	}
+
+	@Override
+	public synchronized void setInputResources(Set<String> inputResources) {
+		this.inputResources = inputResources == null ? Collections.<String>emptySet()
+			: Collections.unmodifiableSet(new LinkedHashSet<String>(inputResources));
+	}
+
+	@Override
+	public ResultReference getResultReference() {
+		return this.resultReference;
+	}
+
+	@Override
+	public synchronized void setResultReference(ResultReference resultReference) {
+		this.resultReference = resultReference;
+	}
+
     /**
      *
      * @return
      */
     @Override
 	public String toString() {
-		return "Job{classToExecute=" + classToExecute + ", id=" + id + ", jobConfigFile=" + jobConfigFile + ", status=" + status + ", errorCounter=" + errorCounter + ", priority=" + priority + ", throwable=" + throwable + '}';
+		return "Job{classToExecute=" + classToExecute + ", id=" + id + ", jobConfigFile=" + jobConfigFile + ", status=" + status + ", errorCounter=" + errorCounter + ", priority=" + priority + ", group=" + group + ", throwable=" + throwable + '}';
 	}
 }
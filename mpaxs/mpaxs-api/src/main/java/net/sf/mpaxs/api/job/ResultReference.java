@@ -0,0 +1,160 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.api.job;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.util.UUID;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reference to a job result, which was transferred separately from its job
+ * in compressed chunks. On the master server, the reference points to the
+ * spill file holding the received, deflate compressed serialized form of the
+ * result, which is only read when the result is requested.
+ *
+ * @author Nils Hoffmann
+ */
+public class ResultReference implements Serializable {
+
+	private final UUID jobId;
+	private final long length;
+	private final long checksum;
+	private transient File file = null;
+
+	/**
+	 * Create a new result reference.
+	 *
+	 * @param jobId    the id of the job
+	 * @param length   the length of the compressed result in bytes
+	 * @param checksum the CRC32 checksum of the compressed result
+	 */
+	public ResultReference(UUID jobId, long length, long checksum) {
+		this.jobId = jobId;
+		this.length = length;
+		this.checksum = checksum;
+	}
+
+	/**
+	 * @return the id of the job
+	 */
+	public UUID getJobId() {
+		return jobId;
+	}
+
+	/**
+	 * @return the length of the compressed result in bytes
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * @return the CRC32 checksum of the compressed result
+	 */
+	public long getChecksum() {
+		return checksum;
+	}
+
+	/**
+	 * @return the spill file holding the compressed result, null if the
+	 *         result has not been received by this process
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @param file the spill file holding the compressed result
+	 */
+	public void setFile(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Open a stream of the serialized, uncompressed result.
+	 *
+	 * @return the stream
+	 * @throws IOException if the spill file is not available
+	 */
+	public InputStream openStream() throws IOException {
+		if (file == null) {
+			throw new IOException("Result of job " + jobId + " has not been received!");
+		}
+		return new InflaterInputStream(new BufferedInputStream(new FileInputStream(file)));
+	}
+
+	/**
+	 * Read the result from the spill file.
+	 *
+	 * @return the result
+	 * @throws IOException            if the spill file can not be read
+	 * @throws ClassNotFoundException if the result's class can not be loaded
+	 */
+	public Object readResult() throws IOException, ClassNotFoundException {
+		ObjectInputStream ois = new ObjectInputStream(openStream()) {
+			@Override
+			protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+				ClassLoader cl = Thread.currentThread().getContextClassLoader();
+				if (cl != null) {
+					try {
+						return Class.forName(desc.getName(), false, cl);
+					} catch (ClassNotFoundException ex) {
+						//fall back to default resolution
+					}
+				}
+				return super.resolveClass(desc);
+			}
+		};
+		try {
+			return ois.readObject();
+		} finally {
+			ois.close();
+		}
+	}
+
+	/**
+	 * Delete the spill file.
+	 */
+	public void delete() {
+		if (file != null && !file.delete() && file.exists()) {
+			file.deleteOnExit();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ResultReference{jobId=" + jobId + ", length=" + length + ", checksum=" + Long.toHexString(checksum) + ", file=" + file + '}';
+	}
+}
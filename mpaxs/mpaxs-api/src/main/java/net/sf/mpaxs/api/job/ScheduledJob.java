@@ -31,6 +31,7 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import net.sf.mpaxs.api.concurrent.ConfigurableRunnable;
@@ -178,6 +179,36 @@ public class ScheduledJob<T> implements IScheduledJob<T> {
 		delegate.setPriority(priority);
 	}
 
+	@Override
+	public String getGroup() {
+		return delegate.getGroup();
+	}
+
+	@Override
+	public void setGroup(String group) {
+		delegate.setGroup(group);
+	}
+
+	@Override
+	public Set<String> getInputResources() {
+		return delegate.getInputResources();
+	}
+
+	@Override
+	public void setInputResources(Set<String> inputResources) {
+		delegate.setInputResources(inputResources);
+	}
+
+	@Override
+	public ResultReference getResultReference() {
+		return delegate.getResultReference();
+	}
+
+	@Override
+	public void setResultReference(ResultReference resultReference) {
+		delegate.setResultReference(resultReference);
+	}
+
     /**
      *
      * @return
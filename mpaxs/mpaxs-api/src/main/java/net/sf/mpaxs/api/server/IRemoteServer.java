@@ -29,6 +29,7 @@ package net.sf.mpaxs.api.server;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.Set;
 import java.util.UUID;
 import net.sf.mpaxs.api.job.IJob;
 
@@ -88,4 +89,55 @@ public interface IRemoteServer extends Remote {
 	 */
 	boolean stillAlive(UUID authToken) throws RemoteException;
 
+	/**
+	 * Send a heartbeat of a compute host to the server.
+	 *
+	 * @param authToken  the authentication token
+	 * @param id         the host id
+	 * @param queuedJobs the number of jobs waiting in the host's local run queue
+	 * @return true if the host is registered, false if it has been declared
+	 *         dead or removed and needs to register again
+	 * @throws RemoteException
+	 */
+	boolean heartbeat(UUID authToken, UUID id, int queuedJobs) throws RemoteException;
+
+	/**
+	 * Report changes of the resources, which a compute host holds locally or
+	 * in its cache.
+	 *
+	 * @param authToken the authentication token
+	 * @param id        the host id
+	 * @param held      the resources the host now holds
+	 * @param released  the resources the host no longer holds
+	 * @throws RemoteException
+	 */
+	void reportResources(UUID authToken, UUID id, Set<String> held, Set<String> released) throws RemoteException;
+
+	/**
+	 * Start or resume the transfer of a job result, which is sent in chunks
+	 * before the job itself is returned with {@link #addDoneJob(UUID, IJob)}.
+	 *
+	 * @param authToken the authentication token
+	 * @param jobId     the job id
+	 * @param length    the length of the compressed result in bytes
+	 * @param checksum  the CRC32 checksum of the compressed result
+	 * @return the number of bytes already received, at which the transfer
+	 *         continues
+	 * @throws RemoteException
+	 */
+	long beginResult(UUID authToken, UUID jobId, long length, long checksum) throws RemoteException;
+
+	/**
+	 * Send the next chunk of a job result.
+	 *
+	 * @param authToken the authentication token
+	 * @param jobId     the job id
+	 * @param offset    the offset of the chunk within the compressed result
+	 * @param chunk     the chunk
+	 * @param checksum  the CRC32 checksum of the chunk
+	 * @throws RemoteException if the chunk is rejected, the transfer can then
+	 *                         be resumed with {@link #beginResult(UUID, UUID, long, long)}
+	 */
+	void addResultChunk(UUID authToken, UUID jobId, long offset, byte[] chunk, long checksum) throws RemoteException;
+
 }
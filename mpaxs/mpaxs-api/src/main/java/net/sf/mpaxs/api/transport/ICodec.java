@@ -0,0 +1,60 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.api.transport;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Interface for codecs, which encode the arguments and results of remote
+ * calls for transports other than RMI. Implementations must be thread-safe
+ * and provide a public no-argument constructor.
+ *
+ * @author Nils Hoffmann
+ */
+public interface ICodec {
+
+	/**
+	 * Write the given value.
+	 *
+	 * @param value the value, may be null
+	 * @param out   the output
+	 * @throws IOException if the value can not be encoded
+	 */
+	void write(Object value, DataOutput out) throws IOException;
+
+	/**
+	 * Read a value written by {@link #write(Object, DataOutput)}.
+	 *
+	 * @param in the input
+	 * @return the value, may be null
+	 * @throws IOException if the value can not be decoded
+	 */
+	Object read(DataInput in) throws IOException;
+}
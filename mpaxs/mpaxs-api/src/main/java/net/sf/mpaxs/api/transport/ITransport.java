@@ -0,0 +1,102 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.api.transport;
+
+import java.net.MalformedURLException;
+import java.rmi.AlreadyBoundException;
+import java.rmi.NotBoundException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * Interface for transports carrying the remote calls between master server
+ * and compute hosts. Services are exported and looked up by name, as with the
+ * RMI registry, and remote failures are reported with the exceptions of
+ * <code>java.rmi</code>, so that callers can switch transports without
+ * changing their error handling.
+ *
+ * @author Nils Hoffmann
+ */
+public interface ITransport {
+
+	/**
+	 * Start accepting connections on the given port or, if it is in use, on
+	 * the next free port.
+	 *
+	 * @param port the preferred port
+	 * @return the port actually used
+	 * @throws RemoteException if no port could be opened
+	 */
+	int listen(int port) throws RemoteException;
+
+	/**
+	 * Export a service under the given name.
+	 *
+	 * @param host    the host name or ip of this process
+	 * @param port    the port of this process
+	 * @param name    the name of the service
+	 * @param service the service
+	 * @throws AlreadyBoundException if the name is already bound
+	 * @throws MalformedURLException if host, port or name are invalid
+	 * @throws RemoteException       if the service can not be exported
+	 */
+	void export(String host, int port, String name, Remote service) throws AlreadyBoundException, MalformedURLException, RemoteException;
+
+	/**
+	 * Remove the service with the given name.
+	 *
+	 * @param host    the host name or ip of this process
+	 * @param port    the port of this process
+	 * @param name    the name of the service
+	 * @param service the service
+	 * @throws NotBoundException     if the name is not bound
+	 * @throws MalformedURLException if host, port or name are invalid
+	 * @throws RemoteException       if the service can not be removed
+	 */
+	void unexport(String host, int port, String name, Remote service) throws NotBoundException, MalformedURLException, RemoteException;
+
+	/**
+	 * Return a remote reference to the service with the given name.
+	 *
+	 * @param <T>  the service type
+	 * @param type the service interface
+	 * @param host the host name or ip of the remote process
+	 * @param port the port of the remote process
+	 * @param name the name of the service
+	 * @return the remote reference
+	 * @throws NotBoundException     if the name is not bound
+	 * @throws MalformedURLException if host, port or name are invalid
+	 * @throws RemoteException       if the remote process can not be contacted
+	 */
+	<T extends Remote> T lookup(Class<T> type, String host, int port, String name) throws NotBoundException, MalformedURLException, RemoteException;
+
+	/**
+	 * Close all connections and release the resources of this transport.
+	 */
+	void close();
+}
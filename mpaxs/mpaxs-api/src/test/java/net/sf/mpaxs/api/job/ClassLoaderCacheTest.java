@@ -0,0 +1,173 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.api.job;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link ClassLoaderCache}.
+ *
+ * @author Nils Hoffmann
+ */
+public class ClassLoaderCacheTest {
+
+	@Rule
+	public TemporaryFolder tf = new TemporaryFolder();
+
+	private static void writeJar(File jar, String classPath, String resource, String content) throws IOException {
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		if (classPath != null) {
+			manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classPath);
+		}
+		long lastModified = jar.lastModified();
+		JarOutputStream jos = new JarOutputStream(new FileOutputStream(jar), manifest);
+		try {
+			jos.putNextEntry(new JarEntry(resource));
+			jos.write(content.getBytes(StandardCharsets.UTF_8));
+			jos.closeEntry();
+		} finally {
+			jos.close();
+		}
+		//make sure that rewritten jars are recognized as changed
+		if (lastModified > 0) {
+			Assert.assertTrue(jar.setLastModified(lastModified + 2000));
+		}
+	}
+
+	private static String read(ClassLoader loader, String resource) throws IOException {
+		InputStream is = loader.getResourceAsStream(resource);
+		if (is == null) {
+			return null;
+		}
+		try {
+			byte[] buffer = new byte[1024];
+			int read = is.read(buffer);
+			return new String(buffer, 0, Math.max(0, read), StandardCharsets.UTF_8);
+		} finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * Jobs referencing the same, unchanged jars share one loader, which
+	 * includes the jars on the manifest class path.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSharedLoaderResolvesClassPath() throws Exception {
+		File a = new File(tf.getRoot(), "a.jar");
+		File b = new File(tf.getRoot(), "b.jar");
+		writeJar(b, null, "b.txt", "b");
+		writeJar(a, "b.jar", "a.txt", "a");
+		ClassLoaderCache.Lease first = ClassLoaderCache.getInstance().acquire(null, a);
+		ClassLoaderCache.Lease second = ClassLoaderCache.getInstance().acquire(null, a);
+		try {
+			Assert.assertSame(first.getClassLoader(), second.getClassLoader());
+			Assert.assertEquals("a", read(first.getClassLoader(), "a.txt"));
+			Assert.assertEquals("b", read(first.getClassLoader(), "b.txt"));
+		} finally {
+			first.release();
+			first.release();
+			second.release();
+		}
+	}
+
+	/**
+	 * A change of a dependent jar's manifest is picked up, although the start
+	 * jar is unchanged, and the replaced loader is not closed, since objects
+	 * of its classes may still be in use.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testChangedDependencyCreatesNewLoader() throws Exception {
+		File a = new File(tf.getRoot(), "a.jar");
+		File b = new File(tf.getRoot(), "b.jar");
+		File c = new File(tf.getRoot(), "c.jar");
+		writeJar(c, null, "c.txt", "c");
+		writeJar(b, null, "b.txt", "b");
+		writeJar(a, "b.jar", "a.txt", "a");
+		ClassLoaderCache.Lease first = ClassLoaderCache.getInstance().acquire(null, a);
+		ClassLoader old = first.getClassLoader();
+		Assert.assertNull(read(old, "c.txt"));
+		first.release();
+		writeJar(b, "c.jar", "b.txt", "b2");
+		ClassLoaderCache.Lease second = ClassLoaderCache.getInstance().acquire(null, a);
+		try {
+			Assert.assertNotSame(old, second.getClassLoader());
+			Assert.assertEquals("b2", read(second.getClassLoader(), "b.txt"));
+			Assert.assertEquals("c", read(second.getClassLoader(), "c.txt"));
+			//the replaced loader is still usable
+			Assert.assertEquals("a", read(old, "a.txt"));
+		} finally {
+			second.release();
+		}
+	}
+
+	/**
+	 * Idle loaders evicted beyond {@link ClassLoaderCache#MAX_IDLE_LOADERS}
+	 * are not closed.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testEvictedLoaderIsNotClosed() throws Exception {
+		File first = new File(tf.getRoot(), "first.jar");
+		writeJar(first, null, "first.txt", "first");
+		ClassLoaderCache.Lease lease = ClassLoaderCache.getInstance().acquire(null, first);
+		ClassLoader evicted = lease.getClassLoader();
+		lease.release();
+		for (int i = 0; i <= ClassLoaderCache.MAX_IDLE_LOADERS; i++) {
+			File jar = new File(tf.getRoot(), "idle" + i + ".jar");
+			writeJar(jar, null, "idle.txt", "idle" + i);
+			ClassLoaderCache.getInstance().acquire(null, jar).release();
+		}
+		Assert.assertTrue(ClassLoaderCache.getInstance().size() <= ClassLoaderCache.MAX_IDLE_LOADERS);
+		lease = ClassLoaderCache.getInstance().acquire(null, first);
+		try {
+			Assert.assertNotSame(evicted, lease.getClassLoader());
+			Assert.assertEquals("first", read(evicted, "first.txt"));
+		} finally {
+			lease.release();
+		}
+	}
+}
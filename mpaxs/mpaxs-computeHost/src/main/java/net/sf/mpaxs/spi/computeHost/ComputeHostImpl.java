@@ -27,10 +27,16 @@
  */
 package net.sf.mpaxs.spi.computeHost;
 
+import java.io.File;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.Arrays;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.sf.mpaxs.api.ConfigurationKeys;
@@ -40,6 +46,10 @@ import net.sf.mpaxs.api.job.IJob;
 import net.sf.mpaxs.api.job.Progress;
 
 /**
+ * Runs jobs on a fixed pool of worker threads, one per advertised core.
+ * Jobs dispatched beyond the number of cores wait in the pool's run queue,
+ * so that a worker can pick up the next job without waiting for the master
+ * server.
  *
  * @author Kai Bernd Stadermann
  */
@@ -48,6 +58,10 @@ public final class ComputeHostImpl extends UnicastRemoteObject implements ICompu
 	private final ConcurrentHashMap<UUID, JobExecutor> jobLocation = new ConcurrentHashMap<UUID, JobExecutor>();
 	private IRemoteHost host;
 	private Settings settings;
+	private ResourceCache resourceCache;
+	private ResultTransfer resultTransfer;
+	private ThreadPoolExecutor workers;
+	private volatile boolean retiring = false;
 
 	/**
 	 *
@@ -66,6 +80,22 @@ public final class ComputeHostImpl extends UnicastRemoteObject implements ICompu
 	public ComputeHostImpl(IRemoteHost host, Settings settings) throws RemoteException {
 		this.host = host;
 		this.settings = settings;
+		this.resourceCache = new ResourceCache(settings.getResourceCacheSize());
+		this.resourceCache.addLocal(Arrays.asList(settings.getLocalResources()));
+		File resultDir = new File(settings.getOption(ConfigurationKeys.KEY_COMPUTE_HOST_WORKING_DIR, System.getProperty("java.io.tmpdir")), "results");
+		this.resultTransfer = new ResultTransfer(resultDir, settings.getResultTransferThreshold(), settings.getResultChunkSize());
+		int cores = Math.max(1, settings.getCores());
+		this.workers = new ThreadPoolExecutor(cores, cores, 0L, TimeUnit.MILLISECONDS,
+			new LinkedBlockingQueue<Runnable>());
+	}
+
+	/**
+	 * Returns the number of jobs waiting in the run queue.
+	 *
+	 * @return the number of queued jobs
+	 */
+	public int getQueuedJobs() {
+		return workers == null ? 0 : workers.getQueue().size();
 	}
 
 	/**
@@ -99,8 +129,18 @@ public final class ComputeHostImpl extends UnicastRemoteObject implements ICompu
     @Override
 	public void runJob(UUID authToken, IJob job) throws RemoteException {
 		authenticate(authToken);
-		JobExecutor executor = new JobExecutor(job, host, settings.getRemoteReference(), jobLocation);
-		executor.start();
+		if (retiring) {
+			throw new RemoteException("Compute host is retiring, refusing job " + job.getId() + "!");
+		}
+		JobExecutor executor = new JobExecutor(job, host, settings.getRemoteReference(), jobLocation, resourceCache, resultTransfer);
+		jobLocation.put(job.getId(), executor);
+		try {
+			executor.setFuture(workers.submit(executor));
+		} catch (RejectedExecutionException ree) {
+			//retire was called concurrently
+			jobLocation.remove(job.getId());
+			throw new RemoteException("Compute host is retiring, refusing job " + job.getId() + "!", ree);
+		}
 	}
 
     /**
@@ -128,6 +168,25 @@ public final class ComputeHostImpl extends UnicastRemoteObject implements ICompu
 		host.shutdown(this);
 	}
 
+	/**
+	 * Stops accepting jobs and retires this host. Jobs already running or
+	 * queued are completed first, jobs submitted afterwards are refused with a
+	 * {@link RemoteException}, so that the master server reschedules them.
+	 *
+	 * @param authToken the authentication token
+	 * @throws RemoteException
+	 */
+	@Override
+	public void retire(UUID authToken) throws RemoteException {
+		authenticate(authToken);
+		if (!settings.getSilentMode()) {
+			Logger.getLogger(ComputeHostImpl.class.getName()).log(Level.INFO, "Retiring idle compute host {0}", host.getHostId());
+		}
+		retiring = true;
+		workers.shutdown();
+		host.retire(this);
+	}
+
     /**
      *
      * @param authToken
@@ -168,8 +227,11 @@ public final class ComputeHostImpl extends UnicastRemoteObject implements ICompu
 	public boolean cancelJob(UUID authToken, UUID jobID) throws RemoteException {
 		authenticate(authToken);
 		if (jobLocation.containsKey(jobID)) {
-			jobLocation.get(jobID).interrupt();
-			jobLocation.remove(jobID);
+			JobExecutor executor = jobLocation.remove(jobID);
+			if (executor != null) {
+				executor.cancel();
+				workers.purge();
+			}
 			return true;
 		} else {
 			return false;
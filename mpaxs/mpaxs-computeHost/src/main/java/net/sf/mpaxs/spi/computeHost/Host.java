@@ -33,12 +33,13 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.net.MalformedURLException;
-import java.rmi.Naming;
 import java.rmi.NotBoundException;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
-import java.rmi.registry.LocateRegistry;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.UUID;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -50,7 +51,9 @@ import net.sf.mpaxs.api.computeHost.IComputeHost;
 import net.sf.mpaxs.api.computeHost.IRemoteHost;
 import net.sf.mpaxs.api.job.IJob;
 import net.sf.mpaxs.api.server.IRemoteServer;
+import net.sf.mpaxs.api.transport.ITransport;
 import net.sf.mpaxs.spi.computeHost.consoleInput.Input;
+import net.sf.mpaxs.spi.transport.Transports;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.io.FileUtils;
 
@@ -63,6 +66,8 @@ public class Host implements IRemoteHost {
 	private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
 	private Settings settings = null;
 	private UUID authToken = null;
+	private ComputeHostImpl computeHost = null;
+	private ITransport transport = null;
 
     /**
      *
@@ -71,6 +76,8 @@ public class Host implements IRemoteHost {
     @Override
 	public void configure(Configuration cfg) {
 		settings = new Settings(cfg);
+		transport = Transports.create(settings.getTransport(), settings.getTransportCodec(),
+			settings.getTransportMaxFrameLength(), settings.getTransportCallTimeout());
 		Logger.getLogger(Host.class.getName()).log(Level.INFO, "Running ComputeHost at IP {0}", settings.getLocalIp());
 		File baseDir = new File(settings.getOption(ConfigurationKeys.KEY_COMPUTE_HOST_WORKING_DIR));
 		try {
@@ -124,12 +131,18 @@ public class Host implements IRemoteHost {
 				}
 				try {
 					Logger.getLogger(Host.class.getName()).log(Level.FINE, "Trying to bind to MasterServer at " + settings.getMasterServerIP() + ":" + settings.getMasterServerPort() + " with name: " + settings.getMasterServerName());
-					IRemoteServer remRef = (IRemoteServer) Naming.lookup("//" + settings.getMasterServerIP()
-						+ ":" + settings.getMasterServerPort() + "/" + settings.getMasterServerName());
+					IRemoteServer remRef = transport.lookup(IRemoteServer.class, settings.getMasterServerIP(),
+						settings.getMasterServerPort(), settings.getMasterServerName());
 					settings.setRemoteReference(remRef);
 					UUID hostID = remRef.addHost(authToken, settings.getName(),
 						settings.getLocalIp(), settings.getCores());
 					settings.setHostID(hostID);
+					String[] localResources = settings.getLocalResources();
+					if (localResources.length > 0) {
+						remRef.reportResources(authToken, hostID,
+							new LinkedHashSet<String>(Arrays.asList(localResources)),
+							Collections.<String>emptySet());
+					}
 					Logger.getLogger(Host.class.getName()).log(Level.FINE, "Connection to server established!");
 					ses.shutdown();
 					try {
@@ -156,25 +169,46 @@ public class Host implements IRemoteHost {
 
 	}
 
+	/**
+	 * Sends heartbeats to the master server. Registers again, if the master
+	 * server has declared this host dead, and shuts down, if the master
+	 * server has not been reachable for the master server timeout.
+	 */
 	private void MasterServerStillAlive() {
-		scheduler.scheduleAtFixedRate(
+		final long timeout = TimeUnit.SECONDS.toMillis(settings.getMasterServerTimeout());
+		scheduler.scheduleWithFixedDelay(
 			new Runnable() {
 
+				private long lastContact = System.currentTimeMillis();
+
 				@Override
 				public void run() {
+					IRemoteServer remRef = settings.getRemoteReference();
+					if (remRef == null || settings.getHostID() == null) {
+						//not yet registered
+						return;
+					}
 					try {
-						settings.getRemoteReference().stillAlive(authToken);
-
+						if (!remRef.heartbeat(authToken, settings.getHostID(), computeHost == null ? 0 : computeHost.getQueuedJobs())) {
+							Logger.getLogger(Host.class.getName()).log(Level.WARNING, "MasterServer does not know this host, registering again!");
+							settings.setHostID(remRef.addHost(authToken, settings.getName(),
+								settings.getLocalIp(), settings.getCores()));
+						}
+						lastContact = System.currentTimeMillis();
 					} catch (RemoteException ex) {
+						if (System.currentTimeMillis() - lastContact < timeout) {
+							Logger.getLogger(Host.class.getName()).log(Level.FINE, "Heartbeat failed, retrying", ex);
+							return;
+						}
 						if (!settings.getSilentMode()) {
 							Input.printErr("MasterServer is not responding!");
 							Input.printErr(
 								"This ComputeHost will shutdown now!");
 						}
-						shutdown(settings.getRemoteReference());
+						shutdown(remRef);
 					}
 				}
-			}, settings.getMasterServerTimeout(), settings.getMasterServerTimeout(), TimeUnit.SECONDS);
+			}, settings.getHeartbeatInterval(), settings.getHeartbeatInterval(), TimeUnit.MILLISECONDS);
 	}
 
 	/**
@@ -194,29 +228,18 @@ public class Host implements IRemoteHost {
 	}
 
 	/**
-	 * Erstellt ein RemoteObject vom Typ IRemoteHost und trägt es in die lokale
-	 * RMI Registry ein. Über dieses RemoteObject können Jobs an diesen
-	 * ComputeHoste gesendet werden.
+	 * Erstellt ein RemoteObject vom Typ IRemoteHost und exportiert es über
+	 * den konfigurierten Transport. Über dieses RemoteObject können Jobs an
+	 * diesen ComputeHoste gesendet werden.
 	 */
 	private void getReadyForClients() {
-		Logger.getLogger(Host.class.getName()).log(Level.FINE, "Trying to create registry at {0}:{1}", new Object[]{settings.getLocalIp(), settings.getLocalPort()});
-		try {
-			LocateRegistry.createRegistry(settings.getLocalPort());
-			Logger.getLogger(Host.class.getName()).log(Level.FINE, "Started own RMI-Registry on port {0}", settings.getLocalPort());
-		} catch (RemoteException ex) {
-			if (!settings.getSilentMode()) {
-				Logger.getLogger(Host.class.getName()).log(Level.FINE, "RMI-Registry already running on port {0}.", settings.getLocalPort());
-				Logger.getLogger(Host.class.getName()).log(Level.FINE,
-					"ComputeHost will use the already running Registry.");
-			}
-		}
 		try {
 
 			// RemoteObject erstellen
-			IComputeHost remObj = new ComputeHostImpl(this, settings);
-			String bindString = "//" + settings.getLocalIp() + ":" + settings.getLocalPort() + "/" + settings.getName();
-			Logger.getLogger(Host.class.getName()).log(Level.FINE, "Trying to bind {0}", bindString);
-			Naming.bind(bindString, remObj);
+			computeHost = new ComputeHostImpl(this, settings);
+			IComputeHost remObj = computeHost;
+			Logger.getLogger(Host.class.getName()).log(Level.FINE, "Trying to export {0} at {1}:{2}", new Object[]{settings.getName(), settings.getLocalIp(), settings.getLocalPort()});
+			transport.export(settings.getLocalIp(), settings.getLocalPort(), settings.getName(), remObj);
 		} catch (Exception ex) {
 			ex.printStackTrace();
 			System.exit(1);
@@ -231,8 +254,7 @@ public class Host implements IRemoteHost {
 	@Override
 	public void shutdown(Remote obj) {
 		try {
-			Naming.unbind(
-				"//" + settings.getLocalIp() + "/" + settings.getName());
+			transport.unexport(settings.getLocalIp(), settings.getLocalPort(), settings.getName(), obj);
 			UnicastRemoteObject.unexportObject(obj, true);
 		} catch (RemoteException ex) {
 			Logger.getLogger(Host.class.getName()).log(Level.FINE, null, ex);
@@ -254,11 +276,50 @@ public class Host implements IRemoteHost {
 					Logger.getLogger(Host.class.getName()).log(Level.SEVERE,
 						null, ex);
 				}
+				transport.close();
 				System.exit(0);
 			}
 		}.start();
 	}
 
+	/**
+	 * Meldet das RemoteObject ab, nachdem der Masterserver diesen Host als
+	 * untätig entfernt hat. Beendet das Programm nur, wenn der Host nicht im
+	 * Prozess des Masterservers läuft.
+	 *
+	 * @param obj RemoteObject
+	 */
+	@Override
+	public void retire(Remote obj) {
+		scheduler.shutdownNow();
+		try {
+			transport.unexport(settings.getLocalIp(), settings.getLocalPort(), settings.getName(), obj);
+			UnicastRemoteObject.unexportObject(obj, true);
+		} catch (RemoteException ex) {
+			Logger.getLogger(Host.class.getName()).log(Level.FINE, null, ex);
+		} catch (NotBoundException ex) {
+			Logger.getLogger(Host.class.getName()).log(Level.FINE, null, ex);
+		} catch (MalformedURLException ex) {
+			Logger.getLogger(Host.class.getName()).log(Level.FINE, null, ex);
+		}
+		new Thread() {
+
+			@Override
+			public void run() {
+				try {
+					sleep(settings.getTimeoutBeforeShutdown());
+				} catch (InterruptedException ex) {
+					Logger.getLogger(Host.class.getName()).log(Level.SEVERE,
+						null, ex);
+				}
+				transport.close();
+				if (settings.getExitOnRetire()) {
+					System.exit(0);
+				}
+			}
+		}.start();
+	}
+
     /**
      *
      * @param t
@@ -27,33 +27,39 @@
  */
 package net.sf.mpaxs.spi.computeHost;
 
+import java.io.IOException;
 import java.rmi.RemoteException;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.sf.mpaxs.api.computeHost.IRemoteHost;
+import net.sf.mpaxs.api.concurrent.IDetachableResult;
 import net.sf.mpaxs.api.job.IJob;
 import net.sf.mpaxs.api.job.Progress;
+import net.sf.mpaxs.api.job.ResultReference;
 import net.sf.mpaxs.api.server.IRemoteServer;
 
 /**
+ * Executes a job on a worker thread of the compute host and returns it to
+ * the master server.
  *
  * @author Kai Bernd Stadermann
  */
-public class JobExecutor extends Thread implements Thread.UncaughtExceptionHandler {
+public class JobExecutor implements Runnable {
 
 	private final IRemoteServer server;
 	private final IJob job;
 	private final IRemoteHost host;
 	private final Map<UUID, JobExecutor> jobLocation;
-	private ExecutorService executor = null;
-	private boolean jobFailed = false;
+	private final ResourceCache resourceCache;
+	private final ResultTransfer resultTransfer;
+	private volatile Future<?> future = null;
+	private volatile boolean cancelled = false;
 
 	/**
 	 *
@@ -61,12 +67,25 @@ public class JobExecutor extends Thread implements Thread.UncaughtExceptionHandl
 	 * @param host
 	 * @param server
 	 * @param jobLocation
+	 * @param resourceCache
+	 * @param resultTransfer
 	 */
-	public JobExecutor(IJob job, IRemoteHost host, IRemoteServer server, Map<UUID, JobExecutor> jobLocation) {
+	public JobExecutor(IJob job, IRemoteHost host, IRemoteServer server, Map<UUID, JobExecutor> jobLocation, ResourceCache resourceCache, ResultTransfer resultTransfer) {
 		this.job = job;
 		this.host = host;
 		this.server = server;
 		this.jobLocation = jobLocation;
+		this.resourceCache = resourceCache;
+		this.resultTransfer = resultTransfer;
+	}
+
+	/**
+	 * Set the future of this executor's submission to the worker pool.
+	 *
+	 * @param future the future
+	 */
+	void setFuture(Future<?> future) {
+		this.future = future;
 	}
 
     /**
@@ -75,23 +94,20 @@ public class JobExecutor extends Thread implements Thread.UncaughtExceptionHandl
     @Override
 	public void run() {
 		try {
+			if (cancelled) {
+				return;
+			}
 			Logger.getLogger(JobExecutor.class.getName()).log(Level.INFO, "Running job {0}", job);
-			jobLocation.put(job.getId(), this);
-			executor = Executors.newSingleThreadExecutor(new ExceptionSafeThreadFactory(this));
-			Future<?> f = executor.submit(job.getClassToExecute());
 			try {
-				Object o = f.get();
-			} catch (ExecutionException ex) {
-				job.setThrowable(ex);
+				job.getClassToExecute().run();
+			} catch (Throwable t) {
+				job.setThrowable(new ExecutionException(t));
 			}
-			executor.shutdown();
-			executor.awaitTermination(1, TimeUnit.MICROSECONDS);
-			if (!this.isInterrupted() && !jobFailed) {
+			if (!cancelled && !Thread.currentThread().isInterrupted()) {
+				reportResources();
+				transferResult();
 				server.addDoneJob(host.getAuthenticationToken(), job);
 			}
-		} catch (InterruptedException ex) {
-			job.setThrowable(ex);
-			//Logger.getLogger(JobExecutor.class.getName()).log(Level.SEVERE, null, ex);
 		} catch (RemoteException ex) {
 			Logger.getLogger(JobExecutor.class.getName()).log(Level.SEVERE, null, ex);
 			job.setThrowable(ex);
@@ -100,24 +116,63 @@ public class JobExecutor extends Thread implements Thread.UncaughtExceptionHandl
 		}
 	}
 
-	private void returnFailedJob() {
-		if (!this.isInterrupted()) {
+	/**
+	 * Reports the job's input resources as held by this host, along with
+	 * the resources released from the resource cache to make room.
+	 */
+	private void reportResources() {
+		Set<String> inputResources = job.getInputResources();
+		if (inputResources == null || inputResources.isEmpty()) {
+			return;
+		}
+		Set<String> held = new LinkedHashSet<String>();
+		Set<String> released = new LinkedHashSet<String>();
+		resourceCache.use(inputResources, held, released);
+		if (!held.isEmpty() || !released.isEmpty()) {
 			try {
-				server.addFailedJob(host.getAuthenticationToken(), job);
+				server.reportResources(host.getAuthenticationToken(), host.getHostId(), held, released);
 			} catch (RemoteException ex) {
-				Logger.getLogger(JobExecutor.class.getName()).log(Level.SEVERE, null, ex);
+				Logger.getLogger(JobExecutor.class.getName()).log(Level.WARNING, "Could not report resources of job " + job.getId(), ex);
 			}
 		}
 	}
 
-    /**
-     *
-     */
-    @Override
-	public void interrupt() {
-		super.interrupt();
-		if (executor != null) {
-			executor.shutdownNow();
+	/**
+	 * Transfers a large result separately, leaving only a reference to it in
+	 * the job. If the transfer fails, the result is returned with the job.
+	 */
+	@SuppressWarnings("unchecked")
+	private void transferResult() {
+		if (job.getThrowable() != null || !(job.getClassToExecute() instanceof IDetachableResult)) {
+			return;
+		}
+		IDetachableResult<Object> detachable = (IDetachableResult<Object>) job.getClassToExecute();
+		Object result = detachable.detachResult();
+		if (result == null) {
+			return;
+		}
+		try {
+			ResultReference ref = resultTransfer.transfer(server, host.getAuthenticationToken(), job.getId(), result);
+			if (ref != null) {
+				job.setResultReference(ref);
+				return;
+			}
+		} catch (IOException ex) {
+			Logger.getLogger(JobExecutor.class.getName()).log(Level.WARNING, "Could not transfer result of job " + job.getId() + " separately, returning it with the job", ex);
+		}
+		detachable.attachResult(result);
+	}
+
+	/**
+	 * Cancels the job. A job still waiting in the run queue is not started,
+	 * a running job is interrupted. Cancelled jobs are not returned to the
+	 * master server.
+	 */
+	public void cancel() {
+		cancelled = true;
+		Future<?> f = future;
+		if (f != null) {
+			f.cancel(true);
 		}
 	}
 
@@ -128,17 +183,4 @@ public class JobExecutor extends Thread implements Thread.UncaughtExceptionHandl
 	public Progress getJobProgress() {
 		return job.getClassToExecute().getProgress();
 	}
-
-    /**
-     *
-     * @param t
-     * @param e
-     */
-    @Override
-	public void uncaughtException(Thread t, Throwable e) {
-		jobFailed = true;
-		job.setThrowable(e);
-		returnFailedJob();
-		interrupt();
-	}
 }
@@ -0,0 +1,119 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.computeHost;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Remembers the input resources of jobs that have run on this host, assuming
+ * that recently used resources are still held locally, e.g. in the page cache
+ * or a local copy. The least recently used resources are released, once the
+ * capacity is exceeded. Resources configured as local are never released.
+ *
+ * @author Nils Hoffmann
+ */
+public class ResourceCache {
+
+	private final Map<String, Boolean> cached = new LinkedHashMap<String, Boolean>(16, 0.75f, true);
+	private final Set<String> local = new HashSet<String>();
+	private final int capacity;
+
+	/**
+	 * Create a new resource cache.
+	 *
+	 * @param capacity the maximum number of cached resources
+	 */
+	public ResourceCache(int capacity) {
+		this.capacity = Math.max(0, capacity);
+	}
+
+	/**
+	 * Adds resources, which this host holds permanently.
+	 *
+	 * @param resources the local resources
+	 */
+	public synchronized void addLocal(Collection<String> resources) {
+		local.addAll(resources);
+	}
+
+	/**
+	 * Returns the resources, which this host holds permanently.
+	 *
+	 * @return the local resources
+	 */
+	public synchronized Set<String> getLocal() {
+		return new LinkedHashSet<String>(local);
+	}
+
+	/**
+	 * Records the use of the given resources.
+	 *
+	 * @param resources the resources used by a job
+	 * @param held      receives the resources, which were not held before
+	 * @param released  receives the resources, which were released to make
+	 *                  room
+	 */
+	public synchronized void use(Collection<String> resources, Set<String> held, Set<String> released) {
+		for (String resource : resources) {
+			if (local.contains(resource)) {
+				continue;
+			}
+			if (cached.put(resource, Boolean.TRUE) == null) {
+				held.add(resource);
+			}
+		}
+		Iterator<String> iter = cached.keySet().iterator();
+		while (cached.size() > capacity && iter.hasNext()) {
+			String resource = iter.next();
+			iter.remove();
+			if (!held.remove(resource)) {
+				released.add(resource);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of cached resources.
+	 *
+	 * @return the number of cached resources
+	 */
+	public synchronized int size() {
+		return cached.size();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ResourceCache{cached=" + cached.size() + ", local=" + local.size() + ", capacity=" + capacity + '}';
+	}
+}
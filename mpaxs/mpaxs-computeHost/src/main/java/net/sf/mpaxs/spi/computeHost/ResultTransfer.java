@@ -0,0 +1,193 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.computeHost;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import net.sf.mpaxs.api.job.ResultReference;
+import net.sf.mpaxs.api.server.IRemoteServer;
+
+/**
+ * Transfers large job results to the master server separately from their
+ * job. Results are serialized into a deflate compressed spill file, once
+ * their serialized size exceeds the threshold, and are then sent in chunks
+ * with a CRC32 checksum each. A failed transfer is resumed at the offset
+ * reported by the master server.
+ *
+ * @author Nils Hoffmann
+ */
+public class ResultTransfer {
+
+	private static final int MAX_ATTEMPTS = 3;
+	private final File directory;
+	private final int threshold;
+	private final int chunkSize;
+
+	/**
+	 *
+	 * @param directory the directory for spill files
+	 * @param threshold the serialized size in bytes, above which results are
+	 *                  transferred separately
+	 * @param chunkSize the chunk size in bytes
+	 */
+	public ResultTransfer(File directory, int threshold, int chunkSize) {
+		this.directory = directory;
+		this.threshold = threshold;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Transfer the given result, if it is large enough.
+	 *
+	 * @param server    the master server
+	 * @param authToken the authentication token
+	 * @param jobId     the id of the job
+	 * @param result    the result
+	 * @return the reference to the transferred result, or null if the result
+	 *         is small enough to be returned with its job
+	 * @throws IOException if the result could not be serialized or transferred
+	 */
+	public ResultReference transfer(IRemoteServer server, UUID authToken, UUID jobId, Object result) throws IOException {
+		SpillingOutputStream sos = new SpillingOutputStream();
+		try {
+			ObjectOutputStream oos = new ObjectOutputStream(sos);
+			oos.writeObject(result);
+			oos.close();
+			if (sos.file == null) {
+				return null;
+			}
+			ResultReference ref = new ResultReference(jobId, sos.file.length(), sos.checksum.getChecksum().getValue());
+			send(server, authToken, ref, sos.file);
+			return ref;
+		} finally {
+			sos.discard();
+		}
+	}
+
+	private void send(IRemoteServer server, UUID authToken, ResultReference ref, File file) throws IOException {
+		byte[] buffer = new byte[chunkSize];
+		CRC32 crc = new CRC32();
+		for (int attempt = 1;; attempt++) {
+			try {
+				long offset = server.beginResult(authToken, ref.getJobId(), ref.getLength(), ref.getChecksum());
+				RandomAccessFile raf = new RandomAccessFile(file, "r");
+				try {
+					raf.seek(offset);
+					while (offset < ref.getLength()) {
+						int n = (int) Math.min(buffer.length, ref.getLength() - offset);
+						raf.readFully(buffer, 0, n);
+						byte[] chunk = n == buffer.length ? buffer : Arrays.copyOf(buffer, n);
+						crc.reset();
+						crc.update(chunk);
+						server.addResultChunk(authToken, ref.getJobId(), offset, chunk, crc.getValue());
+						offset += n;
+					}
+				} finally {
+					raf.close();
+				}
+				Logger.getLogger(ResultTransfer.class.getName()).log(Level.FINE, "Transferred result {0}", ref);
+				return;
+			} catch (RemoteException ex) {
+				if (attempt >= MAX_ATTEMPTS) {
+					throw ex;
+				}
+				Logger.getLogger(ResultTransfer.class.getName()).log(Level.WARNING, "Transfer of result of job " + ref.getJobId() + " failed, resuming", ex);
+			}
+		}
+	}
+
+	/**
+	 * Buffers written bytes in memory, until the threshold is exceeded, and
+	 * compresses them into a spill file afterwards.
+	 */
+	private final class SpillingOutputStream extends OutputStream {
+
+		private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		private OutputStream out = null;
+		private CheckedOutputStream checksum = null;
+		private File file = null;
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[]{(byte) b}, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (out == null && buffer.size() + len > threshold) {
+				directory.mkdirs();
+				file = File.createTempFile("result-", ".deflate", directory);
+				checksum = new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(file)), new CRC32());
+				out = new DeflaterOutputStream(checksum, new Deflater(Deflater.BEST_SPEED), 65536);
+				buffer.writeTo(out);
+				buffer = null;
+			}
+			if (out != null) {
+				out.write(b, off, len);
+			} else {
+				buffer.write(b, off, len);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (out != null) {
+				out.close();
+			}
+		}
+
+		void discard() {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException ex) {
+					Logger.getLogger(ResultTransfer.class.getName()).log(Level.FINE, null, ex);
+				}
+			}
+			if (file != null && !file.delete()) {
+				file.deleteOnExit();
+			}
+			buffer = null;
+		}
+	}
+}
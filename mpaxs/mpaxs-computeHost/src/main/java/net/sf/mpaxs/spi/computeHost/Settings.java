@@ -42,6 +42,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.sf.mpaxs.api.ConfigurationKeys;
 import net.sf.mpaxs.api.server.IRemoteServer;
+import net.sf.mpaxs.spi.transport.NioTransport;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.PropertiesConfiguration;
 
@@ -97,7 +98,15 @@ public class Settings {
 		config.setProperty(ConfigurationKeys.KEY_MASTER_SERVER_TIMEOUT, 15);
 		config.setProperty(ConfigurationKeys.KEY_TIMEOUT_BEFORE_SHUTDOWN, 2000);
 		config.setProperty(ConfigurationKeys.KEY_NUMBER_OF_CORES, 1);
+		config.setProperty(ConfigurationKeys.KEY_RESOURCE_CACHE_SIZE, 1024);
+		config.setProperty(ConfigurationKeys.KEY_HEARTBEAT_INTERVAL, 1000);
+		config.setProperty(ConfigurationKeys.KEY_TRANSPORT, "RMI");
+		config.setProperty(ConfigurationKeys.KEY_TRANSPORT_MAX_FRAME_LENGTH, NioTransport.DEFAULT_MAX_FRAME_LENGTH);
+		config.setProperty(ConfigurationKeys.KEY_TRANSPORT_CALL_TIMEOUT, NioTransport.DEFAULT_CALL_TIMEOUT);
+		config.setProperty(ConfigurationKeys.KEY_RESULT_TRANSFER_THRESHOLD, 4194304);
+		config.setProperty(ConfigurationKeys.KEY_RESULT_CHUNK_SIZE, 1048576);
 		config.setProperty(ConfigurationKeys.KEY_SILENT_MODE, "true");
+		config.setProperty(ConfigurationKeys.KEY_COMPUTE_HOST_EXIT_ON_RETIRE, "true");
 		config.setProperty(ConfigurationKeys.KEY_BASE_DIR, System.getProperty("user.dir"));
 		for (String CONFIG_FILES1 : CONFIG_FILES) {
 			addConfigFile(CONFIG_FILES1);
@@ -252,6 +261,96 @@ public class Settings {
 		return ret;
 	}
 
+	/**
+	 * Returns the interval in milliseconds between heartbeats to the master
+	 * server.
+	 *
+	 * @return the heartbeat interval
+	 */
+	public int getHeartbeatInterval() {
+		int ret = getInt(ConfigurationKeys.KEY_HEARTBEAT_INTERVAL);
+		return ret > 0 ? ret : 1000;
+	}
+
+	/**
+	 * Returns the serialized size in bytes, above which job results are
+	 * transferred separately from their job.
+	 *
+	 * @return the result transfer threshold
+	 */
+	public int getResultTransferThreshold() {
+		int ret = getInt(ConfigurationKeys.KEY_RESULT_TRANSFER_THRESHOLD);
+		return ret > 0 ? ret : 4194304;
+	}
+
+	/**
+	 * Returns the size in bytes of the chunks, in which large job results
+	 * are transferred.
+	 *
+	 * @return the result chunk size
+	 */
+	public int getResultChunkSize() {
+		int ret = getInt(ConfigurationKeys.KEY_RESULT_CHUNK_SIZE);
+		return ret > 0 ? ret : 1048576;
+	}
+
+	/**
+	 * Returns the name of the transport used to talk to the master server.
+	 *
+	 * @return the transport name
+	 */
+	public String getTransport() {
+		return getString(ConfigurationKeys.KEY_TRANSPORT);
+	}
+
+	/**
+	 * Returns the class name of the codec used by the transport.
+	 *
+	 * @return the codec class name, or null for the default codec
+	 */
+	public String getTransportCodec() {
+		return getString(ConfigurationKeys.KEY_TRANSPORT_CODEC);
+	}
+
+	/**
+	 * Returns the maximum length in bytes of frames of the NIO transport.
+	 *
+	 * @return the maximum frame length
+	 */
+	public int getTransportMaxFrameLength() {
+		int ret = getInt(ConfigurationKeys.KEY_TRANSPORT_MAX_FRAME_LENGTH);
+		return ret > 0 ? ret : NioTransport.DEFAULT_MAX_FRAME_LENGTH;
+	}
+
+	/**
+	 * Returns the time in milliseconds a call over the NIO transport waits
+	 * for its reply.
+	 *
+	 * @return the call timeout, 0 to wait indefinitely
+	 */
+	public long getTransportCallTimeout() {
+		return Math.max(0L, config.getLong(ConfigurationKeys.KEY_TRANSPORT_CALL_TIMEOUT, NioTransport.DEFAULT_CALL_TIMEOUT));
+	}
+
+	/**
+	 * Returns the number of input resources this host remembers as cached.
+	 *
+	 * @return the resource cache size
+	 */
+	public int getResourceCacheSize() {
+		int ret = getInt(ConfigurationKeys.KEY_RESOURCE_CACHE_SIZE);
+		return ret;
+	}
+
+	/**
+	 * Returns the resources this host holds locally.
+	 *
+	 * @return the local resources
+	 */
+	public String[] getLocalResources() {
+		return config.getStringArray(ConfigurationKeys.KEY_LOCAL_RESOURCES);
+	}
+
 	/**
 	 *
 	 * @return
@@ -322,6 +421,20 @@ public class Settings {
 		return ret.equals("true");
 	}
 
+	/**
+	 * Returns whether this host terminates its process, when it is retired
+	 * by the master server.
+	 *
+	 * @return true if the process exits on retirement, false otherwise
+	 */
+	public boolean getExitOnRetire() {
+		String ret = getString(ConfigurationKeys.KEY_COMPUTE_HOST_EXIT_ON_RETIRE);
+		if (ret == null) {
+			return true;
+		}
+		return ret.equals("true");
+	}
+
 	private String getOwnIP() {
 
 		InetAddress inet2 = null;
@@ -29,6 +29,7 @@ package net.sf.mpaxs.spi.server;
 
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import net.sf.mpaxs.api.ConfigurationKeys;
 import net.sf.mpaxs.api.ExecutionType;
 import net.sf.mpaxs.api.server.IComputeHostLauncher;
 import net.sf.mpaxs.spi.computeHost.StartUp;
@@ -57,6 +58,8 @@ public class LocalComputeHostLauncher implements IComputeHostLauncher {
     @Override
 	public void startComputeHost(Configuration cfg) {
 		Logger.getLogger(getClass().getName()).log(Level.INFO, "Starting local compute host with configuration: {0}", ConfigurationUtils.toString(cfg));
+		//the host shares the master server's process, do not exit on retirement
+		cfg.setProperty(ConfigurationKeys.KEY_COMPUTE_HOST_EXIT_ON_RETIRE, "false");
 		StartUp su = new StartUp(cfg);
 	}
 
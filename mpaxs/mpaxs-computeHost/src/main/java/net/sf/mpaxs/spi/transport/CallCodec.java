@@ -0,0 +1,234 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.rmi.MarshalException;
+import java.rmi.RemoteException;
+import java.rmi.UnexpectedException;
+import java.rmi.UnmarshalException;
+import net.sf.mpaxs.api.transport.ICodec;
+
+/**
+ * Encodes and decodes the frames exchanged by codec based transports. Every
+ * frame starts with its type. Calls and their replies carry a call id, which
+ * allows several calls to be pending on the same connection.
+ *
+ * @author Nils Hoffmann
+ */
+final class CallCodec {
+
+	static final byte CALL = 1;
+	static final byte RESULT = 2;
+	static final byte FAILURE = 3;
+	static final byte EXPORT = 4;
+	static final byte UNEXPORT = 5;
+	/**
+	 * The method key of the call asking whether a service is bound.
+	 */
+	static final String LOOKUP = "";
+	private final ICodec codec;
+
+	CallCodec(ICodec codec) {
+		this.codec = codec;
+	}
+
+	/**
+	 * Returns the key identifying the given method independent of the class
+	 * declaring it.
+	 */
+	static String methodKey(Method method) {
+		StringBuilder sb = new StringBuilder(method.getName()).append('(');
+		Class<?>[] types = method.getParameterTypes();
+		for (int i = 0; i < types.length; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(types[i].getName());
+		}
+		return sb.append(')').toString();
+	}
+
+	byte[] call(long id, String name, String method, Object[] args) throws MarshalException {
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bos);
+			out.writeByte(CALL);
+			out.writeLong(id);
+			out.writeUTF(name);
+			out.writeUTF(method);
+			int n = args == null ? 0 : args.length;
+			out.writeInt(n);
+			for (int i = 0; i < n; i++) {
+				codec.write(args[i], out);
+			}
+			out.flush();
+			return bos.toByteArray();
+		} catch (IOException ex) {
+			throw new MarshalException("Could not encode arguments of " + method, ex);
+		}
+	}
+
+	byte[] result(long id, Object value) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bos);
+		out.writeByte(RESULT);
+		out.writeLong(id);
+		codec.write(value, out);
+		out.flush();
+		return bos.toByteArray();
+	}
+
+	byte[] failure(long id, Throwable t) {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try {
+			DataOutputStream out = new DataOutputStream(bos);
+			out.writeByte(FAILURE);
+			out.writeLong(id);
+			codec.write(t, out);
+			out.flush();
+		} catch (IOException ex) {
+			//the throwable itself could not be encoded, send its description
+			bos.reset();
+			DataOutputStream out = new DataOutputStream(bos);
+			try {
+				out.writeByte(FAILURE);
+				out.writeLong(id);
+				codec.write(new RemoteException(String.valueOf(t)), out);
+				out.flush();
+			} catch (IOException ioe) {
+				throw new IllegalStateException("Could not encode failure", ioe);
+			}
+		}
+		return bos.toByteArray();
+	}
+
+	byte[] export(byte type, String name) {
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bos);
+			out.writeByte(type);
+			out.writeUTF(name);
+			out.flush();
+			return bos.toByteArray();
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	/**
+	 * Returns the id of the given call, result or failure frame.
+	 */
+	static long id(byte[] frame) {
+		long id = 0;
+		for (int i = 1; i < 9; i++) {
+			id = (id << 8) | (frame[i] & 0xff);
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the service name of the given export or unexport frame.
+	 */
+	static String name(byte[] frame) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame, 1, frame.length - 1));
+		return in.readUTF();
+	}
+
+	/**
+	 * Returns the result carried by the given reply frame or throws the
+	 * failure it carries. Checked exceptions not declared by the method are
+	 * wrapped in an <code>UnexpectedException</code>.
+	 *
+	 * @param reply  the reply frame
+	 * @param method the method called, or null for lookups
+	 * @return the result
+	 * @throws Throwable the failure of the call
+	 */
+	Object reply(byte[] reply, Method method) throws Throwable {
+		Object value;
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(reply, 9, reply.length - 9));
+			value = codec.read(in);
+		} catch (IOException ex) {
+			throw new UnmarshalException("Could not decode reply", ex);
+		}
+		if (reply[0] == RESULT) {
+			return value;
+		}
+		if (!(value instanceof Throwable)) {
+			throw new UnmarshalException("Invalid failure " + value);
+		}
+		Throwable t = (Throwable) value;
+		if (t instanceof RuntimeException || t instanceof Error || t instanceof RemoteException) {
+			throw t;
+		}
+		if (method != null) {
+			for (Class<?> type : method.getExceptionTypes()) {
+				if (type.isInstance(t)) {
+					throw t;
+				}
+			}
+		}
+		throw new UnexpectedException("Undeclared checked exception", (Exception) t);
+	}
+
+	/**
+	 * Decodes a call frame.
+	 */
+	Call decode(byte[] frame) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame, 9, frame.length - 9));
+		Call call = new Call();
+		call.name = in.readUTF();
+		call.method = in.readUTF();
+		int n = in.readInt();
+		if (n < 0) {
+			throw new IOException("Invalid number of arguments " + n);
+		}
+		call.args = new Object[n];
+		for (int i = 0; i < n; i++) {
+			call.args[i] = codec.read(in);
+		}
+		return call;
+	}
+
+	/**
+	 * A decoded call.
+	 */
+	static final class Call {
+
+		String name;
+		String method;
+		Object[] args;
+	}
+}
@@ -0,0 +1,254 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.rmi.server.RMIClassLoader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import net.sf.mpaxs.api.transport.ICodec;
+
+/**
+ * Compact binary codec. Values commonly passed between master server and
+ * compute hosts, like <code>null</code>, booleans, numbers, strings, uuids,
+ * byte arrays, and plain <code>HashSet</code>, <code>LinkedHashSet</code>
+ * and <code>ArrayList</code> instances are written with a one byte tag and
+ * their binary representation. Sets are read back as <code>LinkedHashSet</code>,
+ * lists as <code>ArrayList</code>. All other values, including other
+ * collection types, are written with Java serialization, so that they keep
+ * their type. Classes are annotated with their codebase like RMI does, so
+ * that job classes can be loaded from the master server's codebase.
+ *
+ * Lengths and sizes read from the input are not trusted: memory is only
+ * allocated as the corresponding data actually arrives, so that a corrupt or
+ * malicious frame can not trigger huge allocations.
+ *
+ * @author Nils Hoffmann
+ */
+public class CompactCodec implements ICodec {
+
+	private static final byte NULL = 0;
+	private static final byte TRUE = 1;
+	private static final byte FALSE = 2;
+	private static final byte INT = 3;
+	private static final byte LONG = 4;
+	private static final byte DOUBLE = 5;
+	private static final byte STRING = 6;
+	private static final byte UUID_VALUE = 7;
+	private static final byte BYTES = 8;
+	private static final byte SET = 9;
+	private static final byte LIST = 10;
+	private static final byte SERIALIZED = 11;
+	private static final int MAX_INITIAL_CAPACITY = 65536;
+
+	@Override
+	public void write(Object value, DataOutput out) throws IOException {
+		if (value == null) {
+			out.writeByte(NULL);
+		} else if (value instanceof Boolean) {
+			out.writeByte(((Boolean) value) ? TRUE : FALSE);
+		} else if (value instanceof Integer) {
+			out.writeByte(INT);
+			out.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			out.writeByte(LONG);
+			out.writeLong((Long) value);
+		} else if (value instanceof Double) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof String) {
+			out.writeByte(STRING);
+			writeBytes(((String) value).getBytes(StandardCharsets.UTF_8), out);
+		} else if (value instanceof UUID) {
+			out.writeByte(UUID_VALUE);
+			out.writeLong(((UUID) value).getMostSignificantBits());
+			out.writeLong(((UUID) value).getLeastSignificantBits());
+		} else if (value instanceof byte[]) {
+			out.writeByte(BYTES);
+			writeBytes((byte[]) value, out);
+		} else if (value.getClass() == HashSet.class || value.getClass() == LinkedHashSet.class) {
+			out.writeByte(SET);
+			out.writeInt(((Set<?>) value).size());
+			for (Object o : (Set<?>) value) {
+				write(o, out);
+			}
+		} else if (value.getClass() == ArrayList.class) {
+			out.writeByte(LIST);
+			out.writeInt(((List<?>) value).size());
+			for (Object o : (List<?>) value) {
+				write(o, out);
+			}
+		} else {
+			out.writeByte(SERIALIZED);
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			ObjectOutputStream oos = new AnnotatingOutputStream(bos);
+			oos.writeObject(value);
+			oos.close();
+			writeBytes(bos.toByteArray(), out);
+		}
+	}
+
+	@Override
+	public Object read(DataInput in) throws IOException {
+		byte tag = in.readByte();
+		switch (tag) {
+			case NULL:
+				return null;
+			case TRUE:
+				return Boolean.TRUE;
+			case FALSE:
+				return Boolean.FALSE;
+			case INT:
+				return in.readInt();
+			case LONG:
+				return in.readLong();
+			case DOUBLE:
+				return in.readDouble();
+			case STRING:
+				return new String(readBytes(in), StandardCharsets.UTF_8);
+			case UUID_VALUE:
+				return new UUID(in.readLong(), in.readLong());
+			case BYTES:
+				return readBytes(in);
+			case SET: {
+				int size = readSize(in);
+				Set<Object> set = new LinkedHashSet<Object>();
+				for (int i = 0; i < size; i++) {
+					set.add(read(in));
+				}
+				return set;
+			}
+			case LIST: {
+				int size = readSize(in);
+				List<Object> list = new ArrayList<Object>(Math.min(size, MAX_INITIAL_CAPACITY));
+				for (int i = 0; i < size; i++) {
+					list.add(read(in));
+				}
+				return list;
+			}
+			case SERIALIZED:
+				ObjectInputStream ois = new ResolvingInputStream(new ByteArrayInputStream(readBytes(in)));
+				try {
+					return ois.readObject();
+				} catch (ClassNotFoundException ex) {
+					throw new IOException("Could not load class of serialized value", ex);
+				} finally {
+					ois.close();
+				}
+			default:
+				throw new IOException("Unknown value tag " + tag);
+		}
+	}
+
+	private static void writeBytes(byte[] bytes, DataOutput out) throws IOException {
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static int readSize(DataInput in) throws IOException {
+		int size = in.readInt();
+		if (size < 0) {
+			throw new IOException("Invalid length " + size);
+		}
+		return size;
+	}
+
+	private static byte[] readBytes(DataInput in) throws IOException {
+		int length = readSize(in);
+		if (length <= MAX_INITIAL_CAPACITY) {
+			byte[] bytes = new byte[length];
+			in.readFully(bytes);
+			return bytes;
+		}
+		//grow with the data read, fails with an EOFException on short input
+		ByteArrayOutputStream bos = new ByteArrayOutputStream(MAX_INITIAL_CAPACITY);
+		byte[] buffer = new byte[MAX_INITIAL_CAPACITY];
+		int remaining = length;
+		while (remaining > 0) {
+			int n = Math.min(remaining, buffer.length);
+			in.readFully(buffer, 0, n);
+			bos.write(buffer, 0, n);
+			remaining -= n;
+		}
+		return bos.toByteArray();
+	}
+
+	private static final class AnnotatingOutputStream extends ObjectOutputStream {
+
+		AnnotatingOutputStream(OutputStream out) throws IOException {
+			super(out);
+		}
+
+		@Override
+		protected void annotateClass(Class<?> cl) throws IOException {
+			writeObject(RMIClassLoader.getClassAnnotation(cl));
+		}
+
+		@Override
+		protected void annotateProxyClass(Class<?> cl) throws IOException {
+			writeObject(RMIClassLoader.getClassAnnotation(cl));
+		}
+	}
+
+	private static final class ResolvingInputStream extends ObjectInputStream {
+
+		ResolvingInputStream(InputStream in) throws IOException {
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			String codebase = (String) readObject();
+			try {
+				return RMIClassLoader.loadClass(codebase, desc.getName(), Thread.currentThread().getContextClassLoader());
+			} catch (ClassNotFoundException ex) {
+				return super.resolveClass(desc);
+			}
+		}
+
+		@Override
+		protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+			String codebase = (String) readObject();
+			return RMIClassLoader.loadProxyClass(codebase, interfaces, Thread.currentThread().getContextClassLoader());
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.transport;
+
+import java.lang.reflect.Proxy;
+import java.net.MalformedURLException;
+import java.rmi.AlreadyBoundException;
+import java.rmi.ConnectException;
+import java.rmi.NotBoundException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import net.sf.mpaxs.api.transport.ICodec;
+import net.sf.mpaxs.api.transport.ITransport;
+
+/**
+ * In-process transport connecting all loopback transports of the same
+ * virtual machine. Ports identify the transports, host names are ignored.
+ * Calls are encoded and decoded with the codec exactly like with the
+ * {@link NioTransport}, but are delivered without sockets. This allows to
+ * run master server and compute hosts within one virtual machine, e.g. for
+ * testing.
+ *
+ * @author Nils Hoffmann
+ */
+public final class LoopbackTransport implements ITransport {
+
+	private static final Map<Integer, ServiceDispatcher> PORTS = new ConcurrentHashMap<Integer, ServiceDispatcher>();
+	private final CallCodec calls;
+	private final Set<Integer> ports = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Create a new transport.
+	 *
+	 * @param codec the codec for arguments and results
+	 */
+	public LoopbackTransport(ICodec codec) {
+		this.calls = new CallCodec(codec);
+	}
+
+	@Override
+	public int listen(int port) throws RemoteException {
+		for (int p = port; p > 0; p++) {
+			if (PORTS.putIfAbsent(p, new ServiceDispatcher(calls)) == null) {
+				ports.add(p);
+				return p;
+			}
+		}
+		throw new RemoteException("No free loopback port above " + port);
+	}
+
+	@Override
+	public void export(String host, int port, String name, Remote service) throws AlreadyBoundException, MalformedURLException, RemoteException {
+		ServiceDispatcher dispatcher = PORTS.get(port);
+		if (dispatcher == null) {
+			//like a compute host using an existing registry, listen if nobody does
+			dispatcher = PORTS.get(listen(port));
+		}
+		dispatcher.bind(name, service);
+	}
+
+	@Override
+	public void unexport(String host, int port, String name, Remote service) throws NotBoundException, MalformedURLException, RemoteException {
+		ServiceDispatcher dispatcher = PORTS.get(port);
+		if (dispatcher == null) {
+			throw new NotBoundException(name);
+		}
+		dispatcher.unbind(name);
+	}
+
+	@Override
+	public <T extends Remote> T lookup(Class<T> type, String host, int port, String name) throws NotBoundException, MalformedURLException, RemoteException {
+		LoopbackProxy proxy = new LoopbackProxy(port, name);
+		if (!proxy.lookup()) {
+			throw new NotBoundException(name);
+		}
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, proxy));
+	}
+
+	@Override
+	public void close() {
+		for (Integer port : ports) {
+			PORTS.remove(port);
+		}
+		ports.clear();
+	}
+
+	/**
+	 * Remote reference delivering its calls to the dispatcher of a port.
+	 */
+	private final class LoopbackProxy extends RemoteProxy {
+
+		private final int port;
+
+		LoopbackProxy(int port, String name) {
+			super(calls, name);
+			this.port = port;
+		}
+
+		@Override
+		protected byte[] exchange(long id, byte[] frame) throws RemoteException {
+			ServiceDispatcher dispatcher = PORTS.get(port);
+			if (dispatcher == null) {
+				throw new ConnectException("Nothing listening on loopback port " + port);
+			}
+			return dispatcher.dispatch(frame);
+		}
+	}
+}
@@ -0,0 +1,602 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.transport;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.Channel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.rmi.AlreadyBoundException;
+import java.rmi.ConnectException;
+import java.rmi.MarshalException;
+import java.rmi.NotBoundException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.sf.mpaxs.api.transport.ICodec;
+import net.sf.mpaxs.api.transport.ITransport;
+
+/**
+ * Transport using one multiplexed, non-blocking socket connection per pair of
+ * processes. Calls and replies are sent as length prefixed frames encoded with
+ * an {@link ICodec}. Calls are pipelined, i.e. any number of calls may be
+ * pending on one connection, and are executed concurrently by the receiving
+ * end.
+ *
+ * Connections are bidirectional: services exported by either end are
+ * announced to the other end when the connection is established, or later
+ * when they are exported. A compute host therefore does not need to accept
+ * connections of its own, the master server reaches its services over the
+ * connection the host opened to register.
+ *
+ * @author Nils Hoffmann
+ */
+public final class NioTransport implements ITransport {
+
+	/**
+	 * The default maximum frame length of 64 MiB.
+	 */
+	public static final int DEFAULT_MAX_FRAME_LENGTH = 67108864;
+	/**
+	 * The default time of 5 minutes to wait for the reply to a call.
+	 */
+	public static final long DEFAULT_CALL_TIMEOUT = 300000;
+	private static final int CONNECT_TIMEOUT = 10000;
+	private static final int MAX_PORT_ATTEMPTS = 100;
+	private final CallCodec calls;
+	private final ServiceDispatcher dispatcher;
+	private final int maxFrameLength;
+	private final long callTimeout;
+	private final Map<String, Connection> connections = new ConcurrentHashMap<String, Connection>();
+	private final Map<String, Connection> exportedByPeers = new ConcurrentHashMap<String, Connection>();
+	private final Set<Connection> open = ConcurrentHashMap.newKeySet();
+	private final List<ServerSocketChannel> servers = new ArrayList<ServerSocketChannel>();
+	private final Queue<Runnable> reactorTasks = new ConcurrentLinkedQueue<Runnable>();
+	private final ExecutorService workers = Executors.newCachedThreadPool(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "NioTransport-worker");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+	private Selector selector;
+	private volatile boolean closed = false;
+
+	/**
+	 * Create a new transport with the default maximum frame length and call
+	 * timeout.
+	 *
+	 * @param codec the codec for arguments and results
+	 */
+	public NioTransport(ICodec codec) {
+		this(codec, DEFAULT_MAX_FRAME_LENGTH, DEFAULT_CALL_TIMEOUT);
+	}
+
+	/**
+	 * Create a new transport.
+	 *
+	 * @param codec          the codec for arguments and results
+	 * @param maxFrameLength the maximum length in bytes of frames sent or
+	 *                       received, a peer sending larger frames is
+	 *                       disconnected
+	 * @param callTimeout    the time in milliseconds to wait for the reply to
+	 *                       a call, 0 to wait indefinitely
+	 */
+	public NioTransport(ICodec codec, int maxFrameLength, long callTimeout) {
+		if (maxFrameLength < 1) {
+			throw new IllegalArgumentException("Maximum frame length must be positive: " + maxFrameLength);
+		}
+		this.calls = new CallCodec(codec);
+		this.dispatcher = new ServiceDispatcher(calls);
+		this.maxFrameLength = maxFrameLength;
+		this.callTimeout = Math.max(0L, callTimeout);
+	}
+
+	@Override
+	public int listen(int port) throws RemoteException {
+		for (int p = port; p < port + MAX_PORT_ATTEMPTS; p++) {
+			ServerSocketChannel server = null;
+			try {
+				server = ServerSocketChannel.open();
+				server.bind(new InetSocketAddress(p));
+				server.configureBlocking(false);
+				final ServerSocketChannel s = server;
+				execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							s.register(selector, SelectionKey.OP_ACCEPT);
+						} catch (IOException ex) {
+							Logger.getLogger(NioTransport.class.getName()).log(Level.SEVERE, "Could not accept connections", ex);
+						}
+					}
+				});
+				synchronized (servers) {
+					servers.add(server);
+				}
+				Logger.getLogger(NioTransport.class.getName()).log(Level.FINE, "Listening on port {0}", p);
+				return p;
+			} catch (BindException ex) {
+				close(server);
+			} catch (IOException ex) {
+				close(server);
+				throw new RemoteException("Could not listen on port " + p, ex);
+			}
+		}
+		throw new RemoteException("No free port in range " + port + "-" + (port + MAX_PORT_ATTEMPTS - 1));
+	}
+
+	@Override
+	public void export(String host, int port, String name, Remote service) throws AlreadyBoundException, MalformedURLException, RemoteException {
+		dispatcher.bind(name, service);
+		announce(CallCodec.EXPORT, name);
+	}
+
+	@Override
+	public void unexport(String host, int port, String name, Remote service) throws NotBoundException, MalformedURLException, RemoteException {
+		dispatcher.unbind(name);
+		announce(CallCodec.UNEXPORT, name);
+	}
+
+	@Override
+	public <T extends Remote> T lookup(Class<T> type, String host, int port, String name) throws NotBoundException, MalformedURLException, RemoteException {
+		Connection c = exportedByPeers.get(name);
+		ConnectionProxy proxy;
+		if (c != null && !c.closed) {
+			proxy = new ConnectionProxy(c, name);
+		} else {
+			proxy = new ConnectionProxy(connect(host, port), name);
+			if (!proxy.lookup()) {
+				throw new NotBoundException(name);
+			}
+		}
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, proxy));
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		synchronized (servers) {
+			for (ServerSocketChannel s : servers) {
+				close(s);
+			}
+			servers.clear();
+		}
+		for (Connection c : open) {
+			c.close(null);
+		}
+		synchronized (this) {
+			if (selector != null) {
+				selector.wakeup();
+			}
+		}
+		workers.shutdown();
+	}
+
+	private void announce(byte type, String name) {
+		byte[] frame = calls.export(type, name);
+		for (Connection c : open) {
+			try {
+				c.send(frame);
+			} catch (RemoteException ex) {
+				Logger.getLogger(NioTransport.class.getName()).log(Level.FINE, "Could not announce service " + name, ex);
+			}
+		}
+	}
+
+	private Connection connect(String host, int port) throws RemoteException {
+		String address = host + ":" + port;
+		synchronized (connections) {
+			Connection c = connections.get(address);
+			if (c != null && !c.closed) {
+				return c;
+			}
+			SocketChannel channel = null;
+			try {
+				channel = SocketChannel.open();
+				channel.socket().connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+				channel.socket().setTcpNoDelay(true);
+				channel.configureBlocking(false);
+			} catch (IOException ex) {
+				close(channel);
+				throw new ConnectException("Connection refused to " + address, ex);
+			}
+			c = register(channel, address);
+			connections.put(address, c);
+			return c;
+		}
+	}
+
+	private Connection register(final SocketChannel channel, String address) throws RemoteException {
+		final Connection c = new Connection(channel, address);
+		open.add(c);
+		execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					c.key = channel.register(selector, SelectionKey.OP_READ, c);
+				} catch (IOException ex) {
+					c.close(ex);
+				}
+			}
+		});
+		for (String name : dispatcher.getNames()) {
+			c.send(calls.export(CallCodec.EXPORT, name));
+		}
+		return c;
+	}
+
+	/**
+	 * Runs the given task on the reactor thread, starting it if necessary.
+	 */
+	private void execute(Runnable task) throws RemoteException {
+		synchronized (this) {
+			if (closed) {
+				throw new ConnectException("Transport is closed");
+			}
+			if (selector == null) {
+				try {
+					selector = Selector.open();
+				} catch (IOException ex) {
+					throw new RemoteException("Could not open selector", ex);
+				}
+				Thread reactor = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						react();
+					}
+				}, "NioTransport-reactor");
+				reactor.setDaemon(true);
+				reactor.start();
+			}
+		}
+		reactorTasks.add(task);
+		selector.wakeup();
+	}
+
+	private void react() {
+		while (!closed) {
+			try {
+				selector.select();
+			} catch (IOException ex) {
+				Logger.getLogger(NioTransport.class.getName()).log(Level.SEVERE, "Selector failed", ex);
+				break;
+			}
+			Runnable task;
+			while ((task = reactorTasks.poll()) != null) {
+				task.run();
+			}
+			Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+			while (iter.hasNext()) {
+				SelectionKey key = iter.next();
+				iter.remove();
+				Connection c = null;
+				try {
+					if (key.isAcceptable()) {
+						accept((ServerSocketChannel) key.channel());
+						continue;
+					}
+					c = (Connection) key.attachment();
+					if (key.isReadable()) {
+						c.read();
+					}
+					if (key.isValid() && key.isWritable()) {
+						c.write();
+					}
+				} catch (IOException ex) {
+					if (c != null) {
+						c.close(ex);
+					} else {
+						Logger.getLogger(NioTransport.class.getName()).log(Level.WARNING, "Could not accept connection", ex);
+					}
+				} catch (CancelledKeyException ex) {
+					if (c != null) {
+						c.close(ex);
+					}
+				}
+			}
+		}
+		try {
+			selector.close();
+		} catch (IOException ex) {
+			Logger.getLogger(NioTransport.class.getName()).log(Level.FINE, null, ex);
+		}
+	}
+
+	private void accept(ServerSocketChannel server) throws IOException {
+		SocketChannel channel = server.accept();
+		if (channel != null) {
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			register(channel, null);
+		}
+	}
+
+	private static void close(Channel channel) {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException ex) {
+				Logger.getLogger(NioTransport.class.getName()).log(Level.FINE, null, ex);
+			}
+		}
+	}
+
+	/**
+	 * A connection to another process.
+	 */
+	private final class Connection {
+
+		private final SocketChannel channel;
+		private final String address;
+		private final Deque<ByteBuffer> writes = new ArrayDeque<ByteBuffer>();
+		private final Map<Long, PendingCall> pending = new ConcurrentHashMap<Long, PendingCall>();
+		private ByteBuffer in = ByteBuffer.allocate(8192);
+		private SelectionKey key;
+		private volatile boolean closed = false;
+
+		Connection(SocketChannel channel, String address) {
+			this.channel = channel;
+			this.address = address;
+		}
+
+		void send(byte[] frame) throws RemoteException {
+			if (closed) {
+				throw new ConnectException("Connection to " + address + " is closed");
+			}
+			if (frame.length > maxFrameLength) {
+				throw new MarshalException("Frame of " + frame.length + " bytes exceeds the maximum frame length of " + maxFrameLength + " bytes");
+			}
+			ByteBuffer b = ByteBuffer.allocate(4 + frame.length);
+			b.putInt(frame.length).put(frame).flip();
+			synchronized (writes) {
+				writes.add(b);
+			}
+			execute(new Runnable() {
+				@Override
+				public void run() {
+					if (key != null && key.isValid()) {
+						key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+					}
+				}
+			});
+		}
+
+		void write() throws IOException {
+			synchronized (writes) {
+				while (!writes.isEmpty()) {
+					ByteBuffer b = writes.peek();
+					channel.write(b);
+					if (b.hasRemaining()) {
+						return;
+					}
+					writes.poll();
+				}
+				key.interestOps(SelectionKey.OP_READ);
+			}
+		}
+
+		void read() throws IOException {
+			if (channel.read(in) < 0) {
+				throw new EOFException("Connection closed by peer");
+			}
+			in.flip();
+			int needed = 0;
+			while (in.remaining() >= 4) {
+				int length = in.getInt(in.position());
+				if (length < 1 || length > maxFrameLength) {
+					throw new IOException("Invalid frame length " + length);
+				}
+				if (in.remaining() < 4 + length) {
+					needed = 4 + length;
+					break;
+				}
+				in.getInt();
+				byte[] frame = new byte[length];
+				in.get(frame);
+				received(frame);
+			}
+			in.compact();
+			if (needed > in.capacity()) {
+				ByteBuffer b = ByteBuffer.allocate(needed);
+				in.flip();
+				b.put(in);
+				in = b;
+			}
+		}
+
+		private void received(final byte[] frame) throws IOException {
+			switch (frame[0]) {
+				case CallCodec.CALL:
+					workers.execute(new Runnable() {
+						@Override
+						public void run() {
+							byte[] reply = dispatcher.dispatch(frame);
+							try {
+								send(reply);
+							} catch (MarshalException ex) {
+								//let the caller know, instead of leaving it waiting
+								try {
+									send(calls.failure(CallCodec.id(frame), ex));
+								} catch (RemoteException re) {
+									Logger.getLogger(NioTransport.class.getName()).log(Level.FINE, "Could not send reply", re);
+								}
+							} catch (RemoteException ex) {
+								Logger.getLogger(NioTransport.class.getName()).log(Level.FINE, "Could not send reply", ex);
+							}
+						}
+					});
+					break;
+				case CallCodec.RESULT:
+				case CallCodec.FAILURE:
+					PendingCall p = pending.remove(CallCodec.id(frame));
+					if (p != null) {
+						p.complete(frame);
+					}
+					break;
+				case CallCodec.EXPORT:
+					exportedByPeers.put(CallCodec.name(frame), this);
+					break;
+				case CallCodec.UNEXPORT:
+					exportedByPeers.remove(CallCodec.name(frame), this);
+					break;
+				default:
+					throw new IOException("Unknown frame type " + frame[0]);
+			}
+		}
+
+		void close(Throwable cause) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			if (key != null) {
+				key.cancel();
+			}
+			NioTransport.close(channel);
+			open.remove(this);
+			if (address != null) {
+				connections.remove(address, this);
+			}
+			Iterator<Connection> iter = exportedByPeers.values().iterator();
+			while (iter.hasNext()) {
+				if (iter.next() == this) {
+					iter.remove();
+				}
+			}
+			for (PendingCall p : pending.values()) {
+				p.fail(new RemoteException("Connection to " + (address == null ? "peer" : address) + " closed", cause));
+			}
+			pending.clear();
+		}
+	}
+
+	/**
+	 * A call waiting for its reply.
+	 */
+	private static final class PendingCall {
+
+		private final CountDownLatch done = new CountDownLatch(1);
+		private volatile byte[] reply;
+		private volatile RemoteException failure;
+
+		void complete(byte[] reply) {
+			this.reply = reply;
+			done.countDown();
+		}
+
+		void fail(RemoteException failure) {
+			this.failure = failure;
+			done.countDown();
+		}
+
+		/**
+		 * Waits for the reply.
+		 *
+		 * @param timeout the time in milliseconds to wait, 0 to wait
+		 *                indefinitely
+		 * @return the reply frame
+		 * @throws RemoteException if the call failed, or no reply was
+		 *                         received in time
+		 */
+		byte[] await(long timeout) throws RemoteException {
+			try {
+				if (timeout > 0) {
+					if (!done.await(timeout, TimeUnit.MILLISECONDS)) {
+						throw new RemoteException("No reply received within " + timeout + " ms");
+					}
+				} else {
+					done.await();
+				}
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new RemoteException("Interrupted while waiting for reply", ex);
+			}
+			if (failure != null) {
+				throw failure;
+			}
+			return reply;
+		}
+	}
+
+	/**
+	 * Remote reference sending its calls over a connection.
+	 */
+	private final class ConnectionProxy extends RemoteProxy {
+
+		private final Connection connection;
+
+		ConnectionProxy(Connection connection, String name) {
+			super(calls, name);
+			this.connection = connection;
+		}
+
+		@Override
+		protected byte[] exchange(long id, byte[] frame) throws RemoteException {
+			PendingCall p = new PendingCall();
+			connection.pending.put(id, p);
+			try {
+				connection.send(frame);
+			} catch (RemoteException ex) {
+				connection.pending.remove(id);
+				throw ex;
+			}
+			try {
+				return p.await(callTimeout);
+			} finally {
+				connection.pending.remove(id);
+			}
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.transport;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.rmi.RemoteException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Invocation handler of remote references created by codec based
+ * transports. Encodes each call, hands it to the transport and decodes the
+ * reply.
+ *
+ * @author Nils Hoffmann
+ */
+abstract class RemoteProxy implements InvocationHandler {
+
+	private static final AtomicLong CALL_IDS = new AtomicLong();
+	private final CallCodec calls;
+	private final String name;
+
+	RemoteProxy(CallCodec calls, String name) {
+		this.calls = calls;
+		this.name = name;
+	}
+
+	/**
+	 * Deliver the given call frame and return the reply frame.
+	 *
+	 * @param id    the call id
+	 * @param frame the call frame
+	 * @return the reply frame
+	 * @throws RemoteException if the call could not be delivered or no reply
+	 *                         was received
+	 */
+	protected abstract byte[] exchange(long id, byte[] frame) throws RemoteException;
+
+	/**
+	 * Returns whether the service is bound at the remote end.
+	 *
+	 * @return true if the service is bound
+	 * @throws RemoteException if the remote end can not be reached
+	 */
+	boolean lookup() throws RemoteException {
+		try {
+			return Boolean.TRUE.equals(call(null, CallCodec.LOOKUP, null));
+		} catch (RemoteException ex) {
+			throw ex;
+		} catch (Throwable t) {
+			throw new RemoteException("Lookup of " + name + " failed", t);
+		}
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (method.getDeclaringClass() == Object.class) {
+			if ("equals".equals(method.getName())) {
+				return proxy == args[0];
+			} else if ("hashCode".equals(method.getName())) {
+				return System.identityHashCode(proxy);
+			}
+			return getClass().getSimpleName() + "[" + name + "]";
+		}
+		return call(method, CallCodec.methodKey(method), args);
+	}
+
+	private Object call(Method method, String key, Object[] args) throws Throwable {
+		long id = CALL_IDS.incrementAndGet();
+		return calls.reply(exchange(id, calls.call(id, name, key, args)), method);
+	}
+}
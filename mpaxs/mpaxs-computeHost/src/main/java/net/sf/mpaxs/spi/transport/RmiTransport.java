@@ -0,0 +1,88 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.transport;
+
+import java.net.MalformedURLException;
+import java.rmi.AlreadyBoundException;
+import java.rmi.Naming;
+import java.rmi.NotBoundException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.server.ExportException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.sf.mpaxs.api.transport.ITransport;
+
+/**
+ * Transport using Java RMI and the RMI registry. This is the default
+ * transport.
+ *
+ * @author Nils Hoffmann
+ */
+public final class RmiTransport implements ITransport {
+
+	@Override
+	public int listen(int port) throws RemoteException {
+		try {
+			LocateRegistry.createRegistry(port);
+			return port;
+		} catch (ExportException ex) {
+			return listen(port + 1);
+		}
+	}
+
+	@Override
+	public void export(String host, int port, String name, Remote service) throws AlreadyBoundException, MalformedURLException, RemoteException {
+		try {
+			LocateRegistry.createRegistry(port);
+			Logger.getLogger(RmiTransport.class.getName()).log(Level.FINE, "Started own RMI-Registry on port {0}", port);
+		} catch (RemoteException ex) {
+			Logger.getLogger(RmiTransport.class.getName()).log(Level.FINE, "RMI-Registry already running on port {0}.", port);
+		}
+		Naming.bind(url(host, port, name), service);
+	}
+
+	@Override
+	public void unexport(String host, int port, String name, Remote service) throws NotBoundException, MalformedURLException, RemoteException {
+		Naming.unbind(url(host, port, name));
+	}
+
+	@Override
+	public <T extends Remote> T lookup(Class<T> type, String host, int port, String name) throws NotBoundException, MalformedURLException, RemoteException {
+		return type.cast(Naming.lookup(url(host, port, name)));
+	}
+
+	@Override
+	public void close() {
+	}
+
+	private static String url(String host, int port, String name) {
+		return "//" + host + ":" + port + "/" + name;
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.transport;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.rmi.AlreadyBoundException;
+import java.rmi.MarshalException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.NotBoundException;
+import java.rmi.Remote;
+import java.rmi.UnmarshalException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the services exported by a codec based transport and executes the
+ * calls received for them. Only methods of remote interfaces implemented by a
+ * service can be called.
+ *
+ * @author Nils Hoffmann
+ */
+final class ServiceDispatcher {
+
+	private final CallCodec calls;
+	private final Map<String, Remote> services = new ConcurrentHashMap<String, Remote>();
+	private final Map<Class<?>, Map<String, Method>> methods = new ConcurrentHashMap<Class<?>, Map<String, Method>>();
+
+	ServiceDispatcher(CallCodec calls) {
+		this.calls = calls;
+	}
+
+	void bind(String name, Remote service) throws AlreadyBoundException {
+		if (services.containsKey(name) || services.putIfAbsent(name, service) != null) {
+			throw new AlreadyBoundException(name);
+		}
+	}
+
+	void unbind(String name) throws NotBoundException {
+		if (services.remove(name) == null) {
+			throw new NotBoundException(name);
+		}
+	}
+
+	boolean isBound(String name) {
+		return services.containsKey(name);
+	}
+
+	List<String> getNames() {
+		return new ArrayList<String>(services.keySet());
+	}
+
+	/**
+	 * Executes the given call frame and returns the reply frame.
+	 *
+	 * @param frame the call frame
+	 * @return the reply frame
+	 */
+	byte[] dispatch(byte[] frame) {
+		long id = CallCodec.id(frame);
+		CallCodec.Call call;
+		try {
+			call = calls.decode(frame);
+		} catch (IOException ex) {
+			return calls.failure(id, new UnmarshalException("Could not decode call", ex));
+		}
+		Object value;
+		if (CallCodec.LOOKUP.equals(call.method)) {
+			value = isBound(call.name);
+		} else {
+			Remote service = services.get(call.name);
+			if (service == null) {
+				return calls.failure(id, new NoSuchObjectException("No service bound as " + call.name));
+			}
+			Method method = getMethods(service.getClass()).get(call.method);
+			if (method == null) {
+				return calls.failure(id, new UnmarshalException("Unknown method " + call.method));
+			}
+			try {
+				value = method.invoke(service, call.args);
+			} catch (InvocationTargetException ex) {
+				return calls.failure(id, ex.getCause());
+			} catch (IllegalAccessException ex) {
+				return calls.failure(id, new UnmarshalException("Can not call " + call.method, ex));
+			} catch (IllegalArgumentException ex) {
+				return calls.failure(id, new UnmarshalException("Invalid arguments for " + call.method, ex));
+			}
+		}
+		try {
+			return calls.result(id, value);
+		} catch (IOException ex) {
+			return calls.failure(id, new MarshalException("Could not encode result of " + call.method, ex));
+		}
+	}
+
+	private Map<String, Method> getMethods(Class<?> serviceClass) {
+		Map<String, Method> m = methods.get(serviceClass);
+		if (m == null) {
+			m = new HashMap<String, Method>();
+			addRemoteMethods(serviceClass, m);
+			methods.put(serviceClass, m);
+		}
+		return m;
+	}
+
+	private static void addRemoteMethods(Class<?> c, Map<String, Method> m) {
+		if (c == null) {
+			return;
+		}
+		for (Class<?> i : c.getInterfaces()) {
+			if (Remote.class.isAssignableFrom(i) && i != Remote.class) {
+				for (Method method : i.getMethods()) {
+					m.put(CallCodec.methodKey(method), method);
+				}
+			}
+			addRemoteMethods(i, m);
+		}
+		addRemoteMethods(c.getSuperclass(), m);
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.transport;
+
+import net.sf.mpaxs.api.transport.ICodec;
+import net.sf.mpaxs.api.transport.ITransport;
+
+/**
+ * Creates transports by name.
+ *
+ * @author Nils Hoffmann
+ */
+public final class Transports {
+
+	/**
+	 * Java RMI, the default.
+	 */
+	public static final String RMI = "RMI";
+	/**
+	 * Multiplexed non-blocking sockets, see {@link NioTransport}.
+	 */
+	public static final String NIO = "NIO";
+	/**
+	 * In-process delivery, see {@link LoopbackTransport}.
+	 */
+	public static final String LOOPBACK = "LOOPBACK";
+
+	private Transports() {
+	}
+
+	/**
+	 * Create the transport with the given name.
+	 *
+	 * @param type      the transport name, RMI if null or empty
+	 * @param codecName the class name of the codec, {@link CompactCodec} if
+	 *                  null or empty, ignored by RMI
+	 * @return the transport
+	 * @throws IllegalArgumentException if the transport is unknown or the
+	 *                                  codec can not be instantiated
+	 */
+	public static ITransport create(String type, String codecName) {
+		return create(type, codecName, NioTransport.DEFAULT_MAX_FRAME_LENGTH, NioTransport.DEFAULT_CALL_TIMEOUT);
+	}
+
+	/**
+	 * Create the transport with the given name.
+	 *
+	 * @param type           the transport name, RMI if null or empty
+	 * @param codecName      the class name of the codec, {@link CompactCodec}
+	 *                       if null or empty, ignored by RMI
+	 * @param maxFrameLength the maximum frame length in bytes, only used by NIO
+	 * @param callTimeout    the time in milliseconds to wait for the reply to
+	 *                       a call, 0 to wait indefinitely, only used by NIO
+	 * @return the transport
+	 * @throws IllegalArgumentException if the transport is unknown or the
+	 *                                  codec can not be instantiated
+	 */
+	public static ITransport create(String type, String codecName, int maxFrameLength, long callTimeout) {
+		if (type == null || type.isEmpty() || RMI.equalsIgnoreCase(type)) {
+			return new RmiTransport();
+		} else if (NIO.equalsIgnoreCase(type)) {
+			return new NioTransport(createCodec(codecName), maxFrameLength, callTimeout);
+		} else if (LOOPBACK.equalsIgnoreCase(type)) {
+			return new LoopbackTransport(createCodec(codecName));
+		}
+		throw new IllegalArgumentException("Unknown transport " + type);
+	}
+
+	private static ICodec createCodec(String codecName) {
+		if (codecName == null || codecName.isEmpty()) {
+			return new CompactCodec();
+		}
+		try {
+			return (ICodec) Class.forName(codecName).getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | ClassCastException ex) {
+			throw new IllegalArgumentException("Could not create codec " + codecName, ex);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.computeHost;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.sf.mpaxs.api.ConfigurationKeys;
+import net.sf.mpaxs.api.computeHost.IRemoteHost;
+import net.sf.mpaxs.api.job.IJob;
+import net.sf.mpaxs.api.job.Job;
+import org.apache.commons.configuration.Configuration;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ComputeHostImpl}.
+ *
+ * @author Nils Hoffmann
+ */
+public class ComputeHostImplTest {
+
+	private static final class RetiringHost implements IRemoteHost {
+
+		private final UUID hostId = UUID.randomUUID();
+		private final AtomicInteger retired = new AtomicInteger();
+
+		@Override
+		public boolean disconnectFromMasterServer() {
+			return true;
+		}
+
+		@Override
+		public void sendDoneJob(IJob job) {
+		}
+
+		@Override
+		public void shutdown(Remote obj) {
+		}
+
+		@Override
+		public void retire(Remote obj) {
+			retired.incrementAndGet();
+		}
+
+		@Override
+		public void uncaughtException(Thread t, Throwable e) {
+		}
+
+		@Override
+		public void setAuthenticationToken(UUID authToken) {
+		}
+
+		@Override
+		public UUID getHostId() {
+			return hostId;
+		}
+
+		@Override
+		public UUID getAuthenticationToken() {
+			return null;
+		}
+
+		@Override
+		public void startComputeHost() {
+		}
+
+		@Override
+		public void configure(Configuration cfg) {
+		}
+	}
+
+	/**
+	 * A retiring compute host refuses new jobs with a remote exception, which
+	 * lets the master server reschedule them, instead of failing with a
+	 * rejected execution of its shut down worker pool.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testRetiringHostRefusesJobs() throws Exception {
+		UUID authToken = UUID.randomUUID();
+		Settings settings = new Settings();
+		settings.setOption(ConfigurationKeys.KEY_AUTH_TOKEN, authToken.toString());
+		settings.setOption(ConfigurationKeys.KEY_SILENT_MODE, "true");
+		RetiringHost host = new RetiringHost();
+		ComputeHostImpl computeHost = new ComputeHostImpl(host, settings);
+		try {
+			computeHost.retire(authToken);
+			Assert.assertEquals(1, host.retired.get());
+			try {
+				computeHost.runJob(authToken, new Job());
+				Assert.fail("Expected RemoteException");
+			} catch (RemoteException re) {
+				// expected
+			}
+			Assert.assertEquals(0, computeHost.getQueuedJobs());
+			Assert.assertNull(computeHost.getJobProgress(authToken, UUID.randomUUID()));
+		} finally {
+			UnicastRemoteObject.unexportObject(computeHost, true);
+		}
+	}
+}
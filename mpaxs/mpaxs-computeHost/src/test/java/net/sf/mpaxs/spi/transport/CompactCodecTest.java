@@ -0,0 +1,150 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.UUID;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CompactCodec}.
+ *
+ * @author Nils Hoffmann
+ */
+public class CompactCodecTest {
+
+	private final CompactCodec codec = new CompactCodec();
+
+	private Object roundTrip(Object value) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bos);
+		codec.write(value, out);
+		out.flush();
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bos.toByteArray()));
+		Object read = codec.read(in);
+		Assert.assertEquals(-1, in.read());
+		return read;
+	}
+
+	private Object read(byte... bytes) throws IOException {
+		return codec.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+	}
+
+	/**
+	 * Values with a compact representation are read back as written.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testRoundTrip() throws Exception {
+		Assert.assertNull(roundTrip(null));
+		Assert.assertEquals(Boolean.TRUE, roundTrip(Boolean.TRUE));
+		Assert.assertEquals(Boolean.FALSE, roundTrip(Boolean.FALSE));
+		Assert.assertEquals(Integer.valueOf(-42), roundTrip(-42));
+		Assert.assertEquals(Long.valueOf(Long.MIN_VALUE), roundTrip(Long.MIN_VALUE));
+		Assert.assertEquals(Double.valueOf(Math.PI), roundTrip(Math.PI));
+		Assert.assertEquals("äöü mpaxs", roundTrip("äöü mpaxs"));
+		UUID id = UUID.randomUUID();
+		Assert.assertEquals(id, roundTrip(id));
+		byte[] bytes = new byte[100000];
+		Arrays.fill(bytes, (byte) 7);
+		Assert.assertArrayEquals(bytes, (byte[]) roundTrip(bytes));
+		List<Object> list = new ArrayList<Object>(Arrays.<Object>asList(1, "two", null, 3L));
+		Assert.assertEquals(list, roundTrip(list));
+		Assert.assertEquals(ArrayList.class, roundTrip(list).getClass());
+		Assert.assertEquals(new HashSet<Object>(list), roundTrip(new HashSet<Object>(list)));
+		//values without compact representation are serialized
+		Assert.assertEquals(new java.util.Date(12345L), roundTrip(new java.util.Date(12345L)));
+	}
+
+	/**
+	 * Other collection types keep their type, so that they can be passed to
+	 * methods declaring concrete collection parameters.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCollectionTypesArePreserved() throws Exception {
+		LinkedList<String> linked = new LinkedList<String>(Arrays.asList("b", "a"));
+		Object read = roundTrip(linked);
+		Assert.assertEquals(LinkedList.class, read.getClass());
+		Assert.assertEquals(linked, read);
+		TreeSet<String> tree = new TreeSet<String>(Arrays.asList("b", "a"));
+		read = roundTrip(tree);
+		Assert.assertEquals(TreeSet.class, read.getClass());
+		Assert.assertEquals(tree, read);
+		LinkedHashSet<String> ordered = new LinkedHashSet<String>(Arrays.asList("b", "a"));
+		read = roundTrip(ordered);
+		Assert.assertEquals(LinkedHashSet.class, read.getClass());
+		Assert.assertEquals(new ArrayList<String>(ordered), new ArrayList<Object>((LinkedHashSet<?>) read));
+	}
+
+	/**
+	 * Sizes and lengths of a truncated input do not cause huge allocations,
+	 * reading fails once the input is exhausted.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testTruncatedInputFails() throws Exception {
+		//list tag with Integer.MAX_VALUE elements, followed by a single null
+		try {
+			read((byte) 10, (byte) 0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0);
+			Assert.fail("Expected EOFException");
+		} catch (EOFException ex) {
+			// expected
+		}
+		//byte array tag with Integer.MAX_VALUE bytes
+		try {
+			read((byte) 8, (byte) 0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 1, (byte) 2);
+			Assert.fail("Expected EOFException");
+		} catch (EOFException ex) {
+			// expected
+		}
+		//negative size
+		try {
+			read((byte) 9, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff);
+			Assert.fail("Expected IOException");
+		} catch (IOException ex) {
+			Assert.assertFalse(ex instanceof EOFException);
+		}
+	}
+}
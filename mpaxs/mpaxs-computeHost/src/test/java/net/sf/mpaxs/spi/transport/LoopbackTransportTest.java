@@ -0,0 +1,174 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.transport;
+
+import java.io.IOException;
+import java.rmi.NotBoundException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link LoopbackTransport}, covering the encoding of calls and the
+ * dispatch to exported services, which are shared with {@link NioTransport}.
+ *
+ * @author Nils Hoffmann
+ */
+public class LoopbackTransportTest {
+
+	/**
+	 * Remote interface of the test service.
+	 */
+	public interface Echo extends Remote {
+
+		Object echo(Object value) throws RemoteException;
+
+		LinkedList<String> reverse(LinkedList<String> values) throws RemoteException;
+
+		void fail(String message) throws IOException;
+
+		void failUnchecked(String message) throws RemoteException;
+
+		void sleep(long millis) throws RemoteException;
+
+		byte[] bytes(int length) throws RemoteException;
+	}
+
+	/**
+	 * Implementation of the test service.
+	 */
+	static final class EchoService implements Echo {
+
+		@Override
+		public Object echo(Object value) {
+			return value;
+		}
+
+		@Override
+		public LinkedList<String> reverse(LinkedList<String> values) {
+			LinkedList<String> reversed = new LinkedList<String>(values);
+			Collections.reverse(reversed);
+			return reversed;
+		}
+
+		@Override
+		public void fail(String message) throws IOException {
+			throw new IOException(message);
+		}
+
+		@Override
+		public void failUnchecked(String message) {
+			throw new IllegalStateException(message);
+		}
+
+		@Override
+		public void sleep(long millis) throws RemoteException {
+			try {
+				Thread.sleep(millis);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new RemoteException("Interrupted", ex);
+			}
+		}
+
+		@Override
+		public byte[] bytes(int length) {
+			return new byte[length];
+		}
+	}
+
+	private LoopbackTransport transport;
+	private int port;
+
+	@Before
+	public void setUp() throws Exception {
+		transport = new LoopbackTransport(new CompactCodec());
+		port = transport.listen(42000);
+		transport.export("localhost", port, "echo", new EchoService());
+	}
+
+	@After
+	public void tearDown() {
+		transport.close();
+	}
+
+	/**
+	 * Arguments, results and exceptions are passed through the codec.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCalls() throws Exception {
+		Echo echo = transport.lookup(Echo.class, "localhost", port, "echo");
+		Assert.assertEquals("hello", echo.echo("hello"));
+		Assert.assertNull(echo.echo(null));
+		LinkedList<String> values = new LinkedList<String>(Arrays.asList("a", "b", "c"));
+		Assert.assertEquals(Arrays.asList("c", "b", "a"), echo.reverse(values));
+		try {
+			echo.fail("declared");
+			Assert.fail("Expected IOException");
+		} catch (IOException ex) {
+			Assert.assertEquals("declared", ex.getMessage());
+		}
+		try {
+			echo.failUnchecked("unchecked");
+			Assert.fail("Expected IllegalStateException");
+		} catch (IllegalStateException ex) {
+			Assert.assertEquals("unchecked", ex.getMessage());
+		}
+	}
+
+	/**
+	 * Looking up unbound services or calling unexported services fails.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testUnboundService() throws Exception {
+		try {
+			transport.lookup(Echo.class, "localhost", port, "missing");
+			Assert.fail("Expected NotBoundException");
+		} catch (NotBoundException ex) {
+			// expected
+		}
+		Echo echo = transport.lookup(Echo.class, "localhost", port, "echo");
+		transport.unexport("localhost", port, "echo", null);
+		try {
+			echo.echo("hello");
+			Assert.fail("Expected RemoteException");
+		} catch (RemoteException ex) {
+			// expected
+		}
+	}
+}
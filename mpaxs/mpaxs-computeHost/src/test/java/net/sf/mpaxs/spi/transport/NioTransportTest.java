@@ -0,0 +1,103 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.transport;
+
+import java.rmi.MarshalException;
+import java.rmi.RemoteException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link NioTransport} over a local socket connection.
+ *
+ * @author Nils Hoffmann
+ */
+public class NioTransportTest {
+
+	private NioTransport server;
+	private NioTransport client;
+	private LoopbackTransportTest.Echo echo;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new NioTransport(new CompactCodec(), 4096, 0);
+		int port = server.listen(43000);
+		server.export("localhost", port, "echo", new LoopbackTransportTest.EchoService());
+		client = new NioTransport(new CompactCodec(), 4096, 500);
+		echo = client.lookup(LoopbackTransportTest.Echo.class, "localhost", port, "echo");
+	}
+
+	@After
+	public void tearDown() {
+		client.close();
+		server.close();
+	}
+
+	/**
+	 * Calls exceeding the reply timeout fail, without affecting later calls.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCallTimeout() throws Exception {
+		Assert.assertEquals("hello", echo.echo("hello"));
+		try {
+			echo.sleep(2000);
+			Assert.fail("Expected RemoteException");
+		} catch (RemoteException ex) {
+			// expected
+		}
+		Assert.assertEquals("again", echo.echo("again"));
+	}
+
+	/**
+	 * Calls and replies exceeding the maximum frame length are rejected,
+	 * without closing the connection.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testMaxFrameLength() throws Exception {
+		Assert.assertEquals(1024, echo.bytes(1024).length);
+		try {
+			echo.echo(new byte[8192]);
+			Assert.fail("Expected MarshalException");
+		} catch (MarshalException ex) {
+			// expected
+		}
+		try {
+			echo.bytes(8192);
+			Assert.fail("Expected MarshalException");
+		} catch (MarshalException ex) {
+			// expected
+		}
+		Assert.assertEquals("hello", echo.echo("hello"));
+	}
+}
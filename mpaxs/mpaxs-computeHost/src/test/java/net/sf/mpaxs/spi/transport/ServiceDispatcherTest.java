@@ -0,0 +1,102 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.rmi.NoSuchObjectException;
+import java.rmi.UnmarshalException;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ServiceDispatcher}.
+ *
+ * @author Nils Hoffmann
+ */
+public class ServiceDispatcherTest {
+
+	private final CallCodec calls = new CallCodec(new CompactCodec());
+
+	private Object dispatch(ServiceDispatcher dispatcher, byte[] frame) throws Throwable {
+		return calls.reply(dispatcher.dispatch(frame), null);
+	}
+
+	/**
+	 * Calls are dispatched to the bound service, lookups report whether a
+	 * service is bound.
+	 *
+	 * @throws Throwable
+	 */
+	@Test
+	public void testDispatch() throws Throwable {
+		ServiceDispatcher dispatcher = new ServiceDispatcher(calls);
+		dispatcher.bind("echo", new LoopbackTransportTest.EchoService());
+		String echo = "echo(java.lang.Object)";
+		Assert.assertEquals("value", dispatch(dispatcher, calls.call(1, "echo", echo, new Object[]{"value"})));
+		Assert.assertEquals(Boolean.TRUE, dispatch(dispatcher, calls.call(2, "echo", CallCodec.LOOKUP, null)));
+		Assert.assertEquals(Boolean.FALSE, dispatch(dispatcher, calls.call(3, "other", CallCodec.LOOKUP, null)));
+		Assert.assertEquals(4L, CallCodec.id(dispatcher.dispatch(calls.call(4, "echo", echo, new Object[]{null}))));
+	}
+
+	/**
+	 * Calls to unbound services, unknown methods and undecodable calls are
+	 * answered with failures.
+	 *
+	 * @throws Throwable
+	 */
+	@Test
+	public void testFailures() throws Throwable {
+		ServiceDispatcher dispatcher = new ServiceDispatcher(calls);
+		dispatcher.bind("echo", new LoopbackTransportTest.EchoService());
+		try {
+			dispatch(dispatcher, calls.call(1, "missing", "echo(java.lang.Object)", new Object[]{"value"}));
+			Assert.fail("Expected NoSuchObjectException");
+		} catch (NoSuchObjectException ex) {
+			// expected
+		}
+		try {
+			dispatch(dispatcher, calls.call(2, "echo", "toString()", null));
+			Assert.fail("Expected UnmarshalException");
+		} catch (UnmarshalException ex) {
+			// expected
+		}
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bos);
+		out.writeByte(CallCodec.CALL);
+		out.writeLong(3);
+		out.writeUTF("echo");
+		out.flush();
+		try {
+			dispatch(dispatcher, bos.toByteArray());
+			Assert.fail("Expected UnmarshalException");
+		} catch (UnmarshalException ex) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.server;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.sf.mpaxs.spi.server.messages.Reporter;
+import net.sf.mpaxs.spi.server.settings.Settings;
+
+/**
+ * Adjusts the number of compute hosts to the pending jobs.
+ *
+ * In every scaling round, the number of cores needed is estimated from the
+ * jobs currently running and those pending jobs, which could not be
+ * completed in the time it takes to start a new host, given the observed
+ * job durations. Until a job has completed, one core is assumed per pending
+ * job. Missing hosts are launched in batches of at most the host launch
+ * batch size, while hosts beyond the estimate are retired, once they have
+ * been idle for the host idle timeout. The number of hosts is kept between
+ * the configured minimum and maximum.
+ *
+ * Hosts are launched and retired via the {@link HostRegister}, so that any
+ * {@link net.sf.mpaxs.api.server.IComputeHostLauncher} can be used.
+ *
+ * @author Nils Hoffmann
+ */
+public class AutoScaler implements Runnable {
+
+	private static final long DEFAULT_HOST_STARTUP_MILLIS = 10000;
+	private final HostRegister register;
+	private final MyConcurrentLinkedJobQueue pendingJobs;
+	private final JobScheduler jobScheduler;
+	private final Settings settings = Settings.getInstance();
+	private final Reporter reporter = Reporter.getInstance();
+	private final ConcurrentHashMap<UUID, Long> dispatched = new ConcurrentHashMap<UUID, Long>();
+	private volatile double jobMillis = -1.0d;
+
+	/**
+	 * Create a new AutoScaler.
+	 *
+	 * @param register     the host register to use
+	 * @param pendingJobs  the pending jobs of the master server
+	 * @param jobScheduler the job scheduler, which may defer pending jobs
+	 */
+	public AutoScaler(HostRegister register, MyConcurrentLinkedJobQueue pendingJobs, JobScheduler jobScheduler) {
+		this.register = register;
+		this.pendingJobs = pendingJobs;
+		this.jobScheduler = jobScheduler;
+	}
+
+	/**
+	 * Records the dispatch of a job to a compute host.
+	 *
+	 * @param jobId the job id
+	 */
+	public void jobDispatched(UUID jobId) {
+		dispatched.put(jobId, System.currentTimeMillis());
+	}
+
+	/**
+	 * Records the completion of a job and its duration since dispatch.
+	 *
+	 * @param jobId the job id
+	 */
+	public void jobCompleted(UUID jobId) {
+		Long dispatchedAt = dispatched.remove(jobId);
+		if (dispatchedAt != null) {
+			jobCompleted(System.currentTimeMillis() - dispatchedAt);
+		}
+	}
+
+	private synchronized void jobCompleted(long millis) {
+		jobMillis = jobMillis < 0 ? millis : 0.8d * jobMillis + 0.2d * millis;
+	}
+
+	/**
+	 * Forgets a dispatched job, which was canceled, failed or is rescheduled.
+	 *
+	 * @param jobId the job id
+	 */
+	public void jobRemoved(UUID jobId) {
+		dispatched.remove(jobId);
+	}
+
+	/**
+	 * Returns the average time in milliseconds between the dispatch of a job
+	 * and its completion.
+	 *
+	 * @return the average job duration, or a negative value, if no job has
+	 *         completed yet
+	 */
+	public long getJobMillis() {
+		return Math.round(jobMillis);
+	}
+
+	/**
+	 * Launches or retires compute hosts, as needed for the pending jobs.
+	 */
+	@Override
+	public void run() {
+		int registered = register.getNumberOfRegisteredHosts();
+		int starting = register.getNumberOfStartingHosts();
+		int desired = Math.max(settings.getMinNumberOfChosts(),
+			Math.min(settings.getMaxNumberOfChosts(), getDesiredHosts(registered)));
+		if (desired > registered + starting) {
+			int launched = register.launchHosts(Math.min(settings.getHostLaunchBatchSize(), desired - registered - starting));
+			if (launched > 0) {
+				reporter.report("Launching " + launched + " compute hosts (registered: " + registered + " starting: " + starting + " desired: " + desired + ")");
+			}
+		} else if (desired < registered && settings.getHostIdleTimeout() > 0) {
+			int retired = register.retireIdleHosts(registered - desired, settings.getHostIdleTimeout());
+			if (retired > 0) {
+				Logger.getLogger(AutoScaler.class.getName()).log(Level.FINE, "Retired {0} idle compute hosts (registered: {1} desired: {2})", new Object[]{retired, registered, desired});
+			}
+		}
+	}
+
+	private int getDesiredHosts(int registered) {
+		int pending = pendingJobs.size() + jobScheduler.getNumberOfDeferredJobs();
+		double cores = dispatched.size();
+		if (pending > 0) {
+			double millis = jobMillis;
+			if (millis < 0) {
+				cores += pending;
+			} else {
+				long startup = register.getHostStartupMillis();
+				if (startup <= 0) {
+					startup = DEFAULT_HOST_STARTUP_MILLIS;
+				}
+				//a new host only takes over the jobs left when it has started
+				cores += Math.min(pending, pending * millis / startup);
+			}
+		}
+		int coresPerHost = 1;
+		if (registered > 0) {
+			coresPerHost = Math.max(1, Math.round(register.getNumberOfCores() / (float) registered));
+		}
+		return (int) Math.ceil(cores / coresPerHost);
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.sf.mpaxs.api.job.IJob;
+
+/**
+ * Divides the scheduled jobs between job groups, e.g. submitting clients or
+ * workflows, in proportion to their weights. Each group with pending jobs
+ * accumulates a virtual time, which advances by <code>1/weight</code> per
+ * scheduled job, and the group with the lowest virtual time is served next.
+ * A group that becomes active starts at the virtual time of the last served
+ * group, so idle groups do not bank credit. Within a group, jobs are ordered
+ * by a {@link PriorityJobQueuePolicy}.
+ *
+ * A few interactive jobs submitted alongside a large batch thus start after
+ * at most one batch job per weight unit, instead of after the whole batch.
+ *
+ * @author Nils Hoffmann
+ * @see IJob#getGroup()
+ */
+public class FairShareJobQueuePolicy implements IJobQueuePolicy {
+
+	private final Map<String, Group> groups = new HashMap<String, Group>();
+	private final Map<String, Double> weights;
+	private final long agingMillis;
+	private double virtualTime = 0.0d;
+	private int size = 0;
+
+	/**
+	 * Create a new fair share policy, where all groups have weight 1.
+	 */
+	public FairShareJobQueuePolicy() {
+		this(new HashMap<String, Double>(), 0);
+	}
+
+	/**
+	 * Create a new fair share policy.
+	 *
+	 * @param weights     the weights of job groups, unlisted groups have weight 1
+	 * @param agingMillis the waiting time in milliseconds per gained priority
+	 *                    level within a group, 0 for strict priority
+	 */
+	public FairShareJobQueuePolicy(Map<String, Double> weights, long agingMillis) {
+		this.weights = new HashMap<String, Double>(weights);
+		this.agingMillis = agingMillis;
+	}
+
+	@Override
+	public void add(IJob job) {
+		String key = groupOf(job);
+		Group g = groups.get(key);
+		if (g == null) {
+			Double weight = weights.get(key);
+			g = new Group(new PriorityJobQueuePolicy(agingMillis),
+				weight == null || weight <= 0 ? 1.0d : weight, virtualTime);
+			groups.put(key, g);
+		}
+		g.queue.add(job);
+		size++;
+	}
+
+	@Override
+	public IJob poll() {
+		Map.Entry<String, Group> next = nextGroup();
+		if (next == null) {
+			return null;
+		}
+		Group min = next.getValue();
+		IJob job = min.queue.poll();
+		virtualTime = min.pass;
+		min.pass += 1.0d / min.weight;
+		if (min.queue.size() == 0) {
+			groups.remove(next.getKey());
+		}
+		size--;
+		return job;
+	}
+
+	@Override
+	public IJob peek() {
+		Map.Entry<String, Group> next = nextGroup();
+		return next == null ? null : next.getValue().queue.peek();
+	}
+
+	private Map.Entry<String, Group> nextGroup() {
+		Map.Entry<String, Group> min = null;
+		for (Map.Entry<String, Group> e : groups.entrySet()) {
+			if (min == null || e.getValue().pass < min.getValue().pass) {
+				min = e;
+			}
+		}
+		return min;
+	}
+
+	@Override
+	public boolean remove(IJob job) {
+		String key = groupOf(job);
+		Group g = groups.get(key);
+		if (g != null && g.queue.remove(job)) {
+			if (g.queue.size() == 0) {
+				groups.remove(key);
+			}
+			size--;
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public List<IJob> jobs() {
+		List<IJob> jobs = new ArrayList<IJob>(size);
+		for (Group g : groups.values()) {
+			jobs.addAll(g.queue.jobs());
+		}
+		return jobs;
+	}
+
+	private static String groupOf(IJob job) {
+		String group = job.getGroup();
+		return group == null ? "" : group;
+	}
+
+	private static final class Group {
+
+		private final PriorityJobQueuePolicy queue;
+		private final double weight;
+		private double pass;
+
+		Group(PriorityJobQueuePolicy queue, double weight, double pass) {
+			this.queue = queue;
+			this.weight = weight;
+			this.pass = pass;
+		}
+	}
+}
@@ -27,7 +27,12 @@
  */
 package net.sf.mpaxs.spi.server;
 
+import java.util.Collections;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.sf.mpaxs.api.computeHost.IComputeHost;
 
 
 /**
@@ -44,6 +49,13 @@ public class Host {
     private int cores = 0;
     private int freeCores = 0;
     private int numberOfJobs = 0;
+    private volatile IComputeHost stub = null;
+    private volatile long lastContact = 0;
+    private final AtomicInteger failures = new AtomicInteger(0);
+    private volatile int queuedJobs = 0;
+    private volatile long lastUsed = System.currentTimeMillis();
+    private volatile boolean retired = false;
+    private final Set<String> resources = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
     /**
      * Creates a new Compute Host instance representation
@@ -82,6 +94,7 @@ public class Host {
 	public void oneCoreMoreUsed() {
         freeCores = freeCores - 1;
         numberOfJobs = numberOfJobs + 1;
+        lastUsed = System.currentTimeMillis();
     }
 
 	/**
@@ -90,6 +103,7 @@ public class Host {
 	public void oneCoreUnused() {
         freeCores = freeCores + 1;
         numberOfJobs = numberOfJobs - 1;
+        lastUsed = System.currentTimeMillis();
     }
 
 	/**
@@ -156,6 +170,154 @@ public class Host {
         return cores;
     }
 
+	/**
+	 * Returns the cached remote reference of the compute host.
+	 *
+	 * @return the remote reference, or null if it has not been resolved or
+	 *         was invalidated
+	 */
+	IComputeHost getStub() {
+        return stub;
+    }
+
+	/**
+	 * Caches a freshly resolved remote reference of the compute host.
+	 *
+	 * @param stub the remote reference
+	 */
+	void setStub(IComputeHost stub) {
+        this.stub = stub;
+        contactSucceeded();
+    }
+
+	/**
+	 * Records a successful remote call.
+	 */
+	void contactSucceeded() {
+        lastContact = System.currentTimeMillis();
+        failures.set(0);
+    }
+
+	/**
+	 * Records a failed remote call and invalidates the cached remote
+	 * reference.
+	 */
+	void contactFailed() {
+        stub = null;
+        failures.incrementAndGet();
+    }
+
+	/**
+	 * Returns the number of remote calls that failed since the last
+	 * successful one.
+	 *
+	 * @return the number of consecutive failures
+	 */
+	public int getConsecutiveFailures() {
+        return failures.get();
+    }
+
+	/**
+	 * Returns the time of the last successful remote call.
+	 *
+	 * @return the time in milliseconds since the epoch, or 0
+	 */
+	public long getLastContact() {
+        return lastContact;
+    }
+
+	/**
+	 * Returns the number of jobs waiting in the local run queue of the
+	 * compute host, as of its last heartbeat.
+	 *
+	 * @return the number of queued jobs
+	 */
+	public int getQueuedJobs() {
+        return queuedJobs;
+    }
+
+	/**
+	 * Records the number of jobs waiting in the local run queue of the
+	 * compute host.
+	 *
+	 * @param queuedJobs the number of queued jobs
+	 */
+	void setQueuedJobs(int queuedJobs) {
+        this.queuedJobs = queuedJobs;
+    }
+
+	/**
+	 * Returns for how long this compute host has neither run nor queued a
+	 * job.
+	 *
+	 * @param now the current time in milliseconds since the epoch
+	 * @return the idle time in milliseconds, 0 if the host is busy
+	 */
+	public long getIdleMillis(long now) {
+        if (numberOfJobs > 0 || queuedJobs > 0) {
+            return 0L;
+        }
+        return Math.max(0L, now - lastUsed);
+    }
+
+	/**
+	 * Returns whether this compute host has been retired and must not be
+	 * assigned any more jobs.
+	 *
+	 * @return true if the host is retired, false otherwise
+	 */
+	boolean isRetired() {
+        return retired;
+    }
+
+	/**
+	 * Marks this compute host as retired.
+	 */
+	void retire() {
+        retired = true;
+    }
+
+	/**
+	 * Updates the resources this compute host holds locally or in its cache.
+	 *
+	 * @param held     the resources the host now holds
+	 * @param released the resources the host no longer holds
+	 */
+	void updateResources(Set<String> held, Set<String> released) {
+        resources.removeAll(released);
+        resources.addAll(held);
+    }
+
+	/**
+	 * Returns the fraction of the given input resources, which this compute
+	 * host holds locally or in its cache.
+	 *
+	 * @param inputResources the input resources of a job
+	 * @return the locality score between 0 and 1
+	 */
+	public double getLocalityScore(Set<String> inputResources) {
+        if (inputResources.isEmpty() || resources.isEmpty()) {
+            return 0.0d;
+        }
+        int held = 0;
+        for (String resource : inputResources) {
+            if (resources.contains(resource)) {
+                held++;
+            }
+        }
+        return (double) held / (double) inputResources.size();
+    }
+
+	/**
+	 * Returns the number of resources this compute host holds locally or in
+	 * its cache.
+	 *
+	 * @return the number of resources
+	 */
+	public int getNumberOfResources() {
+        return resources.size();
+    }
+
     /**
      *
      * @return
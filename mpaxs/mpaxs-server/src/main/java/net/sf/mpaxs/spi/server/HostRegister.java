@@ -29,21 +29,27 @@ package net.sf.mpaxs.spi.server;
 
 import java.io.File;
 import java.net.MalformedURLException;
-import java.rmi.Naming;
+import java.rmi.ConnectException;
+import java.rmi.ConnectIOException;
+import java.rmi.NoSuchObjectException;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -51,7 +57,9 @@ import net.sf.mpaxs.api.ConfigurationKeys;
 import net.sf.mpaxs.api.ExecutionFactory;
 import net.sf.mpaxs.api.ExecutionType;
 import net.sf.mpaxs.api.computeHost.IComputeHost;
+import net.sf.mpaxs.api.job.IJob;
 import net.sf.mpaxs.api.server.IComputeHostLauncher;
+import net.sf.mpaxs.api.transport.ITransport;
 import net.sf.mpaxs.spi.server.logging.EventLogger;
 import net.sf.mpaxs.spi.server.messages.IComputeHostEventListener;
 import net.sf.mpaxs.spi.server.messages.Reporter;
@@ -61,24 +69,59 @@ import org.apache.commons.configuration.PropertiesConfiguration;
 /**
  * Holds the register of hosts currently registered with the MasterServer.
  *
- * Launches hosts on demand, if the maximum number of hosts has not yet been
- * reached and no other host is currently available for processing.
+ * Launches hosts on request of the {@link AutoScaler}, in the background and
+ * one after the other, so that a batch of hosts can start up in parallel.
+ * Launched hosts are counted as starting, until they register or the host
+ * launch timeout has passed. If no host is registered or starting at all, a
+ * host is launched as soon as a free host is requested. Idle hosts can be
+ * retired again.
  *
  * @author Kai Bernd Stadermann
  * @author Nils Hoffmann
  */
 public class HostRegister {
 
+	/**
+	 * A call of a remote method of a compute host.
+	 *
+	 * @param <V> the result type
+	 */
+	public interface RemoteCall<V> {
+
+		/**
+		 * Invoke the remote method.
+		 *
+		 * @param host the remote reference of the compute host
+		 * @return the result
+		 * @throws RemoteException
+		 */
+		V call(IComputeHost host) throws RemoteException;
+	}
+
 	private final Settings settings = Settings.getInstance();
 	private final Reporter reporter = Reporter.getInstance();
 	private final MyConcurrentLinkedHostQueue hosts = new MyConcurrentLinkedHostQueue();
 	private final Map<UUID, Host> usedHosts = new ConcurrentHashMap<UUID, Host>();
 	private final ArrayList<IComputeHostEventListener> listeners = new ArrayList<IComputeHostEventListener>();
-	private final ExecutorService executorService = Executors.newSingleThreadExecutor();
 	private final ExecutorService eventService = Executors.newCachedThreadPool();
+	private final ExecutorService launchService = Executors.newSingleThreadExecutor();
 	private final AtomicInteger hostsLaunched = new AtomicInteger(0);
+	private final AtomicInteger launchSequence = new AtomicInteger(0);
+	private final AtomicInteger launchesQueued = new AtomicInteger(0);
+	private final ConcurrentLinkedQueue<Long> launchTimes = new ConcurrentLinkedQueue<Long>();
+	private volatile double hostStartupMillis = -1.0d;
 	private final AtomicInteger hostLaunchRetries = new AtomicInteger(0);
 	private final AtomicInteger maxHostLaunchRetries = new AtomicInteger(1);
+	private final ITransport transport;
+
+	/**
+	 * Create a new host register.
+	 *
+	 * @param transport the transport used to reach the compute hosts
+	 */
+	public HostRegister(ITransport transport) {
+		this.transport = transport;
+	}
 
 	/**
 	 * Shutdown the host register.
@@ -92,12 +135,14 @@ public class HostRegister {
 		try {
 			for (Iterator<UUID> i = hosts.keySet().iterator(); i.hasNext();) {
 				Host host = hosts.get(i.next());
-				IComputeHost remRef;
 				try {
-
-					remRef = (IComputeHost) Naming.lookup("//" + host.getIP()
-						+ ":" + settings.getLocalPort() + "/" + host.getName());
-					remRef.masterServerShuttingDown(UUID.fromString(settings.getString(ConfigurationKeys.KEY_AUTH_TOKEN)));
+					call(host, new RemoteCall<Void>() {
+						@Override
+						public Void call(IComputeHost remRef) throws RemoteException {
+							remRef.masterServerShuttingDown(UUID.fromString(settings.getString(ConfigurationKeys.KEY_AUTH_TOKEN)));
+							return null;
+						}
+					});
 
 				} catch (NotBoundException ex) {
 					EventLogger.getInstance().getLogger().log(Level.SEVERE, "Not Bound Exception!", ex);
@@ -114,26 +159,16 @@ public class HostRegister {
 			//we need to shut down the executor and event service
 			//we can not throw the interrupted exceptions however, since
 			//that would
+			launchService.shutdownNow();
 			try {
-				EventLogger.getInstance().getLogger().log(Level.INFO, "Shutting down host register executor service");
-				executorService.shutdown();
-				if (!executorService.awaitTermination(timeout, timeUnit)) {
-					executorService.shutdownNow();
+				EventLogger.getInstance().getLogger().log(Level.INFO, "Shutting down host register event service");
+				eventService.shutdown();
+				if (!eventService.awaitTermination(timeout, timeUnit)) {
+					eventService.shutdownNow();
 				}
 			} catch (InterruptedException ie) {
-				executorService.shutdownNow();
+				eventService.shutdownNow();
 				Thread.currentThread().interrupt();
-			} finally {
-				try {
-					EventLogger.getInstance().getLogger().log(Level.INFO, "Shutting down host register event service");
-					eventService.shutdown();
-					if (!eventService.awaitTermination(timeout, timeUnit)) {
-						eventService.shutdownNow();
-					}
-				} catch (InterruptedException ie) {
-					eventService.shutdownNow();
-					Thread.currentThread().interrupt();
-				}
 			}
 		}
 	}
@@ -151,13 +186,96 @@ public class HostRegister {
 		if (hosts.containsKey(hostID)) {
 			return hostID;
 		}
-		Host tmp = new Host(name, ip, cores, hostID);
+		final Host tmp = new Host(name, ip, cores, hostID);
+		Long launchedAt = launchTimes.poll();
+		if (launchedAt != null) {
+			hostStarted(System.currentTimeMillis() - launchedAt);
+		}
 		hosts.offer(tmp);
 		reporter.report("New Host added with IP " + ip);
-		hostAdded(tmp);
+		//resolve the remote reference once, outside of the registration call
+		eventService.submit(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					getStub(tmp);
+				} catch (NotBoundException | MalformedURLException | RemoteException ex) {
+					Logger.getLogger(HostRegister.class.getName()).log(Level.WARNING, "Could not resolve compute host " + tmp.getName(), ex);
+				}
+				hostAdded(tmp);
+			}
+		});
 		return hostID;
 	}
 
+	/**
+	 * Returns the cached remote reference of the given host, resolving it, if
+	 * it has not been resolved yet or was invalidated by a failed call.
+	 *
+	 * @param host the host
+	 * @return the remote reference
+	 * @throws NotBoundException     if the compute host is not bound
+	 * @throws MalformedURLException if the host's address is invalid
+	 * @throws RemoteException       if the registry can not be contacted
+	 */
+	public IComputeHost getStub(Host host) throws NotBoundException, MalformedURLException, RemoteException {
+		IComputeHost stub = host.getStub();
+		if (stub == null) {
+			try {
+				stub = transport.lookup(IComputeHost.class, host.getIP(),
+					settings.getLocalPort(), host.getName());
+			} catch (NotBoundException | MalformedURLException | RemoteException ex) {
+				host.contactFailed();
+				throw ex;
+			}
+			host.setStub(stub);
+		}
+		return stub;
+	}
+
+	/**
+	 * Invokes a remote method of the given host using its cached remote
+	 * reference. If the reference turns out to be stale, i.e. the call could
+	 * not be delivered, the reference is resolved again and the call is
+	 * retried once. Other failures invalidate the reference and are passed on
+	 * without retry, since the call may already have been executed.
+	 *
+	 * @param <V>  the result type
+	 * @param host the host
+	 * @param call the remote call
+	 * @return the result of the call
+	 * @throws NotBoundException     if the compute host is not bound
+	 * @throws MalformedURLException if the host's address is invalid
+	 * @throws RemoteException       if the call fails
+	 */
+	public <V> V call(Host host, RemoteCall<V> call) throws NotBoundException, MalformedURLException, RemoteException {
+		IComputeHost stub = getStub(host);
+		try {
+			V v = call.call(stub);
+			host.contactSucceeded();
+			return v;
+		} catch (RemoteException re) {
+			host.contactFailed();
+			if (!isUndelivered(re)) {
+				throw re;
+			}
+			Logger.getLogger(HostRegister.class.getName()).log(Level.FINE, "Revalidating remote reference of host {0}", host.getName());
+			stub = getStub(host);
+			try {
+				V v = call.call(stub);
+				host.contactSucceeded();
+				return v;
+			} catch (RemoteException ex) {
+				host.contactFailed();
+				throw ex;
+			}
+		}
+	}
+
+	private static boolean isUndelivered(RemoteException re) {
+		return re instanceof NoSuchObjectException || re instanceof ConnectException || re instanceof ConnectIOException;
+	}
+
 	/**
 	 * Removes the host with the given id from the register.
 	 *
@@ -170,9 +288,28 @@ public class HostRegister {
 			hosts.remove(id);
 			hostsLaunched.decrementAndGet();
 			return true;
-		} else {
-			return false;
 		}
+		Host host = usedHosts.remove(id);
+		if (host != null) {
+			hostRemoved(host);
+			hostsLaunched.decrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Return the host with the given ID, whether it has a free slot or not.
+	 *
+	 * @param hostID UUID of the host
+	 * @return host with the given ID or null if no such host is registered
+	 */
+	public Host findHost(UUID hostID) {
+		Host host = hosts.get(hostID);
+		if (host == null) {
+			host = usedHosts.get(hostID);
+		}
+		return host;
 	}
 
 	/**
@@ -181,9 +318,7 @@ public class HostRegister {
 	 * @return instance of the free host
 	 */
 	public Host getFreeHost() {
-		if (hostsLaunched.get() < settings.getMaxNumberOfChosts()) {
-			launchNewHost();
-		}
+		launchFirstHost();
 		Host host = null;
 		try {
 			host = hosts.poll(30, TimeUnit.SECONDS);
@@ -193,8 +328,133 @@ public class HostRegister {
 		if (host == null) {
 			return null;
 		}
-		host.oneCoreMoreUsed();
-		if (host.getFreeCores() == 0 || host.getNumberOfJobs() >= settings.getMaxJobsPerHost()) {
+		return occupy(host);
+	}
+
+	/**
+	 * Gives back the instance of a host still having a free core, without
+	 * waiting. If no host is registered or starting, the launch of a new host
+	 * is started in the background. Further hosts are launched by the
+	 * {@link AutoScaler}. Listeners are notified via
+	 * {@link IComputeHostEventListener#hostAdded(net.sf.mpaxs.spi.server.Host)},
+	 * once a new host has registered.
+	 *
+	 * @return instance of the free host, or null if no host is available
+	 */
+	public Host pollFreeHost() {
+		Host host = hosts.poll();
+		if (host == null) {
+			launchFirstHost();
+			return null;
+		}
+		return occupy(host);
+	}
+
+	private void launchFirstHost() {
+		if (getNumberOfRegisteredHosts() == 0 && getNumberOfStartingHosts() == 0) {
+			launchHosts(1);
+		}
+	}
+
+	/**
+	 * Gives back the free host, which holds most of the job's input
+	 * resources, provided that its locality score is at least
+	 * <code>minScore</code>. Among equally scored hosts, hosts with an idle
+	 * core are preferred, then hosts with fewer jobs in their local run
+	 * queue. If no host is free, a new host is launched like
+	 * {@link #pollFreeHost()} does.
+	 *
+	 * @param job      the job to place
+	 * @param minScore the minimum locality score of an acceptable host
+	 * @return instance of the free host, or null if no host is available or
+	 *         no free host has the minimum locality score
+	 * @see Host#getLocalityScore(java.util.Set)
+	 */
+	public Host pollFreeHost(IJob job, double minScore) {
+		Set<String> inputResources = job.getInputResources();
+		Host best = null;
+		double bestScore = -1.0d;
+		for (Host host : hosts) {
+			double score = host.getLocalityScore(inputResources);
+			if (best == null || score > bestScore || (score == bestScore && isLessLoaded(host, best))) {
+				best = host;
+				bestScore = score;
+			}
+		}
+		if (best == null) {
+			return pollFreeHost();
+		}
+		if (bestScore < minScore) {
+			return null;
+		}
+		hosts.remove(best.getId());
+		return occupy(best);
+	}
+
+	private static boolean isLessLoaded(Host host, Host other) {
+		boolean idle = host.getFreeCores() > 0;
+		if (idle != other.getFreeCores() > 0) {
+			return idle;
+		}
+		return host.getQueuedJobs() < other.getQueuedJobs();
+	}
+
+	/**
+	 * Returns the best locality score of the job's input resources on any
+	 * registered host, whether free or busy.
+	 *
+	 * @param job the job
+	 * @return the best locality score between 0 and 1
+	 */
+	public double getBestLocalityScore(IJob job) {
+		Set<String> inputResources = job.getInputResources();
+		double bestScore = 0.0d;
+		for (Host host : hosts) {
+			bestScore = Math.max(bestScore, host.getLocalityScore(inputResources));
+		}
+		for (Host host : usedHosts.values()) {
+			bestScore = Math.max(bestScore, host.getLocalityScore(inputResources));
+		}
+		return bestScore;
+	}
+
+	/**
+	 * Returns whether any host currently has a free slot.
+	 *
+	 * @return true if a host is free, false otherwise
+	 */
+	public boolean hasFreeHost() {
+		return !hosts.isEmpty();
+	}
+
+	/**
+	 * Updates the resources the host with the given id holds locally or in
+	 * its cache.
+	 *
+	 * @param hostId   the host id
+	 * @param held     the resources the host now holds
+	 * @param released the resources the host no longer holds
+	 * @return true if the host is registered, false otherwise
+	 */
+	public boolean updateResources(UUID hostId, Set<String> held, Set<String> released) {
+		Host host = findHost(hostId);
+		if (host == null) {
+			return false;
+		}
+		host.updateResources(held, released);
+		return true;
+	}
+
+	private Host occupy(Host host) {
+		synchronized (host) {
+			if (host.isRetired()) {
+				return null;
+			}
+			host.oneCoreMoreUsed();
+		}
+		//jobs beyond the cores wait in the host's local run queue
+		if (host.getNumberOfJobs() >= host.getCores() + settings.getRunQueueLength()
+			|| host.getNumberOfJobs() >= settings.getMaxJobsPerHost()) {
 			usedHosts.put(host.getId(), host);
 		} else {
 			hosts.offer(host);
@@ -203,130 +463,272 @@ public class HostRegister {
 	}
 
 	/**
-	 * Prepares the launch of a new host.
+	 * Starts the launch of up to <code>count</code> new hosts in the
+	 * background, without exceeding the maximum number of hosts. Hosts are
+	 * launched one after the other, but without waiting for a launched host
+	 * to register.
+	 *
+	 * @param count the number of hosts to launch
+	 * @return the number of hosts actually launched
 	 */
-	private void launchNewHost() {
-		Runnable r = new Runnable() {
-			@Override
-			public void run() {
-				reporter.report("Starting new compute host");
-				reporter.report("Maximum allowed number of compute hosts: " + settings.
-					getMaxNumberOfChosts());
-				reporter.report(
-					"Current number of compute hosts: " + getNumberOfHosts());
-				if (settings.getMaxNumberOfChosts() > getNumberOfHosts()) {
-					ExecutionType et = settings.getExecutionMode();
-					reporter.report("Execution mode: " + et);
-					IComputeHostLauncher ichl = ExecutionFactory.getComputeHostLaunchers(et).
-						get(0);
-					reporter.report("Preparing to launch host " + (getNumberOfHosts() + 1) + "/" + settings.getMaxNumberOfChosts());
-					String nativeSpec = "";
-					if (settings.getOption(ConfigurationKeys.KEY_NATIVE_SPEC) != null) {
-						nativeSpec = settings.getString(ConfigurationKeys.KEY_NATIVE_SPEC);
+	public int launchHosts(int count) {
+		int launched = 0;
+		while (launched < count && getNumberOfRegisteredHosts() + getNumberOfStartingHosts() < settings.getMaxNumberOfChosts()) {
+			launchesQueued.incrementAndGet();
+			try {
+				launchService.submit(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							launchNewHost();
+						} catch (RuntimeException ex) {
+							EventLogger.getInstance().getLogger().log(Level.SEVERE, "Failed to launch compute host!", ex);
+						} finally {
+							launchesQueued.decrementAndGet();
+						}
 					}
-					reporter.report("Setting up host configuration");
-					PropertiesConfiguration hostConfiguration = new PropertiesConfiguration();
-					UUID authToken = UUID.fromString(settings.getString(
-						ConfigurationKeys.KEY_AUTH_TOKEN));
-					hostConfiguration.setProperty(
-						ConfigurationKeys.KEY_AUTH_TOKEN,
-						authToken.toString());
-					hostConfiguration.setProperty(
-						ConfigurationKeys.KEY_NATIVE_SPEC,
-						nativeSpec);
-					hostConfiguration.setProperty(
-						ConfigurationKeys.KEY_MASTERSERVER_IP,
-						settings.getLocalIP());
-					hostConfiguration.setProperty(
-						ConfigurationKeys.KEY_MASTERSERVER_PORT,
-						settings.getLocalPort());
-					hostConfiguration.setProperty(
-						ConfigurationKeys.KEY_MASTERSERVER_NAME,
-						settings.getName());
-					hostConfiguration.setProperty(
-						ConfigurationKeys.KEY_PATH_TO_COMPUTEHOST_JAR,
-						settings.getPathToComputeHostJar());
-					hostConfiguration.setProperty(ConfigurationKeys.KEY_COMPUTE_HOST_MAIN_CLASS,
-						settings.getComputeHostMainClass());
-					hostConfiguration.setProperty(
-						ConfigurationKeys.KEY_COMPUTE_HOST_WORKING_DIR,
-						new File(settings.getComputeHostWorkingDir(), "" + hostsLaunched).getAbsolutePath());
-					hostConfiguration.setProperty(
-						ConfigurationKeys.KEY_ERROR_FILE,
-						hostConfiguration.getString(ConfigurationKeys.KEY_COMPUTE_HOST_WORKING_DIR) + "/error.txt");
-					hostConfiguration.setProperty(
-						ConfigurationKeys.KEY_OUTPUT_FILE,
-						hostConfiguration.getString(ConfigurationKeys.KEY_COMPUTE_HOST_WORKING_DIR) + "/output.txt");
-					hostConfiguration.setProperty(
-						ConfigurationKeys.KEY_PATH_TO_JAVA,
-						settings.getPathToJava());
-					hostConfiguration.setProperty(
-						ConfigurationKeys.KEY_CODEBASE,
-						settings.getCodebase());
-					reporter.report(
-						"Starting compute host: " + ichl.getClass());
-					ichl.startComputeHost(hostConfiguration);
-					hostsLaunched.incrementAndGet();
-				} else {
-					reporter.report("Not launching new compute host: maximum number of active hosts reached (max: " + settings.getMaxNumberOfChosts() + " current: " + getNumberOfHosts() + ")");
-				}
+				});
+			} catch (RejectedExecutionException ex) {
+				launchesQueued.decrementAndGet();
+				break;
 			}
-		};
-		Future<?> future = executorService.submit(r);
+			launched++;
+		}
+		return launched;
+	}
+
+	/**
+	 * Launches a new host. Falls back to local execution, if the host can
+	 * not be launched with the configured execution mode.
+	 */
+	private void launchNewHost() {
+		reporter.report("Starting new compute host");
+		reporter.report("Maximum allowed number of compute hosts: " + settings.
+			getMaxNumberOfChosts());
+		reporter.report(
+			"Current number of compute hosts: " + getNumberOfHosts());
+		if (settings.getMaxNumberOfChosts() <= getNumberOfRegisteredHosts() + launchTimes.size()) {
+			reporter.report("Not launching new compute host: maximum number of active hosts reached (max: " + settings.getMaxNumberOfChosts() + " current: " + getNumberOfHosts() + ")");
+			return;
+		}
+		ExecutionType et = settings.getExecutionMode();
+		reporter.report("Execution mode: " + et);
+		Long launchedAt = null;
 		try {
-			future.get(10, TimeUnit.SECONDS);
-		} catch (InterruptedException ex) {
-			Logger.getLogger(HostRegister.class.getName()).
-				log(Level.SEVERE, null, ex);
-		} catch (ExecutionException ex) {
+			IComputeHostLauncher ichl = ExecutionFactory.getComputeHostLaunchers(et).
+				get(0);
+			reporter.report("Preparing to launch host " + (getNumberOfHosts() + 1) + "/" + settings.getMaxNumberOfChosts());
+			String nativeSpec = "";
+			if (settings.getOption(ConfigurationKeys.KEY_NATIVE_SPEC) != null) {
+				nativeSpec = settings.getString(ConfigurationKeys.KEY_NATIVE_SPEC);
+			}
+			reporter.report("Setting up host configuration");
+			PropertiesConfiguration hostConfiguration = new PropertiesConfiguration();
+			UUID authToken = UUID.fromString(settings.getString(
+				ConfigurationKeys.KEY_AUTH_TOKEN));
+			hostConfiguration.setProperty(
+				ConfigurationKeys.KEY_AUTH_TOKEN,
+				authToken.toString());
+			hostConfiguration.setProperty(
+				ConfigurationKeys.KEY_NATIVE_SPEC,
+				nativeSpec);
+			hostConfiguration.setProperty(
+				ConfigurationKeys.KEY_MASTERSERVER_IP,
+				settings.getLocalIP());
+			hostConfiguration.setProperty(
+				ConfigurationKeys.KEY_MASTERSERVER_PORT,
+				settings.getLocalPort());
+			hostConfiguration.setProperty(
+				ConfigurationKeys.KEY_MASTERSERVER_NAME,
+				settings.getName());
+			hostConfiguration.setProperty(
+				ConfigurationKeys.KEY_PATH_TO_COMPUTEHOST_JAR,
+				settings.getPathToComputeHostJar());
+			hostConfiguration.setProperty(ConfigurationKeys.KEY_COMPUTE_HOST_MAIN_CLASS,
+				settings.getComputeHostMainClass());
+			//a running host deletes its working dir on startup, so never reuse one
+			hostConfiguration.setProperty(
+				ConfigurationKeys.KEY_COMPUTE_HOST_WORKING_DIR,
+				new File(settings.getComputeHostWorkingDir(), "" + launchSequence.getAndIncrement()).getAbsolutePath());
+			hostConfiguration.setProperty(
+				ConfigurationKeys.KEY_ERROR_FILE,
+				hostConfiguration.getString(ConfigurationKeys.KEY_COMPUTE_HOST_WORKING_DIR) + "/error.txt");
+			hostConfiguration.setProperty(
+				ConfigurationKeys.KEY_OUTPUT_FILE,
+				hostConfiguration.getString(ConfigurationKeys.KEY_COMPUTE_HOST_WORKING_DIR) + "/output.txt");
+			hostConfiguration.setProperty(
+				ConfigurationKeys.KEY_PATH_TO_JAVA,
+				settings.getPathToJava());
+			hostConfiguration.setProperty(
+				ConfigurationKeys.KEY_CODEBASE,
+				settings.getCodebase());
+			hostConfiguration.setProperty(
+				ConfigurationKeys.KEY_HEARTBEAT_INTERVAL,
+				settings.getHeartbeatInterval());
+			hostConfiguration.setProperty(
+				ConfigurationKeys.KEY_TRANSPORT,
+				settings.getTransport());
+			hostConfiguration.setProperty(
+				ConfigurationKeys.KEY_RESULT_TRANSFER_THRESHOLD,
+				settings.getResultTransferThreshold());
+			hostConfiguration.setProperty(
+				ConfigurationKeys.KEY_RESULT_CHUNK_SIZE,
+				settings.getResultChunkSize());
+			hostConfiguration.setProperty(
+				ConfigurationKeys.KEY_TRANSPORT_CODEC,
+				settings.getTransportCodec());
+			hostConfiguration.setProperty(
+				ConfigurationKeys.KEY_TRANSPORT_MAX_FRAME_LENGTH,
+				settings.getTransportMaxFrameLength());
+			hostConfiguration.setProperty(
+				ConfigurationKeys.KEY_TRANSPORT_CALL_TIMEOUT,
+				settings.getTransportCallTimeout());
+			if (settings.getOption(ConfigurationKeys.KEY_RESOURCE_CACHE_SIZE) != null) {
+				hostConfiguration.setProperty(
+					ConfigurationKeys.KEY_RESOURCE_CACHE_SIZE,
+					settings.getString(ConfigurationKeys.KEY_RESOURCE_CACHE_SIZE));
+			}
+			reporter.report(
+				"Starting compute host: " + ichl.getClass());
+			//local hosts may register before the launcher returns
+			launchedAt = System.currentTimeMillis();
+			launchTimes.offer(launchedAt);
+			ichl.startComputeHost(hostConfiguration);
+			hostsLaunched.incrementAndGet();
+		} catch (RuntimeException ex) {
+			if (launchedAt != null) {
+				launchTimes.remove(launchedAt);
+			}
 			Logger.getLogger(HostRegister.class.getName()).
 				log(Level.SEVERE, null, ex);
 			System.err.println(
-				"Error occurred while waiting to create compute host. Setting fallback mode to local execution!");
+				"Caught runtime exception while launching compute host. Setting fallback mode to local execution!");
 			settings.setOption(ConfigurationKeys.KEY_EXECUTION_MODE,
 				ExecutionType.LOCAL.toString());
-
 			if (hostLaunchRetries.get() < maxHostLaunchRetries.get()) {
 				hostLaunchRetries.incrementAndGet();
-				return;
 			} else {
 				throw new RuntimeException(
 					"Failed to launch compute host after " + hostLaunchRetries + " tries!",
 					ex);
 			}
-		} catch (TimeoutException ex) {
-			Logger.getLogger(HostRegister.class.getName()).
-				log(Level.SEVERE, null, ex);
-			System.err.println(
-				"Timed out while waiting to create compute host. Setting fallback mode to local execution!");
-			settings.setOption(ConfigurationKeys.KEY_EXECUTION_MODE,
-				ExecutionType.LOCAL.toString());
+		}
+	}
 
-			if (hostLaunchRetries.get() < maxHostLaunchRetries.get()) {
-				hostLaunchRetries.incrementAndGet();
-				return;
-			} else {
-				throw new RuntimeException(
-					"Failed to launch compute host after " + hostLaunchRetries + " tries!",
-					ex);
+	/**
+	 * Retires up to <code>count</code> hosts, which have been idle for at
+	 * least <code>idleMillis</code>, longest idle hosts first. Retired hosts
+	 * are removed from the register and asked to shut down.
+	 *
+	 * @param count      the maximum number of hosts to retire
+	 * @param idleMillis the minimum idle time in milliseconds
+	 * @return the number of hosts retired
+	 */
+	public int retireIdleHosts(int count, long idleMillis) {
+		final long now = System.currentTimeMillis();
+		List<Host> idle = new ArrayList<Host>();
+		for (Host host : hosts) {
+			if (host.getIdleMillis(now) >= idleMillis) {
+				idle.add(host);
 			}
-		} catch (RuntimeException ex) {
-			Logger.getLogger(HostRegister.class.getName()).
-				log(Level.SEVERE, null, ex);
-			System.err.println(
-				"Caught runtime exception while waiting to create compute host. Setting fallback mode to local execution!");
-			settings.setOption(ConfigurationKeys.KEY_EXECUTION_MODE,
-				ExecutionType.LOCAL.toString());
+		}
+		Collections.sort(idle, new Comparator<Host>() {
+			@Override
+			public int compare(Host o1, Host o2) {
+				return Long.compare(o2.getIdleMillis(now), o1.getIdleMillis(now));
+			}
+		});
+		int retired = 0;
+		for (final Host host : idle) {
+			if (retired >= count) {
+				break;
+			}
+			synchronized (host) {
+				if (host.getNumberOfJobs() > 0) {
+					continue;
+				}
+				host.retire();
+			}
+			if (!removeHost(host.getId())) {
+				continue;
+			}
+			retired++;
+			reporter.report("Retiring idle compute host " + host.getName() + " at " + host.getIP());
+			eventService.submit(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						call(host, new RemoteCall<Void>() {
+							@Override
+							public Void call(IComputeHost remRef) throws RemoteException {
+								remRef.retire(UUID.fromString(settings.getString(ConfigurationKeys.KEY_AUTH_TOKEN)));
+								return null;
+							}
+						});
+					} catch (NotBoundException | MalformedURLException | RemoteException ex) {
+						Logger.getLogger(HostRegister.class.getName()).log(Level.WARNING, "Could not retire compute host " + host.getName(), ex);
+					}
+				}
+			});
+		}
+		return retired;
+	}
 
-			if (hostLaunchRetries.get() < maxHostLaunchRetries.get()) {
-				hostLaunchRetries.incrementAndGet();
-				return;
-			} else {
-				throw new RuntimeException(
-					"Failed to launch compute host after " + hostLaunchRetries + " tries!",
-					ex);
+	private synchronized void hostStarted(long millis) {
+		hostStartupMillis = hostStartupMillis < 0 ? millis : 0.8d * hostStartupMillis + 0.2d * millis;
+	}
+
+	/**
+	 * Returns the average time in milliseconds between the launch of a host
+	 * and its registration.
+	 *
+	 * @return the average host startup time, or a negative value, if no
+	 *         launched host has registered yet
+	 */
+	public long getHostStartupMillis() {
+		return Math.round(hostStartupMillis);
+	}
+
+	/**
+	 * Returns the number of launched hosts, which have not registered yet.
+	 * Launches older than the host launch timeout are no longer counted.
+	 *
+	 * @return the number of starting hosts
+	 */
+	public int getNumberOfStartingHosts() {
+		long expired = System.currentTimeMillis() - settings.getHostLaunchTimeout();
+		Long launchedAt;
+		while ((launchedAt = launchTimes.peek()) != null && launchedAt < expired) {
+			if (launchTimes.remove(launchedAt)) {
+				reporter.report("Compute host launched at " + new Date(launchedAt) + " did not register in time!");
 			}
 		}
+		return launchesQueued.get() + launchTimes.size();
+	}
+
+	/**
+	 * Returns the number of registered hosts, whether free or busy.
+	 *
+	 * @return the number of registered hosts
+	 */
+	public int getNumberOfRegisteredHosts() {
+		return hosts.size() + usedHosts.size();
+	}
+
+	/**
+	 * Returns the total number of cores of all registered hosts.
+	 *
+	 * @return the number of cores
+	 */
+	public int getNumberOfCores() {
+		int cores = 0;
+		for (Host host : hosts) {
+			cores += host.getCores();
+		}
+		for (Host host : usedHosts.values()) {
+			cores += host.getCores();
+		}
+		return cores;
 	}
 
 	/**
@@ -0,0 +1,86 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.server;
+
+import java.util.List;
+import net.sf.mpaxs.api.job.IJob;
+
+/**
+ * Decides the order in which pending jobs are scheduled. Implementations hold
+ * the pending jobs and need not be thread safe, {@link MyConcurrentLinkedJobQueue}
+ * serializes all calls.
+ *
+ * @author Nils Hoffmann
+ * @see PriorityJobQueuePolicy
+ * @see FairShareJobQueuePolicy
+ */
+public interface IJobQueuePolicy {
+
+	/**
+	 * Adds a job, which is not yet held by this policy.
+	 *
+	 * @param job the job
+	 */
+	void add(IJob job);
+
+	/**
+	 * Removes and returns the job to schedule next.
+	 *
+	 * @return the next job, or null if no job is pending
+	 */
+	IJob poll();
+
+	/**
+	 * Returns the job to schedule next without removing it.
+	 *
+	 * @return the next job, or null if no job is pending
+	 */
+	IJob peek();
+
+	/**
+	 * Removes the given job.
+	 *
+	 * @param job the job
+	 * @return true if the job was held by this policy
+	 */
+	boolean remove(IJob job);
+
+	/**
+	 * Returns the number of pending jobs.
+	 *
+	 * @return the number of pending jobs
+	 */
+	int size();
+
+	/**
+	 * Returns the pending jobs in no particular order.
+	 *
+	 * @return a snapshot of the pending jobs
+	 */
+	List<IJob> jobs();
+}
@@ -0,0 +1,86 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.server;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import net.sf.mpaxs.api.job.IJob;
+
+/**
+ * JDK Flight Recorder event for a state transition of a job in the
+ * {@link MasterServer}: submission to the pending queue, dispatch to a
+ * compute host and completion.
+ *
+ * @author Nils Hoffmann
+ */
+@Name("mpaxs.Job")
+@Label("Mpaxs Job")
+@Category({"Mpaxs", "Jobs"})
+@Description("Submission, dispatch or completion of a job")
+@StackTrace(false)
+final class JobEvent extends Event {
+
+	static final String SUBMIT = "submit";
+	static final String DISPATCH = "dispatch";
+	static final String COMPLETE = "complete";
+
+	@Label("Phase")
+	String phase;
+
+	@Label("Job Id")
+	String jobId;
+
+	@Label("Runnable")
+	String runnable;
+
+	@Label("Status")
+	String status;
+
+	@Label("Host")
+	String host;
+
+	@Label("Errors")
+	int errors;
+
+	static void commit(String phase, IJob job, Host host) {
+		JobEvent event = new JobEvent();
+		if (event.shouldCommit()) {
+			event.phase = phase;
+			event.jobId = String.valueOf(job.getId());
+			event.runnable = job.getClassToExecute() == null ? null : job.getClassToExecute().getClass().getName();
+			event.status = String.valueOf(job.getStatus());
+			event.host = host == null ? null : host.getName();
+			event.errors = job.getErrorCounter();
+			event.commit();
+		}
+	}
+}
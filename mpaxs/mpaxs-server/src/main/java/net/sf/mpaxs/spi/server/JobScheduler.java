@@ -28,17 +28,20 @@
 package net.sf.mpaxs.spi.server;
 
 import java.net.MalformedURLException;
-import java.rmi.Naming;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import net.sf.mpaxs.api.ConfigurationKeys;
-import net.sf.mpaxs.api.computeHost.IComputeHost;
 import net.sf.mpaxs.api.job.IJob;
 import net.sf.mpaxs.api.job.Status;
 import net.sf.mpaxs.spi.server.logging.EventLogger;
@@ -50,16 +53,34 @@ import net.sf.mpaxs.spi.server.settings.Settings;
  * Retrieves pending jobs from the {@link MasterServer}, tries to find a free
  * host to run the job on and submits it for remote execution.
  *
+ * Dispatching is event driven: after {@link #start()}, a dispatcher thread
+ * waits until it is signalled, e.g. because a job was submitted or a host
+ * became free, and then dispatches pending jobs until either no job is
+ * pending or no host has a free slot. A wake-up is additionally forced every
+ * second, as a safety net for missed events.
+ *
+ * Jobs declaring input resources are placed on the free host holding most of
+ * them. If a busy host holds more of them than any free host, the job is
+ * deferred for at most the configured locality wait, while later jobs are
+ * dispatched (delay scheduling). Deferred jobs are retried first, in the
+ * order of their deferral.
+ *
  * @author Kai Bernd Stadermann
  */
 public class JobScheduler implements Runnable, IComputeHostEventListener {
 
+	private static final long MAX_IDLE_MILLIS = 1000;
 	private final MasterServer master;
 	private final HostRegister register;
 	private final Settings settings = Settings.getInstance();
 	private final Reporter reporter = Reporter.getInstance();
 	private IJob current;
 	private final ExecutorService submissionService = Executors.newSingleThreadExecutor();
+	private final ExecutorService dispatcher = Executors.newSingleThreadExecutor();
+	private final Semaphore wakeUp = new Semaphore(0);
+	private volatile boolean running = false;
+	private final long localityWait = settings.getLocalityWait();
+	private final Map<UUID, DeferredJob> deferred = Collections.synchronizedMap(new LinkedHashMap<UUID, DeferredJob>());
 
 	/**
 	 * Create a new JobScheduler.
@@ -73,84 +94,228 @@ public class JobScheduler implements Runnable, IComputeHostEventListener {
 	}
 
 	/**
-	 * Initiate an orderly shutdown of the job submission service.
+	 * Start the dispatcher thread.
+	 */
+	public void start() {
+		running = true;
+		dispatcher.submit(new Runnable() {
+
+			@Override
+			public void run() {
+				while (running) {
+					try {
+						wakeUp.tryAcquire(getIdleMillis(), TimeUnit.MILLISECONDS);
+						wakeUp.drainPermits();
+					} catch (InterruptedException ie) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+					if (running) {
+						try {
+							JobScheduler.this.run();
+						} catch (RuntimeException re) {
+							EventLogger.getInstance().getLogger().log(Level.SEVERE, "Exception while dispatching jobs!", re);
+						}
+					}
+				}
+			}
+		});
+	}
+
+	private long getIdleMillis() {
+		long idle = MAX_IDLE_MILLIS;
+		synchronized (deferred) {
+			long now = System.currentTimeMillis();
+			for (DeferredJob d : deferred.values()) {
+				idle = Math.min(idle, Math.max(1L, d.since + localityWait - now));
+			}
+		}
+		return idle;
+	}
+
+	/**
+	 * Returns the number of jobs deferred to wait for a host holding their
+	 * input resources.
+	 *
+	 * @return the number of deferred jobs
+	 */
+	public int getNumberOfDeferredJobs() {
+		return deferred.size();
+	}
+
+	/**
+	 * Returns the job with the given id, if it is deferred to wait for a
+	 * host holding its input resources.
+	 *
+	 * @param jobId the job id
+	 * @return the deferred job, or null
+	 */
+	public IJob getDeferredJob(UUID jobId) {
+		DeferredJob d = deferred.get(jobId);
+		return d == null ? null : d.job;
+	}
+
+	/**
+	 * Removes the job with the given id from the deferred jobs.
+	 *
+	 * @param jobId the job id
+	 * @return the deferred job, or null
+	 */
+	public IJob removeDeferredJob(UUID jobId) {
+		DeferredJob d = deferred.remove(jobId);
+		return d == null ? null : d.job;
+	}
+
+	/**
+	 * Wake up the dispatcher thread, e.g. after a job has been submitted.
+	 */
+	public void signal() {
+		if (wakeUp.availablePermits() == 0) {
+			wakeUp.release();
+		}
+	}
+
+	/**
+	 * Initiate an orderly shutdown of the dispatcher and job submission service.
 	 *
 	 * @param timeout  the maximum time to wait for shutdown
 	 * @param timeUnit the time unit of the timeout
 	 * @throws InterruptedException
 	 */
 	public void shutdown(long timeout, TimeUnit timeUnit) throws InterruptedException {
+		running = false;
+		signal();
+		dispatcher.shutdown();
 		submissionService.shutdown();
 		try {
+			if (!dispatcher.awaitTermination(timeout, timeUnit)) {
+				dispatcher.shutdownNow();
+			}
 			if (!submissionService.awaitTermination(timeout, timeUnit)) {
 				submissionService.shutdownNow();
 			}
 		} catch (InterruptedException ie) {
+			dispatcher.shutdownNow();
 			submissionService.shutdownNow();
 			Thread.currentThread().interrupt();
 			throw ie;
 		}
 	}
 
-    /**
-     *
-     */
-    @Override
-	public void run() {
+	/**
+	 * Dispatch pending jobs to free hosts, until no more jobs are pending or
+	 * no host is available.
+	 */
+	@Override
+	public synchronized void run() {
 		if (current == null) {
 			MyConcurrentLinkedJobQueue queue = master.getPendingJobs();
 			if (!queue.isEmpty() && Logger.getLogger(JobScheduler.class.getName()).isLoggable(Level.FINE)) {
 				Logger.getLogger(JobScheduler.class.getName()).log(Level.FINE, "Pending jobs: {0}", queue);
 			}
-			current = master.getPendingJob();
 		}
-		if (current != null && !current.getStatus().equals(Status.CANCELED)) {
-			Host host = register.getFreeHost();
-			if (host != null) {
-				IComputeHost remRef = null;
-				String connectionString = "";
-				try {
-					connectionString = "//" + host.getIP()
-						+ ":" + settings.getLocalPort() + "/" + host.getName();
-					remRef = (IComputeHost) Naming.lookup(
-						connectionString);
-					remRef.stillAlive(UUID.fromString(settings.getString(
-						ConfigurationKeys.KEY_AUTH_TOKEN)));
-					master.jobOnHost(current, host);
-					SubmitThread submitter = new SubmitThread(current,
-						remRef, master, host);
-					submissionService.submit(submitter);
-					current = null;
-				} catch (NotBoundException ex) {
-					reporter.report(
-						"Error during job submission! ComputeHost may be down.");
-					master.removeHost(host.getId());
-					EventLogger.getInstance().getLogger().log(Level.SEVERE,
-						null, ex);
-				} catch (MalformedURLException ex) {
-					reporter.report(
-						"Error during job submission! Please check connection details: " + connectionString);
-					master.removeHost(host.getId());
-					EventLogger.getInstance().getLogger().log(Level.SEVERE,
-						null, ex);
-				} catch (RemoteException ex) {
-					reporter.report(
-						"Error during job submission! ComputeHost may be down.");
-					master.removeHost(host.getId());
-					EventLogger.getInstance().getLogger().log(Level.SEVERE,
-						null, ex);
+		List<DeferredJob> waiting;
+		synchronized (deferred) {
+			waiting = new ArrayList<DeferredJob>(deferred.values());
+		}
+		for (DeferredJob d : waiting) {
+			if (d.job.getStatus().equals(Status.CANCELED)) {
+				deferred.remove(d.job.getId());
+				continue;
+			}
+			Host host = selectHost(d.job, d.since);
+			if (host == null) {
+				if (!register.hasFreeHost()) {
+					return;
+				}
+				continue;
+			}
+			if (dispatch(d.job, host)) {
+				deferred.remove(d.job.getId());
+			}
+		}
+		while (true) {
+			if (current == null) {
+				current = master.getPendingJob();
+				if (current == null) {
+					return;
+				}
+			}
+			if (current.getStatus().equals(Status.CANCELED)) {
+				current = null;
+				continue;
+			}
+			long now = System.currentTimeMillis();
+			Host host = selectHost(current, now);
+			if (host == null) {
+				if (!register.hasFreeHost()) {
+					return;
 				}
+				Logger.getLogger(JobScheduler.class.getName()).log(Level.FINE, "Deferring job {0} to wait for a host holding its input", current.getId());
+				deferred.put(current.getId(), new DeferredJob(current, now));
+				current = null;
+				continue;
+			}
+			if (dispatch(current, host)) {
+				current = null;
 			}
 		}
 	}
 
+	/**
+	 * Returns a free host for the job. Until the job has waited for the
+	 * locality wait, only hosts with the best locality score of all hosts
+	 * are accepted.
+	 */
+	private Host selectHost(IJob job, long since) {
+		if (job.getInputResources().isEmpty() || localityWait <= 0) {
+			return register.pollFreeHost(job, 0.0d);
+		}
+		boolean waited = System.currentTimeMillis() - since >= localityWait;
+		return register.pollFreeHost(job, waited ? 0.0d : register.getBestLocalityScore(job));
+	}
+
+	private boolean dispatch(IJob job, Host host) {
+		String connectionString = "//" + host.getIP()
+			+ ":" + settings.getLocalPort() + "/" + host.getName();
+		try {
+			//resolves the remote reference only if it is not cached
+			register.getStub(host);
+			master.jobOnHost(job, host);
+			JobEvent.commit(JobEvent.DISPATCH, job, host);
+			SubmitThread submitter = new SubmitThread(job,
+				register, master, host);
+			submissionService.submit(submitter);
+			return true;
+		} catch (NotBoundException ex) {
+			reporter.report(
+				"Error during job submission! ComputeHost may be down.");
+			master.removeHost(host.getId());
+			EventLogger.getInstance().getLogger().log(Level.SEVERE,
+				null, ex);
+		} catch (MalformedURLException ex) {
+			reporter.report(
+				"Error during job submission! Please check connection details: " + connectionString);
+			master.removeHost(host.getId());
+			EventLogger.getInstance().getLogger().log(Level.SEVERE,
+				null, ex);
+		} catch (RemoteException ex) {
+			reporter.report(
+				"Error during job submission! ComputeHost may be down.");
+			master.removeHost(host.getId());
+			EventLogger.getInstance().getLogger().log(Level.SEVERE,
+				null, ex);
+		}
+		return false;
+	}
+
 	/**
 	 *
 	 * @param host
 	 */
 	@Override
 	public void hostAdded(Host host) {
-//		freeHosts.add(host);
+		signal();
 	}
 
 	/**
@@ -167,6 +332,17 @@ public class JobScheduler implements Runnable, IComputeHostEventListener {
 	 */
 	@Override
 	public void hostFree(Host host) {
-//		freeHosts.add(host);
+		signal();
+	}
+
+	private static final class DeferredJob {
+
+		private final IJob job;
+		private final long since;
+
+		DeferredJob(IJob job, long since) {
+			this.job = job;
+			this.since = since;
+		}
 	}
 }
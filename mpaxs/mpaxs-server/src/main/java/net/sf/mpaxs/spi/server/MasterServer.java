@@ -31,16 +31,15 @@ import java.awt.Container;
 import java.io.File;
 import java.net.MalformedURLException;
 import java.rmi.AlreadyBoundException;
-import java.rmi.Naming;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
-import java.rmi.registry.LocateRegistry;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -56,15 +55,18 @@ import net.sf.mpaxs.api.computeHost.IComputeHost;
 import net.sf.mpaxs.api.event.IJobEventListener;
 import net.sf.mpaxs.api.job.IJob;
 import net.sf.mpaxs.api.job.Progress;
+import net.sf.mpaxs.api.job.ResultReference;
 import net.sf.mpaxs.api.job.ScheduledJob;
 import net.sf.mpaxs.api.job.Status;
 import net.sf.mpaxs.api.server.IRemoteServer;
+import net.sf.mpaxs.api.transport.ITransport;
 import net.sf.mpaxs.spi.server.consoleInput.Input;
 import net.sf.mpaxs.spi.server.dirWatcher.DirWatcher;
 //import net.sf.mpaxs.spi.server.gui.MainFrame;
 import net.sf.mpaxs.spi.server.logging.EventLogger;
 import net.sf.mpaxs.spi.server.messages.Reporter;
 import net.sf.mpaxs.spi.server.settings.Settings;
+import net.sf.mpaxs.spi.transport.Transports;
 
 /**
  *
@@ -73,17 +75,21 @@ import net.sf.mpaxs.spi.server.settings.Settings;
 public class MasterServer implements Thread.UncaughtExceptionHandler {
 
 	private final HostRegister register;
+	private final ITransport transport;
 	private final Settings settings;
 	private final Reporter reporter;
 	private final JobScheduler jobScheduler;
+	private final AutoScaler autoScaler;
 	private final DirWatcher watcher;
 	private final ExecutorService jobEventNotifier = Executors.newCachedThreadPool();
-	private final HashMap<UUID, IJob> runningJobs = new HashMap<UUID, IJob>();
-	private final HashMap<UUID, IJob> doneJobs = new HashMap<UUID, IJob>();
-	private final HashMap<UUID, IJob> canceledJobs = new HashMap<UUID, IJob>();
-	private final HashMap<UUID, Host> jobRunningOnHost = new HashMap<UUID, Host>();
+	private final ConcurrentHashMap<UUID, IJob> runningJobs = new ConcurrentHashMap<UUID, IJob>();
+	private final ConcurrentHashMap<UUID, IJob> doneJobs = new ConcurrentHashMap<UUID, IJob>();
+	private final ConcurrentHashMap<UUID, IJob> canceledJobs = new ConcurrentHashMap<UUID, IJob>();
+	private final ConcurrentHashMap<UUID, Host> jobRunningOnHost = new ConcurrentHashMap<UUID, Host>();
 	private final ArrayList<String> failedJobs = new ArrayList<String>();
-	private final MyConcurrentLinkedJobQueue pendingJobs = new MyConcurrentLinkedJobQueue();
+	private final MyConcurrentLinkedJobQueue pendingJobs;
+	private final PhiAccrualFailureDetector failureDetector;
+	private final ResultStore resultStore;
 //	private final MyConcurrentLinkedJobQueue scheduledJobs = new MyConcurrentLinkedJobQueue();
 	private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
 	private final ConcurrentHashMap<UUID, Set<IJobEventListener>> listeners = new ConcurrentHashMap<UUID, Set<IJobEventListener>>();
@@ -103,14 +109,41 @@ public class MasterServer implements Thread.UncaughtExceptionHandler {
 	public MasterServer(Container c) {
 		settings = Settings.getInstance();
 		settings.setOption(ConfigurationKeys.KEY_AUTH_TOKEN, authToken.toString());
-		register = new HostRegister();
+		pendingJobs = new MyConcurrentLinkedJobQueue(createJobQueuePolicy());
+		resultStore = new ResultStore(new File(settings.getBaseDir(), "results"));
+		transport = Transports.create(settings.getTransport(), settings.getTransportCodec(),
+			settings.getTransportMaxFrameLength(), settings.getTransportCallTimeout());
+		register = new HostRegister(transport);
 		reporter = Reporter.getInstance();
 		bindHostRegister(authToken);
 		jobScheduler = new JobScheduler(this, register);
 		register.addListener(jobScheduler);
 		watcher = new DirWatcher(this);
 		scheduler.scheduleAtFixedRate(watcher, 500, settings.getScheduleWaitingTime(), TimeUnit.MILLISECONDS);
-		scheduler.scheduleAtFixedRate(jobScheduler, 100, 50, TimeUnit.MILLISECONDS);
+		autoScaler = new AutoScaler(register, pendingJobs, jobScheduler);
+		jobScheduler.start();
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					autoScaler.run();
+				} catch (RuntimeException re) {
+					EventLogger.getInstance().getLogger().log(Level.SEVERE, "Exception while scaling compute hosts!", re);
+				}
+			}
+		}, 0, settings.getScalingInterval(), TimeUnit.MILLISECONDS);
+		long heartbeatInterval = settings.getHeartbeatInterval();
+		failureDetector = new PhiAccrualFailureDetector(heartbeatInterval, 2 * heartbeatInterval);
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					detectFailedHosts();
+				} catch (RuntimeException re) {
+					EventLogger.getInstance().getLogger().log(Level.SEVERE, "Exception while detecting failed hosts!", re);
+				}
+			}
+		}, heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
 //		if (settings.getGuiMode()) {
 //			main = new MainFrame(this, c);
 //			reporter.addListener(main);
@@ -128,18 +161,18 @@ public class MasterServer implements Thread.UncaughtExceptionHandler {
 	}
 
 	/**
-	 * Creates a RMI-Registry and binds the host register on the given Port. This
-	 * facilitates registration of compute host.
+	 * Starts listening on the given Port and binds the host register using the
+	 * configured transport. This facilitates registration of compute host.
 	 */
 	private void bindHostRegister(UUID authToken) {
 		try {
-			//Creates a RMI-Registry on the given Port.
-			createRegistry(settings.getLocalPort());
+			//Listens on the given Port or the next free one.
+			settings.setLocalPort(transport.listen(settings.getLocalPort()));
 			// Create Remote object.
 			IRemoteServer remObj = new ServerImpl(register, this, authToken);
 			EventLogger.getInstance().getLogger().log(Level.FINE, "Binding server at {0}:{1} with name {2}", new Object[]{settings.getLocalIP(), settings.getLocalPort(), settings.getName()});
-			// Naming remote object.
-			Naming.bind("//" + settings.getLocalIP() + ":" + settings.getLocalPort() + "/" + settings.getName(), remObj);
+			// Export remote object.
+			transport.export(settings.getLocalIP(), settings.getLocalPort(), settings.getName(), remObj);
 		} catch (AlreadyBoundException ex) {
 			EventLogger.getInstance().getLogger().log(Level.SEVERE, null, ex);
 		} catch (MalformedURLException ex) {
@@ -149,13 +182,19 @@ public class MasterServer implements Thread.UncaughtExceptionHandler {
 		}
 	}
 
-	private void createRegistry(int LocalPort) throws RemoteException {
-		try {
-			LocateRegistry.createRegistry(LocalPort);
-			settings.setLocalPort(LocalPort);
-		} catch (java.rmi.server.ExportException ex) {
-			createRegistry(LocalPort + 1);
+	private IJobQueuePolicy createJobQueuePolicy() {
+		String policy = settings.getJobQueuePolicy();
+		long aging = settings.getJobQueueAging();
+		Logger.getLogger(MasterServer.class.getName()).log(Level.INFO,
+			"Using job queue policy {0} with aging after {1} ms", new Object[]{policy, aging});
+		if ("FAIR_SHARE".equals(policy)) {
+			return new FairShareJobQueuePolicy(settings.getJobQueueWeights(), aging);
+		}
+		if (!"PRIORITY".equals(policy)) {
+			Logger.getLogger(MasterServer.class.getName()).log(Level.WARNING,
+				"Unknown job queue policy {0}, using PRIORITY", policy);
 		}
+		return new PriorityJobQueuePolicy(aging);
 	}
 
 	/**
@@ -178,6 +217,8 @@ public class MasterServer implements Thread.UncaughtExceptionHandler {
 						sj.setThrowable(null);
 						sj.setStatus(Status.WAITING);
 						pendingJobs.offer(sj);
+						JobEvent.commit(JobEvent.SUBMIT, sj, null);
+						jobScheduler.signal();
 						jobChanged(sj);
 						Logger.getLogger(
 							MasterServer.class.getName()).log(
@@ -190,6 +231,8 @@ public class MasterServer implements Thread.UncaughtExceptionHandler {
 			} else {
 				job.setStatus(Status.WAITING);
 				pendingJobs.offer(job);
+				JobEvent.commit(JobEvent.SUBMIT, job, null);
+				jobScheduler.signal();
 				jobChanged(job);
 			}
 		} else {
@@ -228,6 +271,8 @@ public class MasterServer implements Thread.UncaughtExceptionHandler {
 						sj.setThrowable(null);
 						sj.setStatus(Status.WAITING);
 						pendingJobs.offer(sj);
+						JobEvent.commit(JobEvent.SUBMIT, sj, null);
+						jobScheduler.signal();
 						jobChanged(sj);
 						Logger.getLogger(
 							MasterServer.class.getName()).log(
@@ -250,6 +295,8 @@ public class MasterServer implements Thread.UncaughtExceptionHandler {
 						sj.setThrowable(null);
 						sj.setStatus(Status.WAITING);
 						pendingJobs.offer(sj);
+						JobEvent.commit(JobEvent.SUBMIT, sj, null);
+						jobScheduler.signal();
 						jobChanged(sj);
 						Logger.getLogger(
 							MasterServer.class.getName()).log(
@@ -278,7 +325,7 @@ public class MasterServer implements Thread.UncaughtExceptionHandler {
 	 *
 	 * @return
 	 */
-	public HashMap<UUID, IJob> getRunningJobs() {
+	public Map<UUID, IJob> getRunningJobs() {
 		return runningJobs;
 	}
 
@@ -286,7 +333,7 @@ public class MasterServer implements Thread.UncaughtExceptionHandler {
 	 *
 	 * @return
 	 */
-	public HashMap<UUID, IJob> getDoneJobs() {
+	public Map<UUID, IJob> getDoneJobs() {
 		return doneJobs;
 	}
 
@@ -302,10 +349,20 @@ public class MasterServer implements Thread.UncaughtExceptionHandler {
 	 *
 	 * @return
 	 */
-	public HashMap<UUID, IJob> getCanceledJobs() {
+	public Map<UUID, IJob> getCanceledJobs() {
 		return canceledJobs;
 	}
 
+	/**
+	 * Returns the store receiving results transferred separately from their
+	 * jobs.
+	 *
+	 * @return the result store
+	 */
+	public ResultStore getResultStore() {
+		return resultStore;
+	}
+
 	/**
 	 * Initiates an orderly shutdown of all thread pools allocated by the master
 	 * server and referenced objects.
@@ -354,6 +411,9 @@ public class MasterServer implements Thread.UncaughtExceptionHandler {
 			Thread.currentThread().interrupt();
 		}
 
+		transport.close();
+		resultStore.clear();
+
 		if (exitOnShutdown) {
 			EventLogger.getInstance().getLogger().log(Level.INFO, "exitOnShutdown: " + exitOnShutdown);
 			System.exit(0);
@@ -365,16 +425,17 @@ public class MasterServer implements Thread.UncaughtExceptionHandler {
 	 * @param jobID
 	 * @return
 	 */
-	public Progress getJobProgress(UUID jobID) {
+	public Progress getJobProgress(final UUID jobID) {
 		if (!isShutdown) {
 			Host host = getHostJobIsRunningOn(jobID);
 			Progress ret;
-			IComputeHost remRef;
 			try {
-
-				remRef = (IComputeHost) Naming.lookup("//" + host.getIP()
-					+ ":" + settings.getLocalPort() + "/" + host.getName());
-				ret = remRef.getJobProgress(UUID.fromString(settings.getString(ConfigurationKeys.KEY_AUTH_TOKEN)), jobID);
+				ret = register.call(host, new HostRegister.RemoteCall<Progress>() {
+					@Override
+					public Progress call(IComputeHost remRef) throws RemoteException {
+						return remRef.getJobProgress(UUID.fromString(settings.getString(ConfigurationKeys.KEY_AUTH_TOKEN)), jobID);
+					}
+				});
 				/*
 				 * All errors must be caught! If not, a poor programmed run
 				 * method in a job could crash the whole server!
@@ -406,16 +467,34 @@ public class MasterServer implements Thread.UncaughtExceptionHandler {
 	 */
 	public void addDoneJob(IJob job) {
 		if (!this.isShutdown) {
+			if (canceledJobs.containsKey(job.getId())) {
+				Logger.getLogger(MasterServer.class.getName()).log(Level.FINE, "Ignoring result of canceled job {0}", job.getId());
+				ResultReference ref = job.getResultReference();
+				if (ref != null) {
+					ref.delete();
+				}
+				return;
+			}
+			if (doneJobs.putIfAbsent(job.getId(), job) != null) {
+				Logger.getLogger(MasterServer.class.getName()).log(Level.FINE, "Ignoring duplicate result of job {0}", job.getId());
+				return;
+			}
+			//a host declared dead may still deliver, after the job was rescheduled
+			pendingJobs.remove(job.getId());
+			jobScheduler.removeDeferredJob(job.getId());
 			Host host = getHostJobIsRunningOn(job.getId());
 			File tmp = new File(job.getJobConfigFile());
 			tmp.renameTo(new File(settings.getDoneDir() + File.separator + tmp.getName()));
 			job.setJobConfigFile(settings.getDoneDir() + File.separator + tmp.getName());
 			runningJobs.remove(job.getId());
-			doneJobs.put(job.getId(), job);
 			job.setStatus(Status.DONE);
 			jobRunningOnHost.remove(job.getId());
+			autoScaler.jobCompleted(job.getId());
+			JobEvent.commit(JobEvent.COMPLETE, job, host);
 			jobChanged(job);
-			register.releaseHost(host);
+			if (host != null) {
+				register.releaseHost(host);
+			}
 		} else {
 			throw new IllegalStateException("MasterServer instance was already shutdown, can not accept new jobs!");
 		}
@@ -483,11 +562,13 @@ public class MasterServer implements Thread.UncaughtExceptionHandler {
 		try {
 			Host host = register.getHost(hostID);
 			register.removeHost(hostID);
-			IComputeHost remRef = null;
-			remRef = (IComputeHost) Naming.lookup("//" + host.getIP()
-				+ ":" + settings.getLocalPort() + "/" + host.getName());
-			remRef.stillAlive(UUID.fromString(settings.getString(ConfigurationKeys.KEY_AUTH_TOKEN)));
-			remRef.masterServerShuttingDown(UUID.fromString(settings.getString(ConfigurationKeys.KEY_AUTH_TOKEN)));
+			register.call(host, new HostRegister.RemoteCall<Void>() {
+				@Override
+				public Void call(IComputeHost remRef) throws RemoteException {
+					remRef.masterServerShuttingDown(UUID.fromString(settings.getString(ConfigurationKeys.KEY_AUTH_TOKEN)));
+					return null;
+				}
+			});
 		} catch (NotBoundException ex) {
 			reporter.report("An error occurred while shutting down Compute Host " + hostID.toString()
 				+ "Seems like the Compute Host is already down");
@@ -512,17 +593,19 @@ public class MasterServer implements Thread.UncaughtExceptionHandler {
 	 * @param jobId
 	 * @return
 	 */
-	public boolean cancelJob(UUID jobId) {
+	public boolean cancelJob(final UUID jobId) {
 		if (!this.isShutdown) {
 			Host host = getHostJobIsRunningOn(jobId);
 			IJob job = findJob(jobId);
 			job.setStatus(Status.CANCELED);
 			if (host != null) {
-				IComputeHost remRef = null;
 				try {
-					remRef = (IComputeHost) Naming.lookup("//" + host.getIP()
-						+ ":" + settings.getLocalPort() + "/" + host.getName());
-					remRef.cancelJob(UUID.fromString(settings.getString(ConfigurationKeys.KEY_AUTH_TOKEN)), jobId);
+					register.call(host, new HostRegister.RemoteCall<Boolean>() {
+						@Override
+						public Boolean call(IComputeHost remRef) throws RemoteException {
+							return remRef.cancelJob(UUID.fromString(settings.getString(ConfigurationKeys.KEY_AUTH_TOKEN)), jobId);
+						}
+					});
 					register.releaseHost(host);
 					afterCancel(job);
 					return true;
@@ -542,6 +625,10 @@ public class MasterServer implements Thread.UncaughtExceptionHandler {
 				afterCancel(job);
 				return true;
 			}
+			if (jobScheduler.removeDeferredJob(jobId) != null) {
+				afterCancel(job);
+				return true;
+			}
 			if (runningJobs.containsKey(jobId)) {
 				runningJobs.remove(jobId);
 				afterCancel(job);
@@ -573,6 +660,9 @@ public class MasterServer implements Thread.UncaughtExceptionHandler {
 	}
 
 	private void afterCancel(IJob job) {
+		resultStore.discard(job.getId());
+		autoScaler.jobRemoved(job.getId());
+		JobEvent.commit(JobEvent.COMPLETE, job, jobRunningOnHost.get(job.getId()));
 		File location = new File(job.getJobConfigFile());
 		File to = new File(settings.getErrorDir() + File.separator + location.getName());
 		location.renameTo(to);
@@ -596,6 +686,93 @@ public class MasterServer implements Thread.UncaughtExceptionHandler {
 		}
 	}
 
+	/**
+	 * Records a heartbeat of the compute host with the given id.
+	 *
+	 * @param hostId     the host id
+	 * @param queuedJobs the number of jobs waiting in the host's run queue
+	 * @return true if the host is registered, false if it needs to register
+	 *         again
+	 */
+	public boolean heartbeat(UUID hostId, int queuedJobs) {
+		if (!this.isShutdown) {
+			Host host = register.findHost(hostId);
+			if (host == null) {
+				return false;
+			}
+			host.setQueuedJobs(queuedJobs);
+			failureDetector.heartbeat(hostId, System.currentTimeMillis());
+			return true;
+		} else {
+			throw new IllegalStateException("MasterServer instance was already shutdown, can not accept new jobs!");
+		}
+	}
+
+	private void detectFailedHosts() {
+		if (isShutdown) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		double threshold = settings.getFailureThreshold();
+		for (UUID hostId : failureDetector.getMonitoredHosts()) {
+			Host host = register.findHost(hostId);
+			if (host == null) {
+				failureDetector.remove(hostId);
+			} else if (failureDetector.phi(hostId, now) > threshold) {
+				hostFailed(host);
+			}
+		}
+	}
+
+	/**
+	 * Declares the given host dead, removes it from the register and
+	 * reschedules the jobs running on it.
+	 */
+	private void hostFailed(Host host) {
+		reporter.report("ComputeHost " + host.getName() + " at " + host.getIP() + " stopped sending heartbeats, declaring it dead!");
+		failureDetector.remove(host.getId());
+		register.removeHost(host.getId());
+		for (Map.Entry<UUID, Host> e : jobRunningOnHost.entrySet()) {
+			if (!e.getValue().getId().equals(host.getId())) {
+				continue;
+			}
+			UUID jobId = e.getKey();
+			jobRunningOnHost.remove(jobId);
+			autoScaler.jobRemoved(jobId);
+			IJob job = runningJobs.remove(jobId);
+			if (job == null || job.getStatus() == Status.CANCELED || job.getStatus() == Status.DONE) {
+				continue;
+			}
+			EventLogger.getInstance().getLogger().log(Level.WARNING, "Rescheduling job {0} of dead host {1}", new Object[]{jobId, host.getName()});
+			job.errorOccurred();
+			requeueJob(job);
+		}
+	}
+
+	/**
+	 * Places a job, which was already submitted, back on the pending queue.
+	 * Unlike {@link #submitJob(net.sf.mpaxs.api.job.IJob)}, a
+	 * {@link ScheduledJob} is not scheduled for periodic submission again.
+	 *
+	 * @param job the job to reschedule
+	 */
+	void requeueJob(IJob job) {
+		runningJobs.remove(job.getId());
+		//the next host transfers the result from scratch
+		resultStore.discard(job.getId());
+		job.setThrowable(null);
+		job.setStatus(Status.WAITING);
+		pendingJobs.offer(job);
+		//the dead host may have delivered the result in the meantime
+		if (doneJobs.containsKey(job.getId())) {
+			pendingJobs.remove(job.getId());
+			return;
+		}
+		JobEvent.commit(JobEvent.SUBMIT, job, null);
+		jobScheduler.signal();
+		jobChanged(job);
+	}
+
 	/**
 	 *
 	 * @param jobId
@@ -605,6 +782,10 @@ public class MasterServer implements Thread.UncaughtExceptionHandler {
 		if (pendingJobs.containsJobWithID(jobId)) {
 			return pendingJobs.getJob(jobId);
 		}
+		IJob deferredJob = jobScheduler.getDeferredJob(jobId);
+		if (deferredJob != null) {
+			return deferredJob;
+		}
 		if (runningJobs.containsKey(jobId)) {
 			return runningJobs.get(jobId);
 		}
@@ -625,6 +806,7 @@ public class MasterServer implements Thread.UncaughtExceptionHandler {
 	public void jobOnHost(IJob job, Host host) {
 		if (!isShutdown) {
 			jobRunningOnHost.put(job.getId(), host);
+			autoScaler.jobDispatched(job.getId());
 		} else {
 			throw new IllegalStateException("MasterServer instance was already shutdown, can not accept new jobs!");
 		}
@@ -136,7 +136,9 @@ public class MyConcurrentLinkedHostQueue extends LinkedBlockingQueue<Host> {
     @Override
 	public Host poll(long timeout, TimeUnit unit) throws InterruptedException {
 		Host host = super.poll(timeout, unit);
-		queueBack.remove(host.getId());
+		if (host != null) {
+			queueBack.remove(host.getId());
+		}
 		return host;
 	}
 
@@ -27,38 +27,42 @@
  */
 package net.sf.mpaxs.spi.server;
 
+import java.util.AbstractQueue;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.UUID;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.sf.mpaxs.api.job.IJob;
 
 /**
+ * Queue of pending jobs, ordered by an {@link IJobQueuePolicy}, with lookup
+ * of pending jobs by their id.
  *
  * @author Kai Bernd Stadermann
  */
-public class MyConcurrentLinkedJobQueue extends PriorityBlockingQueue<IJob> {
+public class MyConcurrentLinkedJobQueue extends AbstractQueue<IJob> {
 
-	private HashMap<UUID, IJob> queueBack = new HashMap<UUID, IJob>();
+	private final HashMap<UUID, IJob> queueBack = new HashMap<UUID, IJob>();
+	private final IJobQueuePolicy policy;
 
 	/**
-	 *
+	 * Create a new queue, which retrieves jobs by descending priority.
 	 */
 	public MyConcurrentLinkedJobQueue() {
-		//sort in descending order, since max priority jobs should be retrieved
-		//from the head of the queue
-		super(11, Collections.reverseOrder(new Comparator<IJob>() {
+		this(new PriorityJobQueuePolicy());
+	}
 
-			@Override
-			public int compare(IJob o1, IJob o2) {
-				return Integer.compare(o1.getPriority(), o2.getPriority());
-			}
-		}));
+	/**
+	 * Create a new queue, which retrieves jobs in the order of the given
+	 * policy.
+	 *
+	 * @param policy the queue policy
+	 */
+	public MyConcurrentLinkedJobQueue(IJobQueuePolicy policy) {
+		this.policy = policy;
 	}
 
 	/**
@@ -66,7 +70,7 @@ public class MyConcurrentLinkedJobQueue extends PriorityBlockingQueue<IJob> {
 	 * @param jobID
 	 * @return
 	 */
-	public IJob getJob(UUID jobID) {
+	public synchronized IJob getJob(UUID jobID) {
 		return queueBack.get(jobID);
 	}
 
@@ -75,7 +79,7 @@ public class MyConcurrentLinkedJobQueue extends PriorityBlockingQueue<IJob> {
 	 * @param jobID
 	 * @return
 	 */
-	public boolean containsJobWithID(UUID jobID) {
+	public synchronized boolean containsJobWithID(UUID jobID) {
 		return queueBack.containsKey(jobID);
 	}
 
@@ -84,38 +88,28 @@ public class MyConcurrentLinkedJobQueue extends PriorityBlockingQueue<IJob> {
 	 * @param jobId
 	 * @return
 	 */
-	public IJob remove(UUID jobId) {
-		IJob job = queueBack.get(jobId);
-		super.remove(job);
-		queueBack.remove(jobId);
+	public synchronized IJob remove(UUID jobId) {
+		IJob job = queueBack.remove(jobId);
+		if (job != null) {
+			policy.remove(job);
+		}
 		return job;
-
 	}
 
     /**
+     * Adds the job, unless a job with the same id is already pending.
      *
      * @param job
      * @return
      */
     @Override
-	public boolean offer(IJob job) {
-		if (super.offer(job)) {
-			queueBack.put(job.getId(), job);
-			return true;
-		} else {
+	public synchronized boolean offer(IJob job) {
+		if (queueBack.containsKey(job.getId())) {
 			return false;
 		}
-	}
-
-    /**
-     *
-     * @param job
-     * @return
-     */
-    @Override
-	public boolean add(IJob job) {
 		queueBack.put(job.getId(), job);
-		return super.offer(job);
+		policy.add(job);
+		return true;
 	}
 
     /**
@@ -123,8 +117,8 @@ public class MyConcurrentLinkedJobQueue extends PriorityBlockingQueue<IJob> {
      * @return
      */
     @Override
-	public IJob poll() {
-		IJob ret = super.poll();
+	public synchronized IJob poll() {
+		IJob ret = policy.poll();
 		if (ret != null) {
 			queueBack.remove(ret.getId());
 			Logger.getLogger(MyConcurrentLinkedJobQueue.class.getName()).log(Level.INFO, "Retrieved job {0} from queue!", ret);
@@ -137,12 +131,68 @@ public class MyConcurrentLinkedJobQueue extends PriorityBlockingQueue<IJob> {
 	 * @param maxElements
 	 * @return
 	 */
-	public Collection<IJob> poll(int maxElements) {
+	public synchronized Collection<IJob> poll(int maxElements) {
 		ArrayList<IJob> jobs = new ArrayList<IJob>();
-		super.drainTo(jobs, maxElements);
-		for (IJob job : jobs) {
+		IJob job;
+		while (jobs.size() < maxElements && (job = policy.poll()) != null) {
 			queueBack.remove(job.getId());
+			jobs.add(job);
 		}
 		return jobs;
 	}
+
+    /**
+     *
+     * @return
+     */
+    @Override
+	public synchronized IJob peek() {
+		return policy.peek();
+	}
+
+    /**
+     *
+     * @return
+     */
+    @Override
+	public synchronized int size() {
+		return policy.size();
+	}
+
+    /**
+     * Iterates over a snapshot of the pending jobs in no particular order.
+     *
+     * @return
+     */
+    @Override
+	public Iterator<IJob> iterator() {
+		final Iterator<IJob> snapshot;
+		synchronized (this) {
+			snapshot = policy.jobs().iterator();
+		}
+		return new Iterator<IJob>() {
+
+			private IJob last = null;
+
+			@Override
+			public boolean hasNext() {
+				return snapshot.hasNext();
+			}
+
+			@Override
+			public IJob next() {
+				last = snapshot.next();
+				return last;
+			}
+
+			@Override
+			public void remove() {
+				if (last == null) {
+					throw new IllegalStateException();
+				}
+				MyConcurrentLinkedJobQueue.this.remove(last.getId());
+				last = null;
+			}
+		};
+	}
 }
@@ -0,0 +1,172 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.server;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Phi accrual failure detector for compute host heartbeats.
+ *
+ * For every monitored host, the intervals between the most recent heartbeats
+ * are kept. The suspicion level phi of a host is the negative decimal
+ * logarithm of the probability, that the next heartbeat would arrive later
+ * than it already is, assuming normally distributed intervals. A phi of 8
+ * thus corresponds to a chance of 10^-8 of falsely declaring a live host
+ * dead. Since the distribution adapts to the observed intervals, slow but
+ * regular hosts are not suspected, while a host that stops sending
+ * heartbeats is detected within a few intervals.
+ *
+ * @author Nils Hoffmann
+ */
+public class PhiAccrualFailureDetector {
+
+	private static final int WINDOW_SIZE = 100;
+	private static final long MIN_STD_DEVIATION = 100;
+	private final ConcurrentHashMap<UUID, History> histories = new ConcurrentHashMap<UUID, History>();
+	private final long expectedInterval;
+	private final long acceptablePause;
+
+	/**
+	 * Create a new failure detector.
+	 *
+	 * @param expectedInterval the heartbeat interval of compute hosts in
+	 *                         milliseconds, used until intervals have been
+	 *                         observed
+	 * @param acceptablePause  the additional delay in milliseconds, which is
+	 *                         tolerated before the suspicion level rises, e.g.
+	 *                         to ride out garbage collection pauses
+	 */
+	public PhiAccrualFailureDetector(long expectedInterval, long acceptablePause) {
+		this.expectedInterval = Math.max(1, expectedInterval);
+		this.acceptablePause = Math.max(0, acceptablePause);
+	}
+
+	/**
+	 * Record a heartbeat of the given host. The first heartbeat starts
+	 * monitoring the host.
+	 *
+	 * @param hostId the host id
+	 * @param now    the arrival time in milliseconds
+	 */
+	public void heartbeat(UUID hostId, long now) {
+		History history = histories.get(hostId);
+		if (history == null) {
+			History h = new History(now, expectedInterval);
+			history = histories.putIfAbsent(hostId, h);
+			if (history == null) {
+				return;
+			}
+		}
+		history.add(now);
+	}
+
+	/**
+	 * Returns the suspicion level of the given host.
+	 *
+	 * @param hostId the host id
+	 * @param now    the current time in milliseconds
+	 * @return the suspicion level, 0 if the host is not monitored
+	 */
+	public double phi(UUID hostId, long now) {
+		History history = histories.get(hostId);
+		if (history == null) {
+			return 0.0d;
+		}
+		return history.phi(now, acceptablePause);
+	}
+
+	/**
+	 * Stop monitoring the given host.
+	 *
+	 * @param hostId the host id
+	 */
+	public void remove(UUID hostId) {
+		histories.remove(hostId);
+	}
+
+	/**
+	 * Returns the ids of all monitored hosts.
+	 *
+	 * @return the monitored host ids
+	 */
+	public Set<UUID> getMonitoredHosts() {
+		return histories.keySet();
+	}
+
+	private static final class History {
+
+		private final long[] intervals = new long[WINDOW_SIZE];
+		private int count = 0;
+		private int next = 0;
+		private double sum = 0.0d;
+		private double sumOfSquares = 0.0d;
+		private long last;
+
+		History(long first, long expectedInterval) {
+			this.last = first;
+			//bootstrap with two intervals around the expected one
+			long deviation = expectedInterval / 4;
+			addInterval(expectedInterval - deviation);
+			addInterval(expectedInterval + deviation);
+		}
+
+		synchronized void add(long now) {
+			addInterval(Math.max(0, now - last));
+			last = now;
+		}
+
+		private void addInterval(long interval) {
+			if (count == WINDOW_SIZE) {
+				long dropped = intervals[next];
+				sum -= dropped;
+				sumOfSquares -= (double) dropped * dropped;
+			} else {
+				count++;
+			}
+			intervals[next] = interval;
+			next = (next + 1) % WINDOW_SIZE;
+			sum += interval;
+			sumOfSquares += (double) interval * interval;
+		}
+
+		synchronized double phi(long now, long acceptablePause) {
+			double mean = sum / count;
+			double variance = Math.max(0.0d, sumOfSquares / count - mean * mean);
+			double stdDeviation = Math.max(MIN_STD_DEVIATION, Math.sqrt(variance));
+			double y = (now - last - mean - acceptablePause) / stdDeviation;
+			//logistic approximation of the normal cumulative distribution
+			double e = Math.exp(-y * (1.5976d + 0.070566d * y * y));
+			if (y > 0) {
+				return -Math.log10(e / (1.0d + e));
+			}
+			return -Math.log10(1.0d - 1.0d / (1.0d + e));
+		}
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import net.sf.mpaxs.api.job.IJob;
+
+/**
+ * Schedules jobs by descending priority, and jobs of equal priority in
+ * submission order. With aging, the priority of a pending job is raised by one
+ * level per <code>agingMillis</code> of waiting time, so that low priority
+ * jobs are not starved by a steady stream of higher priority jobs.
+ *
+ * Since all pending jobs age at the same rate, the order of two jobs does
+ * not change while they wait and a plain heap suffices.
+ *
+ * @author Nils Hoffmann
+ */
+public class PriorityJobQueuePolicy implements IJobQueuePolicy {
+
+	private final PriorityQueue<Entry> queue = new PriorityQueue<Entry>();
+	private final Map<UUID, Entry> entries = new HashMap<UUID, Entry>();
+	private final long agingMillis;
+	private final long epoch = System.currentTimeMillis();
+	private long sequence = 0;
+
+	/**
+	 * Create a new strict priority policy.
+	 */
+	public PriorityJobQueuePolicy() {
+		this(0);
+	}
+
+	/**
+	 * Create a new priority policy with aging.
+	 *
+	 * @param agingMillis the waiting time in milliseconds per gained priority
+	 *                    level, 0 for strict priority
+	 */
+	public PriorityJobQueuePolicy(long agingMillis) {
+		this.agingMillis = agingMillis;
+	}
+
+	@Override
+	public void add(IJob job) {
+		double rank = job.getPriority();
+		if (agingMillis > 0) {
+			rank -= (double) (System.currentTimeMillis() - epoch) / agingMillis;
+		}
+		Entry e = new Entry(job, rank, sequence++);
+		queue.add(e);
+		entries.put(job.getId(), e);
+	}
+
+	@Override
+	public IJob poll() {
+		Entry e = queue.poll();
+		if (e == null) {
+			return null;
+		}
+		entries.remove(e.job.getId());
+		return e.job;
+	}
+
+	@Override
+	public IJob peek() {
+		Entry e = queue.peek();
+		return e == null ? null : e.job;
+	}
+
+	@Override
+	public boolean remove(IJob job) {
+		Entry e = entries.remove(job.getId());
+		return e != null && queue.remove(e);
+	}
+
+	@Override
+	public int size() {
+		return queue.size();
+	}
+
+	@Override
+	public List<IJob> jobs() {
+		List<IJob> jobs = new ArrayList<IJob>(queue.size());
+		for (Entry e : queue) {
+			jobs.add(e.job);
+		}
+		return jobs;
+	}
+
+	private static final class Entry implements Comparable<Entry> {
+
+		private final IJob job;
+		private final double rank;
+		private final long sequence;
+
+		Entry(IJob job, double rank, long sequence) {
+			this.job = job;
+			this.rank = rank;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(Entry o) {
+			//higher rank first, then submission order
+			int cmp = Double.compare(o.rank, rank);
+			return cmp != 0 ? cmp : Long.compare(sequence, o.sequence);
+		}
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import net.sf.mpaxs.api.job.ResultReference;
+
+/**
+ * Receives job results, which compute hosts transfer separately from their
+ * jobs, into spill files. Chunks are only accepted in order and after their
+ * checksum was verified, so that an interrupted transfer can be resumed at
+ * the number of bytes received so far.
+ *
+ * @author Nils Hoffmann
+ */
+public class ResultStore {
+
+	private final File directory;
+	private final Map<UUID, Transfer> transfers = new ConcurrentHashMap<UUID, Transfer>();
+
+	/**
+	 *
+	 * @param directory the directory for spill files
+	 */
+	public ResultStore(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Start or resume the transfer of a job result. A transfer of a result
+	 * with a different length or checksum is restarted.
+	 *
+	 * @param jobId    the job id
+	 * @param length   the length of the compressed result
+	 * @param checksum the CRC32 checksum of the compressed result
+	 * @return the number of bytes already received
+	 * @throws IOException if the spill file can not be created
+	 */
+	public synchronized long begin(UUID jobId, long length, long checksum) throws IOException {
+		Transfer t = transfers.get(jobId);
+		if (t != null && t.length == length && t.checksum == checksum) {
+			return t.received;
+		}
+		directory.mkdirs();
+		t = new Transfer(new File(directory, jobId + ".deflate"), length, checksum);
+		RandomAccessFile raf = new RandomAccessFile(t.file, "rw");
+		try {
+			raf.setLength(0);
+		} finally {
+			raf.close();
+		}
+		transfers.put(jobId, t);
+		return 0;
+	}
+
+	/**
+	 * Append a chunk to the transfer of a job result.
+	 *
+	 * @param jobId    the job id
+	 * @param offset   the offset of the chunk
+	 * @param chunk    the chunk
+	 * @param checksum the CRC32 checksum of the chunk
+	 * @throws IOException if the chunk is rejected or can not be written
+	 */
+	public void add(UUID jobId, long offset, byte[] chunk, long checksum) throws IOException {
+		Transfer t = transfers.get(jobId);
+		if (t == null) {
+			throw new IOException("No result transfer started for job " + jobId);
+		}
+		synchronized (t) {
+			if (t.discarded) {
+				throw new IOException("Result transfer of job " + jobId + " was discarded");
+			}
+			CRC32 crc = new CRC32();
+			crc.update(chunk);
+			if (crc.getValue() != checksum) {
+				throw new IOException("Checksum mismatch of chunk at offset " + offset + " of job " + jobId);
+			}
+			if (offset != t.received) {
+				throw new IOException("Expected chunk at offset " + t.received + " but got " + offset + " for job " + jobId);
+			}
+			if (t.received + chunk.length > t.length) {
+				throw new IOException("Chunk exceeds result length " + t.length + " of job " + jobId);
+			}
+			RandomAccessFile raf = new RandomAccessFile(t.file, "rw");
+			try {
+				raf.seek(offset);
+				raf.write(chunk);
+			} finally {
+				raf.close();
+			}
+			t.crc.update(chunk);
+			t.received += chunk.length;
+		}
+	}
+
+	/**
+	 * Complete the transfer of a job result. If all bytes were received and
+	 * the checksum matches, the spill file is handed to the reference.
+	 *
+	 * @param ref the result reference sent with the job
+	 * @return true if the transfer is complete, false otherwise
+	 */
+	public boolean complete(ResultReference ref) {
+		Transfer t = transfers.get(ref.getJobId());
+		if (t == null) {
+			return false;
+		}
+		synchronized (t) {
+			if (t.discarded) {
+				return false;
+			}
+			if (t.length != ref.getLength() || t.received != t.length || t.crc.getValue() != ref.getChecksum()) {
+				Logger.getLogger(ResultStore.class.getName()).log(Level.WARNING, "Incomplete result {0}, received {1} bytes", new Object[]{ref, t.received});
+				return false;
+			}
+		}
+		transfers.remove(ref.getJobId(), t);
+		ref.setFile(t.file);
+		return true;
+	}
+
+	/**
+	 * Abort the transfer of a job result, e.g. because the job failed, was
+	 * cancelled or rescheduled, and delete its spill file. Results already
+	 * handed to a reference are not affected.
+	 *
+	 * @param jobId the job id
+	 * @return true if a transfer was aborted, false otherwise
+	 */
+	public boolean discard(UUID jobId) {
+		Transfer t = transfers.remove(jobId);
+		if (t == null) {
+			return false;
+		}
+		synchronized (t) {
+			t.discarded = true;
+			if (!t.file.delete() && t.file.exists()) {
+				t.file.deleteOnExit();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Delete all spill files.
+	 */
+	public void clear() {
+		transfers.clear();
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				if (f.getName().endsWith(".deflate") && !f.delete()) {
+					f.deleteOnExit();
+				}
+			}
+		}
+	}
+
+	private static final class Transfer {
+
+		private final File file;
+		private final long length;
+		private final long checksum;
+		private final CRC32 crc = new CRC32();
+		private long received = 0;
+		private boolean discarded = false;
+
+		Transfer(File file, long length, long checksum) {
+			this.file = file;
+			this.length = length;
+			this.checksum = checksum;
+		}
+	}
+}
@@ -27,11 +27,14 @@
  */
 package net.sf.mpaxs.spi.server;
 
+import java.io.IOException;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.Set;
 import java.util.UUID;
 import net.sf.mpaxs.api.ConfigurationKeys;
 import net.sf.mpaxs.api.job.IJob;
+import net.sf.mpaxs.api.job.ResultReference;
 import net.sf.mpaxs.api.server.IRemoteServer;
 import net.sf.mpaxs.spi.server.settings.Settings;
 
@@ -105,6 +108,20 @@ public class ServerImpl extends UnicastRemoteObject implements IRemoteServer {
         return true;
     }
 
+    /**
+     *
+     * @param authToken
+     * @param id
+     * @param queuedJobs
+     * @return
+     * @throws RemoteException
+     */
+    @Override
+    public boolean heartbeat(UUID authToken, UUID id, int queuedJobs) throws RemoteException {
+        authenticate(authToken);
+        return master.heartbeat(id, queuedJobs);
+    }
+
     /**
      *
      * @param authToken
@@ -114,6 +131,10 @@ public class ServerImpl extends UnicastRemoteObject implements IRemoteServer {
     @Override
     public void addDoneJob(UUID authToken, IJob job) throws RemoteException {
         authenticate(authToken);
+        ResultReference ref = job.getResultReference();
+        if (ref != null && !master.getResultStore().complete(ref)) {
+            throw new RemoteException("Result of job " + job.getId() + " is incomplete!");
+        }
         master.addDoneJob(job);
     }
 
@@ -129,6 +150,58 @@ public class ServerImpl extends UnicastRemoteObject implements IRemoteServer {
         master.jobComputationFailed(job);
     }
 
+    /**
+     *
+     * @param authToken
+     * @param id
+     * @param held
+     * @param released
+     * @throws RemoteException
+     */
+    @Override
+    public void reportResources(UUID authToken, UUID id, Set<String> held, Set<String> released) throws RemoteException {
+        authenticate(authToken);
+        register.updateResources(id, held, released);
+    }
+
+    /**
+     *
+     * @param authToken
+     * @param jobId
+     * @param length
+     * @param checksum
+     * @return
+     * @throws RemoteException
+     */
+    @Override
+    public long beginResult(UUID authToken, UUID jobId, long length, long checksum) throws RemoteException {
+        authenticate(authToken);
+        try {
+            return master.getResultStore().begin(jobId, length, checksum);
+        } catch (IOException ex) {
+            throw new RemoteException("Could not begin result transfer of job " + jobId, ex);
+        }
+    }
+
+    /**
+     *
+     * @param authToken
+     * @param jobId
+     * @param offset
+     * @param chunk
+     * @param checksum
+     * @throws RemoteException
+     */
+    @Override
+    public void addResultChunk(UUID authToken, UUID jobId, long offset, byte[] chunk, long checksum) throws RemoteException {
+        authenticate(authToken);
+        try {
+            master.getResultStore().add(jobId, offset, chunk, checksum);
+        } catch (IOException ex) {
+            throw new RemoteException("Rejected result chunk of job " + jobId, ex);
+        }
+    }
+
 	/**
 	 *
 	 * @param remoteAuthToken
@@ -28,6 +28,8 @@
 package net.sf.mpaxs.spi.server;
 
 import java.io.File;
+import java.net.MalformedURLException;
+import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.util.UUID;
 import java.util.logging.Level;
@@ -46,7 +48,7 @@ import net.sf.mpaxs.spi.server.settings.Settings;
 public class SubmitThread implements Runnable {
 
 	private IJob job;
-	private IComputeHost remRef;
+	private HostRegister register;
 	private Host host;
 	private MasterServer master;
 	private Settings settings = Settings.getInstance();
@@ -55,13 +57,13 @@ public class SubmitThread implements Runnable {
 	/**
 	 *
 	 * @param job
-	 * @param remRef
+	 * @param register the host register providing the remote reference of host
 	 * @param master
 	 * @param host
 	 */
-	public SubmitThread(IJob job, IComputeHost remRef, MasterServer master, Host host) {
+	public SubmitThread(IJob job, HostRegister register, MasterServer master, Host host) {
 		this.job = job;
-		this.remRef = remRef;
+		this.register = register;
 		this.master = master;
 		this.host = host;
 	}
@@ -79,13 +81,19 @@ public class SubmitThread implements Runnable {
 		master.jobChanged(job);
 		try {
 			reporter.report("Running job on remote host");
-			remRef.runJob(UUID.fromString(settings.getString(ConfigurationKeys.KEY_AUTH_TOKEN)), job);
-		} catch (RemoteException ex) {
+			register.call(host, new HostRegister.RemoteCall<Void>() {
+				@Override
+				public Void call(IComputeHost remRef) throws RemoteException {
+					remRef.runJob(UUID.fromString(settings.getString(ConfigurationKeys.KEY_AUTH_TOKEN)), job);
+					return null;
+				}
+			});
+		} catch (RemoteException | NotBoundException | MalformedURLException ex) {
 			reporter.report("Error during computation of job! Maybe the ComputeHost is down.");
 			reporter.report(ex.getLocalizedMessage());
 			master.removeHost(host.getId());
 			job.errorOccurred();
-			master.submitJob(job);
+			master.requeueJob(job);
 			EventLogger.getInstance().getLogger().log(Level.SEVERE, null, ex);
 			/* All errors must be caught! If not, a poorly programmed run method in a job
 			 * could crash the whole server!
@@ -95,6 +103,7 @@ public class SubmitThread implements Runnable {
 				reporter.report("Error during computation of job! Maybe run Method is not OK? Trying again.");
 				reporter.report(ex.getLocalizedMessage());
 				job.errorOccurred();
+				master.getResultStore().discard(job.getId());
 				master.submitJob(job);
 			} else {
 				reporter.report("A job has caused more than " + settings.getMaxErrorsPerJob() + " Errors. Job status changed to ERROR");
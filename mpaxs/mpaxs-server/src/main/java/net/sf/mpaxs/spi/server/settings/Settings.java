@@ -36,7 +36,9 @@ import java.io.InputStreamReader;
 import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.UnknownHostException;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.sf.mpaxs.api.ConfigurationKeys;
@@ -74,6 +76,22 @@ public class Settings {
 	private static final int DEFAULT_MAX_ERROR_PER_JOB = 3;
 	private static final int DEFAULT_MAX_JOBS_PER_HOST = 5;
 	private static final int DEFAULT_MAX_NUMBER_OF_CHOSTS = 1;
+	private static final int DEFAULT_MIN_NUMBER_OF_CHOSTS = 0;
+	private static final int DEFAULT_HOST_LAUNCH_BATCH_SIZE = 4;
+	private static final long DEFAULT_HOST_LAUNCH_TIMEOUT = 120000;
+	private static final long DEFAULT_HOST_IDLE_TIMEOUT = 60000;
+	private static final long DEFAULT_SCALING_INTERVAL = 1000;
+	private static final int DEFAULT_RUN_QUEUE_LENGTH = 1;
+	private static final String DEFAULT_JOB_QUEUE_POLICY = "PRIORITY";
+	private static final long DEFAULT_LOCALITY_WAIT = 3000;
+	private static final long DEFAULT_HEARTBEAT_INTERVAL = 1000;
+	private static final double DEFAULT_FAILURE_THRESHOLD = 8.0d;
+	private static final String DEFAULT_TRANSPORT = "RMI";
+	private static final int DEFAULT_RESULT_TRANSFER_THRESHOLD = 4194304;
+	private static final int DEFAULT_RESULT_CHUNK_SIZE = 1048576;
+	private static final String DEFAULT_TRANSPORT_CODEC = "net.sf.mpaxs.spi.transport.CompactCodec";
+	private static final int DEFAULT_TRANSPORT_MAX_FRAME_LENGTH = 67108864;
+	private static final long DEFAULT_TRANSPORT_CALL_TIMEOUT = 300000;
 	//path to configfiles
 	private static String[] CONFIG_FILES = {};//"./config.txt"
 	//instance of settings
@@ -230,6 +248,60 @@ public class Settings {
 		return maxChosts;
 	}
 
+	/**
+	 * Returns the number of compute hosts kept running, even if they are
+	 * idle. Never exceeds the maximum number of compute hosts.
+	 *
+	 * @return the minimum number of compute hosts
+	 */
+	public int getMinNumberOfChosts() {
+		int ret = config.getInt(ConfigurationKeys.KEY_MIN_NUMBER_OF_CHOSTS, DEFAULT_MIN_NUMBER_OF_CHOSTS);
+		return Math.min(Math.max(0, ret), getMaxNumberOfChosts());
+	}
+
+	/**
+	 * Returns the maximum number of compute hosts launched in one scaling
+	 * round.
+	 *
+	 * @return the host launch batch size
+	 */
+	public int getHostLaunchBatchSize() {
+		int ret = config.getInt(ConfigurationKeys.KEY_HOST_LAUNCH_BATCH_SIZE, DEFAULT_HOST_LAUNCH_BATCH_SIZE);
+		return ret > 0 ? ret : DEFAULT_HOST_LAUNCH_BATCH_SIZE;
+	}
+
+	/**
+	 * Returns the time in milliseconds a launched compute host has to
+	 * register, before it is no longer counted as starting.
+	 *
+	 * @return the host launch timeout
+	 */
+	public long getHostLaunchTimeout() {
+		long ret = config.getLong(ConfigurationKeys.KEY_HOST_LAUNCH_TIMEOUT, DEFAULT_HOST_LAUNCH_TIMEOUT);
+		return ret > 0 ? ret : DEFAULT_HOST_LAUNCH_TIMEOUT;
+	}
+
+	/**
+	 * Returns the time in milliseconds a compute host may stay idle, before
+	 * it is retired.
+	 *
+	 * @return the host idle timeout, 0 to keep idle hosts
+	 */
+	public long getHostIdleTimeout() {
+		return Math.max(0L, config.getLong(ConfigurationKeys.KEY_HOST_IDLE_TIMEOUT, DEFAULT_HOST_IDLE_TIMEOUT));
+	}
+
+	/**
+	 * Returns the interval in milliseconds, in which the number of compute
+	 * hosts is adjusted to the pending jobs.
+	 *
+	 * @return the scaling interval
+	 */
+	public long getScalingInterval() {
+		long ret = config.getLong(ConfigurationKeys.KEY_SCALING_INTERVAL, DEFAULT_SCALING_INTERVAL);
+		return ret > 0 ? ret : DEFAULT_SCALING_INTERVAL;
+	}
+
 	/**
 	 *
 	 * @return
@@ -243,6 +315,16 @@ public class Settings {
 		}
 	}
 
+	/**
+	 * Returns the number of jobs dispatched to a compute host in addition to
+	 * its cores.
+	 *
+	 * @return the run queue length, 0 to dispatch at most one job per core
+	 */
+	public int getRunQueueLength() {
+		return Math.max(0, config.getInt(ConfigurationKeys.KEY_RUN_QUEUE_LENGTH, DEFAULT_RUN_QUEUE_LENGTH));
+	}
+
 	/**
 	 *
 	 * @return
@@ -423,6 +505,143 @@ public class Settings {
 		}
 	}
 
+	/**
+	 * Returns the job queue policy, either <code>PRIORITY</code> or
+	 * <code>FAIR_SHARE</code>.
+	 *
+	 * @return the job queue policy name
+	 */
+	public String getJobQueuePolicy() {
+		String ret = getString(ConfigurationKeys.KEY_JOB_QUEUE_POLICY);
+		if (ret == null || ret.isEmpty()) {
+			return DEFAULT_JOB_QUEUE_POLICY;
+		}
+		return ret.trim().toUpperCase();
+	}
+
+	/**
+	 * Returns the waiting time in milliseconds, after which a pending job has
+	 * gained one priority level.
+	 *
+	 * @return the aging time, 0 if aging is disabled
+	 */
+	public long getJobQueueAging() {
+		return Math.max(0L, config.getLong(ConfigurationKeys.KEY_JOB_QUEUE_AGING, 0L));
+	}
+
+	/**
+	 * Returns the fair share weights of job groups, configured as a list of
+	 * <code>group=weight</code> entries.
+	 *
+	 * @return the weights of job groups
+	 */
+	public Map<String, Double> getJobQueueWeights() {
+		Map<String, Double> weights = new HashMap<String, Double>();
+		for (String entry : config.getStringArray(ConfigurationKeys.KEY_JOB_QUEUE_WEIGHTS)) {
+			int idx = entry.lastIndexOf('=');
+			try {
+				weights.put(entry.substring(0, idx).trim(), Double.valueOf(entry.substring(idx + 1).trim()));
+			} catch (RuntimeException ex) {
+				Logger.getLogger(Settings.class.getName()).
+					log(Level.WARNING, "Ignoring malformed job queue weight {0}", entry);
+			}
+		}
+		return weights;
+	}
+
+	/**
+	 * Returns the maximum time in milliseconds, that a job waits for a
+	 * compute host holding more of its input resources.
+	 *
+	 * @return the locality wait, 0 if jobs do not wait
+	 */
+	public long getLocalityWait() {
+		return Math.max(0L, config.getLong(ConfigurationKeys.KEY_LOCALITY_WAIT, DEFAULT_LOCALITY_WAIT));
+	}
+
+	/**
+	 * Returns the interval in milliseconds between heartbeats of compute
+	 * hosts.
+	 *
+	 * @return the heartbeat interval
+	 */
+	public long getHeartbeatInterval() {
+		long ret = config.getLong(ConfigurationKeys.KEY_HEARTBEAT_INTERVAL, DEFAULT_HEARTBEAT_INTERVAL);
+		return ret > 0 ? ret : DEFAULT_HEARTBEAT_INTERVAL;
+	}
+
+	/**
+	 * Returns the suspicion level, above which a compute host is declared
+	 * dead.
+	 *
+	 * @return the failure threshold
+	 */
+	public double getFailureThreshold() {
+		double ret = config.getDouble(ConfigurationKeys.KEY_FAILURE_THRESHOLD, DEFAULT_FAILURE_THRESHOLD);
+		return ret > 0 ? ret : DEFAULT_FAILURE_THRESHOLD;
+	}
+
+	/**
+	 * Returns the serialized size in bytes, above which compute hosts
+	 * transfer job results separately from their jobs.
+	 *
+	 * @return the result transfer threshold
+	 */
+	public int getResultTransferThreshold() {
+		int ret = config.getInt(ConfigurationKeys.KEY_RESULT_TRANSFER_THRESHOLD, DEFAULT_RESULT_TRANSFER_THRESHOLD);
+		return ret > 0 ? ret : DEFAULT_RESULT_TRANSFER_THRESHOLD;
+	}
+
+	/**
+	 * Returns the size in bytes of the chunks, in which large job results
+	 * are transferred.
+	 *
+	 * @return the result chunk size
+	 */
+	public int getResultChunkSize() {
+		int ret = config.getInt(ConfigurationKeys.KEY_RESULT_CHUNK_SIZE, DEFAULT_RESULT_CHUNK_SIZE);
+		return ret > 0 ? ret : DEFAULT_RESULT_CHUNK_SIZE;
+	}
+
+	/**
+	 * Returns the name of the transport used between master server and
+	 * compute hosts.
+	 *
+	 * @return the transport name
+	 */
+	public String getTransport() {
+		return config.getString(ConfigurationKeys.KEY_TRANSPORT, DEFAULT_TRANSPORT);
+	}
+
+	/**
+	 * Returns the class name of the codec used by transports other than RMI.
+	 *
+	 * @return the codec class name
+	 */
+	public String getTransportCodec() {
+		return config.getString(ConfigurationKeys.KEY_TRANSPORT_CODEC, DEFAULT_TRANSPORT_CODEC);
+	}
+
+	/**
+	 * Returns the maximum length in bytes of frames of the NIO transport.
+	 *
+	 * @return the maximum frame length
+	 */
+	public int getTransportMaxFrameLength() {
+		int ret = config.getInt(ConfigurationKeys.KEY_TRANSPORT_MAX_FRAME_LENGTH, DEFAULT_TRANSPORT_MAX_FRAME_LENGTH);
+		return ret > 0 ? ret : DEFAULT_TRANSPORT_MAX_FRAME_LENGTH;
+	}
+
+	/**
+	 * Returns the time in milliseconds a call over the NIO transport waits
+	 * for its reply.
+	 *
+	 * @return the call timeout, 0 to wait indefinitely
+	 */
+	public long getTransportCallTimeout() {
+		return Math.max(0L, config.getLong(ConfigurationKeys.KEY_TRANSPORT_CALL_TIMEOUT, DEFAULT_TRANSPORT_CALL_TIMEOUT));
+	}
+
 	/**
 	 *
 	 * @return
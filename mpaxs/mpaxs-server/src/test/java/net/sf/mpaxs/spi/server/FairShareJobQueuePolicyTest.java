@@ -0,0 +1,92 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.server;
+
+import java.util.HashMap;
+import java.util.Map;
+import net.sf.mpaxs.api.job.IJob;
+import org.junit.Assert;
+import org.junit.Test;
+import static net.sf.mpaxs.spi.server.PriorityJobQueuePolicyTest.job;
+
+/**
+ * Tests for {@link FairShareJobQueuePolicy}.
+ *
+ * @author Nils Hoffmann
+ */
+public class FairShareJobQueuePolicyTest {
+
+	/**
+	 * Groups with pending jobs are served in proportion to their weights.
+	 */
+	@Test
+	public void testWeightedShares() {
+		Map<String, Double> weights = new HashMap<String, Double>();
+		weights.put("a", 2.0d);
+		FairShareJobQueuePolicy policy = new FairShareJobQueuePolicy(weights, 0);
+		for (int i = 0; i < 6; i++) {
+			policy.add(job(0, "a"));
+			policy.add(job(0, "b"));
+		}
+		Assert.assertEquals(12, policy.size());
+		int a = 0;
+		for (int i = 0; i < 6; i++) {
+			if ("a".equals(policy.poll().getGroup())) {
+				a++;
+			}
+		}
+		Assert.assertEquals(4, a);
+		Assert.assertEquals(6, policy.size());
+	}
+
+	/**
+	 * A group submitting alongside a large batch is served next, instead of
+	 * after the whole batch, while the order within a group is by priority.
+	 */
+	@Test
+	public void testLateGroupIsServedNext() {
+		Map<String, Double> weights = new HashMap<String, Double>();
+		weights.put("interactive", 2.0d);
+		MyConcurrentLinkedJobQueue queue = new MyConcurrentLinkedJobQueue(new FairShareJobQueuePolicy(weights, 0));
+		for (int i = 0; i < 10; i++) {
+			queue.offer(job(0, "batch"));
+		}
+		Assert.assertEquals("batch", queue.poll().getGroup());
+		IJob low = job(0, "interactive");
+		IJob high = job(1, "interactive");
+		Assert.assertTrue(queue.offer(low));
+		Assert.assertTrue(queue.offer(high));
+		Assert.assertFalse(queue.offer(high));
+		Assert.assertSame(high, queue.peek());
+		Assert.assertSame(high, queue.poll());
+		Assert.assertSame(low, queue.poll());
+		Assert.assertFalse(queue.containsJobWithID(low.getId()));
+		Assert.assertEquals("batch", queue.peek().getGroup());
+		Assert.assertEquals(9, queue.size());
+	}
+}
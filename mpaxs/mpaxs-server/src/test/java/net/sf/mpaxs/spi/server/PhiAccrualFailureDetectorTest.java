@@ -0,0 +1,103 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.server;
+
+import java.util.UUID;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PhiAccrualFailureDetector}, using fake heartbeat times.
+ *
+ * @author Nils Hoffmann
+ */
+public class PhiAccrualFailureDetectorTest {
+
+	private static long beat(PhiAccrualFailureDetector detector, UUID host, long start, long interval, int beats) {
+		long now = start;
+		for (int i = 0; i < beats; i++) {
+			detector.heartbeat(host, now);
+			now += interval;
+		}
+		return now - interval;
+	}
+
+	/**
+	 * The suspicion level of a host with regular heartbeats stays low within
+	 * the interval and rises steadily once heartbeats stop.
+	 */
+	@Test
+	public void testPhiRisesAfterMissedHeartbeats() {
+		PhiAccrualFailureDetector detector = new PhiAccrualFailureDetector(1000, 0);
+		UUID host = UUID.randomUUID();
+		Assert.assertEquals(0.0d, detector.phi(host, 0), 0.0d);
+		long last = beat(detector, host, 0, 1000, 20);
+		Assert.assertTrue(detector.getMonitoredHosts().contains(host));
+		Assert.assertTrue(detector.phi(host, last + 500) < 1.0d);
+		Assert.assertTrue(detector.phi(host, last + 1000) < 1.0d);
+		double previous = 0.0d;
+		for (long delay = 1000; delay <= 3000; delay += 100) {
+			double phi = detector.phi(host, last + delay);
+			Assert.assertTrue(phi >= previous);
+			previous = phi;
+		}
+		Assert.assertTrue(detector.phi(host, last + 3000) > 8.0d);
+		detector.remove(host);
+		Assert.assertFalse(detector.getMonitoredHosts().contains(host));
+		Assert.assertEquals(0.0d, detector.phi(host, last + 3000), 0.0d);
+	}
+
+	/**
+	 * A slow but regular host is not suspected after a delay, which declares
+	 * a fast host dead.
+	 */
+	@Test
+	public void testAdaptsToObservedIntervals() {
+		PhiAccrualFailureDetector detector = new PhiAccrualFailureDetector(1000, 0);
+		UUID fast = UUID.randomUUID();
+		UUID slow = UUID.randomUUID();
+		long lastFast = beat(detector, fast, 0, 1000, 21);
+		long lastSlow = beat(detector, slow, 0, 5000, 21);
+		Assert.assertTrue(detector.phi(fast, lastFast + 5000) > 8.0d);
+		Assert.assertTrue(detector.phi(slow, lastSlow + 5000) < 1.0d);
+	}
+
+	/**
+	 * The acceptable pause delays the rise of the suspicion level.
+	 */
+	@Test
+	public void testAcceptablePause() {
+		PhiAccrualFailureDetector strict = new PhiAccrualFailureDetector(1000, 0);
+		PhiAccrualFailureDetector tolerant = new PhiAccrualFailureDetector(1000, 2000);
+		UUID host = UUID.randomUUID();
+		long last = beat(strict, host, 0, 1000, 20);
+		beat(tolerant, host, 0, 1000, 20);
+		Assert.assertTrue(strict.phi(host, last + 2500) > 8.0d);
+		Assert.assertTrue(tolerant.phi(host, last + 2500) < 1.0d);
+	}
+}
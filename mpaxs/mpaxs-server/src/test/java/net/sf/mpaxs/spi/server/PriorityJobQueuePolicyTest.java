@@ -0,0 +1,100 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.server;
+
+import net.sf.mpaxs.api.job.IJob;
+import net.sf.mpaxs.api.job.Job;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PriorityJobQueuePolicy}.
+ *
+ * @author Nils Hoffmann
+ */
+public class PriorityJobQueuePolicyTest {
+
+	static IJob job(int priority, String group) {
+		IJob job = new Job();
+		job.setPriority(priority);
+		job.setGroup(group);
+		return job;
+	}
+
+	/**
+	 * Jobs are retrieved by descending priority, jobs of equal priority in
+	 * submission order.
+	 */
+	@Test
+	public void testPriorityOrder() {
+		PriorityJobQueuePolicy policy = new PriorityJobQueuePolicy();
+		IJob low = job(0, null);
+		IJob first = job(5, null);
+		IJob second = job(5, null);
+		IJob high = job(9, null);
+		policy.add(low);
+		policy.add(first);
+		policy.add(second);
+		policy.add(high);
+		Assert.assertEquals(4, policy.size());
+		Assert.assertSame(high, policy.peek());
+		Assert.assertSame(high, policy.poll());
+		Assert.assertSame(first, policy.poll());
+		Assert.assertTrue(policy.remove(second));
+		Assert.assertFalse(policy.remove(second));
+		Assert.assertSame(low, policy.peek());
+		Assert.assertSame(low, policy.poll());
+		Assert.assertNull(policy.peek());
+		Assert.assertNull(policy.poll());
+		Assert.assertEquals(0, policy.size());
+	}
+
+	/**
+	 * With aging, a low priority job overtakes higher priority jobs submitted
+	 * after it has waited for more than the priority difference in aging steps.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testAging() throws Exception {
+		PriorityJobQueuePolicy aging = new PriorityJobQueuePolicy(1);
+		PriorityJobQueuePolicy strict = new PriorityJobQueuePolicy();
+		IJob low = job(0, null);
+		aging.add(low);
+		strict.add(low);
+		//wait for more than 5 aging steps of 1 millisecond
+		Thread.sleep(50);
+		IJob high = job(5, null);
+		aging.add(high);
+		strict.add(high);
+		Assert.assertSame(low, aging.poll());
+		Assert.assertSame(high, aging.poll());
+		Assert.assertSame(high, strict.poll());
+		Assert.assertSame(low, strict.poll());
+	}
+}
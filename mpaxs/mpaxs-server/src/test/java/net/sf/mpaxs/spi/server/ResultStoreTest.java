@@ -0,0 +1,165 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import net.sf.mpaxs.api.job.ResultReference;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link ResultStore}.
+ *
+ * @author Nils Hoffmann
+ */
+public class ResultStoreTest {
+
+	@Rule
+	public TemporaryFolder tf = new TemporaryFolder();
+
+	private static long crc(byte[] bytes) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		return crc.getValue();
+	}
+
+	private static byte[] result() {
+		byte[] bytes = new byte[1000];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) (i * 31);
+		}
+		return bytes;
+	}
+
+	/**
+	 * An interrupted transfer is resumed at the number of bytes received so
+	 * far and completes with the full result.
+	 */
+	@Test
+	public void testResumeAtOffset() throws IOException {
+		ResultStore store = new ResultStore(tf.newFolder("results"));
+		UUID jobId = UUID.randomUUID();
+		byte[] result = result();
+		byte[] first = Arrays.copyOfRange(result, 0, 400);
+		byte[] second = Arrays.copyOfRange(result, 400, result.length);
+		Assert.assertEquals(0L, store.begin(jobId, result.length, crc(result)));
+		store.add(jobId, 0, first, crc(first));
+		//the host reconnects and resumes the transfer
+		Assert.assertEquals(400L, store.begin(jobId, result.length, crc(result)));
+		store.add(jobId, 400, second, crc(second));
+		ResultReference ref = new ResultReference(jobId, result.length, crc(result));
+		Assert.assertTrue(store.complete(ref));
+		Assert.assertArrayEquals(result, Files.readAllBytes(ref.getFile().toPath()));
+		//a different result restarts the transfer
+		UUID other = UUID.randomUUID();
+		store.begin(other, result.length, crc(result));
+		store.add(other, 0, first, crc(first));
+		Assert.assertEquals(0L, store.begin(other, first.length, crc(first)));
+	}
+
+	/**
+	 * Chunks with a wrong checksum or offset are rejected without changing
+	 * the transfer, and a result with a wrong total checksum is not
+	 * completed.
+	 */
+	@Test
+	public void testChecksumRejection() throws IOException {
+		ResultStore store = new ResultStore(tf.newFolder("results"));
+		UUID jobId = UUID.randomUUID();
+		byte[] result = result();
+		byte[] first = Arrays.copyOfRange(result, 0, 400);
+		byte[] second = Arrays.copyOfRange(result, 400, result.length);
+		store.begin(jobId, result.length, crc(result));
+		try {
+			store.add(jobId, 0, first, crc(first) ^ 1L);
+			Assert.fail("Expected checksum mismatch");
+		} catch (IOException ex) {
+			//expected
+		}
+		Assert.assertEquals(0L, store.begin(jobId, result.length, crc(result)));
+		store.add(jobId, 0, first, crc(first));
+		try {
+			store.add(jobId, 500, second, crc(second));
+			Assert.fail("Expected offset mismatch");
+		} catch (IOException ex) {
+			//expected
+		}
+		Assert.assertEquals(400L, store.begin(jobId, result.length, crc(result)));
+		Assert.assertFalse(store.complete(new ResultReference(jobId, result.length, crc(result))));
+		store.add(jobId, 400, second, crc(second));
+		Assert.assertFalse(store.complete(new ResultReference(jobId, result.length, crc(result) ^ 1L)));
+		try {
+			store.add(UUID.randomUUID(), 0, first, crc(first));
+			Assert.fail("Expected unknown transfer");
+		} catch (IOException ex) {
+			//expected
+		}
+	}
+
+	/**
+	 * A discarded transfer deletes its spill file and rejects further
+	 * chunks, while completed results are kept.
+	 */
+	@Test
+	public void testDiscard() throws IOException {
+		File dir = tf.newFolder("results");
+		ResultStore store = new ResultStore(dir);
+		UUID jobId = UUID.randomUUID();
+		byte[] result = result();
+		byte[] first = Arrays.copyOfRange(result, 0, 400);
+		store.begin(jobId, result.length, crc(result));
+		store.add(jobId, 0, first, crc(first));
+		File spill = new File(dir, jobId + ".deflate");
+		Assert.assertTrue(spill.exists());
+		Assert.assertTrue(store.discard(jobId));
+		Assert.assertFalse(spill.exists());
+		Assert.assertFalse(store.discard(jobId));
+		try {
+			store.add(jobId, 400, first, crc(first));
+			Assert.fail("Expected discarded transfer");
+		} catch (IOException ex) {
+			//expected
+		}
+		UUID done = UUID.randomUUID();
+		store.begin(done, result.length, crc(result));
+		store.add(done, 0, result, crc(result));
+		ResultReference ref = new ResultReference(done, result.length, crc(result));
+		Assert.assertTrue(store.complete(ref));
+		Assert.assertFalse(store.discard(done));
+		Assert.assertTrue(ref.getFile().exists());
+		ref.delete();
+		Assert.assertFalse(ref.getFile().exists());
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.concurrent;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Admits tasks for local execution as long as the sum of their estimated
+ * working sets stays within a heap budget. Tasks that do not fit are held
+ * back in {@link #admit(java.util.concurrent.Callable)} until enough running
+ * tasks have finished. A task is always admitted if no other task is
+ * running, so that tasks larger than the budget still make progress.
+ *
+ * The thread pool of a completion service may thus be sized for the number
+ * of cores, while memory hungry tasks on large inputs are throttled
+ * automatically.
+ *
+ * After a task has finished, the estimator observes the growth of the heap
+ * retained after garbage collection during the lifetime of the task, shared
+ * by all tasks running at that time, as a proxy for its working set. Bytes
+ * allocated by a task are not observed, since most of them are garbage.
+ *
+ * @author Nils Hoffmann
+ * @param <T> the result type of the tasks
+ */
+public class AdmissionController<T> {
+
+	private final long budget;
+	private final IMemoryEstimator<T> estimator;
+	private long inUse = 0;
+	private int running = 0;
+
+	/**
+	 * Create a new admission controller.
+	 *
+	 * @param budget    the heap budget in bytes
+	 * @param estimator the memory estimator for tasks
+	 */
+	public AdmissionController(long budget, IMemoryEstimator<T> estimator) {
+		if (budget <= 0) {
+			throw new IllegalArgumentException("Budget must be positive!");
+		}
+		this.budget = budget;
+		this.estimator = estimator;
+	}
+
+	/**
+	 * Returns the given fraction of the maximum heap size.
+	 *
+	 * @param fraction the fraction in (0,1]
+	 * @return the budget in bytes
+	 */
+	public static long heapBudget(double fraction) {
+		return (long) (Runtime.getRuntime().maxMemory() * Math.max(0.0d, Math.min(1.0d, fraction)));
+	}
+
+	/**
+	 * Returns the heap budget.
+	 *
+	 * @return the budget in bytes
+	 */
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Returns the estimated number of bytes used by admitted tasks.
+	 *
+	 * @return the bytes in use
+	 */
+	public synchronized long getInUse() {
+		return inUse;
+	}
+
+	/**
+	 * Blocks until the task fits into the budget and returns a task that
+	 * releases its share of the budget when it has finished.
+	 *
+	 * @param task the task
+	 * @return the admitted task
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public Callable<T> admit(final Callable<T> task) throws InterruptedException {
+		final long estimate = Math.max(0, estimator.estimate(task));
+		synchronized (this) {
+			while (running > 0 && inUse + estimate > budget) {
+				if (Logger.getLogger(AdmissionController.class.getName()).isLoggable(Level.FINE)) {
+					Logger.getLogger(AdmissionController.class.getName()).log(Level.FINE,
+						"Holding back task requiring {0} bytes, {1} of {2} bytes in use by {3} tasks",
+						new Object[]{estimate, inUse, budget, running});
+				}
+				wait();
+			}
+			inUse += estimate;
+			running++;
+		}
+		return new Callable<T>() {
+
+			@Override
+			public T call() throws Exception {
+				long collections = collectionCount();
+				long retained = retainedHeap();
+				try {
+					return task.call();
+				} finally {
+					long observed = -1;
+					if (retained >= 0 && collectionCount() != collections) {
+						long growth = retainedHeap() - retained;
+						if (growth > 0) {
+							observed = growth / Math.max(1, getRunning());
+						}
+					}
+					release(estimate);
+					estimator.observe(task, estimate, observed);
+				}
+			}
+		};
+	}
+
+	private synchronized void release(long estimate) {
+		inUse -= estimate;
+		running--;
+		notifyAll();
+	}
+
+	private synchronized int getRunning() {
+		return running;
+	}
+
+	private static long collectionCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static long retainedHeap() {
+		long used = -1;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				MemoryUsage usage = pool.getCollectionUsage();
+				if (usage != null) {
+					used = Math.max(0, used) + usage.getUsed();
+				}
+			}
+		}
+		return used;
+	}
+}
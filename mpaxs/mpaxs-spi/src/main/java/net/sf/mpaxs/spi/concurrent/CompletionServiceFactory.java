@@ -28,7 +28,6 @@
 package net.sf.mpaxs.spi.concurrent;
 
 import java.io.Serializable;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import net.sf.mpaxs.api.ICompletionService;
 
@@ -44,6 +43,13 @@ public class CompletionServiceFactory<T extends Serializable> {
 	private TimeUnit timeUnit = TimeUnit.SECONDS;
 	private boolean blockingWait = false;
 	private int maxThreads = 1;
+	private int maxConcurrency = 0;
+	private ExecutionMode executionMode = ExecutionMode.FIXED;
+	private long memoryBudget = 0;
+	private IMemoryEstimator<T> memoryEstimator = null;
+	private ITaskDecorator taskDecorator = null;
+	private String jobGroup = "";
+	private int jobPriority = 0;
 
 	/**
 	 * Get the time out when non-blocking waiting is used.
@@ -117,24 +123,157 @@ public class CompletionServiceFactory<T extends Serializable> {
 		this.maxThreads = maxThreads;
 	}
 
+	/**
+	 * Get the maximum number of concurrently running tasks for local
+	 * execution in {@link ExecutionMode#VIRTUAL} and {@link ExecutionMode#MIXED}.
+	 *
+	 * @return the maximum number of concurrent tasks, 0 if unbounded
+	 */
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	/**
+	 * Set the maximum number of concurrently running tasks for local
+	 * execution in {@link ExecutionMode#VIRTUAL} and {@link ExecutionMode#MIXED}.
+	 *
+	 * @param maxConcurrency the maximum number of concurrent tasks, 0 if unbounded
+	 */
+	public void setMaxConcurrency(int maxConcurrency) {
+		this.maxConcurrency = maxConcurrency;
+	}
+
+	/**
+	 * Get the execution mode for local execution.
+	 *
+	 * @return the execution mode
+	 */
+	public ExecutionMode getExecutionMode() {
+		return executionMode;
+	}
+
+	/**
+	 * Set the execution mode for local execution.
+	 *
+	 * @param executionMode the execution mode
+	 */
+	public void setExecutionMode(ExecutionMode executionMode) {
+		this.executionMode = executionMode;
+	}
+
+	/**
+	 * Get the heap budget for tasks of local completion services.
+	 *
+	 * @return the heap budget in bytes, 0 if admission control is disabled
+	 */
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * Set the heap budget for tasks of local completion services. Admission
+	 * control is enabled, if the budget is positive and a memory estimator
+	 * has been set.
+	 *
+	 * @param memoryBudget the heap budget in bytes
+	 * @see AdmissionController#heapBudget(double)
+	 */
+	public void setMemoryBudget(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Get the memory estimator for tasks of local completion services.
+	 *
+	 * @return the memory estimator, or null
+	 */
+	public IMemoryEstimator<T> getMemoryEstimator() {
+		return memoryEstimator;
+	}
+
+	/**
+	 * Set the memory estimator for tasks of local completion services.
+	 *
+	 * @param memoryEstimator the memory estimator
+	 */
+	public void setMemoryEstimator(IMemoryEstimator<T> memoryEstimator) {
+		this.memoryEstimator = memoryEstimator;
+	}
+
+	/**
+	 * Get the group of jobs submitted by distributed completion services.
+	 *
+	 * @return the job group
+	 */
+	public ITaskDecorator getTaskDecorator() {
+		return taskDecorator;
+	}
+
+	public void setTaskDecorator(ITaskDecorator taskDecorator) {
+		this.taskDecorator = taskDecorator;
+	}
+
+	public String getJobGroup() {
+		return jobGroup;
+	}
+
+	/**
+	 * Set the group of jobs submitted by distributed completion services,
+	 * e.g. the submitting client or workflow. Fair share queue policies of
+	 * the master server divide the compute hosts between job groups.
+	 *
+	 * @param jobGroup the job group
+	 */
+	public void setJobGroup(String jobGroup) {
+		this.jobGroup = jobGroup;
+	}
+
+	/**
+	 * Get the priority of jobs submitted by distributed completion services.
+	 *
+	 * @return the job priority
+	 */
+	public int getJobPriority() {
+		return jobPriority;
+	}
+
+	/**
+	 * Set the priority of jobs submitted by distributed completion services.
+	 *
+	 * @param jobPriority the job priority
+	 */
+	public void setJobPriority(int jobPriority) {
+		this.jobPriority = jobPriority;
+	}
+
 	/**
 	 * Creates a new local completion service.
 	 *
-	 * @return a new mpaxs completion service with thread pool of size <code>maxThreads</code>.
+	 * @return a new mpaxs completion service with an executor service created by the
+	 *         <code>executionMode</code> for <code>maxThreads</code> and <code>maxConcurrency</code>,
+	 *         using an {@link AdmissionController} if a memory budget and estimator have been set.
 	 */
 	public MpaxsCompletionService<T> newLocalCompletionService() {
-		MpaxsCompletionService<T> mcs = new MpaxsCompletionService<T>(Executors.newFixedThreadPool(maxThreads),
+		MpaxsCompletionService<T> mcs = new MpaxsCompletionService<T>(executionMode.newExecutorService(maxThreads, maxConcurrency),
 			timeOut, timeUnit, blockingWait);
+		if (memoryBudget > 0 && memoryEstimator != null) {
+			mcs.setAdmissionController(new AdmissionController<T>(memoryBudget, memoryEstimator));
+		}
+		mcs.setTaskDecorator(taskDecorator);
 		return mcs;
 	}
 
 	/**
 	 * Creates a new distributed completion service.
 	 *
-	 * @return a new mpaxs completion service backed by a {@link MpaxsExecutorService}.
+	 * @return a new mpaxs completion service backed by a {@link MpaxsExecutorService},
+	 *         submitting jobs with <code>jobGroup</code> and <code>jobPriority</code>.
 	 */
 	public MpaxsCompletionService<T> newDistributedCompletionService() {
-		MpaxsCompletionService<T> mcs = new MpaxsCompletionService<T>(new MpaxsExecutorService(),
+		MpaxsExecutorService mes = new MpaxsExecutorService();
+		mes.setGroup(jobGroup);
+		mes.setPriority(jobPriority);
+		MpaxsCompletionService<T> mcs = new MpaxsCompletionService<T>(mes,
 			timeOut, timeUnit, blockingWait);
 		return mcs;
 	}
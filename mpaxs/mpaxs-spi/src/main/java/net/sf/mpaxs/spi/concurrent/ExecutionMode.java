@@ -0,0 +1,100 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.concurrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Execution strategies for local completion services.
+ *
+ * @author Nils Hoffmann
+ * @see CompletionServiceFactory#setExecutionMode(net.sf.mpaxs.spi.concurrent.ExecutionMode)
+ */
+public enum ExecutionMode {
+
+	/**
+	 * A fixed pool of <code>maxThreads</code> platform threads.
+	 */
+	FIXED {
+		@Override
+		public ExecutorService newExecutorService(int maxThreads, int maxConcurrency) {
+			return Executors.newFixedThreadPool(Math.max(1, maxThreads));
+		}
+	},
+	/**
+	 * A work-stealing {@link ForkJoinPool} with a parallelism of
+	 * <code>maxThreads</code>. Tasks may fork nested subtasks, which are
+	 * executed by idle workers of the same pool.
+	 */
+	WORK_STEALING {
+		@Override
+		public ExecutorService newExecutorService(int maxThreads, int maxConcurrency) {
+			return new ForkJoinPool(Math.max(1, maxThreads));
+		}
+	},
+	/**
+	 * One virtual thread per task, for I/O-heavy tasks. At most
+	 * <code>maxConcurrency</code> tasks run concurrently, if positive.
+	 */
+	VIRTUAL {
+		@Override
+		public ExecutorService newExecutorService(int maxThreads, int maxConcurrency) {
+			if (maxConcurrency > 0) {
+				return new MixedExecutorService(0, maxConcurrency);
+			}
+			return Executors.newVirtualThreadPerTaskExecutor();
+		}
+	},
+	/**
+	 * One virtual thread per task with at most <code>maxConcurrency</code>
+	 * concurrently running tasks, of which at most <code>maxThreads</code>
+	 * may be within a compute section at the same time.
+	 *
+	 * @see MixedExecutorService#compute(java.util.concurrent.Callable)
+	 */
+	MIXED {
+		@Override
+		public ExecutorService newExecutorService(int maxThreads, int maxConcurrency) {
+			return new MixedExecutorService(Math.max(1, maxThreads), maxConcurrency);
+		}
+	};
+
+	/**
+	 * Create a new executor service for this execution mode.
+	 *
+	 * @param maxThreads     the maximum number of threads running CPU-bound
+	 *                       work
+	 * @param maxConcurrency the maximum number of concurrently running tasks,
+	 *                       unbounded if not positive. Ignored by
+	 *                       {@link #FIXED} and {@link #WORK_STEALING}.
+	 * @return the executor service
+	 */
+	public abstract ExecutorService newExecutorService(int maxThreads, int maxConcurrency);
+}
@@ -0,0 +1,60 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.concurrent;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Estimates the number of heap bytes a task will need while it runs. Used by
+ * {@link AdmissionController} to hold back tasks, whose estimated working
+ * set would exceed the heap budget.
+ *
+ * @author Nils Hoffmann
+ * @param <T> the result type of the tasks
+ */
+public interface IMemoryEstimator<T> {
+
+	/**
+	 * Returns the estimated number of bytes the task will need.
+	 *
+	 * @param task the task
+	 * @return the estimated number of bytes, 0 if unknown
+	 */
+	long estimate(Callable<T> task);
+
+	/**
+	 * Called after the task has run with the estimate and the observed
+	 * working set of the task, allowing the estimator to learn.
+	 *
+	 * @param task     the task
+	 * @param estimate the estimate returned for the task
+	 * @param retained the number of heap bytes retained by the task, or -1 if
+	 *                 no working set could be observed
+	 */
+	void observe(Callable<T> task, long estimate, long retained);
+}
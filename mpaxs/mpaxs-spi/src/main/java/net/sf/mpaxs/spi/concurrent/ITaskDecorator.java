@@ -0,0 +1,49 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.concurrent;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Decorates tasks of a local completion service on submission, e.g. to
+ * carry state of the submitting thread over to the thread running the task.
+ * Tasks are decorated on the submitting thread.
+ *
+ * @author Nils Hoffmann
+ */
+public interface ITaskDecorator {
+
+	/**
+	 * Returns the task to run in place of the given task.
+	 *
+	 * @param <T>  the result type
+	 * @param task the task
+	 * @return the decorated task, or the task itself
+	 */
+	<T> Callable<T> decorate(Callable<T> task);
+}
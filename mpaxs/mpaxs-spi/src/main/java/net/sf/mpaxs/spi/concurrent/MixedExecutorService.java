@@ -0,0 +1,208 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Executor service running each task on a virtual thread, which caps the
+ * number of concurrently running tasks separately from the number of
+ * concurrently running compute sections.
+ *
+ * Tasks that mix blocking I/O with heavy computation should wrap the
+ * computation in {@link #compute(java.util.concurrent.Callable)}. While many
+ * tasks may wait for I/O concurrently, at most <code>maxThreads</code> of them
+ * will compute at the same time.
+ *
+ * @author Nils Hoffmann
+ * @see ExecutionMode#MIXED
+ */
+public class MixedExecutorService extends AbstractExecutorService {
+
+	private static final ThreadLocal<Semaphore> COMPUTE_PERMITS = new ThreadLocal<Semaphore>();
+	private final ExecutorService delegate = Executors.newVirtualThreadPerTaskExecutor();
+	private final Semaphore concurrency;
+	private final Semaphore compute;
+	private final Set<Task> pending = Collections.newSetFromMap(new ConcurrentHashMap<Task, Boolean>());
+
+	/**
+	 * Create a new mixed executor service.
+	 *
+	 * @param maxThreads     the maximum number of concurrent compute sections,
+	 *                       unbounded if not positive
+	 * @param maxConcurrency the maximum number of concurrently running tasks,
+	 *                       unbounded if not positive
+	 */
+	public MixedExecutorService(int maxThreads, int maxConcurrency) {
+		this.compute = maxThreads > 0 ? new Semaphore(maxThreads, true) : null;
+		this.concurrency = maxConcurrency > 0 ? new Semaphore(maxConcurrency, true) : null;
+	}
+
+	/**
+	 * Runs the given compute section. If called from a task of a
+	 * {@link MixedExecutorService}, waits for one of its compute permits
+	 * first. Otherwise, the section is run directly.
+	 *
+	 * @param <V>     the result type
+	 * @param section the compute section
+	 * @return the result of the section
+	 * @throws Exception if the section throws an exception
+	 */
+	public static <V> V compute(Callable<V> section) throws Exception {
+		Semaphore permits = COMPUTE_PERMITS.get();
+		if (permits == null) {
+			return section.call();
+		}
+		permits.acquire();
+		try {
+			return section.call();
+		} finally {
+			permits.release();
+		}
+	}
+
+	@Override
+	public void execute(final Runnable command) {
+		Task task = new Task(command);
+		pending.add(task);
+		try {
+			delegate.execute(task);
+		} catch (RejectedExecutionException ree) {
+			pending.remove(task);
+			throw ree;
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		delegate.shutdown();
+	}
+
+	/**
+	 * Attempts to stop all running tasks and returns the tasks that have been
+	 * submitted, but have not started to run yet, e.g. because they were
+	 * waiting for a concurrency permit. The returned tasks are the ones
+	 * passed to {@link #execute(java.lang.Runnable)}.
+	 *
+	 * @return the tasks that never started to run
+	 */
+	@Override
+	public List<Runnable> shutdownNow() {
+		delegate.shutdown();
+		List<Runnable> notRun = new ArrayList<Runnable>();
+		for (Task task : pending) {
+			if (task.claim()) {
+				notRun.add(task.command);
+			}
+		}
+		delegate.shutdownNow();
+		return notRun;
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return delegate.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return delegate.isTerminated();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return delegate.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * Wraps a submitted task. A task runs at most once: either it is claimed
+	 * by its thread after acquiring a concurrency permit, or it is claimed by
+	 * {@link #shutdownNow()} and returned to the caller.
+	 */
+	private final class Task implements Runnable {
+
+		private final Runnable command;
+		private final AtomicBoolean claimed = new AtomicBoolean(false);
+
+		Task(Runnable command) {
+			this.command = command;
+		}
+
+		boolean claim() {
+			return claimed.compareAndSet(false, true);
+		}
+
+		@Override
+		public void run() {
+			try {
+				if (concurrency != null) {
+					try {
+						concurrency.acquire();
+					} catch (InterruptedException ie) {
+						if (claim() && command instanceof Future) {
+							((Future<?>) command).cancel(false);
+						}
+						Thread.currentThread().interrupt();
+						return;
+					}
+				}
+				try {
+					if (!claim()) {
+						//returned by shutdownNow
+						return;
+					}
+					COMPUTE_PERMITS.set(compute);
+					try {
+						command.run();
+					} finally {
+						COMPUTE_PERMITS.remove();
+					}
+				} finally {
+					if (concurrency != null) {
+						concurrency.release();
+					}
+				}
+			} finally {
+				pending.remove(this);
+			}
+		}
+	}
+}
@@ -29,8 +29,11 @@ package net.sf.mpaxs.spi.concurrent;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
@@ -70,14 +73,17 @@ public class MpaxsCompletionService<T extends Serializable> implements
 	private ExecutorCompletionService<T> es = null;
 	private Map<Future<T>, Callable<T>> futureToTaskMap = null;
 	private LinkedBlockingQueue<Callable<T>> failedTasks = null, cancelledTasks = null;
+	private AdmissionController<T> admissionController = null;
+	private ITaskDecorator taskDecorator = null;
 
 	/**
-	 * Create a new completion service with default cached thread pool.
+	 * Create a new completion service using {@link ExecutionMode#VIRTUAL},
+	 * i.e. one virtual thread per task.
 	 */
 	public MpaxsCompletionService() {
 		super();
 		init();
-		this.e = Executors.newVirtualThreadPerTaskExecutor();
+		this.e = ExecutionMode.VIRTUAL.newExecutorService(0, 0);
 		this.es = new ExecutorCompletionService<T>(e);
 	}
 
@@ -145,6 +151,45 @@ public class MpaxsCompletionService<T extends Serializable> implements
 		return this.maxThreads;
 	}
 
+	/**
+	 * Returns the admission controller for local execution.
+	 *
+	 * @return the admission controller, or null
+	 */
+	public AdmissionController<T> getAdmissionController() {
+		return admissionController;
+	}
+
+	/**
+	 * Set the admission controller for local execution. If set, submission of
+	 * a task blocks until its estimated working set fits into the heap budget
+	 * of the controller. Ignored for remote execution.
+	 *
+	 * @param admissionController the admission controller, may be null
+	 */
+	public void setAdmissionController(AdmissionController<T> admissionController) {
+		this.admissionController = admissionController;
+	}
+
+	/**
+	 * Returns the task decorator for local execution.
+	 *
+	 * @return the task decorator, or null
+	 */
+	public ITaskDecorator getTaskDecorator() {
+		return taskDecorator;
+	}
+
+	/**
+	 * Set the task decorator for local execution. If set, each task is
+	 * decorated on the submitting thread. Ignored for remote execution.
+	 *
+	 * @param taskDecorator the task decorator, may be null
+	 */
+	public void setTaskDecorator(ITaskDecorator taskDecorator) {
+		this.taskDecorator = taskDecorator;
+	}
+
 	/**
 	 * Returns the time to wait for tasks if this completion service is set to
 	 * non-blocking wait.
@@ -172,6 +217,25 @@ public class MpaxsCompletionService<T extends Serializable> implements
 	 */
 	@Override
 	public List<T> call() throws Exception {
+		Iterator<T> iter = results();
+		List<T> results = new ArrayList<T>();
+		while (iter.hasNext()) {
+			results.add(iter.next());
+		}
+		return results;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Results are returned in the order in which their tasks complete. The
+	 * executor is shut down once all results have been retrieved, or when
+	 * retrieval fails, in which case all remaining tasks are cancelled.
+	 *
+	 * @throws IllegalStateException if results or call were invoked before
+	 */
+	@Override
+	public Iterator<T> results() {
 		if (e == null) {
 			throw new IllegalStateException("MpaxsCompletionService was already shut down and terminated!");
 		}
@@ -180,14 +244,48 @@ public class MpaxsCompletionService<T extends Serializable> implements
 		}
 		//take no more submissions
 		e.shutdown();
-		LinkedBlockingQueue<T> results = new LinkedBlockingQueue<T>();
-		try {
-			// count up to the number of submitted tasks minus the number
-			// of failed tasks, irrespective of submission order
-			while (!futureToTaskMap.keySet().isEmpty()) {
-				retrieveResult(results);
+		return new ResultIterator();
+	}
+
+	/**
+	 * Retrieves results from the completion service one at a time.
+	 */
+	private final class ResultIterator implements Iterator<T> {
+
+		private final Queue<T> available = new LinkedList<T>();
+		private boolean finished = false;
+
+		@Override
+		public boolean hasNext() {
+			if (!available.isEmpty()) {
+				return true;
+			}
+			if (finished) {
+				return false;
+			}
+			try {
+				// wait for the next result, irrespective of submission order
+				while (available.isEmpty() && !futureToTaskMap.keySet().isEmpty()) {
+					retrieveResult(available);
+				}
+			} finally {
+				if (available.isEmpty()) {
+					finish();
+				}
+			}
+			return !available.isEmpty();
+		}
+
+		@Override
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
 			}
-		} finally {
+			return available.poll();
+		}
+
+		private void finish() {
+			finished = true;
 			// cancel all remaining tasks
 			if (!futureToTaskMap.keySet().isEmpty()) {
 				Logger.getLogger(MpaxsCompletionService.class.getName()).log(Level.FINEST,
@@ -200,16 +298,12 @@ public class MpaxsCompletionService<T extends Serializable> implements
 				f.cancel(true);
 			}
 			futureToTaskMap.clear();
-		}
-		//if ((callables.get() - (failed.get() + cancelled.get())) != 0) {
-		if (futureToTaskMap.isEmpty()) {
 			Logger.getLogger(MpaxsCompletionService.class.getName()).log(Level.FINEST,
 				"Retrieved all results. " + done + " jobs succeeded, "
 				+ failed + " failed, " + cancelled
 				+ " were cancelled.");
+			waitForShutdownCompletion();
 		}
-		waitForShutdownCompletion();
-		return new ArrayList<T>(results);
 	}
 
 	private synchronized void waitForShutdownCompletion() {
@@ -381,7 +475,7 @@ public class MpaxsCompletionService<T extends Serializable> implements
 			throw new RejectedExecutionException(
 				"Callable must extend Serializable for remote execution!");
 		}
-		Future<T> f = es.submit(c);
+		Future<T> f = es.submit(decorate(admit(c)));
 		futureToTaskMap.put(f, c);
 		callables.incrementAndGet();
 		return f;
@@ -407,9 +501,28 @@ public class MpaxsCompletionService<T extends Serializable> implements
 				"Return type t must extend Serializable for remote execution!");
 		}
 		Callable<T> c = Executors.callable(r, t);
-		Future<T> f = es.submit(c);
+		Future<T> f = es.submit(decorate(admit(c)));
 		futureToTaskMap.put(f, c);
 		callables.incrementAndGet();
 		return f;
 	}
+
+	private Callable<T> decorate(Callable<T> c) {
+		if (taskDecorator == null || e instanceof MpaxsExecutorService) {
+			return c;
+		}
+		return taskDecorator.decorate(c);
+	}
+
+	private Callable<T> admit(Callable<T> c) {
+		if (admissionController == null || e instanceof MpaxsExecutorService) {
+			return c;
+		}
+		try {
+			return admissionController.admit(c);
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new RejectedExecutionException("Interrupted while waiting for admission of task!", ie);
+		}
+	}
 }
@@ -39,6 +39,8 @@ import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.sf.mpaxs.api.Impaxs;
+import net.sf.mpaxs.api.job.IJob;
+import net.sf.mpaxs.api.job.IResourceAware;
 
 /**
  * <code>ExecutorService</code> implementation for remote execution via RMI.
@@ -53,6 +55,8 @@ public class MpaxsExecutorService extends AbstractExecutorService {
 
 	private ExecutorService es = Executors.newSingleThreadExecutor();
 	private final Impaxs computeServer;
+	private String group = "";
+	private int priority = 0;
 
 	/**
 	 * Create a new instance using the default compute server.
@@ -72,6 +76,44 @@ public class MpaxsExecutorService extends AbstractExecutorService {
 		this.computeServer = executionServer;
 	}
 
+	/**
+	 * Get the group of submitted jobs.
+	 *
+	 * @return the job group
+	 * @see IJob#getGroup()
+	 */
+	public String getGroup() {
+		return group;
+	}
+
+	/**
+	 * Set the group of submitted jobs, e.g. the submitting client or workflow.
+	 *
+	 * @param group the job group
+	 * @see IJob#setGroup(java.lang.String)
+	 */
+	public void setGroup(String group) {
+		this.group = group;
+	}
+
+	/**
+	 * Get the priority of submitted jobs.
+	 *
+	 * @return the job priority
+	 */
+	public int getPriority() {
+		return priority;
+	}
+
+	/**
+	 * Set the priority of submitted jobs.
+	 *
+	 * @param priority the job priority
+	 */
+	public void setPriority(int priority) {
+		this.priority = priority;
+	}
+
     /**
      *
      */
@@ -116,7 +158,7 @@ public class MpaxsExecutorService extends AbstractExecutorService {
      */
     @Override
 	protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
-		return new MpaxsFutureTask<T>(computeServer, runnable, value);
+		return configure(new MpaxsFutureTask<T>(computeServer, runnable, value), runnable);
 	}
 
     /**
@@ -129,7 +171,16 @@ public class MpaxsExecutorService extends AbstractExecutorService {
 	protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
 		Logger.getLogger(MpaxsExecutorService.class.getName()).log(Level.FINER,
 			"Creating new FutureTask for {}", callable.getClass());
-		return new MpaxsFutureTask<T>(computeServer, callable);
+		return configure(new MpaxsFutureTask<T>(computeServer, callable), callable);
+	}
+
+	private <T> MpaxsFutureTask<T> configure(MpaxsFutureTask<T> task, Object delegate) {
+		task.getJob().setGroup(group);
+		task.getJob().setPriority(priority);
+		if (delegate instanceof IResourceAware) {
+			task.getJob().setInputResources(((IResourceAware) delegate).getInputResources());
+		}
+		return task;
 	}
 
     /**
@@ -27,11 +27,16 @@
  */
 package net.sf.mpaxs.spi.concurrent;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.Cleaner;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.Phaser;
 import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.sf.mpaxs.api.Impaxs;
@@ -40,6 +45,7 @@ import net.sf.mpaxs.api.concurrent.DefaultRunnable;
 import net.sf.mpaxs.api.event.IJobEventListener;
 import net.sf.mpaxs.api.job.IJob;
 import net.sf.mpaxs.api.job.Job;
+import net.sf.mpaxs.api.job.ResultReference;
 import net.sf.mpaxs.api.job.Status;
 
 /**
@@ -52,9 +58,13 @@ import net.sf.mpaxs.api.job.Status;
 public class MpaxsFutureTask<T> extends FutureTask<T> implements
 	RunnableFuture<T>, IJobEventListener {
 
+	private static final Cleaner CLEANER = Cleaner.create();
 	private final IJob<T> job;
 	private final Impaxs computeServer;
 	private Phaser phaser;
+	private volatile ResultReference resultReference = null;
+	private Cleaner.Cleanable spillFile = null;
+	private T transferredResult = null;
 
 	/**
 	 * Create a new instance.
@@ -81,6 +91,15 @@ public class MpaxsFutureTask<T> extends FutureTask<T> implements
 		job = new Job<T>(new DefaultRunnable<T>(runnable, result));
 	}
 
+	/**
+	 * Returns the job submitted by this task.
+	 *
+	 * @return the job
+	 */
+	public IJob<T> getJob() {
+		return job;
+	}
+
     /**
      *
      * @param bln
@@ -93,6 +112,9 @@ public class MpaxsFutureTask<T> extends FutureTask<T> implements
 			computeServer.cancelJob(job.getId());
 			job.setStatus(Status.CANCELED);
 		}
+		if (superCancelled) {
+			discardSpillFile();
+		}
 		return superCancelled;
 	}
 
@@ -109,6 +131,87 @@ public class MpaxsFutureTask<T> extends FutureTask<T> implements
 		phaser.awaitAdvance(0);
 	}
 
+	@Override
+	public T get() throws InterruptedException, ExecutionException {
+		return resolve(super.get());
+	}
+
+	@Override
+	public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		return resolve(super.get(timeout, unit));
+	}
+
+	/**
+	 * Returns a stream of the serialized result, if it was transferred
+	 * separately from the job, waiting for the result if necessary. The
+	 * stream is only available until the result has been read with
+	 * {@link #get()}.
+	 *
+	 * @return the stream, or null if the result was returned with the job
+	 * @throws InterruptedException if interrupted while waiting
+	 * @throws ExecutionException   if the computation failed
+	 * @throws IOException          if the stream can not be opened
+	 */
+	public InputStream getResultStream() throws InterruptedException, ExecutionException, IOException {
+		super.get();
+		ResultReference ref = resultReference;
+		return ref == null ? null : ref.openStream();
+	}
+
+	/**
+	 * Reads a separately transferred result from its spill file, which is
+	 * deleted afterwards.
+	 */
+	private synchronized T resolve(T v) throws ExecutionException {
+		ResultReference ref = resultReference;
+		if (ref == null) {
+			return transferredResult == null ? v : transferredResult;
+		}
+		try {
+			transferredResult = (T) ref.readResult();
+		} catch (IOException ex) {
+			throw new ExecutionException("Could not read result of job " + job.getId(), ex);
+		} catch (ClassNotFoundException ex) {
+			throw new ExecutionException("Could not read result of job " + job.getId(), ex);
+		}
+		discardSpillFile();
+		return transferredResult;
+	}
+
+	/**
+	 * Keeps a separately transferred result until it is read, but deletes
+	 * its spill file once this task is no longer reachable.
+	 */
+	private synchronized void setResultReference(ResultReference ref) {
+		resultReference = ref;
+		spillFile = CLEANER.register(this, new SpillFileDeletion(ref));
+	}
+
+	private synchronized void discardSpillFile() {
+		resultReference = null;
+		if (spillFile != null) {
+			spillFile.clean();
+			spillFile = null;
+		}
+	}
+
+	/**
+	 * Deletes a spill file, must not reference the task.
+	 */
+	private static final class SpillFileDeletion implements Runnable {
+
+		private final ResultReference ref;
+
+		SpillFileDeletion(ResultReference ref) {
+			this.ref = ref;
+		}
+
+		@Override
+		public void run() {
+			ref.delete();
+		}
+	}
+
     /**
      *
      * @param job
@@ -117,16 +220,22 @@ public class MpaxsFutureTask<T> extends FutureTask<T> implements
 	public void jobChanged(final IJob job) {
 		if (job.getId().equals(this.job.getId())) {
 			if (job.getStatus() == Status.DONE) {
-				try {
-					T v = (T) job.getClassToExecute().get();
-					if (v != null) {
-						set(v);
+				if (job.getResultReference() != null) {
+					//read lazily on first call to get
+					setResultReference(job.getResultReference());
+					set(null);
+				} else {
+					try {
+						T v = (T) job.getClassToExecute().get();
+						if (v != null) {
+							set(v);
+						}
+					} catch (InterruptedException ex) {
+						Logger.getLogger(MpaxsFutureTask.class.getName()).log(Level.SEVERE, null, ex);
+					} catch (ExecutionException ex) {
+						Logger.getLogger(MpaxsFutureTask.class.getName()).log(Level.SEVERE, null, ex);
+						setException(ex);
 					}
-				} catch (InterruptedException ex) {
-					Logger.getLogger(MpaxsFutureTask.class.getName()).log(Level.SEVERE, null, ex);
-				} catch (ExecutionException ex) {
-					Logger.getLogger(MpaxsFutureTask.class.getName()).log(Level.SEVERE, null, ex);
-					setException(ex);
 				}
 				computeServer.removeJobEventListener(this, job.getId());
 				int phase = phaser.arriveAndDeregister();
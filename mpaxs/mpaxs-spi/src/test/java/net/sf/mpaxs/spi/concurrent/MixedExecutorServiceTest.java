@@ -0,0 +1,145 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MixedExecutorService}.
+ *
+ * @author Nils Hoffmann
+ */
+public class MixedExecutorServiceTest {
+
+	/**
+	 * At most <code>maxThreads</code> compute sections run at the same time,
+	 * while the tasks themselves are not limited.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testComputeSectionsAreBounded() throws Exception {
+		MixedExecutorService service = new MixedExecutorService(2, 0);
+		final AtomicInteger active = new AtomicInteger();
+		final AtomicInteger maxActive = new AtomicInteger();
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+		for (int i = 0; i < 8; i++) {
+			final int value = i;
+			futures.add(service.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					return MixedExecutorService.compute(new Callable<Integer>() {
+						@Override
+						public Integer call() throws Exception {
+							int n = active.incrementAndGet();
+							int max;
+							while ((max = maxActive.get()) < n && !maxActive.compareAndSet(max, n)) {
+							}
+							Thread.sleep(20);
+							active.decrementAndGet();
+							return value;
+						}
+					});
+				}
+			}));
+		}
+		for (int i = 0; i < futures.size(); i++) {
+			Assert.assertEquals(Integer.valueOf(i), futures.get(i).get(10, TimeUnit.SECONDS));
+		}
+		Assert.assertTrue("Compute sections exceeded the limit: " + maxActive.get(), maxActive.get() <= 2);
+		service.shutdown();
+		Assert.assertTrue(service.awaitTermination(10, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Outside of a mixed executor service, compute sections run directly.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testComputeOutsideOfService() throws Exception {
+		Assert.assertEquals("direct", MixedExecutorService.compute(new Callable<String>() {
+			@Override
+			public String call() {
+				return "direct";
+			}
+		}));
+	}
+
+	/**
+	 * Tasks waiting for a concurrency permit are returned by shutdownNow as
+	 * they were submitted and are never run.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testShutdownNowReturnsWaitingTasks() throws Exception {
+		MixedExecutorService service = new MixedExecutorService(0, 1);
+		final CountDownLatch running = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		service.execute(new Runnable() {
+			@Override
+			public void run() {
+				running.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		Assert.assertTrue(running.await(10, TimeUnit.SECONDS));
+		final AtomicInteger runs = new AtomicInteger();
+		List<Runnable> waiting = new ArrayList<Runnable>();
+		for (int i = 0; i < 3; i++) {
+			Runnable r = new Runnable() {
+				@Override
+				public void run() {
+					runs.incrementAndGet();
+				}
+			};
+			waiting.add(r);
+			service.execute(r);
+		}
+		List<Runnable> notRun = service.shutdownNow();
+		Assert.assertEquals(3, notRun.size());
+		for (Runnable r : waiting) {
+			Assert.assertTrue(notRun.contains(r));
+		}
+		Assert.assertTrue(service.awaitTermination(10, TimeUnit.SECONDS));
+		Assert.assertEquals(0, runs.get());
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ * Mpaxs, modular parallel execution system.
+ * Copyright (C) 2010-2013, The authors of Mpaxs. All rights reserved.
+ *
+ * Project website: http://mpaxs.sf.net
+ *
+ * Mpaxs may be used under the terms of either the
+ *
+ * GNU Lesser General Public License (LGPL)
+ * http://www.gnu.org/licenses/lgpl.html
+ *
+ * or the
+ *
+ * Eclipse Public License (EPL)
+ * http://www.eclipse.org/org/documents/epl-v10.php
+ *
+ * As a user/recipient of Mpaxs, you may choose which license to receive the code
+ * under. Certain files or entire directories may not be covered by this
+ * dual license, but are subject to licenses compatible to both LGPL and EPL.
+ * License exceptions are explicitly declared in all relevant files or in a
+ * LICENSE file in the relevant directories.
+ *
+ * Mpaxs is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. Please consult the relevant license documentation
+ * for details.
+ */
+package net.sf.mpaxs.spi.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MpaxsCompletionService}.
+ *
+ * @author Nils Hoffmann
+ */
+public class MpaxsCompletionServiceTest {
+
+	private static Callable<Integer> awaiting(final CountDownLatch latch, final int value) {
+		return new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+				return value;
+			}
+		};
+	}
+
+	/**
+	 * Results are returned in the order in which their tasks complete,
+	 * independent of the order of submission.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testResultsInCompletionOrder() throws Exception {
+		MpaxsCompletionService<Integer> mcs = new MpaxsCompletionService<Integer>(Executors.newFixedThreadPool(3), 10, TimeUnit.SECONDS, true);
+		List<CountDownLatch> latches = new ArrayList<CountDownLatch>();
+		for (int i = 0; i < 3; i++) {
+			CountDownLatch latch = new CountDownLatch(1);
+			latches.add(latch);
+			mcs.submit(awaiting(latch, i));
+		}
+		Iterator<Integer> iter = mcs.results();
+		int[] order = {2, 0, 1};
+		for (int i : order) {
+			latches.get(i).countDown();
+			Assert.assertTrue(iter.hasNext());
+			Assert.assertEquals(Integer.valueOf(i), iter.next());
+		}
+		Assert.assertFalse(iter.hasNext());
+		Assert.assertTrue(mcs.getFailedOrCancelledTasks().isEmpty());
+	}
+
+	/**
+	 * Failed tasks are skipped by the result iterator and reported as failed,
+	 * while the remaining results are still returned.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testResultsSkipFailedTasks() throws Exception {
+		MpaxsCompletionService<Integer> mcs = new MpaxsCompletionService<Integer>(Executors.newFixedThreadPool(2), 10, TimeUnit.SECONDS, false);
+		Callable<Integer> failing = new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				throw new IllegalStateException("Failing on purpose!");
+			}
+		};
+		mcs.submit(failing);
+		for (int i = 0; i < 3; i++) {
+			CountDownLatch latch = new CountDownLatch(0);
+			mcs.submit(awaiting(latch, i));
+		}
+		List<Integer> results = new ArrayList<Integer>();
+		Iterator<Integer> iter = mcs.results();
+		while (iter.hasNext()) {
+			results.add(iter.next());
+		}
+		Collections.sort(results);
+		Assert.assertEquals(3, results.size());
+		for (int i = 0; i < 3; i++) {
+			Assert.assertEquals(Integer.valueOf(i), results.get(i));
+		}
+		Assert.assertEquals(1, mcs.getFailedTasks().size());
+		Assert.assertSame(failing, mcs.getFailedTasks().get(0));
+		Assert.assertTrue(mcs.getCancelledTasks().isEmpty());
+	}
+
+	/**
+	 * Call returns all results and the completion service can not be used to
+	 * retrieve results twice.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testCallReturnsAllResults() throws Exception {
+		MpaxsCompletionService<Integer> mcs = new MpaxsCompletionService<Integer>(Executors.newFixedThreadPool(2), 10, TimeUnit.SECONDS, true);
+		for (int i = 0; i < 5; i++) {
+			mcs.submit(awaiting(new CountDownLatch(0), i));
+		}
+		List<Integer> results = mcs.call();
+		Collections.sort(results);
+		Assert.assertEquals(5, results.size());
+		for (int i = 0; i < 5; i++) {
+			Assert.assertEquals(Integer.valueOf(i), results.get(i));
+		}
+		try {
+			mcs.results();
+			Assert.fail("Expected IllegalStateException");
+		} catch (IllegalStateException ise) {
+			// expected
+		}
+	}
+
+	/**
+	 * The task decorator is applied on the submitting thread and the
+	 * decorated task runs in place of the submitted one, while failed tasks
+	 * are reported undecorated.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testTaskDecorator() throws Exception {
+		final ThreadLocal<String> context = new ThreadLocal<String>();
+		final List<Thread> decoratingThreads = Collections.synchronizedList(new ArrayList<Thread>());
+		MpaxsCompletionService<String> mcs = new MpaxsCompletionService<String>(Executors.newFixedThreadPool(2), 10, TimeUnit.SECONDS, true);
+		mcs.setTaskDecorator(new ITaskDecorator() {
+			@Override
+			public <T> Callable<T> decorate(final Callable<T> task) {
+				decoratingThreads.add(Thread.currentThread());
+				final String value = context.get();
+				return new Callable<T>() {
+					@Override
+					public T call() throws Exception {
+						context.set(value);
+						try {
+							return task.call();
+						} finally {
+							context.remove();
+						}
+					}
+				};
+			}
+		});
+		Callable<String> reading = new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return context.get();
+			}
+		};
+		Callable<String> failing = new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				throw new IllegalStateException("Failing on purpose!");
+			}
+		};
+		context.set("submitter");
+		try {
+			mcs.submit(reading);
+			mcs.submit(reading);
+			mcs.submit(failing);
+		} finally {
+			context.remove();
+		}
+		List<String> results = mcs.call();
+		Assert.assertEquals(2, results.size());
+		for (String result : results) {
+			Assert.assertEquals("submitter", result);
+		}
+		Assert.assertEquals(3, decoratingThreads.size());
+		for (Thread t : decoratingThreads) {
+			Assert.assertSame(Thread.currentThread(), t);
+		}
+		Assert.assertSame(failing, mcs.getFailedTasks().get(0));
+	}
+}
@@ -31,6 +31,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.Random;
 import java.util.concurrent.Callable;
+import net.sf.mpaxs.spi.concurrent.MixedExecutorService;
 
 /**
  *
@@ -45,13 +46,21 @@ public class TestCallable implements Callable<Double>, Serializable {
      */
     @Override
     public Double call() throws Exception {
-        long sum = 0;
 		long start = System.currentTimeMillis();
 		Random r = new Random(start);
-		int sumUntil = r.nextInt(Integer.MAX_VALUE);
-        for(int i = 0;i<sumUntil;i++) {
-            sum+=i;
-        }
+		final int sumUntil = r.nextInt(Integer.MAX_VALUE);
+		//the summation is CPU-bound, so it counts against the compute permits
+		//when run by a MixedExecutorService
+		long sum = MixedExecutorService.compute(new Callable<Long>() {
+			@Override
+			public Long call() {
+				long sum = 0;
+				for (int i = 0; i < sumUntil; i++) {
+					sum += i;
+				}
+				return sum;
+			}
+		});
 		System.out.println("Executed sum in "+(System.currentTimeMillis()-start)+" ms");
         if(Math.random()>0.92) {
             throw new IOException("Failed on io due to simulated random error!");